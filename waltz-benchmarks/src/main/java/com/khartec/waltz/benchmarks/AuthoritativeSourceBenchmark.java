@@ -0,0 +1,155 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.khartec.waltz.data.application.ApplicationDao;
+import com.khartec.waltz.data.application.search.ApplicationSearchDao;
+import com.khartec.waltz.data.authoritative_source.AuthoritativeSourceDao;
+import com.khartec.waltz.data.data_type.DataTypeDao;
+import com.khartec.waltz.data.entity_alias.EntityAliasDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.model.application.Application;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeRatingVantagePoint;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.service.application.ApplicationService;
+import com.khartec.waltz.service.authoritative_source.AuthoritativeSourceResolver;
+import com.khartec.waltz.service.data_flow_decorator.LogicalFlowDecoratorRatingsCalculator;
+import com.khartec.waltz.service.tag.TagService;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.khartec.waltz.benchmarks.SyntheticData.*;
+
+/**
+ * Benchmarks flow rating on synthetic data.  The calculator is given
+ * in-memory DAOs so only the resolver construction and per-decorator
+ * lookups are measured, not the queries which feed them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthoritativeSourceBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int flowCount;
+
+    private SyntheticData data;
+    private AuthoritativeSourceResolver resolver;
+    private LogicalFlowDecoratorRatingsCalculator calculator;
+
+
+    @Setup
+    public void setup() {
+        data = new SyntheticData(
+                Math.max(flowCount / 5, 10),
+                200,
+                300,
+                flowCount);
+
+        resolver = new AuthoritativeSourceResolver(data.vantagePoints);
+        calculator = mkCalculator(data);
+    }
+
+
+    @Benchmark
+    public AuthoritativeSourceResolver buildResolver() {
+        return new AuthoritativeSourceResolver(data.vantagePoints);
+    }
+
+
+    @Benchmark
+    public void resolve(Blackhole bh) {
+        for (DataTypeDecorator decorator : data.decorators) {
+            LogicalFlow flow = data.flows.get((int) decorator.dataFlowId() - 1);
+            Application target = data.apps.get((int) flow.target().id() - 1);
+            bh.consume(resolver.resolve(
+                    orgUnitRef(target.organisationalUnitId()),
+                    flow.source(),
+                    dataTypeCode(decorator.dataTypeId())));
+        }
+    }
+
+
+    @Benchmark
+    public Collection<DataTypeDecorator> calculate() {
+        return calculator.calculate(data.decorators);
+    }
+
+
+    // -- HELPERS ---
+
+    private static LogicalFlowDecoratorRatingsCalculator mkCalculator(SyntheticData data) {
+        DSLContext dsl = DSL.using(SQLDialect.DEFAULT);
+
+        ApplicationDao applicationDao = new ApplicationDao(dsl) {
+            @Override
+            public List<Application> findByIds(Collection<Long> ids) {
+                return data.apps;
+            }
+        };
+
+        AuthoritativeSourceDao authoritativeSourceDao = new AuthoritativeSourceDao(dsl) {
+            @Override
+            public List<AuthoritativeRatingVantagePoint> findExpandedAuthoritativeRatingVantagePoints(Set<Long> orgIds) {
+                return data.vantagePoints;
+            }
+        };
+
+        LogicalFlowDao logicalFlowDao = new LogicalFlowDao(dsl) {
+            @Override
+            public List<LogicalFlow> findActiveByFlowIds(Collection<Long> dataFlowIds) {
+                return data.flows;
+            }
+        };
+
+        DataTypeDao dataTypeDao = new DataTypeDao(dsl) {
+            @Override
+            public List<DataType> findAll() {
+                return data.dataTypes;
+            }
+        };
+
+        ApplicationService applicationService = new ApplicationService(
+                applicationDao,
+                new TagService(null, null),
+                new EntityAliasDao(dsl),
+                new ApplicationSearchDao(dsl));
+
+        return new LogicalFlowDecoratorRatingsCalculator(
+                applicationService,
+                authoritativeSourceDao,
+                logicalFlowDao,
+                dataTypeDao);
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.khartec.waltz.common.BatchProcessingCollector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Measures the overhead of the collector itself, the batch processor
+ * only hands each batch to the blackhole.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchProcessingCollectorBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+
+    @Benchmark
+    public Integer collect(Blackhole bh) {
+        return LongStream
+                .range(0, size)
+                .boxed()
+                .collect(new BatchProcessingCollector<>(batchSize, bh::consume));
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the wire formats the api can respond with (json, Smile and
+ * CBOR) on the largest payloads: serialisation time on the server, parse
+ * time on the client and, printed once per trial, the payload size.
+ *
+ * The mappers are configured as per <code>ContentFormat</code> in
+ * waltz-web, which is packaged as a war so cannot be depended upon
+ * directly.  Keep the two in step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentEncodingBenchmark {
+
+    @Param({"10000", "50000"})
+    public int size;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"applications", "logicalFlows", "dataTypeDecorators"})
+    public String payload;
+
+    private ObjectMapper mapper;
+    private List<?> items;
+    private byte[] encoded;
+
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticData data = new SyntheticData(size, 200, 300, size);
+        mapper = mkMapper(format);
+        items = selectPayload(data, payload);
+        encoded = mapper.writeValueAsBytes(items);
+
+        System.out.printf(
+                "%n%s as %s (size=%d): %,d bytes%n",
+                payload,
+                format,
+                size,
+                encoded.length);
+    }
+
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(items);
+    }
+
+
+    /**
+     * Clients do not have the model classes so parse into a tree, as a
+     * javascript client effectively does.
+     */
+    @Benchmark
+    public JsonNode clientParse() throws IOException {
+        return mapper.readTree(encoded);
+    }
+
+
+    // -- HELPERS ---
+
+    private static List<?> selectPayload(SyntheticData data, String payload) {
+        switch (payload) {
+            case "applications":
+                return data.apps;
+            case "logicalFlows":
+                return data.flows;
+            case "dataTypeDecorators":
+                return data.decorators;
+            default:
+                throw new IllegalArgumentException("Unknown payload: " + payload);
+        }
+    }
+
+
+    private static ObjectMapper mkMapper(String format) {
+        return new ObjectMapper(mkFactory(format))
+                .registerModule(new JSR310Module())
+                .registerModule(new Jdk8Module())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    }
+
+
+    private static JsonFactory mkFactory(String format) {
+        switch (format) {
+            case "json":
+                return new JsonFactory();
+            case "smile":
+                SmileFactory smileFactory = new SmileFactory();
+                smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+                smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+                return smileFactory;
+            case "cbor":
+                return new CBORFactory();
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.khartec.waltz.common.hierarchy.FlatNode;
+import com.khartec.waltz.common.hierarchy.Forest;
+import com.khartec.waltz.common.hierarchy.HierarchyUtilities;
+import com.khartec.waltz.common.hierarchy.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchies are built as a tree where each node has up to
+ * <code>branching</code> children, giving a depth of roughly
+ * log<sub>branching</sub>(size).  Org unit and data type
+ * hierarchies are typically a few thousand nodes, measurables
+ * can be larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HierarchyUtilitiesBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"3", "10"})
+    public int branching;
+
+    private List<FlatNode<String, Long>> flatNodes;
+    private Forest<String, Long> forest;
+    private List<Node<String, Long>> leaves;
+
+
+    @Setup
+    public void setup() {
+        flatNodes = new ArrayList<>(size);
+        for (long i = 0; i < size; i++) {
+            Optional<Long> parentId = i == 0
+                    ? Optional.empty()
+                    : Optional.of((i - 1) / branching);
+            flatNodes.add(new FlatNode<>(i, parentId, "node-" + i));
+        }
+
+        forest = HierarchyUtilities.toForest(flatNodes);
+
+        Map<Long, Node<String, Long>> allNodes = forest.getAllNodes();
+        leaves = new ArrayList<>();
+        for (long i = size - 1; i >= 0 && leaves.size() < 100; i--) {
+            leaves.add(allNodes.get(i));
+        }
+    }
+
+
+    @Benchmark
+    public Forest<String, Long> toForest() {
+        return HierarchyUtilities.toForest(flatNodes);
+    }
+
+
+    @Benchmark
+    public Map<Long, Integer> assignDepths() {
+        return HierarchyUtilities.assignDepths(forest);
+    }
+
+
+    @Benchmark
+    public void parentsOfDeepestNodes(Blackhole bh) {
+        for (Node<String, Long> leaf : leaves) {
+            bh.consume(HierarchyUtilities.parents(leaf));
+        }
+    }
+
+}
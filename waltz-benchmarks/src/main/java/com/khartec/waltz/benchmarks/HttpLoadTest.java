@@ -0,0 +1,257 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Drives a running Waltz server with many concurrent clients, mixing
+ * long-running requests (e.g. extracts) with cheap ones, and reports
+ * throughput and latency percentiles for each.
+ *
+ * Used to compare server settings, e.g. run once with
+ * <code>waltz.server.async.enabled=false</code> and once with it
+ * <code>true</code>, see the README.  Only the JDK is used so the client
+ * adds as little of its own overhead as possible.
+ *
+ * Configured via system properties:
+ * <ul>
+ *     <li>`waltz.load.url` - base url of the server (default: http://localhost:8443)</li>
+ *     <li>`waltz.load.clients` - concurrent clients (default: 200)</li>
+ *     <li>`waltz.load.seconds` - how long to run for, after warm up (default: 60)</li>
+ *     <li>`waltz.load.warmupSeconds` - untimed run first (default: 10)</li>
+ *     <li>`waltz.load.slowPath` - long-running request (default: GET /data-extract/org-units)</li>
+ *     <li>`waltz.load.fastPath` - cheap request (default: GET /api/data-types)</li>
+ *     <li>`waltz.load.slowRatio` - fraction of requests which are slow (default: 0.2)</li>
+ *     <li>`waltz.load.body` - json body sent with POST requests (default: none)</li>
+ *     <li>`waltz.load.authorization` - optional Authorization header value</li>
+ * </ul>
+ *
+ * Paths may be prefixed with a method, e.g. `POST /api/logical-flow/stats`.
+ */
+public class HttpLoadTest {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 600_000;
+
+    private final String baseUrl;
+    private final String body;
+    private final String authorization;
+    private final Map<String, Stats> statsByPath = new ConcurrentHashMap<>();
+
+    private volatile boolean recording = false;
+    private volatile boolean running = true;
+
+
+    private HttpLoadTest(String baseUrl, String body, String authorization) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.body = body;
+        this.authorization = authorization;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("waltz.load.url", "http://localhost:8443");
+        int clients = Integer.getInteger("waltz.load.clients", 200);
+        int seconds = Integer.getInteger("waltz.load.seconds", 60);
+        int warmupSeconds = Integer.getInteger("waltz.load.warmupSeconds", 10);
+        String slowPath = System.getProperty("waltz.load.slowPath", "GET /data-extract/org-units");
+        String fastPath = System.getProperty("waltz.load.fastPath", "GET /api/data-types");
+        double slowRatio = Double.parseDouble(System.getProperty("waltz.load.slowRatio", "0.2"));
+
+        HttpLoadTest test = new HttpLoadTest(
+                url,
+                System.getProperty("waltz.load.body"),
+                System.getProperty("waltz.load.authorization"));
+
+        log("Load testing %s with %d clients for %ds (warm up: %ds), %.0f%% '%s', remainder '%s'",
+                url, clients, seconds, warmupSeconds, slowRatio * 100, slowPath, fastPath);
+
+        test.run(clients, warmupSeconds, seconds, slowPath, fastPath, slowRatio);
+        test.report(seconds);
+        System.exit(0);
+    }
+
+
+    private void run(int clients,
+                     int warmupSeconds,
+                     int seconds,
+                     String slowPath,
+                     String fastPath,
+                     double slowRatio) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch finished = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            Random random = new Random(i);
+            executor.execute(() -> {
+                try {
+                    while (running) {
+                        request(random.nextDouble() < slowRatio ? slowPath : fastPath);
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        recording = true;
+        TimeUnit.SECONDS.sleep(seconds);
+        recording = false;
+        running = false;
+
+        // clients finish their in-flight request, which is not recorded
+        finished.await(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        executor.shutdownNow();
+    }
+
+
+    private void request(String methodAndPath) {
+        String[] parts = methodAndPath.trim().split("\\s+", 2);
+        String method = parts.length == 2 ? parts[0] : "GET";
+        String path = parts.length == 2 ? parts[1] : parts[0];
+
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = send(method, path);
+        } catch (IOException e) {
+            status = -1;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (recording) {
+            statsByPath
+                    .computeIfAbsent(methodAndPath, k -> new Stats())
+                    .record(status, elapsed);
+        }
+    }
+
+
+    private int send(String method, String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+        conn.setRequestMethod(method);
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        if (authorization != null) {
+            conn.setRequestProperty("Authorization", authorization);
+        }
+
+        if ("POST".equals(method) || "PUT".equals(method)) {
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write((body == null ? "{}" : body).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = conn.getResponseCode();
+        // read the whole response so the connection is reused
+        try (InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            if (is != null) {
+                byte[] buffer = new byte[8192];
+                while (is.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+        return status;
+    }
+
+
+    private void report(int seconds) {
+        log("%-50s %8s %8s %8s %8s %8s %8s  %s", "request", "count", "req/s", "p50ms", "p95ms", "p99ms", "maxms", "statuses");
+        statsByPath.forEach((path, stats) -> {
+            List<Long> latencies = stats.sortedLatencies();
+            log("%-50s %8d %8.1f %8d %8d %8d %8d  %s",
+                    path,
+                    latencies.size(),
+                    latencies.size() / (double) seconds,
+                    percentile(latencies, 0.50),
+                    percentile(latencies, 0.95),
+                    percentile(latencies, 0.99),
+                    percentile(latencies, 1.0),
+                    stats.statusCounts());
+        });
+    }
+
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.ceil(p * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(idx, 0)));
+    }
+
+
+    private static void log(String msg, Object... args) {
+        System.out.println(String.format(msg, args));
+    }
+
+
+    private static class Stats {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+
+        synchronized void record(int status, long elapsedNanos) {
+            latencies.add(elapsedNanos);
+            statusCounts.computeIfAbsent(status, k -> new LongAdder()).increment();
+        }
+
+
+        synchronized List<Long> sortedLatencies() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+
+        Map<Integer, Long> statusCounts() {
+            Map<Integer, Long> counts = new LinkedHashMap<>();
+            statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialises large lists of immutable model objects as the web layer
+ * does when returning them from an endpoint.
+ *
+ * The mapper is configured as per <code>WebUtilities.transformer</code>,
+ * waltz-web is packaged as a war so cannot be depended upon directly.
+ * Keep the two in step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JSR310Module())
+            .registerModule(new Jdk8Module())
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+    private SyntheticData data;
+
+
+    @Setup
+    public void setup() {
+        data = new SyntheticData(size, 200, 300, size);
+    }
+
+
+    @Benchmark
+    public String applications() throws JsonProcessingException {
+        return mapper.writeValueAsString(data.apps);
+    }
+
+
+    @Benchmark
+    public String logicalFlows() throws JsonProcessingException {
+        return mapper.writeValueAsString(data.flows);
+    }
+
+
+    @Benchmark
+    public String dataTypeDecorators() throws JsonProcessingException {
+        return mapper.writeValueAsString(data.decorators);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.khartec.waltz.data.SearchUtilities.mkRelevancyComparator;
+
+/**
+ * Sorts search results the way the entity search does once the
+ * database has returned its matches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelevancyComparatorBenchmark {
+
+    private static final String TERM = "trade";
+    private static final String[] WORDS = {
+            "trade", "settlement", "payments", "risk", "ledger",
+            "reference", "data", "gateway", "reporting", "client"};
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private List<String> names;
+    private final Comparator<String> comparator = mkRelevancyComparator(s -> s, TERM);
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(String.format(
+                    "%s %s %s %d",
+                    WORDS[random.nextInt(WORDS.length)],
+                    WORDS[random.nextInt(WORDS.length)],
+                    WORDS[random.nextInt(WORDS.length)],
+                    i));
+        }
+    }
+
+
+    @Benchmark
+    public List<String> sort() {
+        List<String> copy = new ArrayList<>(names);
+        copy.sort(comparator);
+        return copy;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.benchmarks;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.application.Application;
+import com.khartec.waltz.model.application.ApplicationKind;
+import com.khartec.waltz.model.application.ImmutableApplication;
+import com.khartec.waltz.model.application.LifecyclePhase;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeRatingVantagePoint;
+import com.khartec.waltz.model.authoritativesource.ImmutableAuthoritativeRatingVantagePoint;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.datatype.ImmutableDataType;
+import com.khartec.waltz.model.datatype.ImmutableDataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.ImmutableLogicalFlow;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.rating.AuthoritativenessRating;
+import com.khartec.waltz.model.rating.RagRating;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static com.khartec.waltz.model.EntityReference.mkRef;
+
+/**
+ * Generates a deterministic, self-consistent set of apps, data types,
+ * flows, decorators and authoritative source vantage points so that
+ * benchmarks do not need a database.
+ */
+public class SyntheticData {
+
+    private static final LocalDateTime LAST_UPDATED_AT = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final String PROVENANCE = "benchmark";
+
+    public final List<Application> apps;
+    public final List<DataType> dataTypes;
+    public final List<LogicalFlow> flows;
+    public final List<DataTypeDecorator> decorators;
+    public final List<AuthoritativeRatingVantagePoint> vantagePoints;
+
+
+    /**
+     * @param appCount  number of applications
+     * @param orgUnitCount  apps are spread evenly over this many org units
+     * @param dataTypeCount  number of (flat) data types
+     * @param flowCount  number of app to app flows, each with one to three data types
+     */
+    public SyntheticData(int appCount, int orgUnitCount, int dataTypeCount, int flowCount) {
+        Random random = new Random(42);
+
+        apps = new ArrayList<>(appCount);
+        for (long i = 1; i <= appCount; i++) {
+            apps.add(mkApp(i, 1 + (i % orgUnitCount)));
+        }
+
+        dataTypes = new ArrayList<>(dataTypeCount);
+        for (long i = 1; i <= dataTypeCount; i++) {
+            dataTypes.add(mkDataType(i));
+        }
+
+        flows = new ArrayList<>(flowCount);
+        decorators = new ArrayList<>(flowCount * 2);
+        for (long i = 1; i <= flowCount; i++) {
+            long source = 1 + random.nextInt(appCount);
+            long target = 1 + random.nextInt(appCount);
+            flows.add(mkFlow(i, source, target));
+
+            int typesOnFlow = 1 + random.nextInt(3);
+            for (int t = 0; t < typesOnFlow; t++) {
+                decorators.add(mkDecorator(i, 1 + random.nextInt(dataTypeCount)));
+            }
+        }
+
+        // each org unit has a primary and secondary source for about a third of the data types,
+        // vantage points are repeated at a lower rank as the expanded (inherited) view would be
+        vantagePoints = new ArrayList<>();
+        for (long ou = 1; ou <= orgUnitCount; ou++) {
+            for (DataType dt : dataTypes) {
+                if (random.nextInt(3) != 0) {
+                    continue;
+                }
+                long primary = 1 + random.nextInt(appCount);
+                long secondary = 1 + random.nextInt(appCount);
+                vantagePoints.add(mkVantagePoint(ou, 2, dt, primary, AuthoritativenessRating.PRIMARY));
+                vantagePoints.add(mkVantagePoint(ou, 2, dt, secondary, AuthoritativenessRating.SECONDARY));
+                vantagePoints.add(mkVantagePoint(ou, 1, dt, secondary, AuthoritativenessRating.PRIMARY));
+            }
+        }
+    }
+
+
+    public static EntityReference appRef(long id) {
+        return mkRef(EntityKind.APPLICATION, id);
+    }
+
+
+    public static EntityReference orgUnitRef(long id) {
+        return mkRef(EntityKind.ORG_UNIT, id);
+    }
+
+
+    public static String dataTypeCode(long id) {
+        return "DT_" + id;
+    }
+
+
+    // -- HELPERS ---
+
+    private static Application mkApp(long id, long orgUnitId) {
+        return ImmutableApplication.builder()
+                .id(id)
+                .name("App " + id)
+                .description("Synthetic application " + id)
+                .assetCode("A" + id)
+                .organisationalUnitId(orgUnitId)
+                .applicationKind(ApplicationKind.IN_HOUSE)
+                .lifecyclePhase(LifecyclePhase.PRODUCTION)
+                .overallRating(RagRating.G)
+                .build();
+    }
+
+
+    private static DataType mkDataType(long id) {
+        return ImmutableDataType.builder()
+                .id(id)
+                .parentId(Optional.empty())
+                .name("Data Type " + id)
+                .code(dataTypeCode(id))
+                .description("")
+                .build();
+    }
+
+
+    private static LogicalFlow mkFlow(long id, long source, long target) {
+        return ImmutableLogicalFlow.builder()
+                .id(id)
+                .source(appRef(source))
+                .target(appRef(target))
+                .lastUpdatedBy(PROVENANCE)
+                .lastUpdatedAt(LAST_UPDATED_AT)
+                .build();
+    }
+
+
+    private static DataTypeDecorator mkDecorator(long flowId, long dataTypeId) {
+        return ImmutableDataTypeDecorator.builder()
+                .entityReference(mkRef(EntityKind.LOGICAL_DATA_FLOW, flowId))
+                .decoratorEntity(mkRef(EntityKind.DATA_TYPE, dataTypeId))
+                .lastUpdatedBy(PROVENANCE)
+                .lastUpdatedAt(LAST_UPDATED_AT)
+                .provenance(PROVENANCE)
+                .build();
+    }
+
+
+    private static AuthoritativeRatingVantagePoint mkVantagePoint(long orgUnitId,
+                                                                  int rank,
+                                                                  DataType dataType,
+                                                                  long appId,
+                                                                  AuthoritativenessRating rating) {
+        return ImmutableAuthoritativeRatingVantagePoint.builder()
+                .vantagePoint(orgUnitRef(orgUnitId))
+                .vantagePointRank(rank)
+                .dataType(dataType.entityReference())
+                .dataTypeCode(dataType.code())
+                .dataTypeRank(1)
+                .applicationId(appId)
+                .rating(rating)
+                .build();
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.common;
+
+import org.junit.Test;
+
+import static com.khartec.waltz.common.CompressionUtilities.gunzipFromBase64;
+import static com.khartec.waltz.common.CompressionUtilities.gzipToBase64;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionUtilities_gzip {
+
+    @Test
+    public void nullGivesNull() {
+        assertNull(gzipToBase64(null));
+        assertNull(gunzipFromBase64(null));
+    }
+
+
+    @Test
+    public void roundTripGivesOriginalString() {
+        String str = "{\"positions\":{\"APPLICATION/12\":{\"x\":10.5,\"y\":-3}},\"title\":\"Résumé ✓\"}";
+        assertEquals(str, gunzipFromBase64(gzipToBase64(str)));
+        assertEquals("", gunzipFromBase64(gzipToBase64("")));
+    }
+
+
+    @Test
+    public void repetitiveContentCompresses() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("\"APPLICATION/").append(i).append("\":{\"x\":").append(i * 3).append(",\"y\":").append(i * 7).append("},");
+        }
+        String str = sb.toString();
+        assertTrue(gzipToBase64(str).length() < str.length() / 2);
+    }
+
+}
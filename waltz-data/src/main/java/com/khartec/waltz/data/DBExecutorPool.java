@@ -18,34 +18,320 @@
 
 package com.khartec.waltz.data;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import com.khartec.waltz.common.exception.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
+
+
+/**
+ * Runs database queries in parallel on behalf of request threads.
+ *
+ * The pool has a fixed number of threads and a bounded queue, submissions
+ * beyond the queue capacity are rejected with a
+ * {@link RejectedExecutionException} rather than piling up.  Every task has a
+ * deadline: tasks still queued at their deadline are not started, and callers
+ * using {@link #await(Future)} stop waiting (and cancel the task) once it has
+ * passed.  The submitter's logging context (e.g. user and request id) is
+ * copied to the worker thread.
+ *
+ * Tasks submitted from a pool thread are run immediately on that thread, as
+ * queueing them behind the task which is waiting for them could exhaust the
+ * pool.
+ */
+@ManagedResource(description = "Executor used to run database queries in parallel")
 public class DBExecutorPool implements DBExecutorPoolInterface {
 
-    private final ExecutorService executorPool;
+    private static final Logger LOG = LoggerFactory.getLogger(DBExecutorPool.class);
+
+    private static final ThreadLocal<Boolean> IS_WORKER = ThreadLocal.withInitial(() -> false);
+
+    private final ThreadPoolExecutor executorPool;
+    private final int queueCapacity;
+    private final Duration defaultTimeout;
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final LongAdder startedCount = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
 
 
-    @Autowired
     public DBExecutorPool(int dbPoolMin, int dbPoolMax) {
-        executorPool = Executors.newFixedThreadPool(
-                Integer.max(dbPoolMax / 2, 1),
+        this(Integer.max(dbPoolMax / 2, 1), 500, Duration.ofSeconds(60));
+    }
+
+
+    public DBExecutorPool(int threadCount, int queueCapacity, Duration defaultTimeout) {
+        checkTrue(threadCount > 0, "threadCount must be positive");
+        checkTrue(queueCapacity > 0, "queueCapacity must be positive");
+        checkNotNull(defaultTimeout, "defaultTimeout cannot be null");
+
+        this.queueCapacity = queueCapacity;
+        this.defaultTimeout = defaultTimeout;
+        this.executorPool = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
                 (runnable) -> {
                     Thread t = new Thread(runnable, "DB Executor");
                     t.setDaemon(true);
                     return t;
-                });
-
+                },
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
 
     @Override
     public <T> Future<T> submit(Callable<T> task) {
-        return executorPool.submit(task);
+        return submit(task, defaultTimeout);
+    }
+
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task, Duration timeout) {
+        return submit(task, timeout, null);
+    }
+
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task, Runnable onComplete) {
+        checkNotNull(onComplete, "onComplete cannot be null");
+        return submit(task, defaultTimeout, onComplete);
+    }
+
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task, Duration timeout, Runnable onComplete) {
+        checkNotNull(task, "task cannot be null");
+        checkNotNull(timeout, "timeout cannot be null");
+
+        submittedCount.increment();
+
+        long submittedAt = System.nanoTime();
+        long deadline = submittedAt + timeout.toNanos();
+
+        if (IS_WORKER.get()) {
+            DBTask<T> inline = new DBTask<>(task, deadline, onComplete);
+            inline.run();
+            return inline;
+        }
+
+        Map<String, String> context = MDC.getCopyOfContextMap();
+
+        DBTask<T> dbTask = new DBTask<>(
+                () -> {
+                    long startedAt = System.nanoTime();
+                    recordQueueWait(startedAt - submittedAt);
+
+                    if (startedAt > deadline) {
+                        expiredCount.increment();
+                        throw new DeadlineExceededException(String.format(
+                                "Task expired after waiting %dms in the db executor queue",
+                                TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt)));
+                    }
+
+                    IS_WORKER.set(true);
+                    if (context != null) {
+                        MDC.setContextMap(context);
+                    }
+                    try {
+                        return task.call();
+                    } finally {
+                        MDC.clear();
+                        IS_WORKER.set(false);
+                    }
+                },
+                deadline,
+                onComplete);
+
+        try {
+            executorPool.execute(dbTask);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            LOG.warn("DB executor queue full ({} tasks queued), rejecting task", executorPool.getQueue().size());
+            dbTask.runOnComplete();
+            throw e;
+        }
+
+        return dbTask;
+    }
+
+
+    @Override
+    public <T> T await(Future<T> future) {
+        checkNotNull(future, "future cannot be null");
+
+        long deadline = future instanceof DBTask
+                ? ((DBTask<T>) future).deadline
+                : System.nanoTime() + defaultTimeout.toNanos();
+
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOutCount.increment();
+            throw new DeadlineExceededException("Database task did not complete before its deadline");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting for database task", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException("Database task failed", cause);
+            }
+        }
+    }
+
+
+    // -- JMX ---
+
+    @ManagedAttribute(description = "Number of threads currently running tasks")
+    public int getActiveCount() {
+        return executorPool.getActiveCount();
+    }
+
+
+    @ManagedAttribute(description = "Number of tasks waiting for a thread")
+    public int getQueuedCount() {
+        return executorPool.getQueue().size();
+    }
+
+
+    @ManagedAttribute(description = "Maximum number of tasks which may wait for a thread")
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+
+    @ManagedAttribute(description = "Number of threads in the pool")
+    public int getPoolSize() {
+        return executorPool.getPoolSize();
+    }
+
+
+    @ManagedAttribute(description = "Default task timeout in milliseconds")
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeout.toMillis();
+    }
+
+
+    @ManagedAttribute(description = "Tasks submitted, including those run inline on a pool thread")
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+
+    @ManagedAttribute(description = "Tasks completed by pool threads")
+    public long getCompletedCount() {
+        return executorPool.getCompletedTaskCount();
+    }
+
+
+    @ManagedAttribute(description = "Tasks rejected because the queue was full")
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+
+    @ManagedAttribute(description = "Tasks not started because their deadline passed whilst queued")
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+
+    @ManagedAttribute(description = "Tasks abandoned by their caller because their deadline passed")
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+
+    @ManagedAttribute(description = "Mean time tasks spent queued, in milliseconds")
+    public double getMeanQueueWaitMillis() {
+        long started = startedCount.sum();
+        return started == 0
+                ? 0
+                : totalQueueWaitNanos.sum() / (double) started / 1_000_000;
+    }
+
+
+    @ManagedAttribute(description = "Longest time a task spent queued, in milliseconds")
+    public long getMaxQueueWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get());
+    }
+
+
+    @ManagedOperation(description = "Reset the queue wait statistics")
+    public void resetQueueWaitStatistics() {
+        startedCount.reset();
+        totalQueueWaitNanos.reset();
+        maxQueueWaitNanos.set(0);
+    }
+
+
+    // -- HELPERS ---
+
+    private void recordQueueWait(long waitNanos) {
+        startedCount.increment();
+        totalQueueWaitNanos.add(waitNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+
+    /**
+     * A future which also runs an optional completion callback, whether the
+     * task succeeded, failed, expired whilst queued or was cancelled.
+     */
+    private static class DBTask<T> extends FutureTask<T> {
+
+        private final long deadline;
+        private final Runnable onComplete;
+
+
+        DBTask(Callable<T> callable, long deadline, Runnable onComplete) {
+            super(callable);
+            this.deadline = deadline;
+            this.onComplete = onComplete;
+        }
+
+
+        @Override
+        protected void done() {
+            runOnComplete();
+        }
+
+
+        void runOnComplete() {
+            if (onComplete == null) {
+                return;
+            }
+            try {
+                onComplete.run();
+            } catch (RuntimeException e) {
+                LOG.error("Completion callback for db task failed", e);
+            }
+        }
     }
 
 }
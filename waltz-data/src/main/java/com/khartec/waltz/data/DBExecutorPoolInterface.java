@@ -19,10 +19,60 @@
 package com.khartec.waltz.data;
 
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
+import static java.util.stream.Collectors.toList;
+
 public interface DBExecutorPoolInterface {
 
+    /**
+     * Submits a task using the pool's default timeout.
+     */
     <T> Future<T> submit(Callable<T> task);
+
+
+    /**
+     * Submits a task which must complete within the given time.  Tasks which
+     * are still queued when their time is up are never started.
+     */
+    <T> Future<T> submit(Callable<T> task, Duration timeout);
+
+
+    /**
+     * As {@link #submit(Callable)} but for background tasks whose result
+     * nobody waits for.  `onComplete` is always run exactly once: after the
+     * task succeeds or fails, if it expires whilst queued or is cancelled,
+     * and also if it is rejected (the `RejectedExecutionException` is still
+     * thrown).  Use it for clean up which must happen even if the task never
+     * starts, e.g. clearing an 'in progress' flag.
+     */
+    <T> Future<T> submit(Callable<T> task, Runnable onComplete);
+
+
+    /**
+     * As {@link #submit(Callable, Runnable)} with an explicit timeout.
+     */
+    <T> Future<T> submit(Callable<T> task, Duration timeout, Runnable onComplete);
+
+
+    /**
+     * Waits for a task submitted to this pool, at most until its deadline.
+     * If the deadline passes the task is cancelled and a
+     * {@link com.khartec.waltz.common.exception.DeadlineExceededException}
+     * is thrown.  Runtime exceptions thrown by the task are rethrown as-is.
+     */
+    <T> T await(Future<T> future);
+
+
+    default <T> List<T> awaitAll(Collection<Future<T>> futures) {
+        return futures
+                .stream()
+                .map(this::await)
+                .collect(toList());
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.data;
+
+import org.jooq.Field;
+import org.jooq.Record;
+
+import java.util.*;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * Maps the property names of a domain object onto the columns they are
+ * read from.  Used to push a sparse field selection (e.g. the api
+ * <code>fields=</code> parameter) down into the select list so that
+ * unwanted columns are not fetched.
+ *
+ * Only properties whose serialized form is exactly the column value should
+ * be registered, anything derived (enums with defaults, nested references,
+ * etc) must be left out so that callers fall back to the full query.
+ */
+public class FieldProjection {
+
+    private final Map<String, Field<?>> columnsByProperty;
+
+
+    private FieldProjection(Map<String, Field<?>> columnsByProperty) {
+        this.columnsByProperty = columnsByProperty;
+    }
+
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * @param properties  requested property names
+     * @return true if every requested property can be read directly from a column
+     */
+    public boolean supports(Set<String> properties) {
+        return properties != null
+                && ! properties.isEmpty()
+                && columnsByProperty.keySet().containsAll(properties);
+    }
+
+
+    public List<Field<?>> selectFields(Set<String> properties) {
+        checkSupported(properties);
+        return properties
+                .stream()
+                .map(columnsByProperty::get)
+                .collect(toList());
+    }
+
+
+    public Map<String, Object> toMap(Record record, Set<String> properties) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        properties.forEach(p -> result.put(p, record.get(columnsByProperty.get(p))));
+        return result;
+    }
+
+
+    // -- HELPERS ---
+
+    private void checkSupported(Set<String> properties) {
+        if (! supports(properties)) {
+            throw new IllegalArgumentException("Cannot project properties: " + properties + ", supported properties are: " + columnsByProperty.keySet());
+        }
+    }
+
+
+    public static class Builder {
+
+        private final Map<String, Field<?>> columnsByProperty = new HashMap<>();
+
+
+        public Builder add(String property, Field<?> column) {
+            checkNotNull(property, "property cannot be null");
+            checkNotNull(column, "column cannot be null");
+            columnsByProperty.put(property, column);
+            return this;
+        }
+
+
+        public FieldProjection build() {
+            return new FieldProjection(Collections.unmodifiableMap(new HashMap<>(columnsByProperty)));
+        }
+    }
+
+}
@@ -211,21 +211,25 @@ public class JooqUtilities {
 
     public static class MSSQL {
 
-        public static SQL mkContains(Collection<String> terms) {
+        public static Condition mkContains(Collection<String> terms) {
             checkNotNull(terms, "terms cannot be null");
             return mkContains(terms.toArray(new String[0]));
         }
 
-        public static SQL mkContains(String... terms) {
-            StringJoiner joiner = new StringJoiner(" AND ", "CONTAINS(*, '", "')");
+        /**
+         * The search condition is passed as a bind value, keeping the sql
+         * text the same for every search.
+         */
+        public static Condition mkContains(String... terms) {
+            StringJoiner joiner = new StringJoiner(" AND ");
             Stream.of(terms)
                     .filter(StringUtilities::notEmpty)
                     .map(t -> wrapSpecialInQuotes(t))
                     .forEach(joiner::add);
-            return DSL.sql(joiner.toString());
+            return DSL.condition("CONTAINS(*, {0})", DSL.val(joiner.toString()));
         }
 
-        public static SQL mkContainsPrefix(Collection<String> terms) {
+        public static Condition mkContainsPrefix(Collection<String> terms) {
             checkNotNull(terms, "terms cannot be null");
 
             // this is based on: https://stackoverflow.com/a/4321828
@@ -253,7 +257,7 @@ public class JooqUtilities {
                 fieldToTally,
                 DSL.count(fieldToTally).as(TALLY_COUNT_FIELD))
                 .from(table)
-                .where(dsl.renderInlined(recordsInScopeCondition))
+                .where(recordsInScopeCondition)
                 .groupBy(fieldToTally);
     }
 
@@ -268,7 +272,7 @@ public class JooqUtilities {
                 DSL.count(fieldToTally).as(TALLY_COUNT_FIELD),
                 DSL.rowNumber().over(DSL.orderBy(DSL.count(fieldToTally).desc())))
                 .from(table)
-                .where(dsl.renderInlined(recordsInScopeCondition))
+                .where(recordsInScopeCondition)
                 .groupBy(fieldToTally);
     }
 
@@ -19,6 +19,7 @@
 package com.khartec.waltz.data.application;
 
 
+import com.khartec.waltz.data.FieldProjection;
 import com.khartec.waltz.data.JooqUtilities;
 import com.khartec.waltz.model.Criticality;
 import com.khartec.waltz.model.EntityKind;
@@ -29,22 +30,27 @@ import com.khartec.waltz.model.tally.Tally;
 import com.khartec.waltz.schema.tables.records.ApplicationRecord;
 import org.jooq.*;
 import org.jooq.exception.DataAccessException;
+import org.jooq.lambda.tuple.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
-import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import static com.khartec.waltz.common.Checks.checkNotEmpty;
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtcTimestamp;
 import static com.khartec.waltz.common.EnumUtilities.readEnum;
 import static com.khartec.waltz.schema.Tables.EXTERNAL_IDENTIFIER;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static java.util.Optional.ofNullable;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 
 @Repository
@@ -76,6 +82,22 @@ public class ApplicationDao {
     };
 
 
+    /**
+     * Application properties which can be fetched on their own, see
+     * {@link #findAll(Set)} and {@link #findByAppIdSelector(Select, Set)}.
+     */
+    public static final FieldProjection PROJECTION = FieldProjection.builder()
+            .add("id", APPLICATION.ID)
+            .add("name", APPLICATION.NAME)
+            .add("description", APPLICATION.DESCRIPTION)
+            .add("assetCode", APPLICATION.ASSET_CODE)
+            .add("parentAssetCode", APPLICATION.PARENT_ASSET_CODE)
+            .add("organisationalUnitId", APPLICATION.ORGANISATIONAL_UNIT_ID)
+            .add("isRemoved", APPLICATION.IS_REMOVED)
+            .add("provenance", APPLICATION.PROVENANCE)
+            .build();
+
+
     public static final Condition IS_ACTIVE = APPLICATION.ENTITY_LIFECYCLE_STATUS
                                                           .eq(EntityLifecycleStatus.ACTIVE.name());
 
@@ -104,6 +126,15 @@ public class ApplicationDao {
                 .fetch(TO_DOMAIN_MAPPER);
     }
 
+
+    public List<Map<String, Object>> findAll(Set<String> fields) {
+        return dsl.select(PROJECTION.selectFields(fields))
+                .from(APPLICATION)
+                .where(IS_ACTIVE)
+                .fetch(r -> PROJECTION.toMap(r, fields));
+    }
+
+
     public List<Application> findByIds(Collection<Long> ids) {
         return dsl.select()
                 .from(APPLICATION)
@@ -177,7 +208,7 @@ public class ApplicationDao {
         record.setKind(request.applicationKind().name());
         record.setLifecyclePhase(request.lifecyclePhase().name());
         record.setOverallRating(request.overallRating().name());
-        record.setUpdatedAt(Timestamp.from(Instant.now()));
+        record.setUpdatedAt(nowUtcTimestamp());
         record.setBusinessCriticality(request.businessCriticality().name());
         record.setProvenance(request.provenance().orElse("waltz"));
 
@@ -225,6 +256,7 @@ public class ApplicationDao {
         record.setProvenance(application.provenance());
         record.setBusinessCriticality(application.businessCriticality().name());
         record.setIsRemoved(application.isRemoved());
+        record.setUpdatedAt(nowUtcTimestamp());
 
         Condition condition = APPLICATION.ID.eq(application.id().get());
 
@@ -239,6 +271,45 @@ public class ApplicationDao {
     }
 
 
+    public List<Map<String, Object>> findByAppIdSelector(Select<Record1<Long>> selector,
+                                                         Set<String> fields) {
+        return dsl.select(PROJECTION.selectFields(fields))
+                .from(APPLICATION)
+                .where(APPLICATION.ID.in(selector))
+                .fetch(r -> PROJECTION.toMap(r, fields));
+    }
+
+
+    /**
+     * Finds applications updated at, or after, the given time (including
+     * those which have been removed) ordered by update time then id.  If
+     * <code>after</code> is given only applications beyond that update
+     * time/id pair are returned, allowing the results to be paged.
+     *
+     * @param since  earliest update time of interest (inclusive)
+     * @param after  update time and id of the last application already seen
+     * @param limit  maximum number of applications to return
+     * @return update time and application, in order
+     */
+    public List<Tuple2<Timestamp, Application>> findChangedSince(Timestamp since,
+                                                                 Optional<Tuple2<Timestamp, Long>> after,
+                                                                 int limit) {
+        SelectSeekStep2<Record, Timestamp, Long> query = dsl
+                .select()
+                .from(APPLICATION)
+                .where(APPLICATION.UPDATED_AT.ge(since))
+                .orderBy(APPLICATION.UPDATED_AT, APPLICATION.ID);
+
+        SelectLimitStep<Record> page = after.isPresent()
+                ? query.seek(after.get().v1, after.get().v2)
+                : query;
+
+        return page
+                .limit(limit)
+                .fetch(r -> tuple(r.get(APPLICATION.UPDATED_AT), TO_DOMAIN_MAPPER.map(r)));
+    }
+
+
     public List<Application> findByAssetCode(String externalId) {
         checkNotNull(externalId, "externalId cannot be null");
 
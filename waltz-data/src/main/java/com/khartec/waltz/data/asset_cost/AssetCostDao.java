@@ -169,7 +169,7 @@ public class AssetCostDao {
                 .from(ASSET_COST)
                 .innerJoin(APPLICATION)
                 .on(APPLICATION.ASSET_CODE.eq(ASSET_COST.ASSET_CODE))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .groupBy(APPLICATION.ID)
                 .fetch(r -> Tuple.tuple(r.value1(), r.value2()));
     }
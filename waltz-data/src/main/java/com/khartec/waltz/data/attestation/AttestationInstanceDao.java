@@ -25,26 +25,39 @@ import com.khartec.waltz.model.EntityReference;
 import com.khartec.waltz.model.attestation.AttestEntityCommand;
 import com.khartec.waltz.model.attestation.AttestationInstance;
 import com.khartec.waltz.model.attestation.ImmutableAttestationInstance;
+import com.khartec.waltz.schema.tables.records.AttestationInstanceRecipientRecord;
 import com.khartec.waltz.schema.tables.records.AttestationInstanceRecord;
 import org.jooq.*;
 import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
 import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.StreamUtilities.batchProcessingCollector;
 import static com.khartec.waltz.schema.Tables.*;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
+import static java.util.stream.Collectors.toMap;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 
 @Repository
 public class AttestationInstanceDao {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AttestationInstanceDao.class);
+
     private static final Field<String> ENTITY_NAME_FIELD = InlineSelectFieldFactory.mkNameField(
             ATTESTATION_INSTANCE.PARENT_ENTITY_ID,
             ATTESTATION_INSTANCE.PARENT_ENTITY_KIND,
@@ -101,6 +114,90 @@ public class AttestationInstanceDao {
     }
 
 
+    /**
+     * Creates the instances, and their recipients, for a newly created run
+     * using batched inserts in a single transaction.
+     *
+     * Generated instance ids are read back by run and matched to recipients
+     * using the parent entity and attested kind (unique within a run).
+     *
+     * @param attestationRunId  run the instances belong to, the run should have no existing instances
+     * @param instancesWithRecipients  instances to create, with the user ids of their recipients
+     * @param batchSize  number of rows per insert batch
+     * @return number of instances created
+     */
+    public int bulkCreate(long attestationRunId,
+                          Map<AttestationInstance, ? extends Collection<String>> instancesWithRecipients,
+                          int batchSize) {
+        checkNotNull(instancesWithRecipients, "instancesWithRecipients cannot be null");
+        checkTrue(batchSize > 0, "batchSize must be positive");
+        instancesWithRecipients.keySet().forEach(i -> checkTrue(
+                i.attestationRunId() == attestationRunId,
+                "all instances must belong to attestation run: " + attestationRunId));
+
+        int instanceCount = instancesWithRecipients.size();
+
+        dsl.transaction(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            AtomicInteger instancesInserted = new AtomicInteger(0);
+            instancesWithRecipients
+                    .keySet()
+                    .stream()
+                    .map(AttestationInstanceDao::mkInstanceRecord)
+                    .collect(batchProcessingCollector(batchSize, batch -> {
+                        if (batch.isEmpty()) return;
+                        tx.batchInsert(batch).execute();
+                        LOG.info("Attestation run: {}, inserted {}/{} instances",
+                                attestationRunId,
+                                instancesInserted.addAndGet(batch.size()),
+                                instanceCount);
+                    }));
+
+            Map<Tuple3<String, Long, String>, Long> idsByKey = tx
+                    .select(ATTESTATION_INSTANCE.ID,
+                            ATTESTATION_INSTANCE.PARENT_ENTITY_KIND,
+                            ATTESTATION_INSTANCE.PARENT_ENTITY_ID,
+                            ATTESTATION_INSTANCE.ATTESTED_ENTITY_KIND)
+                    .from(ATTESTATION_INSTANCE)
+                    .where(ATTESTATION_INSTANCE.ATTESTATION_RUN_ID.eq(attestationRunId))
+                    .fetch()
+                    .stream()
+                    .collect(toMap(
+                            r -> tuple(r.value2(), r.value3(), r.value4()),
+                            r -> r.value1()));
+
+            AtomicInteger recipientsInserted = new AtomicInteger(0);
+            instancesWithRecipients
+                    .entrySet()
+                    .stream()
+                    .flatMap(e -> {
+                        Long instanceId = idsByKey.get(mkKey(e.getKey()));
+                        if (instanceId == null) {
+                            throw new IllegalStateException("Could not find created attestation instance for: " + e.getKey().parentEntity());
+                        }
+                        return e.getValue()
+                                .stream()
+                                .map(userId -> {
+                                    AttestationInstanceRecipientRecord record = new AttestationInstanceRecipientRecord();
+                                    record.setAttestationInstanceId(instanceId);
+                                    record.setUserId(userId);
+                                    return record;
+                                });
+                    })
+                    .collect(batchProcessingCollector(batchSize, batch -> {
+                        if (batch.isEmpty()) return;
+                        tx.batchInsert(batch).execute();
+                        LOG.info("Attestation run: {}, inserted {} recipients",
+                                attestationRunId,
+                                recipientsInserted.addAndGet(batch.size()));
+                    }));
+        });
+
+        return instanceCount;
+    }
+
+
     public List<AttestationInstance> findByRecipient(String userId, boolean unattestedOnly) {
         Condition condition = ATTESTATION_INSTANCE_RECIPIENT.USER_ID.eq(userId);
         if(unattestedOnly) {
@@ -228,4 +325,24 @@ public class AttestationInstanceDao {
                 .and(ATTESTATION_INSTANCE.ATTESTED_AT.isNotNull())
                 .fetch(TO_DOMAIN_MAPPER);
     }
-}
\ No newline at end of file
+
+
+    // -- HELPERS ---
+
+    private static AttestationInstanceRecord mkInstanceRecord(AttestationInstance attestationInstance) {
+        AttestationInstanceRecord record = new AttestationInstanceRecord();
+        record.setAttestationRunId(attestationInstance.attestationRunId());
+        record.setParentEntityKind(attestationInstance.parentEntity().kind().name());
+        record.setParentEntityId(attestationInstance.parentEntity().id());
+        record.setAttestedEntityKind(attestationInstance.attestedEntityKind().name());
+        return record;
+    }
+
+
+    private static Tuple3<String, Long, String> mkKey(AttestationInstance attestationInstance) {
+        return tuple(
+                attestationInstance.parentEntity().kind().name(),
+                attestationInstance.parentEntity().id(),
+                attestationInstance.attestedEntityKind().name());
+    }
+}
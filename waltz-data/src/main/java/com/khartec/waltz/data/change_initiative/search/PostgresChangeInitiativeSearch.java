@@ -41,7 +41,7 @@ public class PostgresChangeInitiativeSearch implements FullTextSearch<ChangeInit
                         Double.class,
                         DSL.lower(CHANGE_INITIATIVE.DESCRIPTION),
                         DSL.lower(CHANGE_INITIATIVE.EXTERNAL_ID),
-                        DSL.inline(options.searchQuery().toLowerCase()));
+                        DSL.val(options.searchQuery().toLowerCase()));
 
         return dsl
                 .select(CHANGE_INITIATIVE.fields())
@@ -36,9 +36,11 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.khartec.waltz.common.Checks.checkNotEmpty;
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.CollectionUtilities.map;
 import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
 import static com.khartec.waltz.data.JooqUtilities.*;
 import static com.khartec.waltz.schema.Tables.PERSON;
@@ -239,6 +241,36 @@ public class ChangeLogDao {
      * @param ref
      * @return list of changes (empty if no attestations or if no changes)
      */
+    /**
+     * Finds the distinct parents of change log entries for the given child
+     * kind and operation written at, or after, the given time.  For
+     * example all entities which have had a measurable rating removed.
+     *
+     * @param childKind  kind of the child entity
+     * @param operation  operation performed on the child
+     * @param since  earliest entry time of interest (inclusive)
+     * @param excludedParentKinds  parent kinds to ignore
+     * @return references to the parents of matching entries
+     */
+    public Set<EntityReference> findParentsWithChildOperationSince(EntityKind childKind,
+                                                                   Operation operation,
+                                                                   Timestamp since,
+                                                                   Set<EntityKind> excludedParentKinds) {
+        checkNotNull(childKind, "childKind cannot be null");
+        checkNotNull(operation, "operation cannot be null");
+        checkNotNull(since, "since cannot be null");
+
+        return dsl
+                .selectDistinct(CHANGE_LOG.PARENT_KIND, CHANGE_LOG.PARENT_ID)
+                .from(CHANGE_LOG)
+                .where(CHANGE_LOG.CHILD_KIND.eq(childKind.name()))
+                .and(CHANGE_LOG.OPERATION.eq(operation.name()))
+                .and(CHANGE_LOG.CREATED_AT.ge(since))
+                .and(CHANGE_LOG.PARENT_KIND.notIn(map(excludedParentKinds, Enum::name)))
+                .fetchSet(r -> readRef(r, CHANGE_LOG.PARENT_KIND, CHANGE_LOG.PARENT_ID));
+    }
+
+
     public List<ChangeLog> findUnattestedChanges(EntityReference ref) {
         com.khartec.waltz.schema.tables.ChangeLog cl = com.khartec.waltz.schema.tables.ChangeLog.CHANGE_LOG.as("cl");
         AttestationInstance ai = AttestationInstance.ATTESTATION_INSTANCE.as("ai");
@@ -105,7 +105,7 @@ public class ComplexityScoreDao {
         Map<Long, List<ComplexityScore>> scoresForApp = dsl
                 .select(COMPLEXITY_SCORE.fields())
                 .from(COMPLEXITY_SCORE)
-                .where(dsl.renderInlined(condition)).fetch()
+                .where(condition).fetch()
                 .stream()
                 .map(TO_COMPLEXITY_SCORE_MAPPER)
                 .collect(Collectors.groupingBy(ComplexityScore::id));
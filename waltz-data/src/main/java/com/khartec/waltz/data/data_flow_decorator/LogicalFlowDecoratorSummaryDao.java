@@ -98,8 +98,8 @@ public class LogicalFlowDecoratorSummaryDao {
                 .select(countField)
                 .from(LOGICAL_FLOW_DECORATOR)
                 .innerJoin(LOGICAL_FLOW)
-                .on(dsl.renderInlined(dataFlowJoinCondition))
-                .where(dsl.renderInlined(condition))
+                .on(dataFlowJoinCondition)
+                .where(condition)
                 .groupBy(groupingFields)
                 .fetch(r -> {
                     EntityKind decoratorEntityKind = EntityKind.valueOf(r.getValue(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_KIND));
@@ -159,7 +159,7 @@ public class LogicalFlowDecoratorSummaryDao {
                 .on(sourceAppId.eq(lf.SOURCE_ENTITY_ID))
                 .leftJoin(targetApp)
                 .on(targetAppId.eq(lf.TARGET_ENTITY_ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .fetchGroups(
                         k -> DataTypeDirectionKey.mkKey(
                                 k.get(lfd.DECORATOR_ENTITY_ID),
@@ -37,6 +37,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -257,56 +258,70 @@ public class DataTypeUsageDao {
 
 
     public boolean recalculateForIdSelector(EntityKind kind, Select<Record1<Long>> idSelector) {
+        return recalculateForIdSelectors(Collections.singletonMap(kind, idSelector));
+    }
+
 
+    /**
+     * Recalculates usages for several kinds of entity (e.g. applications and actors)
+     * within a single transaction.
+     *
+     * @param idSelectorsByKind  entity id selector for each kind to be recalculated
+     * @return true
+     */
+    public boolean recalculateForIdSelectors(Map<EntityKind, Select<Record1<Long>>> idSelectorsByKind) {
         dsl.transaction(configuration -> {
             DSLContext tx = DSL.using(configuration);
-
-            Condition isCalculatedUsageKind = DATA_TYPE_USAGE.USAGE_KIND.in(
-                    UsageKind.CONSUMER.name(),
-                    UsageKind.ORIGINATOR.name(),
-                    UsageKind.DISTRIBUTOR.name());
-
-            // clear calculated usages
-            tx.deleteFrom(DATA_TYPE_USAGE)
-                    .where(isCalculatedUsageKind)
-                    .and(DATA_TYPE_USAGE.DESCRIPTION.eq(""))
-                    .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
-                    .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
-                    .execute();
-
-            // clear usages where the datatype is not tied to an active logical flow
-            List<DataTypeUsageRecord> recordsToDelete = findAllNonActiveDataTypeUsages(tx, kind, idSelector);
-            tx.batchDelete(recordsToDelete)
-                    .execute();
-
-
-
-            // mark commented usages inactive
-            tx.update(DATA_TYPE_USAGE)
-                    .set(DATA_TYPE_USAGE.IS_SELECTED, false)
-                    .where(isCalculatedUsageKind)
-                    .and(DATA_TYPE_USAGE.DESCRIPTION.ne(""))
-                    .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
-                    .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
-                    .execute();
-
-            insertUsages(
-                    tx,
-                    mkConsumerDistributorUsagesToInsertSelector(kind, idSelector));
-            updateUsageKinds(
-                    tx,
-                    mkFlowWithTypesForConsumerDistributors(kind, idSelector));
-
-            insertUsages(
-                    tx,
-                    mkOriginatorUsagesToInsertSelector(kind, idSelector));
-            updateUsageKinds(
-                    tx,
-                    mkFlowWithTypesForOriginators(kind, idSelector));
+            idSelectorsByKind.forEach((kind, idSelector) -> recalculateForIdSelector(tx, kind, idSelector));
         });
 
         return true;
+    }
+
+
+    private void recalculateForIdSelector(DSLContext tx, EntityKind kind, Select<Record1<Long>> idSelector) {
+        Condition isCalculatedUsageKind = DATA_TYPE_USAGE.USAGE_KIND.in(
+                UsageKind.CONSUMER.name(),
+                UsageKind.ORIGINATOR.name(),
+                UsageKind.DISTRIBUTOR.name());
+
+        // clear calculated usages
+        tx.deleteFrom(DATA_TYPE_USAGE)
+                .where(isCalculatedUsageKind)
+                .and(DATA_TYPE_USAGE.DESCRIPTION.eq(""))
+                .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
+                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
+                .execute();
+
+        // clear usages where the datatype is not tied to an active logical flow
+        List<DataTypeUsageRecord> recordsToDelete = findAllNonActiveDataTypeUsages(tx, kind, idSelector);
+        tx.batchDelete(recordsToDelete)
+                .execute();
+
+
+
+        // mark commented usages inactive
+        tx.update(DATA_TYPE_USAGE)
+                .set(DATA_TYPE_USAGE.IS_SELECTED, false)
+                .where(isCalculatedUsageKind)
+                .and(DATA_TYPE_USAGE.DESCRIPTION.ne(""))
+                .and(DATA_TYPE_USAGE.ENTITY_ID.in(idSelector))
+                .and(DATA_TYPE_USAGE.ENTITY_KIND.eq(kind.name()))
+                .execute();
 
+        insertUsages(
+                tx,
+                mkConsumerDistributorUsagesToInsertSelector(kind, idSelector));
+        updateUsageKinds(
+                tx,
+                mkFlowWithTypesForConsumerDistributors(kind, idSelector));
+
+        insertUsages(
+                tx,
+                mkOriginatorUsagesToInsertSelector(kind, idSelector));
+        updateUsageKinds(
+                tx,
+                mkFlowWithTypesForOriginators(kind, idSelector));
     }
 
 
@@ -117,7 +117,7 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
                 .innerJoin(LOGICAL_FLOW)
                 .on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
                 .and(LOGICAL_NOT_REMOVED)
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .fetch(TO_DECORATOR_MAPPER);
     }
 
@@ -133,7 +133,7 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
                 .from(LOGICAL_FLOW_DECORATOR)
                 .innerJoin(LOGICAL_FLOW)
                 .on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .and(LOGICAL_NOT_REMOVED)
                 .fetch(TO_DECORATOR_MAPPER);
     }
@@ -221,6 +221,31 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
     }
 
 
+    /**
+     * Updates only the rating column of the given decorators (matched by id)
+     * using a single prepared statement with one set of bind values per decorator.
+     * Decorators without a rating are set to NO_OPINION.
+     */
+    public int[] updateRatings(Collection<DataTypeDecorator> decorators) {
+        checkNotNull(decorators, "decorators cannot be null");
+
+        if (decorators.isEmpty()) {
+            return new int[0];
+        }
+
+        BatchBindStep batch = dsl.batch(dsl
+                .update(LOGICAL_FLOW_DECORATOR)
+                .set(LOGICAL_FLOW_DECORATOR.RATING, (String) null)
+                .where(LOGICAL_FLOW_DECORATOR.ID.eq((Long) null)));
+
+        decorators.forEach(d -> batch.bind(
+                d.rating().orElse(AuthoritativenessRating.NO_OPINION).name(),
+                d.id().get()));
+
+        return batch.execute();
+    }
+
+
     public int updateDecoratorsForAuthSource(AuthoritativeRatingVantagePoint ratingVantagePoint) {
         LogicalFlowDecorator lfd = LOGICAL_FLOW_DECORATOR.as("lfd");
 
@@ -268,13 +293,47 @@ public class LogicalFlowDecoratorDao extends DataTypeDecoratorDao {
         return authSourceUpdateCount + nonAuthSourceUpdateCount;
     }
 
+    /**
+     * Finds decorators of active, app to app, flows where the target application
+     * belongs to the given org unit (or a descendant) and the decorating data type
+     * is the given data type (or a descendant).  This is the set of decorators
+     * which may be affected by an authoritative source declared against that
+     * org unit and data type.
+     */
+    public List<DataTypeDecorator> findByTargetOrgUnitAndDataType(long orgUnitId, long dataTypeId) {
+        SelectConditionStep<Record1<Long>> orgUnitSubselect = DSL.select(ENTITY_HIERARCHY.ID)
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(EntityKind.ORG_UNIT.name()))
+                .and(ENTITY_HIERARCHY.ANCESTOR_ID.eq(orgUnitId));
+
+        SelectConditionStep<Record1<Long>> dataTypeSubselect = DSL.select(ENTITY_HIERARCHY.ID)
+                .from(ENTITY_HIERARCHY)
+                .where(ENTITY_HIERARCHY.KIND.eq(DATA_TYPE.name()))
+                .and(ENTITY_HIERARCHY.ANCESTOR_ID.eq(dataTypeId));
+
+        return dsl
+                .select(LOGICAL_FLOW_DECORATOR.fields())
+                .from(LOGICAL_FLOW_DECORATOR)
+                .innerJoin(LOGICAL_FLOW).on(LOGICAL_FLOW.ID.eq(LOGICAL_FLOW_DECORATOR.LOGICAL_FLOW_ID))
+                .innerJoin(APPLICATION)
+                .on(APPLICATION.ID.eq(LOGICAL_FLOW.TARGET_ENTITY_ID)
+                        .and(LOGICAL_FLOW.TARGET_ENTITY_KIND.eq(EntityKind.APPLICATION.name())))
+                .where(LOGICAL_FLOW.SOURCE_ENTITY_KIND.eq(EntityKind.APPLICATION.name()))
+                .and(LOGICAL_NOT_REMOVED)
+                .and(APPLICATION.ORGANISATIONAL_UNIT_ID.in(orgUnitSubselect))
+                .and(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_KIND.eq(DATA_TYPE.name()))
+                .and(LOGICAL_FLOW_DECORATOR.DECORATOR_ENTITY_ID.in(dataTypeSubselect))
+                .fetch(TO_DECORATOR_MAPPER);
+    }
+
+
     // --- HELPERS ---
 
     private List<DataTypeDecorator> findByCondition(Condition condition) {
         return dsl
                 .select(LOGICAL_FLOW_DECORATOR.fields())
                 .from(LOGICAL_FLOW_DECORATOR)
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .fetch(TO_DECORATOR_MAPPER);
     }
 
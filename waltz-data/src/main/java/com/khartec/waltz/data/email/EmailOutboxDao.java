@@ -0,0 +1,241 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.data.email;
+
+import com.khartec.waltz.model.email.EmailMessage;
+import com.khartec.waltz.model.email.EmailOutboxStatus;
+import com.khartec.waltz.model.email.ImmutableEmailMessage;
+import com.khartec.waltz.schema.tables.records.EmailOutboxRecord;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtcTimestamp;
+import static com.khartec.waltz.common.StringUtilities.join;
+import static com.khartec.waltz.common.StringUtilities.limit;
+import static com.khartec.waltz.common.StringUtilities.splitThenMap;
+import static com.khartec.waltz.schema.Tables.EMAIL_OUTBOX;
+import static java.util.stream.Collectors.toList;
+
+
+@Repository
+public class EmailOutboxDao {
+
+    private static final String RECIPIENT_SEPARATOR = ";";
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private static final RecordMapper<Record, EmailMessage> TO_DOMAIN_MAPPER = r -> {
+        EmailOutboxRecord record = r.into(EMAIL_OUTBOX);
+        return ImmutableEmailMessage.builder()
+                .id(record.getId())
+                .subject(record.getSubject())
+                .body(record.getBody())
+                .recipients(splitThenMap(record.getRecipients(), RECIPIENT_SEPARATOR, String::trim))
+                .status(EmailOutboxStatus.valueOf(record.getStatus()))
+                .attempts(record.getAttempts())
+                .createdAt(record.getCreatedAt().toLocalDateTime())
+                .nextAttemptAt(record.getNextAttemptAt().toLocalDateTime())
+                .lastAttemptedAt(Optional.ofNullable(record.getLastAttemptedAt()).map(Timestamp::toLocalDateTime))
+                .lastError(Optional.ofNullable(record.getLastError()))
+                .build();
+    };
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public EmailOutboxDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    /**
+     * Adds one message per recipient batch to the outbox.
+     * @return number of messages queued
+     */
+    public int enqueue(String subject, String body, Collection<? extends Collection<String>> recipientBatches) {
+        checkNotNull(subject, "subject cannot be null");
+        checkNotNull(body, "body cannot be null");
+        checkNotNull(recipientBatches, "recipientBatches cannot be null");
+
+        Timestamp now = nowUtcTimestamp();
+
+        List<EmailOutboxRecord> records = recipientBatches
+                .stream()
+                .filter(batch -> ! batch.isEmpty())
+                .map(batch -> {
+                    EmailOutboxRecord record = new EmailOutboxRecord();
+                    record.setSubject(limit(subject, 255));
+                    record.setBody(body);
+                    record.setRecipients(join(batch, RECIPIENT_SEPARATOR));
+                    record.setStatus(EmailOutboxStatus.PENDING.name());
+                    record.setAttempts(0);
+                    record.setCreatedAt(now);
+                    record.setNextAttemptAt(now);
+                    return record;
+                })
+                .collect(toList());
+
+        dsl.batchInsert(records).execute();
+        return records.size();
+    }
+
+
+    /**
+     * Claims up to <code>limit</code> messages which are due to be sent by
+     * moving them from PENDING to SENDING.  Each claim is conditional on the
+     * message still being PENDING so concurrent workers (including those on
+     * other servers) never send the same message twice.
+     */
+    public List<EmailMessage> claimDue(int limit) {
+        Timestamp now = nowUtcTimestamp();
+
+        List<EmailMessage> candidates = dsl
+                .selectFrom(EMAIL_OUTBOX)
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailOutboxStatus.PENDING.name()))
+                .and(EMAIL_OUTBOX.NEXT_ATTEMPT_AT.le(now))
+                .orderBy(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, EMAIL_OUTBOX.ID)
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+
+        return candidates
+                .stream()
+                .filter(m -> dsl
+                        .update(EMAIL_OUTBOX)
+                        .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.SENDING.name())
+                        .set(EMAIL_OUTBOX.LAST_ATTEMPTED_AT, now)
+                        .where(EMAIL_OUTBOX.ID.eq(m.id().get()))
+                        .and(EMAIL_OUTBOX.STATUS.eq(EmailOutboxStatus.PENDING.name()))
+                        .execute() == 1)
+                .collect(toList());
+    }
+
+
+    public boolean markSent(long id) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.SENT.name())
+                .set(EMAIL_OUTBOX.ATTEMPTS, EMAIL_OUTBOX.ATTEMPTS.plus(1))
+                .setNull(EMAIL_OUTBOX.LAST_ERROR)
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute() == 1;
+    }
+
+
+    public boolean markForRetry(long id, String error, LocalDateTime nextAttemptAt) {
+        checkNotNull(nextAttemptAt, "nextAttemptAt cannot be null");
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.PENDING.name())
+                .set(EMAIL_OUTBOX.ATTEMPTS, EMAIL_OUTBOX.ATTEMPTS.plus(1))
+                .set(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, Timestamp.valueOf(nextAttemptAt))
+                .set(EMAIL_OUTBOX.LAST_ERROR, limit(error, MAX_ERROR_LENGTH))
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute() == 1;
+    }
+
+
+    public boolean markDead(long id, String error) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.DEAD.name())
+                .set(EMAIL_OUTBOX.ATTEMPTS, EMAIL_OUTBOX.ATTEMPTS.plus(1))
+                .set(EMAIL_OUTBOX.LAST_ERROR, limit(error, MAX_ERROR_LENGTH))
+                .where(EMAIL_OUTBOX.ID.eq(id))
+                .execute() == 1;
+    }
+
+
+    /**
+     * Returns messages stuck in SENDING (e.g. the server was stopped mid-send)
+     * to PENDING so they will be picked up again.
+     */
+    public int releaseStale(LocalDateTime claimedBefore) {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.PENDING.name())
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailOutboxStatus.SENDING.name()))
+                .and(EMAIL_OUTBOX.LAST_ATTEMPTED_AT.lt(Timestamp.valueOf(claimedBefore)))
+                .execute();
+    }
+
+
+    /**
+     * Moves DEAD messages back to PENDING so they will be attempted again.
+     */
+    public int requeueDead() {
+        return dsl
+                .update(EMAIL_OUTBOX)
+                .set(EMAIL_OUTBOX.STATUS, EmailOutboxStatus.PENDING.name())
+                .set(EMAIL_OUTBOX.ATTEMPTS, 0)
+                .set(EMAIL_OUTBOX.NEXT_ATTEMPT_AT, nowUtcTimestamp())
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailOutboxStatus.DEAD.name()))
+                .execute();
+    }
+
+
+    public int deleteSentBefore(LocalDateTime sentBefore) {
+        return dsl
+                .deleteFrom(EMAIL_OUTBOX)
+                .where(EMAIL_OUTBOX.STATUS.eq(EmailOutboxStatus.SENT.name()))
+                .and(EMAIL_OUTBOX.LAST_ATTEMPTED_AT.lt(Timestamp.valueOf(sentBefore)))
+                .execute();
+    }
+
+
+    public List<EmailMessage> findByStatus(EmailOutboxStatus status, int limit) {
+        return dsl
+                .selectFrom(EMAIL_OUTBOX)
+                .where(EMAIL_OUTBOX.STATUS.eq(status.name()))
+                .orderBy(EMAIL_OUTBOX.ID.desc())
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
+    public Map<EmailOutboxStatus, Integer> countByStatus() {
+        Map<EmailOutboxStatus, Integer> counts = new EnumMap<>(EmailOutboxStatus.class);
+        for (EmailOutboxStatus status : EmailOutboxStatus.values()) {
+            counts.put(status, 0);
+        }
+
+        dsl.select(EMAIL_OUTBOX.STATUS, DSL.count())
+                .from(EMAIL_OUTBOX)
+                .groupBy(EMAIL_OUTBOX.STATUS)
+                .fetch()
+                .forEach(r -> counts.put(EmailOutboxStatus.valueOf(r.value1()), r.value2()));
+
+        return counts;
+    }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.data.entity_statistic;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityLifecycleStatus;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.entity_statistic.RollupKind;
+import com.khartec.waltz.model.tally.ImmutableTally;
+import com.khartec.waltz.model.tally.ImmutableTallyPack;
+import com.khartec.waltz.model.tally.Tally;
+import com.khartec.waltz.model.tally.TallyPack;
+import com.khartec.waltz.schema.tables.records.EntityStatisticRollupRecord;
+import com.khartec.waltz.schema.tables.records.EntityStatisticRollupStateRecord;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.DataType;
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtcTimestamp;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.schema.tables.Application.APPLICATION;
+import static com.khartec.waltz.schema.tables.EntityHierarchy.ENTITY_HIERARCHY;
+import static com.khartec.waltz.schema.tables.EntityStatisticDefinition.ENTITY_STATISTIC_DEFINITION;
+import static com.khartec.waltz.schema.tables.EntityStatisticRollup.ENTITY_STATISTIC_ROLLUP;
+import static com.khartec.waltz.schema.tables.EntityStatisticRollupState.ENTITY_STATISTIC_ROLLUP_STATE;
+import static com.khartec.waltz.schema.tables.EntityStatisticValue.ENTITY_STATISTIC_VALUE;
+import static java.util.stream.Collectors.*;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Maintains the entity statistic rollup, a table of current statistic values
+ * pre-aggregated for every org unit (including the apps of its child units).
+ *
+ * The rollup mirrors the live summaries in {@link EntityStatisticSummaryDao}
+ * for an org unit selector with `CHILDREN` scope and default selection
+ * options (active applications of any kind).  Each statistic is refreshed
+ * independently, the rollup state table records the number of current values
+ * and the most recent value timestamp a statistic was built from so newly
+ * loaded values can be detected cheaply.
+ */
+@Repository
+public class EntityStatisticRollupDao {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityStatisticRollupDao.class);
+
+    public static final Set<RollupKind> SUPPORTED_ROLLUP_KINDS = asSet(
+            RollupKind.COUNT_BY_ENTITY,
+            RollupKind.SUM_BY_VALUE,
+            RollupKind.AVG_BY_VALUE);
+
+    private static final com.khartec.waltz.schema.tables.EntityStatisticValue esv = ENTITY_STATISTIC_VALUE.as("esv");
+    private static final com.khartec.waltz.schema.tables.EntityStatisticDefinition esd = ENTITY_STATISTIC_DEFINITION.as("esd");
+    private static final com.khartec.waltz.schema.tables.Application app = APPLICATION.as("app");
+    private static final com.khartec.waltz.schema.tables.EntityHierarchy eh = ENTITY_HIERARCHY.as("eh");
+
+    private static final DataType<BigDecimal> decimalValueDataType = SQLDataType.DECIMAL(38, 12);
+
+    private static final Field<Integer> valueCount = DSL.count().as("value_count");
+    private static final Field<Timestamp> lastValueAt = DSL.max(esv.CREATED_AT).as("last_value_at");
+
+    private static final Condition CURRENT_APP_VALUES = esv.CURRENT.eq(true)
+            .and(esv.ENTITY_KIND.eq(EntityKind.APPLICATION.name()));
+
+    private final DSLContext dsl;
+
+
+    @Autowired
+    public EntityStatisticRollupDao(DSLContext dsl) {
+        checkNotNull(dsl, "dsl cannot be null");
+        this.dsl = dsl;
+    }
+
+
+    /**
+     * @return ids of all statistic definitions which can be rolled up
+     */
+    public Set<Long> findRollupStatisticIds() {
+        return dsl
+                .select(esd.ID)
+                .from(esd)
+                .where(esd.ROLLUP_KIND.in(SUPPORTED_ROLLUP_KINDS))
+                .fetchSet(esd.ID);
+    }
+
+
+    /**
+     * Statistics are stale if they have never been rolled up or if the
+     * number of current values, or the most recent of them, has changed
+     * since they were.
+     *
+     * @return ids of statistics whose rollup needs refreshing
+     */
+    public Set<Long> findStaleStatisticIds() {
+        Map<Long, Tuple2<Integer, Timestamp>> source = dsl
+                .select(esv.STATISTIC_ID, valueCount, lastValueAt)
+                .from(esv)
+                .where(CURRENT_APP_VALUES)
+                .groupBy(esv.STATISTIC_ID)
+                .fetch()
+                .stream()
+                .collect(toMap(
+                        r -> r.get(esv.STATISTIC_ID),
+                        r -> tuple(r.get(valueCount), r.get(lastValueAt))));
+
+        Map<Long, Tuple2<Integer, Timestamp>> rolledUp = dsl
+                .selectFrom(ENTITY_STATISTIC_ROLLUP_STATE)
+                .fetch()
+                .stream()
+                .collect(toMap(
+                        EntityStatisticRollupStateRecord::getStatisticId,
+                        r -> tuple(r.getSourceValueCount(), r.getSourceLastValueAt())));
+
+        return determineStale(findRollupStatisticIds(), source, rolledUp);
+    }
+
+
+    /**
+     * @param statisticIds  statistics which can be rolled up
+     * @param source  (count, most recent created at) of current values, by statistic
+     * @param rolledUp  (count, most recent created at) recorded when last rolled up, by statistic
+     * @return statistics never rolled up, or whose current values differ from when they were
+     */
+    static Set<Long> determineStale(Collection<Long> statisticIds,
+                                    Map<Long, Tuple2<Integer, Timestamp>> source,
+                                    Map<Long, Tuple2<Integer, Timestamp>> rolledUp) {
+        return statisticIds
+                .stream()
+                .filter(id -> {
+                    Tuple2<Integer, Timestamp> state = rolledUp.get(id);
+                    Tuple2<Integer, Timestamp> current = source.getOrDefault(id, tuple(0, null));
+                    return state == null || ! Objects.equals(state, current);
+                })
+                .collect(toSet());
+    }
+
+
+    /**
+     * @param statisticIds  candidate statistics
+     * @return the subset of the given statistics which have been rolled up
+     */
+    public Set<Long> findRolledUpStatisticIds(Collection<Long> statisticIds) {
+        checkNotNull(statisticIds, "statisticIds cannot be null");
+
+        if (statisticIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        return dsl
+                .select(ENTITY_STATISTIC_ROLLUP_STATE.STATISTIC_ID)
+                .from(ENTITY_STATISTIC_ROLLUP_STATE)
+                .where(ENTITY_STATISTIC_ROLLUP_STATE.STATISTIC_ID.in(statisticIds))
+                .fetchSet(ENTITY_STATISTIC_ROLLUP_STATE.STATISTIC_ID);
+    }
+
+
+    /**
+     * Reads pre-computed tallies for the given org unit.  A tally pack is
+     * returned for every requested statistic, statistics without values
+     * under the org unit give an empty pack.
+     *
+     * @param statisticIds  statistics (all of the given rollup kind) to read
+     * @param rollupKind  how the values should be presented
+     * @param orgUnitId  org unit whose tallies (including child units) are required
+     * @return tally packs, one per statistic
+     */
+    public List<TallyPack<String>> findTallies(Collection<Long> statisticIds,
+                                               RollupKind rollupKind,
+                                               long orgUnitId) {
+        checkNotNull(statisticIds, "statisticIds cannot be null");
+        checkNotNull(rollupKind, "rollupKind cannot be null");
+
+        if (statisticIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, List<EntityStatisticRollupRecord>> rowsByStatistic = dsl
+                .selectFrom(ENTITY_STATISTIC_ROLLUP)
+                .where(ENTITY_STATISTIC_ROLLUP.STATISTIC_ID.in(statisticIds))
+                .and(ENTITY_STATISTIC_ROLLUP.ORG_UNIT_ID.eq(orgUnitId))
+                .fetch()
+                .stream()
+                .collect(groupingBy(EntityStatisticRollupRecord::getStatisticId));
+
+        return statisticIds
+                .stream()
+                .map(statisticId -> mkTallyPack(
+                        statisticId,
+                        rollupKind,
+                        rowsByStatistic.getOrDefault(statisticId, Collections.emptyList())))
+                .collect(toList());
+    }
+
+
+    /**
+     * Rebuilds the rollup for the given statistics in a single transaction.
+     * Statistics which cannot be rolled up (see {@link #SUPPORTED_ROLLUP_KINDS})
+     * are ignored.
+     *
+     * @param statisticIds  statistics to rebuild
+     * @return number of rollup rows written
+     */
+    public int refresh(Collection<Long> statisticIds) {
+        checkNotNull(statisticIds, "statisticIds cannot be null");
+
+        if (statisticIds.isEmpty()) {
+            return 0;
+        }
+
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            tx.deleteFrom(ENTITY_STATISTIC_ROLLUP)
+                    .where(ENTITY_STATISTIC_ROLLUP.STATISTIC_ID.in(statisticIds))
+                    .execute();
+
+            tx.deleteFrom(ENTITY_STATISTIC_ROLLUP_STATE)
+                    .where(ENTITY_STATISTIC_ROLLUP_STATE.STATISTIC_ID.in(statisticIds))
+                    .execute();
+
+            int countRows = insertRollup(
+                    tx,
+                    statisticIds,
+                    asSet(RollupKind.COUNT_BY_ENTITY),
+                    DSL.count(),
+                    DSL.castNull(decimalValueDataType));
+
+            int valueRows = insertRollup(
+                    tx,
+                    statisticIds,
+                    asSet(RollupKind.SUM_BY_VALUE, RollupKind.AVG_BY_VALUE),
+                    DSL.count(esv.VALUE),
+                    DSL.sum(DSL.cast(esv.VALUE, decimalValueDataType)));
+
+            insertState(tx, statisticIds);
+
+            LOG.debug("Refreshed rollup for {} statistics, writing {} rows",
+                    statisticIds.size(),
+                    countRows + valueRows);
+
+            return countRows + valueRows;
+        });
+    }
+
+
+    // -- HELPERS ---
+
+    private static int insertRollup(DSLContext tx,
+                                    Collection<Long> statisticIds,
+                                    Set<RollupKind> rollupKinds,
+                                    Field<Integer> entityCount,
+                                    Field<BigDecimal> valueTotal) {
+        return tx
+                .insertInto(
+                        ENTITY_STATISTIC_ROLLUP,
+                        ENTITY_STATISTIC_ROLLUP.STATISTIC_ID,
+                        ENTITY_STATISTIC_ROLLUP.ORG_UNIT_ID,
+                        ENTITY_STATISTIC_ROLLUP.OUTCOME,
+                        ENTITY_STATISTIC_ROLLUP.ENTITY_COUNT,
+                        ENTITY_STATISTIC_ROLLUP.VALUE_TOTAL,
+                        ENTITY_STATISTIC_ROLLUP.LAST_VALUE_AT)
+                .select(DSL
+                        .select(
+                                esv.STATISTIC_ID,
+                                eh.ANCESTOR_ID,
+                                esv.OUTCOME,
+                                entityCount,
+                                valueTotal,
+                                DSL.max(esv.CREATED_AT))
+                        .from(esv)
+                        .innerJoin(esd)
+                        .on(esd.ID.eq(esv.STATISTIC_ID))
+                        .innerJoin(app)
+                        .on(app.ID.eq(esv.ENTITY_ID))
+                        .innerJoin(eh)
+                        .on(eh.ID.eq(app.ORGANISATIONAL_UNIT_ID)
+                                .and(eh.KIND.eq(EntityKind.ORG_UNIT.name())))
+                        .where(CURRENT_APP_VALUES)
+                        .and(esv.STATISTIC_ID.in(statisticIds))
+                        .and(esd.ROLLUP_KIND.in(rollupKinds))
+                        .and(app.ENTITY_LIFECYCLE_STATUS.eq(EntityLifecycleStatus.ACTIVE.name()))
+                        .groupBy(esv.STATISTIC_ID, eh.ANCESTOR_ID, esv.OUTCOME))
+                .execute();
+    }
+
+
+    private static void insertState(DSLContext tx, Collection<Long> statisticIds) {
+        Map<Long, Record3<Long, Integer, Timestamp>> source = tx
+                .select(esv.STATISTIC_ID, valueCount, lastValueAt)
+                .from(esv)
+                .where(CURRENT_APP_VALUES)
+                .and(esv.STATISTIC_ID.in(statisticIds))
+                .groupBy(esv.STATISTIC_ID)
+                .fetch()
+                .stream()
+                .collect(toMap(r -> r.get(esv.STATISTIC_ID), r -> r));
+
+        Timestamp now = nowUtcTimestamp();
+
+        List<EntityStatisticRollupStateRecord> records = tx
+                .select(esd.ID)
+                .from(esd)
+                .where(esd.ID.in(statisticIds))
+                .and(esd.ROLLUP_KIND.in(SUPPORTED_ROLLUP_KINDS))
+                .fetch(esd.ID)
+                .stream()
+                .map(statisticId -> {
+                    Record3<Long, Integer, Timestamp> values = source.get(statisticId);
+                    EntityStatisticRollupStateRecord record = tx.newRecord(ENTITY_STATISTIC_ROLLUP_STATE);
+                    record.setStatisticId(statisticId);
+                    record.setSourceValueCount(values == null ? 0 : values.get(valueCount));
+                    record.setSourceLastValueAt(values == null ? null : values.get(lastValueAt));
+                    record.setRefreshedAt(now);
+                    return record;
+                })
+                .collect(toList());
+
+        if (! records.isEmpty()) {
+            tx.batchInsert(records).execute();
+        }
+    }
+
+
+    private static TallyPack<String> mkTallyPack(long statisticId,
+                                                 RollupKind rollupKind,
+                                                 List<EntityStatisticRollupRecord> rows) {
+        List<Tally<String>> tallies = rows
+                .stream()
+                .map(r -> ImmutableTally.<String>builder()
+                        .id(r.getOutcome())
+                        .count(toTally(rollupKind, r))
+                        .build())
+                .collect(toList());
+
+        LocalDateTime lastUpdatedAt = rows
+                .stream()
+                .map(r -> r.getLastValueAt().toLocalDateTime())
+                .max(LocalDateTime::compareTo)
+                .orElse(nowUtc());
+
+        return ImmutableTallyPack.<String>builder()
+                .entityReference(EntityReference.mkRef(EntityKind.ENTITY_STATISTIC, statisticId))
+                .tallies(tallies)
+                .lastUpdatedAt(lastUpdatedAt)
+                .build();
+    }
+
+
+    private static double toTally(RollupKind rollupKind, EntityStatisticRollupRecord row) {
+        if (rollupKind == RollupKind.COUNT_BY_ENTITY) {
+            return row.getEntityCount();
+        }
+
+        if (row.getValueTotal() == null || row.getEntityCount() == 0) {
+            return 0;
+        }
+
+        switch (rollupKind) {
+            case SUM_BY_VALUE:
+                return row.getValueTotal()
+                        .setScale(2, RoundingMode.HALF_UP)
+                        .doubleValue();
+            case AVG_BY_VALUE:
+                return row.getValueTotal()
+                        .divide(BigDecimal.valueOf(row.getEntityCount()), 2, RoundingMode.HALF_UP)
+                        .doubleValue();
+            default:
+                throw new UnsupportedOperationException(String.format("Rollup kind [%s] not supported.", rollupKind));
+        }
+    }
+
+}
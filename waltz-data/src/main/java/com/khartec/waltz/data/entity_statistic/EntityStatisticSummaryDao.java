@@ -29,7 +29,6 @@ import com.khartec.waltz.model.tally.TallyPack;
 import org.jooq.*;
 import org.jooq.impl.DSL;
 import org.jooq.impl.SQLDataType;
-import org.jooq.lambda.Unchecked;
 import org.jooq.lambda.tuple.Tuple2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -149,10 +148,7 @@ public class EntityStatisticSummaryDao {
                         generateWithNoRollup(statId, entityReference)))
                 .collect(toList());
 
-        return summaryFutures.stream()
-                .map(f -> Unchecked.supplier(f::get)
-                        .get())
-                .collect(toList());
+        return dbExecutorPool.awaitAll(summaryFutures);
     }
 
 
@@ -165,7 +161,7 @@ public class EntityStatisticSummaryDao {
         Result<Record4<Long, String, String, Timestamp>> values = dsl
                 .select(esv.STATISTIC_ID, esv.OUTCOME, esv.VALUE, max(esv.CREATED_AT).as(maxCreatedAtField))
                 .from(esv)
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .groupBy(esv.STATISTIC_ID, esv.OUTCOME, esv.VALUE)
                 .fetch();
 
@@ -204,8 +200,8 @@ public class EntityStatisticSummaryDao {
         Result<Record4<java.sql.Date, Long, String, String>> values = dsl
                 .select(esvCreatedAtDateOnly, esv.STATISTIC_ID, esv.OUTCOME, esv.VALUE)
                 .from(esv)
-                .where(dsl.renderInlined(condition))
-                .and(dsl.renderInlined(mkHistoryDurationCondition(duration)))
+                .where(condition)
+                .and(mkHistoryDurationCondition(duration))
                 .groupBy(castDateField, esv.STATISTIC_ID, esv.OUTCOME, esv.VALUE)
                 .orderBy(esvCreatedAtDateOnly.asc())
                 .fetch();
@@ -287,10 +283,7 @@ public class EntityStatisticSummaryDao {
                         generateSummary(statId, appIdSelector, aggregateField, toTally)))
                 .collect(toList());
 
-        return summaryFutures.stream()
-                .map(f -> Unchecked.supplier(f::get)
-                        .get())
-                .collect(toList());
+        return dbExecutorPool.awaitAll(summaryFutures);
     }
 
 
@@ -314,8 +307,8 @@ public class EntityStatisticSummaryDao {
         Result<Record3<Date, String, T>> values = dsl
                 .select(esvCreatedAtDateOnly, esv.OUTCOME, aggregateField)
                 .from(esv)
-                .where(dsl.renderInlined(condition))
-                .and(dsl.renderInlined(mkHistoryDurationCondition(duration)))
+                .where(condition)
+                .and(mkHistoryDurationCondition(duration))
                 .groupBy(castDateField, esv.OUTCOME)
                 .orderBy(esvCreatedAtDateOnly.asc())
                 .fetch();
@@ -122,7 +122,7 @@ public class EntityStatisticValueDao {
                 .from(esv)
                 .join(app)
                 .on(esv.ENTITY_ID.eq(app.ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .fetch(TO_VALUE_MAPPER);
 
         return fetch;
@@ -139,7 +139,7 @@ public class EntityStatisticValueDao {
                 .from(app)
                 .join(esv)
                 .on(esv.ENTITY_ID.eq(app.ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .fetch(ApplicationDao.TO_DOMAIN_MAPPER);
     }
 
@@ -25,11 +25,13 @@ import com.khartec.waltz.model.flow_diagram.FlowDiagramAnnotation;
 import com.khartec.waltz.model.flow_diagram.ImmutableFlowDiagramAnnotation;
 import com.khartec.waltz.schema.tables.records.FlowDiagramAnnotationRecord;
 import org.jooq.DSLContext;
+import org.jooq.Query;
 import org.jooq.Record;
 import org.jooq.RecordMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
 
@@ -104,6 +106,30 @@ public class FlowDiagramAnnotationDao {
                 .execute();
     }
 
+    public int deleteAnnotations(long diagramId, Collection<String> annotationIds) {
+        return dsl.deleteFrom(FLOW_DIAGRAM_ANNOTATION)
+                .where(FLOW_DIAGRAM_ANNOTATION.DIAGRAM_ID.eq(diagramId))
+                .and(FLOW_DIAGRAM_ANNOTATION.ANNOTATION_ID.in(annotationIds))
+                .execute();
+    }
+
+
+    public int[] updateAnnotations(Collection<FlowDiagramAnnotation> annotations) {
+        List<Query> updates = annotations
+                .stream()
+                .map(a -> dsl
+                        .update(FLOW_DIAGRAM_ANNOTATION)
+                        .set(FLOW_DIAGRAM_ANNOTATION.ENTITY_KIND, a.entityReference().kind().name())
+                        .set(FLOW_DIAGRAM_ANNOTATION.ENTITY_ID, a.entityReference().id())
+                        .set(FLOW_DIAGRAM_ANNOTATION.NOTE, a.note())
+                        .where(FLOW_DIAGRAM_ANNOTATION.DIAGRAM_ID.eq(a.diagramId().get()))
+                        .and(FLOW_DIAGRAM_ANNOTATION.ANNOTATION_ID.eq(a.annotationId())))
+                .collect(toList());
+
+        return dsl.batch(updates).execute();
+    }
+
+
     public void clone(long diagramId, Long clonedDiagramId) {
         List<FlowDiagramAnnotation> diagramAnnotations = findByDiagramId(diagramId);
         List<FlowDiagramAnnotation> clonedDiagramAnnotations = map(diagramAnnotations, d -> ImmutableFlowDiagramAnnotation
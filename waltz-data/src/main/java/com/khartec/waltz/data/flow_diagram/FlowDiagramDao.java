@@ -34,19 +34,29 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.CompressionUtilities.gunzipFromBase64;
+import static com.khartec.waltz.common.CompressionUtilities.gzipToBase64;
 import static com.khartec.waltz.schema.tables.FlowDiagram.FLOW_DIAGRAM;
 import static com.khartec.waltz.schema.tables.FlowDiagramEntity.FLOW_DIAGRAM_ENTITY;
 
 @Repository
 public class FlowDiagramDao {
 
+    /**
+     * Layouts larger than this (in chars) are stored gzipped, with this prefix.
+     * Layout json always starts with '{' so the prefix is unambiguous and
+     * uncompressed layouts written by earlier versions are read as-is.
+     */
+    private static final int LAYOUT_COMPRESSION_THRESHOLD = 4096;
+    private static final String COMPRESSED_LAYOUT_PREFIX = "gz:";
+
     private static final RecordMapper<Record, FlowDiagram> TO_DOMAIN_MAPPER = r -> {
         FlowDiagramRecord record = r.into(FLOW_DIAGRAM);
         return ImmutableFlowDiagram.builder()
                 .id(record.getId())
                 .name(record.getName())
                 .description(record.getDescription())
-                .layoutData(record.getLayoutData())
+                .layoutData(decodeLayout(record.getLayoutData()))
                 .lastUpdatedAt(record.getLastUpdatedAt().toLocalDateTime())
                 .lastUpdatedBy(record.getLastUpdatedBy())
                 .isRemoved(record.getIsRemoved())
@@ -60,7 +70,7 @@ public class FlowDiagramDao {
         fd.id().ifPresent(record::setId);
         record.setName(fd.name());
         record.setDescription(fd.description());
-        record.setLayoutData(fd.layoutData());
+        record.setLayoutData(encodeLayout(fd.layoutData()));
         record.setLastUpdatedBy(fd.lastUpdatedBy());
         record.setLastUpdatedAt(Timestamp.valueOf(fd.lastUpdatedAt()));
         record.setIsRemoved(fd.isRemoved());
@@ -127,8 +137,20 @@ public class FlowDiagramDao {
 
 
     public boolean update(FlowDiagram flowDiagram) {
+        return update(flowDiagram, true);
+    }
+
+
+    /**
+     * Updates the diagram, optionally leaving the (potentially large) layout
+     * data untouched, e.g. when the caller knows it has not changed.
+     */
+    public boolean update(FlowDiagram flowDiagram, boolean includeLayout) {
         FlowDiagramRecord record = TO_RECORD_MAPPER.apply(flowDiagram);
         record.changed(FLOW_DIAGRAM.ID, false);
+        if (! includeLayout) {
+            record.changed(FLOW_DIAGRAM.LAYOUT_DATA, false);
+        }
         return dsl.executeUpdate(record) == 1;
     }
 
@@ -168,4 +190,20 @@ public class FlowDiagramDao {
 
         return create(copiedDiagram);
     }
+
+
+    // -- HELPERS ---
+
+    private static String encodeLayout(String layoutData) {
+        return layoutData != null && layoutData.length() > LAYOUT_COMPRESSION_THRESHOLD
+                ? COMPRESSED_LAYOUT_PREFIX + gzipToBase64(layoutData)
+                : layoutData;
+    }
+
+
+    private static String decodeLayout(String storedLayoutData) {
+        return storedLayoutData != null && storedLayoutData.startsWith(COMPRESSED_LAYOUT_PREFIX)
+                ? gunzipFromBase64(storedLayoutData.substring(COMPRESSED_LAYOUT_PREFIX.length()))
+                : storedLayoutData;
+    }
 }
@@ -29,6 +29,7 @@ import org.jooq.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
 
@@ -157,6 +158,48 @@ public class FlowDiagramEntityDao {
     }
 
 
+    /**
+     * Deletes the given entities from the diagram using a single batch.
+     *
+     * @param diagramId the diagram to remove the entities from
+     * @param entityReferences the entities to remove
+     * @return counts of removed rows, per entity
+     */
+    public int[] deleteEntitiesForDiagram(long diagramId, Collection<EntityReference> entityReferences) {
+        List<Query> deletes = entityReferences
+                .stream()
+                .map(ref -> dsl
+                        .deleteFrom(FLOW_DIAGRAM_ENTITY)
+                        .where(FLOW_DIAGRAM_ENTITY.DIAGRAM_ID.eq(diagramId))
+                        .and(FLOW_DIAGRAM_ENTITY.ENTITY_KIND.eq(ref.kind().name()))
+                        .and(FLOW_DIAGRAM_ENTITY.ENTITY_ID.eq(ref.id())))
+                .collect(toList());
+
+        return dsl.batch(deletes).execute();
+    }
+
+
+    /**
+     * Updates the 'notable' flag of existing diagram entities using a single batch.
+     *
+     * @param entities entities (with diagram ids) to update
+     * @return counts of updated rows, per entity
+     */
+    public int[] updateEntities(Collection<FlowDiagramEntity> entities) {
+        List<Query> updates = entities
+                .stream()
+                .map(e -> dsl
+                        .update(FLOW_DIAGRAM_ENTITY)
+                        .set(FLOW_DIAGRAM_ENTITY.IS_NOTABLE, e.isNotable())
+                        .where(FLOW_DIAGRAM_ENTITY.DIAGRAM_ID.eq(e.diagramId().get()))
+                        .and(FLOW_DIAGRAM_ENTITY.ENTITY_KIND.eq(e.entityReference().kind().name()))
+                        .and(FLOW_DIAGRAM_ENTITY.ENTITY_ID.eq(e.entityReference().id())))
+                .collect(toList());
+
+        return dsl.batch(updates).execute();
+    }
+
+
     /**
      * Deletes all references to entities captured by the generic selector.
      *
@@ -303,6 +303,13 @@ public class LogicalFlowDao {
     }
 
 
+    public List<LogicalFlow> findAllNotRemoved() {
+        return baseQuery()
+                .where(LOGICAL_NOT_REMOVED)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
     public List<LogicalFlow> findActiveByFlowIds(Collection<Long> dataFlowIds) {
         return findByFlowIdsWithCondition(dataFlowIds, LOGICAL_NOT_REMOVED);
     }
@@ -320,6 +327,34 @@ public class LogicalFlowDao {
     }
 
 
+    /**
+     * Finds flows updated at, or after, the given time (including those
+     * which have been removed) ordered by update time then id.  If
+     * <code>after</code> is given only flows beyond that update time/id
+     * pair are returned, allowing the results to be paged.
+     *
+     * @param since  earliest update time of interest (inclusive)
+     * @param after  update time and id of the last flow already seen
+     * @param limit  maximum number of flows to return
+     * @return flows, in order
+     */
+    public List<LogicalFlow> findChangedSince(Timestamp since,
+                                              Optional<Tuple2<Timestamp, Long>> after,
+                                              int limit) {
+        SelectSeekStep2<Record, Timestamp, Long> query = baseQuery()
+                .where(LOGICAL_FLOW.LAST_UPDATED_AT.ge(since))
+                .orderBy(LOGICAL_FLOW.LAST_UPDATED_AT, LOGICAL_FLOW.ID);
+
+        SelectLimitStep<Record> page = after.isPresent()
+                ? query.seek(after.get().v1, after.get().v2)
+                : query;
+
+        return page
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
     public Integer cleanupOrphans() {
         Select<Record1<Long>> appIds = DSL
                 .select(APPLICATION.ID)
@@ -31,7 +31,6 @@ import com.khartec.waltz.schema.tables.LogicalFlow;
 import com.khartec.waltz.schema.tables.LogicalFlowDecorator;
 import org.jooq.*;
 import org.jooq.impl.DSL;
-import org.jooq.lambda.Unchecked;
 import org.jooq.lambda.tuple.Tuple2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -40,7 +39,6 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
-import java.util.function.Supplier;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static com.khartec.waltz.data.JooqUtilities.safeGet;
@@ -100,19 +98,17 @@ public class LogicalFlowStatsDao {
         Select<Record1<Integer>> intraAppCounter = dsl
                     .select(count())
                     .from(APPLICATION)
-                    .where(dsl.renderInlined(APPLICATION.ID.in(appIdSelector)));
+                    .where(APPLICATION.ID.in(appIdSelector));
 
         Future<Integer> inAppCount = dbExecutorPool.submit(() -> inAppCounter.fetchOne().value1());
         Future<Integer> outAppCount = dbExecutorPool.submit(() -> outAppCounter.fetchOne().value1());
         Future<Integer> intraAppCount = dbExecutorPool.submit(() -> intraAppCounter.fetchOne().value1());
 
-        Supplier<ImmutableLogicalFlowMeasures> appCountSupplier = Unchecked.supplier(() -> ImmutableLogicalFlowMeasures.builder()
-                .inbound(inAppCount.get())
-                .outbound(outAppCount.get())
-                .intra(intraAppCount.get())
-                .build());
-
-        return appCountSupplier.get();
+        return ImmutableLogicalFlowMeasures.builder()
+                .inbound(dbExecutorPool.await(inAppCount))
+                .outbound(dbExecutorPool.await(outAppCount))
+                .intra(dbExecutorPool.await(intraAppCount))
+                .build();
     }
 
 
@@ -150,7 +146,7 @@ public class LogicalFlowStatsDao {
                     .on(sourceAppId.eq(lf.SOURCE_ENTITY_ID))
                 .leftJoin(targetApp)
                     .on(targetAppId.eq(lf.TARGET_ENTITY_ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .groupBy(lfd.DECORATOR_ENTITY_ID, flowTypeCase)
                 .fetchGroups(
                         r -> mkRef(EntityKind.DATA_TYPE, r.getValue(lfd.DECORATOR_ENTITY_ID)),
@@ -230,7 +226,7 @@ public class LogicalFlowStatsDao {
 
         return dsl.select(DSL.countDistinct(fieldToCount))
                 .from(lf)
-                .where(dsl.renderInlined(condition));
+                .where(condition);
 
     }
 
@@ -42,7 +42,7 @@ public class PostgresMeasurableSearch implements FullTextSearch<Measurable>, Dat
                 .field("ts_rank_cd(to_tsvector({0}), plainto_tsquery({1}))",
                         Double.class,
                         DSL.lower(MEASURABLE.DESCRIPTION),
-                        DSL.inline(options.searchQuery().toLowerCase()));
+                        DSL.val(options.searchQuery().toLowerCase()));
 
         return dsl
                 .select(MEASURABLE.fields())
@@ -31,6 +31,7 @@ import com.khartec.waltz.model.tally.Tally;
 import com.khartec.waltz.schema.tables.records.MeasurableRatingRecord;
 import org.jooq.*;
 import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple4;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -212,6 +213,39 @@ public class MeasurableRatingDao {
 
     // --- stats
 
+    /**
+     * Finds ratings updated at, or after, the given time ordered by update
+     * time then entity and measurable.  If <code>after</code> is given only
+     * ratings beyond that key are returned, allowing the results to be
+     * paged.  Removed ratings are deleted so cannot be returned, see the
+     * change log for those.
+     *
+     * @param since  earliest update time of interest (inclusive)
+     * @param after  update time, entity kind, entity id and measurable id of the last rating already seen
+     * @param limit  maximum number of ratings to return
+     * @return ratings, in order
+     */
+    public List<MeasurableRating> findChangedSince(Timestamp since,
+                                                   Optional<Tuple4<Timestamp, String, Long, Long>> after,
+                                                   int limit) {
+        SelectSeekStep4<Record, Timestamp, String, Long, Long> query = mkBaseQuery()
+                .where(MEASURABLE_RATING.LAST_UPDATED_AT.ge(since))
+                .orderBy(
+                        MEASURABLE_RATING.LAST_UPDATED_AT,
+                        MEASURABLE_RATING.ENTITY_KIND,
+                        MEASURABLE_RATING.ENTITY_ID,
+                        MEASURABLE_RATING.MEASURABLE_ID);
+
+        SelectLimitStep<Record> page = after.isPresent()
+                ? query.seek(after.get().v1, after.get().v2, after.get().v3, after.get().v4)
+                : query;
+
+        return page
+                .limit(limit)
+                .fetch(TO_DOMAIN_MAPPER);
+    }
+
+
     public List<Tally<Long>> tallyByMeasurableCategoryId(long categoryId) {
         SelectHavingStep<Record2<Long, Integer>> query = dsl
                 .select(MEASURABLE_RATING.MEASURABLE_ID, DSL.count())
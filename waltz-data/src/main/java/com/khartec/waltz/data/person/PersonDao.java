@@ -125,7 +125,7 @@ public class PersonDao {
         checkNotEmpty(employeeId, "Cannot find directs without an employeeId");
         return dsl.select()
                 .from(PERSON)
-                .where(dsl.renderInlined(PERSON.MANAGER_EMPLOYEE_ID.eq(employeeId)))
+                .where(PERSON.MANAGER_EMPLOYEE_ID.eq(employeeId))
                 .andNot(PERSON.IS_REMOVED)
                 .orderBy(PERSON.DISPLAY_NAME)
                 .fetch(personMapper);
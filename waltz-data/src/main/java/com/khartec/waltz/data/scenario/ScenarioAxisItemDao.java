@@ -22,12 +22,10 @@ package com.khartec.waltz.data.scenario;
 import com.khartec.waltz.model.AxisOrientation;
 import com.khartec.waltz.model.EntityKind;
 import com.khartec.waltz.model.EntityReference;
-import com.khartec.waltz.model.scenario.CloneScenarioCommand;
 import com.khartec.waltz.model.scenario.ImmutableScenarioAxisItem;
 import com.khartec.waltz.model.scenario.ScenarioAxisItem;
 import com.khartec.waltz.schema.tables.records.ScenarioAxisItemRecord;
 import org.jooq.*;
-import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -84,30 +82,6 @@ public class ScenarioAxisItemDao {
     }
 
 
-    public int cloneItems(CloneScenarioCommand command, Long clonedScenarioId) {
-        SelectConditionStep<Record5<Long, Long, String, String, Integer>> originalData = DSL
-                .select(
-                    DSL.value(clonedScenarioId),
-                    SCENARIO_AXIS_ITEM.DOMAIN_ITEM_ID,
-                    SCENARIO_AXIS_ITEM.DOMAIN_ITEM_KIND,
-                    SCENARIO_AXIS_ITEM.ORIENTATION,
-                    SCENARIO_AXIS_ITEM.POSITION)
-                .from(SCENARIO_AXIS_ITEM)
-                .where(SCENARIO_AXIS_ITEM.SCENARIO_ID.eq(command.scenarioId()));
-
-        return dsl
-                .insertInto(
-                    SCENARIO_AXIS_ITEM,
-                    SCENARIO_AXIS_ITEM.SCENARIO_ID,
-                    SCENARIO_AXIS_ITEM.DOMAIN_ITEM_ID,
-                    SCENARIO_AXIS_ITEM.DOMAIN_ITEM_KIND,
-                    SCENARIO_AXIS_ITEM.ORIENTATION,
-                    SCENARIO_AXIS_ITEM.POSITION)
-                .select(originalData)
-                .execute();
-    }
-
-
     public Boolean add(long scenarioId,
                        AxisOrientation orientation,
                        EntityReference domainItem,
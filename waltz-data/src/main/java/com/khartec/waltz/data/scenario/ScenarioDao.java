@@ -27,6 +27,9 @@ import com.khartec.waltz.model.scenario.Scenario;
 import com.khartec.waltz.model.scenario.ScenarioType;
 import com.khartec.waltz.schema.tables.records.ScenarioRecord;
 import org.jooq.*;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -39,10 +42,14 @@ import java.util.function.BiFunction;
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static com.khartec.waltz.common.DateTimeUtilities.*;
 import static com.khartec.waltz.schema.tables.Scenario.SCENARIO;
+import static com.khartec.waltz.schema.tables.ScenarioAxisItem.SCENARIO_AXIS_ITEM;
+import static com.khartec.waltz.schema.tables.ScenarioRatingItem.SCENARIO_RATING_ITEM;
 
 @Repository
 public class ScenarioDao {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ScenarioDao.class);
+
     public static final Condition NOT_REMOVED = SCENARIO.LIFECYCLE_STATUS
             .notEqual(EntityLifecycleStatus.REMOVED.name());
 
@@ -134,12 +141,27 @@ public class ScenarioDao {
                 .withLastUpdatedAt(nowUtc())
                 .withLastUpdatedBy(command.userId());
 
-        ScenarioRecord clonedRecord = TO_RECORD_MAPPER.apply(clone, dsl);
-        clonedRecord.store();
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
 
-        return ImmutableScenario
-                .copyOf(clone)
-                .withId(clonedRecord.getId());
+            ScenarioRecord clonedRecord = TO_RECORD_MAPPER.apply(clone, tx);
+            clonedRecord.store();
+
+            Long clonedScenarioId = clonedRecord.getId();
+            int ratingCount = cloneRatingItems(tx, command.scenarioId(), clonedScenarioId);
+            int axisCount = cloneAxisItems(tx, command.scenarioId(), clonedScenarioId);
+
+            LOG.info(
+                    "Cloned scenario {} as {}, copying {} ratings and {} axis items",
+                    command.scenarioId(),
+                    clonedScenarioId,
+                    ratingCount,
+                    axisCount);
+
+            return ImmutableScenario
+                    .copyOf(clone)
+                    .withId(clonedScenarioId);
+        });
     }
 
 
@@ -256,4 +278,64 @@ public class ScenarioDao {
                 .execute();
     }
 
+
+    private static int cloneRatingItems(DSLContext tx, long sourceScenarioId, Long clonedScenarioId) {
+        SelectConditionStep<Record11<Long, Long, String, String, Long, String, Long, String, String, Timestamp, String>> originalData = DSL
+                .select(
+                        DSL.value(clonedScenarioId),
+                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID,
+                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_KIND,
+                        SCENARIO_RATING_ITEM.RATING,
+                        SCENARIO_RATING_ITEM.ROW_ID,
+                        SCENARIO_RATING_ITEM.ROW_KIND,
+                        SCENARIO_RATING_ITEM.COLUMN_ID,
+                        SCENARIO_RATING_ITEM.COLUMN_KIND,
+                        SCENARIO_RATING_ITEM.DESCRIPTION,
+                        SCENARIO_RATING_ITEM.LAST_UPDATED_AT,
+                        SCENARIO_RATING_ITEM.LAST_UPDATED_BY)
+                .from(SCENARIO_RATING_ITEM)
+                .where(SCENARIO_RATING_ITEM.SCENARIO_ID.eq(sourceScenarioId));
+
+        return tx
+                .insertInto(
+                        SCENARIO_RATING_ITEM,
+                        SCENARIO_RATING_ITEM.SCENARIO_ID,
+                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID,
+                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_KIND,
+                        SCENARIO_RATING_ITEM.RATING,
+                        SCENARIO_RATING_ITEM.ROW_ID,
+                        SCENARIO_RATING_ITEM.ROW_KIND,
+                        SCENARIO_RATING_ITEM.COLUMN_ID,
+                        SCENARIO_RATING_ITEM.COLUMN_KIND,
+                        SCENARIO_RATING_ITEM.DESCRIPTION,
+                        SCENARIO_RATING_ITEM.LAST_UPDATED_AT,
+                        SCENARIO_RATING_ITEM.LAST_UPDATED_BY)
+                .select(originalData)
+                .execute();
+    }
+
+
+    private static int cloneAxisItems(DSLContext tx, long sourceScenarioId, Long clonedScenarioId) {
+        SelectConditionStep<Record5<Long, Long, String, String, Integer>> originalData = DSL
+                .select(
+                        DSL.value(clonedScenarioId),
+                        SCENARIO_AXIS_ITEM.DOMAIN_ITEM_ID,
+                        SCENARIO_AXIS_ITEM.DOMAIN_ITEM_KIND,
+                        SCENARIO_AXIS_ITEM.ORIENTATION,
+                        SCENARIO_AXIS_ITEM.POSITION)
+                .from(SCENARIO_AXIS_ITEM)
+                .where(SCENARIO_AXIS_ITEM.SCENARIO_ID.eq(sourceScenarioId));
+
+        return tx
+                .insertInto(
+                        SCENARIO_AXIS_ITEM,
+                        SCENARIO_AXIS_ITEM.SCENARIO_ID,
+                        SCENARIO_AXIS_ITEM.DOMAIN_ITEM_ID,
+                        SCENARIO_AXIS_ITEM.DOMAIN_ITEM_KIND,
+                        SCENARIO_AXIS_ITEM.ORIENTATION,
+                        SCENARIO_AXIS_ITEM.POSITION)
+                .select(originalData)
+                .execute();
+    }
+
 }
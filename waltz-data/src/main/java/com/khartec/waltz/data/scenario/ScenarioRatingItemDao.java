@@ -21,8 +21,8 @@ package com.khartec.waltz.data.scenario;
 import com.khartec.waltz.common.DateTimeUtilities;
 import com.khartec.waltz.model.EntityKind;
 import com.khartec.waltz.model.scenario.ChangeScenarioCommand;
-import com.khartec.waltz.model.scenario.CloneScenarioCommand;
 import com.khartec.waltz.model.scenario.ImmutableScenarioRatingItem;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridChange;
 import com.khartec.waltz.model.scenario.ScenarioRatingItem;
 import com.khartec.waltz.schema.tables.records.ScenarioRatingItemRecord;
 import org.jooq.*;
@@ -32,8 +32,11 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static java.util.stream.Collectors.toList;
 import static com.khartec.waltz.data.JooqUtilities.readRef;
 import static com.khartec.waltz.schema.tables.Scenario.SCENARIO;
 import static com.khartec.waltz.schema.tables.ScenarioRatingItem.SCENARIO_RATING_ITEM;
@@ -75,42 +78,6 @@ public class ScenarioRatingItemDao {
     }
 
 
-    public int cloneItems(CloneScenarioCommand command, Long clonedScenarioId) {
-        SelectConditionStep<Record11<Long, Long, String, String, Long, String, Long, String, String, Timestamp, String>> originalData = DSL
-                .select(
-                        DSL.value(clonedScenarioId),
-                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID,
-                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_KIND,
-                        SCENARIO_RATING_ITEM.RATING,
-                        SCENARIO_RATING_ITEM.ROW_ID,
-                        SCENARIO_RATING_ITEM.ROW_KIND,
-                        SCENARIO_RATING_ITEM.COLUMN_ID,
-                        SCENARIO_RATING_ITEM.COLUMN_KIND,
-                        SCENARIO_RATING_ITEM.DESCRIPTION,
-                        SCENARIO_RATING_ITEM.LAST_UPDATED_AT,
-                        SCENARIO_RATING_ITEM.LAST_UPDATED_BY)
-                .from(SCENARIO_RATING_ITEM)
-                .where(SCENARIO_RATING_ITEM.SCENARIO_ID.eq(command.scenarioId()));
-
-        return dsl
-                .insertInto(
-                        SCENARIO_RATING_ITEM,
-                        SCENARIO_RATING_ITEM.SCENARIO_ID,
-                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID,
-                        SCENARIO_RATING_ITEM.DOMAIN_ITEM_KIND,
-                        SCENARIO_RATING_ITEM.RATING,
-                        SCENARIO_RATING_ITEM.ROW_ID,
-                        SCENARIO_RATING_ITEM.ROW_KIND,
-                        SCENARIO_RATING_ITEM.COLUMN_ID,
-                        SCENARIO_RATING_ITEM.COLUMN_KIND,
-                        SCENARIO_RATING_ITEM.DESCRIPTION,
-                        SCENARIO_RATING_ITEM.LAST_UPDATED_AT,
-                        SCENARIO_RATING_ITEM.LAST_UPDATED_BY)
-                .select(originalData)
-                .execute();
-    }
-
-
     public boolean remove(ChangeScenarioCommand command, String userId) {
 
         boolean rc = dsl
@@ -169,8 +136,102 @@ public class ScenarioRatingItemDao {
     }
 
 
+    /**
+     * Applies a set of grid changes to a scenario in a single transaction.
+     * Removals and updates are sent as jdbc batches and additions are batch
+     * inserted, the scenario's last updated details are touched once.
+     *
+     * @param scenarioId  scenario being modified
+     * @param toAdd  cells to insert, each must have a rating
+     * @param toUpdate  cells to update, each must have a rating
+     * @param toRemove  cells to delete
+     * @param userId  who is making the change
+     * @return total number of rating items affected
+     */
+    public int applyGridChanges(long scenarioId,
+                                Collection<ScenarioRatingGridChange> toAdd,
+                                Collection<ScenarioRatingGridChange> toUpdate,
+                                Collection<ScenarioRatingGridChange> toRemove,
+                                String userId) {
+        checkNotNull(toAdd, "toAdd cannot be null");
+        checkNotNull(toUpdate, "toUpdate cannot be null");
+        checkNotNull(toRemove, "toRemove cannot be null");
+
+        Timestamp now = DateTimeUtilities.nowUtcTimestamp();
+
+        return dsl.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+            int count = 0;
+
+            if (! toRemove.isEmpty()) {
+                List<Query> removals = toRemove
+                        .stream()
+                        .map(c -> tx
+                                .deleteFrom(SCENARIO_RATING_ITEM)
+                                .where(mkCoordinatesCondition(scenarioId, c)))
+                        .collect(toList());
+                count += IntStream.of(tx.batch(removals).execute()).sum();
+            }
+
+            if (! toUpdate.isEmpty()) {
+                List<Query> updates = toUpdate
+                        .stream()
+                        .map(c -> tx
+                                .update(SCENARIO_RATING_ITEM)
+                                .set(SCENARIO_RATING_ITEM.RATING, String.valueOf(c.rating().get()))
+                                .set(SCENARIO_RATING_ITEM.DESCRIPTION, c.comment().orElse(""))
+                                .set(SCENARIO_RATING_ITEM.LAST_UPDATED_BY, userId)
+                                .set(SCENARIO_RATING_ITEM.LAST_UPDATED_AT, now)
+                                .where(mkCoordinatesCondition(scenarioId, c)))
+                        .collect(toList());
+                count += IntStream.of(tx.batch(updates).execute()).sum();
+            }
+
+            if (! toAdd.isEmpty()) {
+                List<ScenarioRatingItemRecord> additions = toAdd
+                        .stream()
+                        .map(c -> {
+                            ScenarioRatingItemRecord record = tx.newRecord(SCENARIO_RATING_ITEM);
+                            record.setScenarioId(scenarioId);
+                            record.setDomainItemId(c.appId());
+                            record.setDomainItemKind(EntityKind.APPLICATION.name());
+                            record.setColumnId(c.columnId());
+                            record.setColumnKind(EntityKind.MEASURABLE.name());
+                            record.setRowId(c.rowId());
+                            record.setRowKind(EntityKind.MEASURABLE.name());
+                            record.setRating(String.valueOf(c.rating().get()));
+                            record.setDescription(c.comment().orElse(""));
+                            record.setLastUpdatedAt(now);
+                            record.setLastUpdatedBy(userId);
+                            return record;
+                        })
+                        .collect(toList());
+                count += IntStream.of(tx.batchInsert(additions).execute()).sum();
+            }
+
+            if (! (toAdd.isEmpty() && toUpdate.isEmpty() && toRemove.isEmpty())) {
+                tx.update(SCENARIO)
+                        .set(SCENARIO.LAST_UPDATED_AT, now)
+                        .set(SCENARIO.LAST_UPDATED_BY, userId)
+                        .where(SCENARIO.ID.eq(scenarioId))
+                        .execute();
+            }
+
+            return count;
+        });
+    }
+
+
     // -- helpers
 
+    private Condition mkCoordinatesCondition(long scenarioId, ScenarioRatingGridChange change) {
+        return SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID.eq(change.appId())
+                .and(SCENARIO_RATING_ITEM.SCENARIO_ID.eq(scenarioId))
+                .and(SCENARIO_RATING_ITEM.ROW_ID.eq(change.rowId()))
+                .and(SCENARIO_RATING_ITEM.COLUMN_ID.eq(change.columnId()));
+    }
+
+
     private Condition mkCoordinatesCondition(ChangeScenarioCommand command) {
         return SCENARIO_RATING_ITEM.DOMAIN_ITEM_ID.eq(command.appId())
                 .and(SCENARIO_RATING_ITEM.SCENARIO_ID.eq(command.scenarioId()))
@@ -150,7 +150,7 @@ public class SoftwarePackageDao {
                     .on(SOFTWARE_VERSION.SOFTWARE_PACKAGE_ID.eq(SOFTWARE_PACKAGE.ID))
                 .innerJoin(SOFTWARE_USAGE)
                     .on(SOFTWARE_USAGE.ID.eq(SOFTWARE_VERSION.SOFTWARE_PACKAGE_ID))
-                .where(dsl.renderInlined(condition))
+                .where(condition)
                 .groupBy(groupingField)
                 .fetch(JooqUtilities.TO_STRING_TALLY);
     }
@@ -27,19 +27,27 @@ import com.khartec.waltz.schema.tables.records.SurveyInstanceRecipientRecord;
 import com.khartec.waltz.schema.tables.records.SurveyInstanceRecord;
 import org.jooq.*;
 import org.jooq.impl.DSL;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
 import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
 import static com.khartec.waltz.common.DateTimeUtilities.toSqlDate;
 import static com.khartec.waltz.common.ListUtilities.newArrayList;
@@ -49,6 +57,8 @@ import static java.util.Optional.ofNullable;
 @Repository
 public class SurveyInstanceDao {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SurveyInstanceDao.class);
+
     private static final Field<String> ENTITY_NAME_FIELD = InlineSelectFieldFactory.mkNameField(
                 SURVEY_INSTANCE.ENTITY_ID,
                 SURVEY_INSTANCE.ENTITY_KIND,
@@ -62,6 +72,12 @@ public class SurveyInstanceDao {
             .as("external_id");
 
 
+    /**
+     * Upper bound on rows per batched insert, keeping well under sql
+     * server's limit of 2100 parameters per statement.
+     */
+    static final int MAX_BATCH_SIZE = 500;
+
     private static final Condition IS_ORIGINAL_INSTANCE_CONDITION = SURVEY_INSTANCE.ORIGINAL_INSTANCE_ID.isNull();
 
     private static final RecordMapper<Record, SurveyInstance> TO_DOMAIN_MAPPER = r -> {
@@ -351,4 +367,124 @@ public class SurveyInstanceDao {
 
         return dsl.batchInsert(records).execute();
     }
+
+
+    /**
+     * Creates many survey instances, and their recipients, in a single
+     * transaction.
+     *
+     * Each instance is inserted on its own so its generated id can be read
+     * back reliably (multi-row inserts only report a single generated key
+     * via jdbc), recipients are then written using batched inserts.
+     *
+     * @param surveyRunId  run the instances belong to, all commands must be for this run
+     * @param replaceExisting  if true, existing instances (and recipients) for the run are removed first
+     * @param instancesWithRecipients  one entry per instance to create, with the person ids of its recipients
+     * @param batchSize  number of recipient rows per insert batch, capped at {@link #MAX_BATCH_SIZE}
+     * @return number of instances created
+     */
+    public int bulkCreate(long surveyRunId,
+                          boolean replaceExisting,
+                          List<? extends Tuple2<SurveyInstanceCreateCommand, ? extends Collection<Long>>> instancesWithRecipients,
+                          int batchSize) {
+        checkNotNull(instancesWithRecipients, "instancesWithRecipients cannot be null");
+        checkTrue(batchSize > 0, "batchSize must be positive");
+        instancesWithRecipients.forEach(t -> checkTrue(
+                t.v1.surveyRunId() == surveyRunId,
+                "all instances must belong to survey run: " + surveyRunId));
+
+        dsl.transaction(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            if (replaceExisting) {
+                tx.deleteFrom(SURVEY_INSTANCE_RECIPIENT)
+                        .where(SURVEY_INSTANCE_RECIPIENT.SURVEY_INSTANCE_ID.in(DSL
+                                .select(SURVEY_INSTANCE.ID)
+                                .from(SURVEY_INSTANCE)
+                                .where(SURVEY_INSTANCE.SURVEY_RUN_ID.eq(surveyRunId))))
+                        .execute();
+                tx.deleteFrom(SURVEY_INSTANCE)
+                        .where(SURVEY_INSTANCE.SURVEY_RUN_ID.eq(surveyRunId))
+                        .execute();
+            }
+
+            issue(surveyRunId,
+                    instancesWithRecipients,
+                    command -> {
+                        SurveyInstanceRecord record = mkInstanceRecord(command);
+                        tx.attach(record);
+                        record.store();
+                        return record.getId();
+                    },
+                    batch -> tx.batchInsert(batch).execute(),
+                    batchSize);
+        });
+
+        return instancesWithRecipients.size();
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * Creates each instance, using the id returned by the creator for that
+     * instance's recipients, which are passed to the inserter in batches of
+     * at most <code>min(batchSize, MAX_BATCH_SIZE)</code>.
+     */
+    static void issue(long surveyRunId,
+                      List<? extends Tuple2<SurveyInstanceCreateCommand, ? extends Collection<Long>>> instancesWithRecipients,
+                      Function<SurveyInstanceCreateCommand, Long> instanceCreator,
+                      Consumer<List<SurveyInstanceRecipientRecord>> recipientInserter,
+                      int batchSize) {
+        int instanceCount = instancesWithRecipients.size();
+        int recipientBatchSize = Math.min(batchSize, MAX_BATCH_SIZE);
+
+        List<SurveyInstanceRecipientRecord> recipients = new ArrayList<>(recipientBatchSize);
+        AtomicInteger recipientsInserted = new AtomicInteger(0);
+        Runnable flush = () -> {
+            if (recipients.isEmpty()) return;
+            recipientInserter.accept(new ArrayList<>(recipients));
+            recipientsInserted.addAndGet(recipients.size());
+            recipients.clear();
+        };
+
+        int instancesInserted = 0;
+        for (Tuple2<SurveyInstanceCreateCommand, ? extends Collection<Long>> t : instancesWithRecipients) {
+            Long instanceId = instanceCreator.apply(t.v1);
+            if (instanceId == null) {
+                throw new IllegalStateException("No id generated for survey instance for: " + t.v1.entityReference());
+            }
+
+            for (Long personId : t.v2) {
+                SurveyInstanceRecipientRecord record = new SurveyInstanceRecipientRecord();
+                record.setSurveyInstanceId(instanceId);
+                record.setPersonId(personId);
+                recipients.add(record);
+                if (recipients.size() >= recipientBatchSize) {
+                    flush.run();
+                }
+            }
+
+            instancesInserted++;
+            if (instancesInserted % recipientBatchSize == 0 || instancesInserted == instanceCount) {
+                LOG.info("Survey run: {}, inserted {}/{} instances", surveyRunId, instancesInserted, instanceCount);
+            }
+        }
+        flush.run();
+
+        LOG.info("Survey run: {}, inserted {} recipients", surveyRunId, recipientsInserted.get());
+    }
+
+
+    private static SurveyInstanceRecord mkInstanceRecord(SurveyInstanceCreateCommand command) {
+        SurveyInstanceRecord record = new SurveyInstanceRecord();
+        record.setSurveyRunId(command.surveyRunId());
+        record.setEntityKind(command.entityReference().kind().name());
+        record.setEntityId(command.entityReference().id());
+        record.setStatus(command.status().name());
+        record.setDueDate(command.dueDate().map(Date::valueOf).orElse(null));
+        record.setOwnerId(command.ownerId());
+        record.setOwningRole(command.owningRole());
+        return record;
+    }
 }
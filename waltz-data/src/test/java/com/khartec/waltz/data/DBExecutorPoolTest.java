@@ -0,0 +1,149 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.data;
+
+import com.khartec.waltz.common.exception.DeadlineExceededException;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DBExecutorPoolTest {
+
+    private final DBExecutorPool pool = new DBExecutorPool(1, 1, Duration.ofSeconds(5));
+    private final CountDownLatch release = new CountDownLatch(1);
+
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        MDC.clear();
+    }
+
+
+    @Test
+    public void submissionsBeyondQueueCapacityAreRejected() {
+        pool.submit(this::block);  // running
+        pool.submit(this::block);  // queued
+        try {
+            pool.submit(this::block);
+            fail("expected rejection");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, pool.getRejectedCount());
+        }
+    }
+
+
+    @Test
+    public void awaitGivesUpAtDeadline() {
+        Future<Boolean> f = pool.submit(this::block, Duration.ofMillis(50));
+        try {
+            pool.await(f);
+            fail("expected deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            assertTrue(f.isCancelled());
+            assertEquals(1, pool.getTimedOutCount());
+        }
+    }
+
+
+    @Test
+    public void completionCallbackRunsWhenQueuedTaskExpires() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean(false);
+        CountDownLatch completed = new CountDownLatch(1);
+
+        pool.submit(this::block);  // running
+        Future<Boolean> expiring = pool.submit(
+                () -> ran.getAndSet(true),
+                Duration.ofMillis(20),
+                completed::countDown);
+
+        Thread.sleep(50);
+        release.countDown();
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertTrue(expiring.isDone());
+        assertEquals(1, pool.getExpiredCount());
+    }
+
+
+    @Test
+    public void completionCallbackRunsWhenTaskIsRejected() {
+        AtomicInteger completions = new AtomicInteger();
+        pool.submit(this::block);  // running
+        pool.submit(this::block);  // queued
+        try {
+            pool.submit(this::block, completions::incrementAndGet);
+            fail("expected rejection");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, completions.get());
+        }
+    }
+
+
+    @Test
+    public void loggingContextIsCopiedToWorker() {
+        MDC.put("user", "test-user");
+        Future<String> f = pool.submit(() -> MDC.get("user"));
+        assertEquals("test-user", pool.await(f));
+    }
+
+
+    @Test
+    public void nestedSubmissionsDoNotExhaustThePool() {
+        Future<Integer> outer = pool.submit(() -> {
+            Future<Integer> inner = pool.submit(() -> 21);
+            return pool.await(inner) * 2;
+        });
+        assertEquals(Integer.valueOf(42), pool.await(outer));
+    }
+
+
+    @Test
+    public void taskExceptionsAreRethrown() {
+        Future<Object> f = pool.submit(() -> {
+            throw new IllegalArgumentException("bad");
+        });
+        try {
+            pool.await(f);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("bad", e.getMessage());
+        }
+    }
+
+
+    // -- HELPERS ---
+
+    private boolean block() throws InterruptedException {
+        return release.await(10, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.data;
+
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static org.junit.Assert.assertEquals;
+
+public class JooqUtilities_MSSQL_mkContainsTest {
+
+    private final DSLContext dsl = DSL.using(SQLDialect.DEFAULT);
+
+
+    @Test
+    public void searchTermsAreBoundRatherThanInlined() {
+        Condition first = JooqUtilities.MSSQL.mkContains("foo");
+        Condition second = JooqUtilities.MSSQL.mkContains("bar", "baz");
+
+        assertEquals(dsl.render(first), dsl.render(second));
+        assertEquals("CONTAINS(*, ?)", dsl.render(first));
+    }
+
+
+    @Test
+    public void termsAreCombinedAndEmptyTermsIgnored() {
+        Condition condition = JooqUtilities.MSSQL.mkContains(newArrayList("foo", "", "bar"));
+
+        assertEquals(
+                "foo AND bar",
+                dsl.extractBindValues(condition).get(0).getValue());
+    }
+
+
+    @Test
+    public void termsWithAmpersandsAreQuoted() {
+        Condition condition = JooqUtilities.MSSQL.mkContains("r&d", "ops");
+
+        assertEquals(
+                "\"r&d\" AND ops",
+                dsl.extractBindValues(condition).get(0).getValue());
+    }
+
+
+    @Test
+    public void prefixSearchTermsAreBoundRatherThanInlined() {
+        Condition first = JooqUtilities.MSSQL.mkContainsPrefix(newArrayList("foo"));
+        Condition second = JooqUtilities.MSSQL.mkContainsPrefix(newArrayList("bar", "baz"));
+
+        assertEquals(dsl.render(first), dsl.render(second));
+        assertEquals("CONTAINS(*, ?)", dsl.render(first));
+    }
+
+
+    @Test
+    public void prefixTermsAreWildcardedAndCombined() {
+        Condition condition = JooqUtilities.MSSQL.mkContainsPrefix(newArrayList("bar", "o'baz"));
+
+        assertEquals(
+                "\"bar*\" AND \"o'baz*\"",
+                dsl.extractBindValues(condition).get(0).getValue());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.data.entity_statistic;
+
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.data.entity_statistic.EntityStatisticRollupDao.determineStale;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+import static org.junit.Assert.assertEquals;
+
+public class EntityStatisticRollupDaoTest {
+
+    private static final Timestamp T1 = Timestamp.valueOf("2020-10-19 09:00:00");
+    private static final Timestamp T2 = Timestamp.valueOf("2020-10-19 10:00:00");
+
+    private final Map<Long, Tuple2<Integer, Timestamp>> source = new HashMap<>();
+    private final Map<Long, Tuple2<Integer, Timestamp>> rolledUp = new HashMap<>();
+
+
+    @Test
+    public void statisticsNeverRolledUpAreStale() {
+        source.put(1L, tuple(5, T1));
+
+        assertEquals(asSet(1L, 2L), determineStale(asSet(1L, 2L), source, emptyMap()));
+    }
+
+
+    @Test
+    public void unchangedStatisticsAreNotStale() {
+        source.put(1L, tuple(5, T1));
+        rolledUp.put(1L, tuple(5, T1));
+
+        assertEquals(emptySet(), determineStale(asSet(1L), source, rolledUp));
+    }
+
+
+    @Test
+    public void newerValuesMakeAStatisticStale() {
+        source.put(1L, tuple(5, T2));
+        rolledUp.put(1L, tuple(5, T1));
+
+        assertEquals(asSet(1L), determineStale(asSet(1L), source, rolledUp));
+    }
+
+
+    @Test
+    public void removedValuesMakeAStatisticStale() {
+        source.put(1L, tuple(4, T1));
+        rolledUp.put(1L, tuple(5, T1));
+
+        assertEquals(asSet(1L), determineStale(asSet(1L), source, rolledUp));
+    }
+
+
+    @Test
+    public void statisticWithNoValuesLeftIsStaleUntilRolledUpEmpty() {
+        rolledUp.put(1L, tuple(5, T1));
+        rolledUp.put(2L, tuple(0, null));
+
+        assertEquals(asSet(1L), determineStale(asSet(1L, 2L), source, rolledUp));
+    }
+
+
+    @Test
+    public void onlyCandidateStatisticsAreConsidered() {
+        source.put(3L, tuple(1, T1));
+
+        assertEquals(asSet(1L), determineStale(asSet(1L), source, rolledUp));
+    }
+
+}
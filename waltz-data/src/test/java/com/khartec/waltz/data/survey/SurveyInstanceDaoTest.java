@@ -0,0 +1,163 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.data.survey;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.survey.ImmutableSurveyInstanceCreateCommand;
+import com.khartec.waltz.model.survey.SurveyInstanceCreateCommand;
+import com.khartec.waltz.schema.tables.records.SurveyInstanceRecipientRecord;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+import static org.junit.Assert.*;
+
+public class SurveyInstanceDaoTest {
+
+    private static final long RUN_ID = 7L;
+
+    private final AtomicLong idSequence = new AtomicLong(100);
+    private final Map<Long, SurveyInstanceCreateCommand> createdInstances = new HashMap<>();
+    private final List<List<SurveyInstanceRecipientRecord>> recipientBatches = new ArrayList<>();
+
+
+    @Test
+    public void everyIssuedInstanceGetsItsRecipients() {
+        List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> toIssue = new ArrayList<>();
+        for (long i = 0; i < 1_200; i++) {
+            toIssue.add(tuple(mkCommand(i), newArrayList(i * 10, i * 10 + 1)));
+        }
+
+        issue(toIssue, 1_000);
+
+        assertEquals(1_200, createdInstances.size());
+        Map<Long, Set<Long>> recipientsByInstance = recipientsByInstance();
+        createdInstances.forEach((instanceId, command) -> {
+            long entityId = command.entityReference().id();
+            assertEquals(
+                    "recipients for instance of entity: " + entityId,
+                    asSet(entityId * 10, entityId * 10 + 1),
+                    recipientsByInstance.get(instanceId));
+        });
+    }
+
+
+    @Test
+    public void instancesForTheSameEntityKeepTheirOwnRecipients() {
+        List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> toIssue = newArrayList(
+                tuple(mkCommand(1), newArrayList(11L)),
+                tuple(mkCommand(1), newArrayList(12L)),
+                tuple(mkCommand(1), newArrayList(13L, 14L)));
+
+        issue(toIssue, 10);
+
+        Map<Long, Set<Long>> recipientsByInstance = recipientsByInstance();
+        assertEquals(asSet(11L), recipientsByInstance.get(100L));
+        assertEquals(asSet(12L), recipientsByInstance.get(101L));
+        assertEquals(asSet(13L, 14L), recipientsByInstance.get(102L));
+    }
+
+
+    @Test
+    public void recipientBatchesAreCapped() {
+        List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> toIssue = new ArrayList<>();
+        for (long i = 0; i < 700; i++) {
+            toIssue.add(tuple(mkCommand(i), newArrayList(i, i + 1_000, i + 2_000)));
+        }
+
+        issue(toIssue, 5_000);
+
+        assertEquals(2_100, recipientBatches.stream().mapToInt(List::size).sum());
+        recipientBatches.forEach(b -> assertTrue(
+                "batch size: " + b.size(),
+                b.size() <= SurveyInstanceDao.MAX_BATCH_SIZE));
+    }
+
+
+    @Test
+    public void instancesWithoutRecipientsAreStillCreated() {
+        List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> toIssue = newArrayList(
+                tuple(mkCommand(1), Collections.<Long>emptyList()),
+                tuple(mkCommand(2), newArrayList(21L)));
+
+        issue(toIssue, 10);
+
+        assertEquals(2, createdInstances.size());
+        assertEquals(1, recipientBatches.size());
+        assertEquals(asSet(21L), recipientsByInstance().get(101L));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void missingGeneratedIdIsAnError() {
+        SurveyInstanceDao.issue(
+                RUN_ID,
+                newArrayList(tuple(mkCommand(1), newArrayList(11L))),
+                command -> null,
+                recipientBatches::add,
+                10);
+    }
+
+
+    // -- HELPERS ---
+
+    private void issue(List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> toIssue, int batchSize) {
+        SurveyInstanceDao.issue(
+                RUN_ID,
+                toIssue,
+                command -> {
+                    long id = idSequence.getAndIncrement();
+                    createdInstances.put(id, command);
+                    return id;
+                },
+                recipientBatches::add,
+                batchSize);
+    }
+
+
+    private Map<Long, Set<Long>> recipientsByInstance() {
+        Map<Long, Set<Long>> recipientsByInstance = new HashMap<>();
+        recipientBatches.forEach(batch -> batch.forEach(r -> recipientsByInstance
+                .computeIfAbsent(r.getSurveyInstanceId(), k -> new HashSet<>())
+                .add(r.getPersonId())));
+        return recipientsByInstance;
+    }
+
+
+    private static SurveyInstanceCreateCommand mkCommand(long appId) {
+        return ImmutableSurveyInstanceCreateCommand.builder()
+                .surveyRunId(RUN_ID)
+                .entityReference(mkRef(EntityKind.APPLICATION, appId))
+                .build();
+    }
+}
@@ -21,6 +21,7 @@ package com.khartec.waltz.jobs.generators;
 import com.khartec.waltz.common.RandomUtilities;
 import com.khartec.waltz.data.application.ApplicationDao;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticDefinitionDao;
+import com.khartec.waltz.data.entity_statistic.EntityStatisticRollupDao;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticValueDao;
 import com.khartec.waltz.data.orgunit.OrganisationalUnitDao;
 import com.khartec.waltz.model.EntityKind;
@@ -165,6 +166,7 @@ public class EntityStatisticGenerator implements SampleDataGenerator {
         EntityStatisticValueDao valueDao = context.getBean(EntityStatisticValueDao.class);
         EntityStatisticDefinitionDao definitionDao = context.getBean(EntityStatisticDefinitionDao.class);
         EntityHierarchyService entityHierarchyService = context.getBean(EntityHierarchyService.class);
+        EntityStatisticRollupDao rollupDao = context.getBean(EntityStatisticRollupDao.class);
 
         Application[] applications = applicationDao.findAll().toArray(new Application[0]);
         OrganisationalUnit[] orgUnits = organisationalUnitDao.findAll().toArray(new OrganisationalUnit[0]);
@@ -209,6 +211,10 @@ public class EntityStatisticGenerator implements SampleDataGenerator {
 
         log("Rebuilt entity hierarchy");
 
+        rollupDao.refresh(rollupDao.findRollupStatisticIds());
+
+        log("Rebuilt entity statistic rollup");
+
         return null;
     }
 
@@ -0,0 +1,239 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.jobs.perf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.lang.String.format;
+
+
+/**
+ * Timings for a run of the {@link PerformanceSuite}.
+ *
+ * Reports are written as tab separated text, one row per scenario,
+ * with details of the run in leading <code>#</code> comment lines.
+ * Scenarios which threw are recorded with a <code>FAILED</code> status.
+ * A previous report can be read back in and used as a baseline to
+ * spot regressions.
+ */
+public class PerformanceReport {
+
+    private static final String HEADER = "scenario\titerations\tmin_ms\tmedian_ms\tmax_ms\tresult_size\tstatus";
+    private static final String HEADER_PREFIX = "scenario\t";
+    private static final String OK = "OK";
+    private static final String FAILED = "FAILED";
+
+    private final Map<String, String> details = new LinkedHashMap<>();
+    private final Map<String, Result> results = new LinkedHashMap<>();
+
+
+    public static class Result {
+
+        public final String scenario;
+        public final long minMillis;
+        public final long medianMillis;
+        public final long maxMillis;
+        public final int iterations;
+        public final long resultSize;
+        /** why the scenario failed, <code>null</code> if it succeeded */
+        public final String failure;
+
+
+        Result(String scenario, List<Long> timings, long resultSize) {
+            List<Long> sorted = new ArrayList<>(timings);
+            Collections.sort(sorted);
+            this.scenario = scenario;
+            this.iterations = sorted.size();
+            this.minMillis = sorted.get(0);
+            this.medianMillis = sorted.get(sorted.size() / 2);
+            this.maxMillis = sorted.get(sorted.size() - 1);
+            this.resultSize = resultSize;
+            this.failure = null;
+        }
+
+
+        Result(String scenario, String failure) {
+            this.scenario = scenario;
+            this.iterations = 0;
+            this.minMillis = 0;
+            this.medianMillis = 0;
+            this.maxMillis = 0;
+            this.resultSize = 0;
+            this.failure = failure;
+        }
+
+
+        private Result(String[] cells) {
+            this.scenario = cells[0];
+            this.iterations = Integer.parseInt(cells[1]);
+            this.minMillis = Long.parseLong(cells[2]);
+            this.medianMillis = Long.parseLong(cells[3]);
+            this.maxMillis = Long.parseLong(cells[4]);
+            this.resultSize = Long.parseLong(cells[5]);
+            // reports written before the status column was added only held successes
+            String status = cells.length > 6 ? cells[6] : OK;
+            this.failure = status.startsWith(FAILED)
+                    ? status.substring(FAILED.length()).replaceFirst("^: ", "")
+                    : null;
+        }
+
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+
+        private String toLine() {
+            return format("%s\t%d\t%d\t%d\t%d\t%d\t%s",
+                    scenario,
+                    iterations,
+                    minMillis,
+                    medianMillis,
+                    maxMillis,
+                    resultSize,
+                    isFailed()
+                            ? FAILED + ": " + failure.replaceAll("\\s+", " ")
+                            : OK);
+        }
+    }
+
+
+    public void addDetail(String name, Object value) {
+        details.put(name, String.valueOf(value));
+    }
+
+
+    public Result addResult(String scenario, List<Long> timings, long resultSize) {
+        Result result = new Result(scenario, timings, resultSize);
+        results.put(scenario, result);
+        return result;
+    }
+
+
+    public Result addFailure(String scenario, String failure) {
+        Result result = new Result(scenario, String.valueOf(failure));
+        results.put(scenario, result);
+        return result;
+    }
+
+
+    public List<Result> getFailures() {
+        List<Result> failures = new ArrayList<>();
+        results.values().forEach(r -> {
+            if (r.isFailed()) {
+                failures.add(r);
+            }
+        });
+        return failures;
+    }
+
+
+    public void write(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        details.forEach((k, v) -> lines.add(format("# %s: %s", k, v)));
+        lines.add(HEADER);
+        results.values().forEach(r -> lines.add(r.toLine()));
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+
+    public static PerformanceReport read(Path path) throws IOException {
+        PerformanceReport report = new PerformanceReport();
+        Files.readAllLines(path, StandardCharsets.UTF_8)
+                .stream()
+                .filter(line -> ! line.startsWith("#"))
+                .filter(line -> ! line.startsWith(HEADER_PREFIX))
+                .filter(line -> ! line.trim().isEmpty())
+                .map(line -> new Result(line.split("\t")))
+                .forEach(r -> report.results.put(r.scenario, r));
+        return report;
+    }
+
+
+    /**
+     * Compares the median timings of this report against a baseline.
+     *
+     * A scenario has regressed if its median is more than
+     * <code>tolerance</code> (e.g. 0.2 for 20%) slower than the
+     * baseline and also at least <code>minDeltaMillis</code> slower,
+     * so that noise on very fast scenarios is not reported.
+     * Differing result sizes are reported too, as they mean the
+     * two runs did not do the same work.
+     *
+     * Scenarios which failed, or which are in the baseline but were not
+     * run at all, are regressions unless they had already failed in the
+     * baseline.
+     *
+     * @return a description of each regression, empty if there are none
+     */
+    public List<String> findRegressions(PerformanceReport baseline, double tolerance, long minDeltaMillis) {
+        List<String> regressions = new ArrayList<>();
+
+        for (Result previous : baseline.results.values()) {
+            if (! previous.isFailed() && ! results.containsKey(previous.scenario)) {
+                regressions.add(format("%s: in baseline but missing from this run", previous.scenario));
+            }
+        }
+
+        for (Result current : results.values()) {
+            Result previous = baseline.results.get(current.scenario);
+
+            if (current.isFailed()) {
+                if (previous == null || ! previous.isFailed()) {
+                    regressions.add(format("%s: failed: %s", current.scenario, current.failure));
+                }
+                continue;
+            }
+
+            if (previous == null || previous.isFailed()) {
+                continue;
+            }
+
+            if (previous.resultSize != current.resultSize) {
+                regressions.add(format(
+                        "%s: result size changed from %d to %d, timings are not comparable",
+                        current.scenario,
+                        previous.resultSize,
+                        current.resultSize));
+            }
+
+            long delta = current.medianMillis - previous.medianMillis;
+            if (delta >= minDeltaMillis && current.medianMillis > previous.medianMillis * (1 + tolerance)) {
+                regressions.add(format(
+                        "%s: median %dms, baseline %dms (+%.0f%%)",
+                        current.scenario,
+                        current.medianMillis,
+                        previous.medianMillis,
+                        100.0 * delta / Math.max(previous.medianMillis, 1)));
+            }
+        }
+
+        return regressions;
+    }
+
+}
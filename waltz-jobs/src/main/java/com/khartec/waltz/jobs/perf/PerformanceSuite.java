@@ -0,0 +1,305 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.jobs.perf;
+
+import com.khartec.waltz.common.LoggingUtilities;
+import com.khartec.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.jobs.generators.DataTypeGenerator;
+import com.khartec.waltz.jobs.generators.OrgUnitGenerator;
+import com.khartec.waltz.jobs.generators.SampleDataGenerator;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.HierarchyQueryScope;
+import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.entity_search.EntitySearchOptions;
+import com.khartec.waltz.model.entity_search.ImmutableEntitySearchOptions;
+import com.khartec.waltz.service.DIConfiguration;
+import com.khartec.waltz.service.application.ApplicationService;
+import com.khartec.waltz.service.authoritative_source.AuthoritativeSourceService;
+import com.khartec.waltz.service.entity_hierarchy.EntityHierarchyService;
+import com.khartec.waltz.service.entity_search.EntitySearchService;
+import com.khartec.waltz.service.logical_flow.LogicalFlowService;
+import com.khartec.waltz.service.usage_info.DataTypeUsageService;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.FileSystemResourceAccessor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static com.khartec.waltz.model.IdSelectionOptions.mkOpts;
+
+
+/**
+ * Loads a scaled synthetic data set into an in-memory H2 database and
+ * times key service calls against it.  Needs no network or external
+ * database, so regressions can be checked for on any machine.
+ *
+ * Configured via system properties:
+ * <ul>
+ *     <li>`waltz.perf.scale` - multiplier for the data set size, 1.0 gives 50k apps and 500k flows (default: 1.0)</li>
+ *     <li>`waltz.perf.warmups` - untimed runs of each scenario (default: 1)</li>
+ *     <li>`waltz.perf.iterations` - timed runs of each scenario (default: 5)</li>
+ *     <li>`waltz.perf.report` - where to write the report (default: target/perf-report.tsv)</li>
+ *     <li>`waltz.perf.baseline` - optional report from an earlier run to compare against</li>
+ *     <li>`waltz.perf.tolerance` - fractional slow down tolerated before a scenario is reported as a regression (default: 0.2)</li>
+ *     <li>`waltz.perf.minDeltaMillis` - slow downs smaller than this are ignored (default: 50)</li>
+ *     <li>`waltz.perf.changelog` - liquibase master changelog used to create the schema</li>
+ *     <li>`database.url` - override to use a different H2 database, e.g. a file</li>
+ * </ul>
+ *
+ * Exits with a non-zero status if any scenario fails or, when a
+ * baseline is given, if any regressions are found (scenarios which also
+ * failed in the baseline are tolerated).
+ *
+ * @see PerformanceReport
+ */
+public class PerformanceSuite {
+
+    private static final long SEED = 1234L;
+    private static final String DEFAULT_CHANGELOG = "../waltz-data/src/main/ddl/liquibase/db.changelog-master.xml";
+
+    private final Map<String, Supplier<?>> scenarios = new LinkedHashMap<>();
+
+
+    public static void main(String[] args) throws Exception {
+        configureDatabase();
+        LoggingUtilities.configureLogging();
+
+        double scale = Double.parseDouble(System.getProperty("waltz.perf.scale", "1.0"));
+        int warmups = Integer.getInteger("waltz.perf.warmups", 1);
+        int iterations = Integer.getInteger("waltz.perf.iterations", 5);
+        Path reportPath = Paths.get(System.getProperty("waltz.perf.report", "target/perf-report.tsv"));
+
+        createSchema();
+
+        AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(DIConfiguration.class);
+
+        ScaledDataGenerator scaledDataGenerator = new ScaledDataGenerator(
+                (int) Math.max(1_000 * scale, 50),
+                (int) Math.max(200 * scale, 20),
+                (int) Math.max(50_000 * scale, 100),
+                (int) Math.max(500_000 * scale, 1_000),
+                SEED);
+
+        Map<String, Integer> counts = loadData(ctx, scaledDataGenerator);
+
+        PerformanceReport report = new PerformanceReport();
+        report.addDetail("date", LocalDateTime.now());
+        report.addDetail("java", System.getProperty("java.vendor") + " " + System.getProperty("java.version"));
+        report.addDetail("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        report.addDetail("processors", Runtime.getRuntime().availableProcessors());
+        report.addDetail("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        report.addDetail("database", System.getProperty("database.url"));
+        report.addDetail("scale", scale);
+        report.addDetail("data", counts);
+        report.addDetail("warmups", warmups);
+
+        PerformanceSuite suite = new PerformanceSuite(ctx);
+        suite.run(report, warmups, iterations);
+        report.write(reportPath);
+        log("Report written to: %s", reportPath.toAbsolutePath());
+
+        List<String> problems = System.getProperty("waltz.perf.baseline") == null
+                ? describeFailures(report)
+                : compareWithBaseline(report);
+        ctx.close();
+
+        if (! problems.isEmpty()) {
+            problems.forEach(r -> log("REGRESSION %s", r));
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+
+    private PerformanceSuite(AnnotationConfigApplicationContext ctx) {
+        ApplicationService applicationService = ctx.getBean(ApplicationService.class);
+        AuthoritativeSourceService authoritativeSourceService = ctx.getBean(AuthoritativeSourceService.class);
+        DataTypeUsageService dataTypeUsageService = ctx.getBean(DataTypeUsageService.class);
+        EntityHierarchyService entityHierarchyService = ctx.getBean(EntityHierarchyService.class);
+        EntitySearchService entitySearchService = ctx.getBean(EntitySearchService.class);
+        LogicalFlowDao logicalFlowDao = ctx.getBean(LogicalFlowDao.class);
+        LogicalFlowDecoratorDao logicalFlowDecoratorDao = ctx.getBean(LogicalFlowDecoratorDao.class);
+        LogicalFlowService logicalFlowService = ctx.getBean(LogicalFlowService.class);
+
+        // root of the generated org unit tree, see org-units.csv
+        IdSelectionOptions wholeOrg = mkOpts(mkRef(EntityKind.ORG_UNIT, 10L), HierarchyQueryScope.CHILDREN);
+        IdSelectionOptions oneDivision = mkOpts(mkRef(EntityKind.ORG_UNIT, 20L), HierarchyQueryScope.CHILDREN);
+
+        EntitySearchOptions searchOptions = ImmutableEntitySearchOptions.builder()
+                .entityKinds(newArrayList(EntityKind.APPLICATION, EntityKind.ORG_UNIT, EntityKind.DATA_TYPE))
+                .searchQuery("perf app 1234")
+                .build();
+
+        scenarios.put("selector.apps.org", () -> applicationService.findByAppIdSelector(wholeOrg));
+        scenarios.put("selector.flows.org", () -> logicalFlowService.findBySelector(wholeOrg));
+        scenarios.put("selector.flow-stats.org", () -> logicalFlowService.calculateStats(wholeOrg));
+        scenarios.put("selector.flow-stats.division", () -> logicalFlowService.calculateStats(oneDivision));
+        scenarios.put("search.entities", () -> entitySearchService.search(searchOptions));
+        scenarios.put("hierarchy.rebuild.org-unit", () -> entityHierarchyService.buildFor(EntityKind.ORG_UNIT));
+        scenarios.put("hierarchy.rebuild.data-type", () -> entityHierarchyService.buildFor(EntityKind.DATA_TYPE));
+        scenarios.put("recalc.auth-source-ratings", authoritativeSourceService::fastRecalculateAllFlowRatings);
+        scenarios.put("recalc.data-type-usage", dataTypeUsageService::recalculateForAllApplications);
+        scenarios.put("extract.logical-flows", logicalFlowDao::findAllActive);
+        scenarios.put("extract.logical-flow-decorators", logicalFlowDecoratorDao::findAll);
+    }
+
+
+    private void run(PerformanceReport report, int warmups, int iterations) {
+        scenarios.forEach((name, scenario) -> {
+            try {
+                for (int i = 0; i < warmups; i++) {
+                    scenario.get();
+                }
+
+                List<Long> timings = new ArrayList<>(iterations);
+                long resultSize = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long st = System.nanoTime();
+                    Object result = scenario.get();
+                    timings.add((System.nanoTime() - st) / 1_000_000);
+                    resultSize = sizeOf(result);
+                }
+
+                PerformanceReport.Result result = report.addResult(name, timings, resultSize);
+                log("%-35s median: %6dms, results: %d", name, result.medianMillis, resultSize);
+            } catch (Exception e) {
+                // one failing scenario (e.g. sql unsupported by H2) should not hide the others
+                log("%-35s FAILED: %s", name, e.getMessage());
+                report.addFailure(name, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+
+    // -- HELPERS ---
+
+    private static void configureDatabase() {
+        setDefault("database.url", "jdbc:h2:mem:waltz-perf;DB_CLOSE_DELAY=-1");
+        setDefault("database.user", "sa");
+        setDefault("database.password", "");
+        setDefault("database.driver", "org.h2.Driver");
+        setDefault("jooq.dialect", "H2");
+
+        // keep background jobs quiet whilst timing
+        setDefault("waltz.email.outbox.pollMillis", String.valueOf(Long.MAX_VALUE / 2));
+        setDefault("waltz.entity.statistic.rollup.refreshMillis", String.valueOf(Long.MAX_VALUE / 2));
+    }
+
+
+    private static void createSchema() throws Exception {
+        String changelog = System.getProperty("waltz.perf.changelog", DEFAULT_CHANGELOG);
+        log("Creating schema from: %s", changelog);
+
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("database.url"),
+                System.getProperty("database.user"),
+                System.getProperty("database.password"))) {
+            Database database = DatabaseFactory
+                    .getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase(changelog, new FileSystemResourceAccessor(), database).update("");
+        }
+    }
+
+
+    private static Map<String, Integer> loadData(AnnotationConfigApplicationContext ctx,
+                                                 ScaledDataGenerator scaledDataGenerator) {
+        SampleDataGenerator[] loaders = {
+                new OrgUnitGenerator(),
+                new DataTypeGenerator(),
+        };
+
+        long st = System.currentTimeMillis();
+        scaledDataGenerator.remove(ctx);
+        for (SampleDataGenerator loader : loaders) {
+            loader.remove(ctx);
+            loader.create(ctx);
+        }
+        Map<String, Integer> counts = scaledDataGenerator.create(ctx);
+
+        EntityHierarchyService entityHierarchyService = ctx.getBean(EntityHierarchyService.class);
+        entityHierarchyService.buildFor(EntityKind.ORG_UNIT);
+        entityHierarchyService.buildFor(EntityKind.DATA_TYPE);
+
+        log("Loaded %s in %dms", counts, System.currentTimeMillis() - st);
+        return counts;
+    }
+
+
+    private static List<String> compareWithBaseline(PerformanceReport report) throws Exception {
+        String baselinePath = System.getProperty("waltz.perf.baseline");
+        if (baselinePath == null) {
+            return Collections.emptyList();
+        }
+
+        double tolerance = Double.parseDouble(System.getProperty("waltz.perf.tolerance", "0.2"));
+        long minDeltaMillis = Long.getLong("waltz.perf.minDeltaMillis", 50);
+
+        PerformanceReport baseline = PerformanceReport.read(Paths.get(baselinePath));
+        List<String> regressions = report.findRegressions(baseline, tolerance, minDeltaMillis);
+        log("Compared with baseline: %s, %d regression(s)", baselinePath, regressions.size());
+        return regressions;
+    }
+
+
+    private static List<String> describeFailures(PerformanceReport report) {
+        List<String> failures = new ArrayList<>();
+        report.getFailures().forEach(r -> failures.add(r.scenario + ": failed: " + r.failure));
+        return failures;
+    }
+
+
+    private static long sizeOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        } else if (result instanceof Number) {
+            return ((Number) result).longValue();
+        } else {
+            return result == null ? 0 : 1;
+        }
+    }
+
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+
+    private static void log(String msg, Object... args) {
+        System.out.println(String.format(msg, args));
+    }
+
+}
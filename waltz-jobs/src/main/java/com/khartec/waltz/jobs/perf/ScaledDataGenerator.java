@@ -0,0 +1,294 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.jobs.perf;
+
+import com.khartec.waltz.common.MapUtilities;
+import com.khartec.waltz.jobs.generators.SampleDataGenerator;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityLifecycleStatus;
+import com.khartec.waltz.model.application.ApplicationKind;
+import com.khartec.waltz.model.application.LifecyclePhase;
+import com.khartec.waltz.model.rating.AuthoritativenessRating;
+import com.khartec.waltz.model.rating.RagRating;
+import com.khartec.waltz.schema.tables.records.*;
+import org.jooq.DSLContext;
+import org.jooq.TableRecord;
+import org.springframework.context.ApplicationContext;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+import static com.khartec.waltz.jobs.WaltzUtilities.mkLogicalFlowDecoratorRecord;
+import static com.khartec.waltz.jobs.WaltzUtilities.mkLogicalFlowRecord;
+import static com.khartec.waltz.schema.tables.Application.APPLICATION;
+import static com.khartec.waltz.schema.tables.AuthoritativeSource.AUTHORITATIVE_SOURCE;
+import static com.khartec.waltz.schema.tables.DataType.DATA_TYPE;
+import static com.khartec.waltz.schema.tables.LogicalFlow.LOGICAL_FLOW;
+import static com.khartec.waltz.schema.tables.LogicalFlowDecorator.LOGICAL_FLOW_DECORATOR;
+import static com.khartec.waltz.schema.tables.OrganisationalUnit.ORGANISATIONAL_UNIT;
+
+
+/**
+ * Bulk loads a large, deterministic data set for performance testing.
+ *
+ * Org units and data types are added beneath those created by the
+ * {@link com.khartec.waltz.jobs.generators.OrgUnitGenerator} and
+ * {@link com.khartec.waltz.jobs.generators.DataTypeGenerator}, which
+ * must be run first.  Applications, logical flows, flow decorators and
+ * authoritative sources are then created in bulk.  The same seed always
+ * gives the same data, so timings from different runs are comparable.
+ *
+ * Hierarchies are not rebuilt here, the caller should do so.
+ */
+public class ScaledDataGenerator implements SampleDataGenerator {
+
+    private static final String PROVENANCE = "perf";
+    private static final long FIRST_ID = 100_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MAX_DATA_TYPES_PER_FLOW = 3;
+    private static final int AUTH_SOURCES_PER_ORG_UNIT = 5;
+
+    private final int orgUnitCount;
+    private final int dataTypeCount;
+    private final int appCount;
+    private final int flowCount;
+    private final long seed;
+
+
+    public ScaledDataGenerator(int orgUnitCount,
+                               int dataTypeCount,
+                               int appCount,
+                               int flowCount,
+                               long seed) {
+        this.orgUnitCount = orgUnitCount;
+        this.dataTypeCount = dataTypeCount;
+        this.appCount = appCount;
+        this.flowCount = flowCount;
+        this.seed = seed;
+    }
+
+
+    @Override
+    public Map<String, Integer> create(ApplicationContext ctx) {
+        DSLContext dsl = getDsl(ctx);
+        Random rnd = new Random(seed);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        List<Long> orgUnitIds = createOrgUnits(dsl, rnd, now);
+        List<DataTypeRecord> dataTypes = createDataTypes(dsl, rnd);
+        createApps(dsl, rnd, orgUnitIds, now);
+        int flows = createFlowsAndDecorators(dsl, rnd, dataTypes);
+        int authSources = createAuthSources(dsl, rnd, orgUnitIds, dataTypes);
+
+        return MapUtilities.newHashMap(
+                "orgUnits", orgUnitIds.size(),
+                "dataTypes", dataTypes.size(),
+                "apps", appCount,
+                "flows", flows,
+                "authSources", authSources);
+    }
+
+
+    @Override
+    public boolean remove(ApplicationContext ctx) {
+        DSLContext dsl = getDsl(ctx);
+        dsl.deleteFrom(LOGICAL_FLOW_DECORATOR).where(LOGICAL_FLOW_DECORATOR.PROVENANCE.eq(PROVENANCE)).execute();
+        dsl.deleteFrom(LOGICAL_FLOW).where(LOGICAL_FLOW.PROVENANCE.eq(PROVENANCE)).execute();
+        dsl.deleteFrom(AUTHORITATIVE_SOURCE).where(AUTHORITATIVE_SOURCE.PROVENANCE.eq(PROVENANCE)).execute();
+        dsl.deleteFrom(APPLICATION).where(APPLICATION.PROVENANCE.eq(PROVENANCE)).execute();
+        dsl.deleteFrom(DATA_TYPE).where(DATA_TYPE.ID.ge(FIRST_ID)).execute();
+        dsl.deleteFrom(ORGANISATIONAL_UNIT).where(ORGANISATIONAL_UNIT.ID.ge(FIRST_ID)).execute();
+        return true;
+    }
+
+
+    // -- HELPERS ---
+
+    private List<Long> createOrgUnits(DSLContext dsl, Random rnd, Timestamp now) {
+        List<Long> orgUnitIds = new ArrayList<>(dsl
+                .select(ORGANISATIONAL_UNIT.ID)
+                .from(ORGANISATIONAL_UNIT)
+                .orderBy(ORGANISATIONAL_UNIT.ID)
+                .fetch(ORGANISATIONAL_UNIT.ID));
+
+        List<OrganisationalUnitRecord> records = new ArrayList<>();
+        for (long id = FIRST_ID; orgUnitIds.size() < orgUnitCount; id++) {
+            OrganisationalUnitRecord record = dsl.newRecord(ORGANISATIONAL_UNIT);
+            record.setId(id);
+            record.setParentId(pick(rnd, orgUnitIds));
+            record.setName("Org Unit " + id);
+            record.setDescription("Generated org unit " + id);
+            record.setLastUpdatedAt(now);
+            records.add(record);
+            orgUnitIds.add(id);
+        }
+
+        insert(dsl, records);
+        log("Created %d org units", records.size());
+        return orgUnitIds;
+    }
+
+
+    private List<DataTypeRecord> createDataTypes(DSLContext dsl, Random rnd) {
+        List<DataTypeRecord> dataTypes = new ArrayList<>(dsl
+                .selectFrom(DATA_TYPE)
+                .orderBy(DATA_TYPE.ID)
+                .fetch());
+
+        List<DataTypeRecord> records = new ArrayList<>();
+        for (long id = FIRST_ID; dataTypes.size() < dataTypeCount; id++) {
+            DataTypeRecord record = dsl.newRecord(DATA_TYPE);
+            record.setId(id);
+            record.setParentId(pick(rnd, dataTypes).getId());
+            record.setCode("PERF_" + id);
+            record.setName("Data Type " + id);
+            record.setDescription("Generated data type " + id);
+            records.add(record);
+            dataTypes.add(record);
+        }
+
+        insert(dsl, records);
+        log("Created %d data types", records.size());
+        return dataTypes;
+    }
+
+
+    private void createApps(DSLContext dsl, Random rnd, List<Long> orgUnitIds, Timestamp now) {
+        List<ApplicationRecord> batch = new ArrayList<>(BATCH_SIZE);
+        for (long id = FIRST_ID; id < FIRST_ID + appCount; id++) {
+            ApplicationRecord record = dsl.newRecord(APPLICATION);
+            record.setId(id);
+            record.setName("Perf App " + id);
+            record.setDescription("Generated application " + id);
+            record.setAssetCode("perf-" + id);
+            record.setParentAssetCode("");
+            record.setOrganisationalUnitId(pick(rnd, orgUnitIds));
+            record.setKind(pick(rnd, ApplicationKind.values()).name());
+            record.setLifecyclePhase(rnd.nextInt(10) > 7
+                    ? pick(rnd, LifecyclePhase.values()).name()
+                    : LifecyclePhase.PRODUCTION.name());
+            record.setOverallRating(pick(rnd, RagRating.R, RagRating.A, RagRating.G).name());
+            record.setEntityLifecycleStatus(EntityLifecycleStatus.ACTIVE.name());
+            record.setIsRemoved(false);
+            record.setUpdatedAt(now);
+            record.setProvenance(PROVENANCE);
+            batch.add(record);
+
+            if (batch.size() == BATCH_SIZE) {
+                insert(dsl, batch);
+                batch.clear();
+            }
+        }
+        insert(dsl, batch);
+        log("Created %d applications", appCount);
+    }
+
+
+    private int createFlowsAndDecorators(DSLContext dsl, Random rnd, List<DataTypeRecord> dataTypes) {
+        Set<Long> seenPairs = new HashSet<>(flowCount * 2);
+        List<LogicalFlowRecord> flowBatch = new ArrayList<>(BATCH_SIZE);
+        List<LogicalFlowDecoratorRecord> decoratorBatch = new ArrayList<>(BATCH_SIZE * MAX_DATA_TYPES_PER_FLOW);
+
+        long flowId = FIRST_ID;
+        int attempts = 0;
+        while (seenPairs.size() < flowCount && attempts++ < flowCount * 3) {
+            long source = FIRST_ID + rnd.nextInt(appCount);
+            long target = FIRST_ID + rnd.nextInt(appCount);
+            if (source == target || ! seenPairs.add(source * (FIRST_ID + appCount) + target)) {
+                continue;
+            }
+
+            LogicalFlowRecord flow = mkLogicalFlowRecord(source, target, PROVENANCE);
+            flow.setId(flowId);
+            flowBatch.add(flow);
+
+            Set<Long> dataTypeIds = new HashSet<>();
+            int typesOnFlow = 1 + rnd.nextInt(MAX_DATA_TYPES_PER_FLOW);
+            for (int i = 0; i < typesOnFlow; i++) {
+                dataTypeIds.add(pick(rnd, dataTypes).getId());
+            }
+            for (Long dataTypeId : dataTypeIds) {
+                decoratorBatch.add(mkLogicalFlowDecoratorRecord(flowId, dataTypeId, PROVENANCE));
+            }
+
+            flowId++;
+
+            if (flowBatch.size() == BATCH_SIZE) {
+                insert(dsl, flowBatch);
+                insert(dsl, decoratorBatch);
+                flowBatch.clear();
+                decoratorBatch.clear();
+            }
+        }
+        insert(dsl, flowBatch);
+        insert(dsl, decoratorBatch);
+
+        log("Created %d logical flows", seenPairs.size());
+        return seenPairs.size();
+    }
+
+
+    private int createAuthSources(DSLContext dsl, Random rnd, List<Long> orgUnitIds, List<DataTypeRecord> dataTypes) {
+        Set<String> seen = new HashSet<>();
+        List<AuthoritativeSourceRecord> records = new ArrayList<>();
+
+        for (Long orgUnitId : orgUnitIds) {
+            for (int i = 0; i < AUTH_SOURCES_PER_ORG_UNIT; i++) {
+                String dataTypeCode = pick(rnd, dataTypes).getCode();
+                long appId = FIRST_ID + rnd.nextInt(appCount);
+                if (! seen.add(orgUnitId + "/" + dataTypeCode + "/" + appId)) {
+                    continue;
+                }
+
+                AuthoritativeSourceRecord record = dsl.newRecord(AUTHORITATIVE_SOURCE);
+                record.setParentKind(EntityKind.ORG_UNIT.name());
+                record.setParentId(orgUnitId);
+                record.setDataType(dataTypeCode);
+                record.setApplicationId(appId);
+                record.setRating(pick(rnd, AuthoritativenessRating.PRIMARY, AuthoritativenessRating.SECONDARY).name());
+                record.setProvenance(PROVENANCE);
+                records.add(record);
+            }
+        }
+
+        insert(dsl, records);
+        log("Created %d authoritative sources", records.size());
+        return records.size();
+    }
+
+
+    private static void insert(DSLContext dsl, Collection<? extends TableRecord<?>> records) {
+        if (! records.isEmpty()) {
+            dsl.batchInsert(records).execute();
+        }
+    }
+
+
+    @SafeVarargs
+    private static <T> T pick(Random rnd, T... items) {
+        return items[rnd.nextInt(items.length)];
+    }
+
+
+    private static <T> T pick(Random rnd, List<T> items) {
+        return items.get(rnd.nextInt(items.size()));
+    }
+
+}
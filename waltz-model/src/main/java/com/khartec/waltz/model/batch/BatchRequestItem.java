@@ -0,0 +1,46 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.batch;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.Nullable;
+import org.immutables.value.Value;
+
+/**
+ * One call within a batch, e.g. `{ "method": "GET", "path": "/api/app/12" }`.
+ * `path` may include a query string, `body` is sent as json.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableBatchRequestItem.class)
+@JsonDeserialize(as = ImmutableBatchRequestItem.class)
+public abstract class BatchRequestItem {
+
+    @Value.Default
+    public String method() {
+        return "GET";
+    }
+
+    public abstract String path();
+
+    @Nullable
+    public abstract Object body();
+
+}
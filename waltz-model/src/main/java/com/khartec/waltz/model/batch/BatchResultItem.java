@@ -0,0 +1,46 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.batch;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.Nullable;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * The outcome of one call within a batch.  `status` is the http status the
+ * call would have had on its own.  `body` holds the response, embedded as
+ * json where the call returned json, otherwise as text (or base64 for
+ * binary content).
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableBatchResultItem.class)
+public abstract class BatchResultItem {
+
+    public abstract int status();
+
+    @Nullable
+    public abstract Object body();
+
+    public abstract Optional<String> contentType();
+    public abstract long durationMillis();
+
+}
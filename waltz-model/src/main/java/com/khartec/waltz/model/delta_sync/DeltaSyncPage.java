@@ -0,0 +1,55 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.delta_sync;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * One page of the changes made to a kind of entity since a given time.
+ *
+ * `changed` holds entities created or updated since then, `removed` holds
+ * references to entities which have since been removed.  For measurable
+ * ratings, which are hard deleted, `removed` lists the entities which have
+ * lost one or more ratings, their ratings should be re-fetched in full.
+ *
+ * If `nextPageToken` is present it should be passed back to fetch the
+ * next page.  Once the last page has been read `highWaterMark` should be
+ * kept and used as the `since` value for the next sync.  Applying a page
+ * more than once is harmless, entities in `changed` are complete.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableDeltaSyncPage.class)
+public abstract class DeltaSyncPage<T> {
+
+    public abstract EntityKind kind();
+    public abstract List<T> changed();
+    public abstract Set<EntityReference> removed();
+    public abstract LocalDateTime highWaterMark();
+    public abstract Optional<String> nextPageToken();
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.email;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.IdProvider;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * An email held in the outbox, waiting to be (or having been) sent.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableEmailMessage.class)
+@JsonDeserialize(as = ImmutableEmailMessage.class)
+public abstract class EmailMessage implements IdProvider {
+
+    public abstract String subject();
+
+    public abstract String body();
+
+    public abstract List<String> recipients();
+
+    public abstract EmailOutboxStatus status();
+
+    public abstract int attempts();
+
+    public abstract LocalDateTime createdAt();
+
+    public abstract LocalDateTime nextAttemptAt();
+
+    public abstract Optional<LocalDateTime> lastAttemptedAt();
+
+    public abstract Optional<String> lastError();
+
+}
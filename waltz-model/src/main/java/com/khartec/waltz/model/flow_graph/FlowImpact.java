@@ -0,0 +1,42 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.model.flow_graph;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.EntityReference;
+import org.immutables.value.Value;
+
+import java.util.Set;
+
+/**
+ * The downstream impact of a set of sources.  `entities` holds every
+ * app/actor reachable from the sources (excluding the sources themselves)
+ * and `flowIds` lists the flows traversed to reach them.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableFlowImpact.class)
+@JsonDeserialize(as = ImmutableFlowImpact.class)
+public abstract class FlowImpact {
+
+    public abstract Set<EntityReference> sources();
+    public abstract Set<EntityReference> entities();
+    public abstract Set<Long> flowIds();
+
+}
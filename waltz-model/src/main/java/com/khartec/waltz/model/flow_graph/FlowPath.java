@@ -0,0 +1,47 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.model.flow_graph;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.EntityReference;
+import org.immutables.value.Value;
+
+import java.util.List;
+
+/**
+ * A route through the logical flow graph.  `entities` are given in
+ * traversal order (starting with the source) and `flowIds` lists the
+ * logical flows connecting consecutive entities.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableFlowPath.class)
+@JsonDeserialize(as = ImmutableFlowPath.class)
+public abstract class FlowPath {
+
+    public abstract List<EntityReference> entities();
+    public abstract List<Long> flowIds();
+
+
+    @Value.Derived
+    public int length() {
+        return flowIds().size();
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.model.flow_graph;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.EntityReference;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * Describes a request for the shortest path(s) between two
+ * entities (apps or actors) in the logical flow graph.
+ *
+ * If a `dataTypeId` is given only flows decorated with that
+ * data type (or any of its descendants) are traversed.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableFlowPathQuery.class)
+@JsonDeserialize(as = ImmutableFlowPathQuery.class)
+public abstract class FlowPathQuery {
+
+    public abstract EntityReference source();
+    public abstract EntityReference target();
+    public abstract Optional<Long> dataTypeId();
+
+
+    /**
+     * Number of paths to return, shortest first.  A value of
+     * one gives the single shortest path.
+     */
+    @Value.Default
+    public int limit() {
+        return 1;
+    }
+
+
+    /**
+     * Maximum number of flows (hops) a path may contain, only used
+     * when more than one path is requested.
+     */
+    @Value.Default
+    public int maxHops() {
+        return 8;
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.page_bundle;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.IdSelectionOptions;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Asks for several page sections, by name, all driven by the same
+ * selection options.  `sectionTimeoutMillis` limits how long each section
+ * may take, the server caps it at its own configured maximum.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutablePageBundleRequest.class)
+@JsonDeserialize(as = ImmutablePageBundleRequest.class)
+public abstract class PageBundleRequest {
+
+    public abstract IdSelectionOptions selectionOptions();
+    public abstract List<String> sections();
+    public abstract Optional<Long> sectionTimeoutMillis();
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.page_bundle;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.Nullable;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * The outcome of a single section of a page bundle.  `data` is only
+ * populated if the section succeeded, `error` describes why it did not.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutablePageBundleSectionResult.class)
+public abstract class PageBundleSectionResult {
+
+    public abstract String name();
+    public abstract PageBundleSectionStatus status();
+
+    @Nullable
+    public abstract Object data();
+
+    public abstract Optional<String> error();
+    public abstract long durationMillis();
+
+}
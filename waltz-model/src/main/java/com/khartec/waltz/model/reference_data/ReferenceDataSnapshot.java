@@ -0,0 +1,61 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.reference_data;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.khartec.waltz.model.EnumValue;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.involvement_kind.InvolvementKind;
+import com.khartec.waltz.model.measurable.Measurable;
+import com.khartec.waltz.model.measurable_category.MeasurableCategory;
+import com.khartec.waltz.model.orgunit.OrganisationalUnit;
+import com.khartec.waltz.model.rating.RatingScheme;
+import com.khartec.waltz.model.settings.Setting;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * All of the reference data the client loads at startup, bundled
+ * together so it can be served (and cached) as a single document.
+ *
+ * The `version` is derived from the client cache keys held in the
+ * database and therefore agrees across all nodes of a deployment.
+ * Restricted settings are always masked as the snapshot is served
+ * to every user.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableReferenceDataSnapshot.class)
+public abstract class ReferenceDataSnapshot {
+
+    public abstract String version();
+    public abstract LocalDateTime builtAt();
+
+    public abstract Collection<DataType> dataTypes();
+    public abstract Collection<MeasurableCategory> measurableCategories();
+    public abstract Collection<Measurable> measurables();
+    public abstract Collection<OrganisationalUnit> orgUnits();
+    public abstract Collection<InvolvementKind> involvementKinds();
+    public abstract Collection<RatingScheme> ratingSchemes();
+    public abstract Collection<EnumValue> enumValues();
+    public abstract Collection<Setting> settings();
+
+}
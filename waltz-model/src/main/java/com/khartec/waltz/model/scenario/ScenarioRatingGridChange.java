@@ -0,0 +1,48 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.scenario;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+
+/**
+ * The desired state of a single cell in a scenario rating grid.
+ * An empty rating means the application should be removed from the cell.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableScenarioRatingGridChange.class)
+@JsonDeserialize(as = ImmutableScenarioRatingGridChange.class)
+public abstract class ScenarioRatingGridChange {
+
+    public abstract long appId();
+
+    public abstract long columnId();
+
+    public abstract long rowId();
+
+    public abstract Optional<Character> rating();
+
+    public abstract Optional<String> comment();
+
+}
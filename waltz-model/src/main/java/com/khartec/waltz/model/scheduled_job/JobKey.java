@@ -31,5 +31,6 @@ public enum JobKey {
     COMPLEXITY_REBUILD,
     AUTH_SOURCE_RECALC_FLOW_RATINGS,
     LOGICAL_FLOW_CLEANUP_ORPHANS,
+    ENTITY_STATISTIC_ROLLUP_REBUILD,
     ATTESTATION_CLEANUP_ORPHANS
 }
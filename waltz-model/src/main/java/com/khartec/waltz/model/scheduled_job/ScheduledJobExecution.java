@@ -0,0 +1,56 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.model.scheduled_job;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+
+/**
+ * Records a single execution (or skipped execution) of a scheduled job.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableScheduledJobExecution.class)
+@JsonDeserialize(as = ImmutableScheduledJobExecution.class)
+public abstract class ScheduledJobExecution {
+
+    public abstract JobKey jobKey();
+
+    public abstract JobExecutionOutcome outcome();
+
+    public abstract LocalDateTime startedAt();
+
+    public abstract long durationMillis();
+
+    /**
+     * Only present if the job reports the number of rows it affected
+     */
+    public abstract Optional<Integer> rowsAffected();
+
+    /**
+     * Reason for failure or skip, if known
+     */
+    public abstract Optional<String> message();
+
+}
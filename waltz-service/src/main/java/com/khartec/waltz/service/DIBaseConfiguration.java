@@ -20,12 +20,12 @@ package com.khartec.waltz.service;
 
 
 import com.khartec.waltz.data.DBExecutorPool;
-import com.khartec.waltz.data.DBExecutorPoolInterface;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
+import org.jooq.conf.StatementType;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +36,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 
 import javax.sql.DataSource;
+import java.time.Duration;
 
 @Configuration
 @PropertySource(value = "classpath:waltz.properties", ignoreResourceNotFound = true)
@@ -72,6 +73,21 @@ public class DIBaseConfiguration {
     @Value("${database.performance.query.slow.threshold:10}")
     private int databasePerformanceQuerySlowThreshold;
 
+    @Value("${database.statement.cache.size:250}")
+    private int dbStatementCacheSize;
+
+    @Value("${database.statement.inline:false}")
+    private boolean dbInlineBindValues;
+
+    @Value("${database.executor.threads:0}")
+    private int dbExecutorThreads;
+
+    @Value("${database.executor.queue.capacity:500}")
+    private int dbExecutorQueueCapacity;
+
+    @Value("${database.executor.timeoutSeconds:60}")
+    private int dbExecutorTimeoutSeconds;
+
     @Bean
     public DataSource dataSource() {
 
@@ -82,13 +98,22 @@ public class DIBaseConfiguration {
         dsConfig.setDriverClassName(dbDriver);
         dsConfig.setMaximumPoolSize(dbPoolMax);
         dsConfig.setMinimumIdle(dbPoolMin);
+        configureStatementCache(dsConfig);
         return new HikariDataSource(dsConfig);
     }
 
 
     @Bean
-    public DBExecutorPoolInterface dbExecutorPool() {
-        return new DBExecutorPool(dbPoolMin, dbPoolMax);
+    public DBExecutorPool dbExecutorPool() {
+        // leave connections free for request threads unless told otherwise
+        int threads = dbExecutorThreads > 0
+                ? dbExecutorThreads
+                : Integer.max(dbPoolMax / 2, 1);
+
+        return new DBExecutorPool(
+                threads,
+                dbExecutorQueueCapacity,
+                Duration.ofSeconds(dbExecutorTimeoutSeconds));
     }
 
 
@@ -103,8 +128,14 @@ public class DIBaseConfiguration {
         }
 
         // TODO: remove sql server setting, see #4553
+        // bind values keep the sql text stable so drivers and databases can reuse prepared plans,
+        // in-list padding stops each distinct list size producing a new statement
         Settings dslSettings = new Settings()
-                .withRenderOutputForSQLServerReturningClause(false);
+                .withRenderOutputForSQLServerReturningClause(false)
+                .withStatementType(dbInlineBindValues
+                        ? StatementType.STATIC_STATEMENT
+                        : StatementType.PREPARED_STATEMENT)
+                .withInListPadding(true);
 
         if ("true".equals(System.getProperty(JOOQ_DEBUG_PROPERTY))) {
             dslSettings
@@ -121,4 +152,34 @@ public class DIBaseConfiguration {
         return DSL.using(configuration);
     }
 
+
+    // -- HELPERS ---
+
+    /**
+     * Enables the driver side prepared statement cache.  Each driver names
+     * these settings differently, unknown properties are ignored by drivers
+     * so only those relevant to the configured dialect are set.
+     */
+    private void configureStatementCache(HikariConfig dsConfig) {
+        if (dbStatementCacheSize <= 0) {
+            return;
+        }
+
+        String cacheSize = Integer.toString(dbStatementCacheSize);
+
+        if (dialect.startsWith("MYSQL") || dialect.startsWith("MARIADB")) {
+            dsConfig.addDataSourceProperty("cachePrepStmts", "true");
+            dsConfig.addDataSourceProperty("prepStmtCacheSize", cacheSize);
+            dsConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "8192");
+            dsConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        } else if (dialect.startsWith("POSTGRES")) {
+            dsConfig.addDataSourceProperty("preparedStatementCacheQueries", cacheSize);
+        } else if (dialect.startsWith("SQLSERVER")) {
+            dsConfig.addDataSourceProperty("disableStatementPooling", "false");
+            dsConfig.addDataSourceProperty("statementPoolingCacheSize", cacheSize);
+        } else if (dialect.startsWith("ORACLE")) {
+            dsConfig.addDataSourceProperty("oracle.jdbc.implicitStatementCacheSize", cacheSize);
+        }
+    }
+
 }
@@ -42,6 +42,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -90,6 +91,22 @@ public class ApplicationService {
     }
 
 
+    /**
+     * Finds all active applications.  If every requested field can be read
+     * straight from the application table then only those columns are
+     * fetched and each application is returned as a map of field name to
+     * value, otherwise full <code>Application</code> objects are returned.
+     *
+     * @param fields  properties the caller is interested in, may be empty
+     * @return applications, either as maps or full objects
+     */
+    public Collection<?> findAll(Set<String> fields) {
+        return ApplicationDao.PROJECTION.supports(fields)
+                ? applicationDao.findAll(fields)
+                : applicationDao.findAll();
+    }
+
+
     public List<Tally<Long>> countByOrganisationalUnit() {
         return applicationDao.countByOrganisationalUnit();
     }
@@ -117,6 +134,21 @@ public class ApplicationService {
     }
 
 
+    /**
+     * As {@link #findByAppIdSelector(IdSelectionOptions)} but only fetches
+     * the requested fields when they can all be read from the application
+     * table (see {@link #findAll(Set)}).
+     */
+    public Collection<?> findByAppIdSelector(IdSelectionOptions options,
+                                             Set<String> fields) {
+        if (! ApplicationDao.PROJECTION.supports(fields)) {
+            return findByAppIdSelector(options);
+        }
+        Select<Record1<Long>> selector = appIdSelectorFactory.apply(options);
+        return applicationDao.findByAppIdSelector(selector, fields);
+    }
+
+
     public AppRegistrationResponse registerApp(AppRegistrationRequest request, String username) {
         checkNotEmpty(request.name(), "Cannot register app with no name");
         AppRegistrationResponse response = applicationDao.registerApp(request);
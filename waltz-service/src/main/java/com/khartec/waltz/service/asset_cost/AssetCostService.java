@@ -25,6 +25,7 @@ import com.khartec.waltz.model.IdSelectionOptions;
 import com.khartec.waltz.model.cost.ApplicationCost;
 import com.khartec.waltz.model.cost.AssetCost;
 import com.khartec.waltz.model.cost.Cost;
+import com.khartec.waltz.service.single_flight.SingleFlightService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.lambda.tuple.Tuple2;
@@ -43,17 +44,21 @@ public class AssetCostService {
 
     private final AssetCostDao assetCostDao;
     private final AssetCostStatsDao assetCostStatsDao;
+    private final SingleFlightService singleFlightService;
     private final ApplicationIdSelectorFactory idSelectorFactory = new ApplicationIdSelectorFactory();
 
 
     @Autowired
     public AssetCostService(AssetCostDao assetCodeDao,
-                            AssetCostStatsDao assetCostStatsDao) {
+                            AssetCostStatsDao assetCostStatsDao,
+                            SingleFlightService singleFlightService) {
         checkNotNull(assetCodeDao, "assetCodeDao cannot be null");
         checkNotNull(assetCostStatsDao, "assetCostStatsDao cannot be null");
+        checkNotNull(singleFlightService, "singleFlightService cannot be null");
 
         this.assetCostDao = assetCodeDao;
         this.assetCostStatsDao = assetCostStatsDao;
+        this.singleFlightService = singleFlightService;
     }
 
 
@@ -93,25 +98,35 @@ public class AssetCostService {
     public List<Tuple2<Long, BigDecimal>> calculateCombinedAmountsForSelector(IdSelectionOptions options) {
         checkNotNull(options, "options cannot be null");
 
-        Select<Record1<Long>> appIdSelector = idSelectorFactory.apply(options);
-
-        return assetCostDao
-                .findLatestYear()
-                .map(y -> assetCostDao.calculateCombinedAmountsForSelector(y, appIdSelector))
-                .orElse(Collections.emptyList());
+        return singleFlightService.execute(
+                "AssetCostService.calculateCombinedAmountsForSelector",
+                options,
+                () -> {
+                    Select<Record1<Long>> appIdSelector = idSelectorFactory.apply(options);
+
+                    return assetCostDao
+                            .findLatestYear()
+                            .map(y -> assetCostDao.calculateCombinedAmountsForSelector(y, appIdSelector))
+                            .orElse(Collections.emptyList());
+                });
     }
 
 
     public Cost calculateTotalCostForAppSelector(IdSelectionOptions options) {
         checkNotNull(options, "options cannot be null");
 
-        Select<Record1<Long>> appIdSelector = idSelectorFactory.apply(options);
-
-        return assetCostDao
-                .findLatestYear()
-                .map(year -> assetCostStatsDao
-                            .calculateTotalCostByAppIdSelector(year, appIdSelector))
-                .orElse(null);
+        return singleFlightService.execute(
+                "AssetCostService.calculateTotalCostForAppSelector",
+                options,
+                () -> {
+                    Select<Record1<Long>> appIdSelector = idSelectorFactory.apply(options);
+
+                    return assetCostDao
+                            .findLatestYear()
+                            .map(year -> assetCostStatsDao
+                                        .calculateTotalCostByAppIdSelector(year, appIdSelector))
+                            .orElse(null);
+                });
     }
 
 }
@@ -22,7 +22,6 @@ package com.khartec.waltz.service.attestation;
 import com.khartec.waltz.data.GenericSelector;
 import com.khartec.waltz.data.GenericSelectorFactory;
 import com.khartec.waltz.data.attestation.AttestationInstanceDao;
-import com.khartec.waltz.data.attestation.AttestationInstanceRecipientDao;
 import com.khartec.waltz.data.attestation.AttestationRunDao;
 import com.khartec.waltz.data.involvement.InvolvementDao;
 import com.khartec.waltz.model.*;
@@ -31,7 +30,10 @@ import com.khartec.waltz.model.person.Person;
 import com.khartec.waltz.service.email.EmailService;
 import org.jooq.Record1;
 import org.jooq.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -47,32 +49,35 @@ import static com.khartec.waltz.model.EntityReference.mkRef;
 import static com.khartec.waltz.model.IdSelectionOptions.mkOpts;
 import static java.util.Optional.empty;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 
 @Service
 public class AttestationRunService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AttestationRunService.class);
+
     private final AttestationInstanceDao attestationInstanceDao;
-    private final AttestationInstanceRecipientDao attestationInstanceRecipientDao;
     private final AttestationRunDao attestationRunDao;
     private final EmailService emailService;
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final InvolvementDao involvementDao;
 
+    @Value("${waltz.attestation.issuance.batchSize:1000}")
+    private int issuanceBatchSize;
+
+
     @Autowired
     public AttestationRunService(AttestationInstanceDao attestationInstanceDao,
-                                 AttestationInstanceRecipientDao attestationInstanceRecipientDao,
                                  AttestationRunDao attestationRunDao,
                                  EmailService emailService,
                                  InvolvementDao involvementDao) {
-        checkNotNull(attestationInstanceRecipientDao, "attestationInstanceRecipientDao cannot be null");
         checkNotNull(attestationInstanceDao, "attestationInstanceDao cannot be null");
         checkNotNull(attestationRunDao, "attestationRunDao cannot be null");
         checkNotNull(emailService, "emailService cannot be null");
         checkNotNull(involvementDao, "involvementDao cannot be null");
 
         this.attestationInstanceDao = attestationInstanceDao;
-        this.attestationInstanceRecipientDao = attestationInstanceRecipientDao;
         this.attestationRunDao = attestationRunDao;
         this.emailService = emailService;
         this.involvementDao = involvementDao;
@@ -149,8 +154,9 @@ public class AttestationRunService {
                 userId);
 
         // store
-        createAttestationInstancesAndRecipients(instanceRecipients);
+        createAttestationInstancesAndRecipients(runId, instanceRecipients);
 
+        // notifications go via the email outbox, so this only queues them, the mail server is not contacted
         emailService.sendEmailNotification(mkRef(EntityKind.ATTESTATION_RUN, runId));
 
         return ImmutableIdCommandResponse.builder()
@@ -223,25 +229,18 @@ public class AttestationRunService {
     }
 
 
-    private void createAttestationInstancesAndRecipients(List<AttestationInstanceRecipient> instanceRecipients) {
-        Map<AttestationInstance, List<AttestationInstanceRecipient>> instancesAndRecipientsToSave = instanceRecipients
+    private void createAttestationInstancesAndRecipients(long runId,
+                                                         List<AttestationInstanceRecipient> instanceRecipients) {
+        Map<AttestationInstance, List<String>> instancesAndRecipientsToSave = instanceRecipients
                 .stream()
                 .collect(groupingBy(
                         AttestationInstanceRecipient::attestationInstance,
-                        toList()
+                        mapping(AttestationInstanceRecipient::userId, toList())
                 ));
 
-
-        // insert new instances and recipients
-        instancesAndRecipientsToSave.forEach(
-                (k, v) -> {
-                    // create instance
-                    long instanceId = attestationInstanceDao.create(k);
-
-                    // create recipients for the instance
-                    v.forEach(r -> attestationInstanceRecipientDao.create(instanceId, r.userId()));
-                }
-        );
+        long st = System.currentTimeMillis();
+        int count = attestationInstanceDao.bulkCreate(runId, instancesAndRecipientsToSave, issuanceBatchSize);
+        LOG.info("Created {} instances for attestation run: {} in {}ms", count, runId, System.currentTimeMillis() - st);
     }
 
 
@@ -16,133 +16,256 @@
  *
  */
 
+
 package com.khartec.waltz.service.authoritative_source;
 
-import com.khartec.waltz.common.SetUtilities;
-import com.khartec.waltz.data.application.ApplicationIdSelectorFactory;
+import com.khartec.waltz.data.application.ApplicationDao;
+import com.khartec.waltz.data.authoritative_source.AuthoritativeSourceDao;
 import com.khartec.waltz.data.data_type.DataTypeDao;
-import com.khartec.waltz.data.entity_hierarchy.EntityHierarchyDao;
 import com.khartec.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.data.orgunit.OrganisationalUnitDao;
 import com.khartec.waltz.model.EntityKind;
 import com.khartec.waltz.model.EntityReference;
-import com.khartec.waltz.model.HierarchyQueryScope;
-import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.application.Application;
 import com.khartec.waltz.model.datatype.DataType;
 import com.khartec.waltz.model.datatype.DataTypeDecorator;
-import com.khartec.waltz.service.data_flow_decorator.LogicalFlowDecoratorRatingsCalculator;
-import org.jooq.Record1;
-import org.jooq.Select;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
-import static com.khartec.waltz.common.SetUtilities.fromCollection;
-import static com.khartec.waltz.model.IdSelectionOptions.mkOpts;
-import static java.util.stream.Collectors.toList;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.MapUtilities.indexBy;
+import static com.khartec.waltz.common.SetUtilities.map;
 
 
+/**
+ * Recalculates flow ratings affected by a change to a single authoritative source.
+ *
+ * Only decorators in the (org unit sub-tree x data type sub-tree) slice of the
+ * changed authoritative source are loaded and rated.  Org unit and data type
+ * hierarchies are cached (see {@link AuthSourceRatingEngine#withAuthSources})
+ * and refreshed when they exceed their maximum age or are found to be missing
+ * an org unit or data type.
+ *
+ * Asynchronous updates are run, in submission order, on a single background
+ * thread so that overlapping slices are never rated concurrently.
+ */
 @Service
 public class AuthSourceRatingCalculator {
 
     private static final Logger LOG = LoggerFactory.getLogger(AuthSourceRatingCalculator.class);
 
-    private final ApplicationIdSelectorFactory appIdSelectorFactory = new ApplicationIdSelectorFactory();
+    private final ApplicationDao applicationDao;
+    private final AuthoritativeSourceDao authoritativeSourceDao;
     private final DataTypeDao dataTypeDao;
-    private final EntityHierarchyDao entityHierarchyDao;
+    private final LogicalFlowDao logicalFlowDao;
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
-    private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
+    private final OrganisationalUnitDao organisationalUnitDao;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            (runnable) -> {
+                Thread t = new Thread(runnable, "Auth Source Rating");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private AuthSourceRatingEngine cachedHierarchies = null;
+    private LocalDateTime cachedHierarchiesLoadedAt = null;
+
+    @Value("${waltz.authoritative.source.rating.hierarchyMaxAgeSeconds:900}")
+    private long hierarchyMaxAgeSeconds;
 
 
     @Autowired
-    public AuthSourceRatingCalculator(DataTypeDao dataTypeDao,
-                                      EntityHierarchyDao entityHierarchyDao,
-                                      LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
-                                      LogicalFlowDecoratorDao logicalFlowDecoratorDao) {
+    public AuthSourceRatingCalculator(ApplicationDao applicationDao,
+                                      AuthoritativeSourceDao authoritativeSourceDao,
+                                      DataTypeDao dataTypeDao,
+                                      LogicalFlowDao logicalFlowDao,
+                                      LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                      OrganisationalUnitDao organisationalUnitDao) {
+        checkNotNull(applicationDao, "applicationDao cannot be null");
+        checkNotNull(authoritativeSourceDao, "authoritativeSourceDao cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
-        checkNotNull(entityHierarchyDao, "entityHierarchyDao cannot be null");
-        checkNotNull(ratingsCalculator, "ratingsCalculator cannot be null");
+        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
         checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(organisationalUnitDao, "organisationalUnitDao cannot be null");
 
+        this.applicationDao = applicationDao;
+        this.authoritativeSourceDao = authoritativeSourceDao;
         this.dataTypeDao = dataTypeDao;
-        this.entityHierarchyDao = entityHierarchyDao;
+        this.logicalFlowDao = logicalFlowDao;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
-        this.ratingsCalculator = ratingsCalculator;
+        this.organisationalUnitDao = organisationalUnitDao;
+    }
+
+
+    AuthSourceRatingCalculator(ApplicationDao applicationDao,
+                               AuthoritativeSourceDao authoritativeSourceDao,
+                               DataTypeDao dataTypeDao,
+                               LogicalFlowDao logicalFlowDao,
+                               LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                               OrganisationalUnitDao organisationalUnitDao,
+                               long hierarchyMaxAgeSeconds) {
+        this(applicationDao,
+                authoritativeSourceDao,
+                dataTypeDao,
+                logicalFlowDao,
+                logicalFlowDecoratorDao,
+                organisationalUnitDao);
+        this.hierarchyMaxAgeSeconds = hierarchyMaxAgeSeconds;
     }
 
 
     // use dataTypeId variant, want to move away from codes
     @Deprecated
     public int[] update(String dataTypeCode, EntityReference vantageRef) {
-        DataType dataType = dataTypeDao.getByCode(dataTypeCode);
-        if (dataType == null) {
-            LOG.error("Cannot update ratings for data type code: {} for vantage point: {} as cannot find corresponding data type",
-                    dataTypeCode,
-                    vantageRef);
-            return new int[0];
-        }
-        return update(dataType, vantageRef);
+        return update(engine -> engine.findDataTypeByCode(dataTypeCode), dataTypeCode, vantageRef);
     }
 
 
     public int[] update(long dataTypeId, EntityReference vantageRef) {
-        DataType dataType = dataTypeDao.getById(dataTypeId);
-        if (dataType == null) {
-            LOG.error("Cannot update ratings for data type id: {} for vantage point: {} as cannot find corresponding data type",
-                    dataTypeId,
+        return update(engine -> engine.findDataTypeById(dataTypeId), dataTypeId, vantageRef);
+    }
+
+
+    // use dataTypeId variant, want to move away from codes
+    @Deprecated
+    public Future<int[]> updateAsync(String dataTypeCode, EntityReference vantageRef) {
+        return submit(() -> update(dataTypeCode, vantageRef), vantageRef);
+    }
+
+
+    /**
+     * Queues a recalculation of the ratings affected by an authoritative source
+     * declared against the given data type and vantage point.  Returns immediately.
+     */
+    public Future<int[]> updateAsync(long dataTypeId, EntityReference vantageRef) {
+        return submit(() -> update(dataTypeId, vantageRef), vantageRef);
+    }
+
+
+    /**
+     * Discards the cached org unit and data type hierarchies, they
+     * will be reloaded on the next update.
+     */
+    public synchronized void invalidateHierarchies() {
+        cachedHierarchies = null;
+        cachedHierarchiesLoadedAt = null;
+    }
+
+
+    // -- HELPERS ---
+
+    private Future<int[]> submit(Callable<int[]> task, EntityReference vantageRef) {
+        return executor.submit(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                LOG.error("Failed to update ratings for auth source change, vantage point: " + vantageRef, e);
+                throw e;
+            }
+        });
+    }
+
+
+    private int[] update(Function<AuthSourceRatingEngine, Optional<DataType>> dataTypeLookup,
+                         Object dataTypeKey,
+                         EntityReference vantageRef) {
+        checkNotNull(vantageRef, "vantageRef cannot be null");
+
+        if (vantageRef.kind() != EntityKind.ORG_UNIT) {
+            LOG.warn("Cannot update ratings for vantage point: {}, only org units are supported", vantageRef);
+            return new int[0];
+        }
+
+        AuthSourceRatingEngine hierarchies = getHierarchies();
+        Optional<DataType> dataType = dataTypeLookup.apply(hierarchies);
+
+        if (! dataType.isPresent() || ! hierarchies.containsOrgUnit(vantageRef.id())) {
+            // may be newly created, try again with fresh hierarchies
+            invalidateHierarchies();
+            hierarchies = getHierarchies();
+            dataType = dataTypeLookup.apply(hierarchies);
+        }
+
+        if (! dataType.isPresent()) {
+            LOG.error("Cannot update ratings for data type: {} for vantage point: {} as cannot find corresponding data type",
+                    dataTypeKey,
                     vantageRef);
             return new int[0];
         }
-        return update(dataType, vantageRef);
+
+        return update(hierarchies, dataType.get(), vantageRef);
     }
 
 
-    private int[] update(DataType dataType, EntityReference vantageRef) {
+    private int[] update(AuthSourceRatingEngine hierarchies, DataType dataType, EntityReference vantageRef) {
         LOG.debug("Updating ratings for auth source - dataType name: {}, id: {}, vantage point: {}",
                 dataType.name(),
                 dataType.id().get(),
                 vantageRef);
 
-        IdSelectionOptions selectorOptions = mkOpts(vantageRef, HierarchyQueryScope.CHILDREN);
-        Select<Record1<Long>> selector = appIdSelectorFactory.apply(selectorOptions);
-        Set<Long> dataTypeDescendents = entityHierarchyDao
-                .findDesendents(dataType.entityReference())
-                .stream()
-                .map(d -> d.id().get())
-                .collect(Collectors.toSet());
+        List<DataTypeDecorator> impactedDecorators = logicalFlowDecoratorDao.findByTargetOrgUnitAndDataType(
+                vantageRef.id(),
+                dataType.id().get());
 
-        Collection<DataTypeDecorator> impactedDecorators = logicalFlowDecoratorDao
-                .findByEntityIdSelector(selector, Optional.of(EntityKind.APPLICATION))
-                .stream()
-                .filter(decorator -> dataTypeDescendents.contains(decorator.decoratorEntity().id()))
-                .collect(toList());
+        if (impactedDecorators.isEmpty()) {
+            return new int[0];
+        }
+
+        List<LogicalFlow> flows = logicalFlowDao.findActiveByFlowIds(map(
+                impactedDecorators,
+                DataTypeDecorator::dataFlowId));
 
-        Collection<DataTypeDecorator> reRatedDecorators = ratingsCalculator.calculate(impactedDecorators);
+        Map<Long, Long> orgUnitIdsByAppId = indexBy(
+                app -> app.id().get(),
+                Application::organisationalUnitId,
+                applicationDao.findByIds(map(flows, f -> f.target().id())));
 
-        Set<DataTypeDecorator> modifiedDecorators = SetUtilities.minus(
-                fromCollection(reRatedDecorators),
-                fromCollection(impactedDecorators));
+        List<DataTypeDecorator> modifiedDecorators = hierarchies
+                .withAuthSources(authoritativeSourceDao.findAll())
+                .calculateChanges(flows, impactedDecorators, orgUnitIdsByAppId);
 
-        LOG.debug("Need to update {} ratings due to auth source change - dataType name: {}, id: {}, parent: {}",
+        LOG.debug("Need to update {} of {} ratings due to auth source change - dataType name: {}, id: {}, parent: {}",
                 modifiedDecorators.size(),
+                impactedDecorators.size(),
                 dataType.name(),
                 dataType.id().get(),
                 vantageRef);
 
-        return updateDecorators(modifiedDecorators);
+        return logicalFlowDecoratorDao.updateRatings(modifiedDecorators);
     }
 
 
-    private int[] updateDecorators(Set<DataTypeDecorator> decorators) {
-        checkNotNull(decorators, "decorators cannot be null");
-        if (decorators.isEmpty()) return new int[] {};
-        return logicalFlowDecoratorDao.updateDecorators(decorators);
+    private synchronized AuthSourceRatingEngine getHierarchies() {
+        boolean expired = cachedHierarchiesLoadedAt == null
+                || nowUtc().isAfter(cachedHierarchiesLoadedAt.plusSeconds(hierarchyMaxAgeSeconds));
+
+        if (cachedHierarchies == null || expired) {
+            cachedHierarchies = new AuthSourceRatingEngine(
+                    organisationalUnitDao.findAll(),
+                    dataTypeDao.findAll(),
+                    Collections.emptyList());
+            cachedHierarchiesLoadedAt = nowUtc();
+        }
+
+        return cachedHierarchies;
     }
 
 }
@@ -0,0 +1,311 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.service.authoritative_source;
+
+import com.khartec.waltz.common.hierarchy.FlatNode;
+import com.khartec.waltz.common.hierarchy.Forest;
+import com.khartec.waltz.common.hierarchy.HierarchyUtilities;
+import com.khartec.waltz.common.hierarchy.Node;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeRatingVantagePoint;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeSource;
+import com.khartec.waltz.model.authoritativesource.ImmutableAuthoritativeRatingVantagePoint;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.datatype.ImmutableDataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.orgunit.OrganisationalUnit;
+import com.khartec.waltz.model.rating.AuthoritativenessRating;
+import org.jooq.lambda.tuple.Tuple2;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.MapUtilities.groupBy;
+import static com.khartec.waltz.common.MapUtilities.indexBy;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Calculates logical flow decorator ratings entirely in memory.
+ *
+ * The org unit and data type hierarchies, and the declared authoritative
+ * sources, are supplied once at construction time.  Ratings are then
+ * resolved with the same semantics as {@link AuthoritativeSourceResolver}
+ * (which is used internally) but only the vantage points needed by the
+ * decorators being rated are expanded, rather than every (org unit x
+ * data type) combination below each declared authoritative source.
+ *
+ * Decorators are rated as follows:
+ * <ul>
+ *     <li>flows which are not app to app: NO_OPINION</li>
+ *     <li>target app, org unit or data type cannot be found: NO_OPINION</li>
+ *     <li>otherwise: as per {@link AuthoritativeSourceResolver#resolve}</li>
+ * </ul>
+ * Decorators attached to flows which are not supplied (e.g. removed flows)
+ * are ignored.
+ */
+public class AuthSourceRatingEngine {
+
+    private static final Predicate<LogicalFlow> IS_APP_TO_APP_FLOW = f ->
+            f.target().kind() == EntityKind.APPLICATION &&
+            f.source().kind() == EntityKind.APPLICATION;
+
+    private final Map<Long, Node<OrganisationalUnit, Long>> orgUnitsById;
+    private final Map<Long, Integer> orgUnitDepths;
+    private final Map<Long, Node<DataType, Long>> dataTypesById;
+    private final Map<Long, Integer> dataTypeDepths;
+    private final Map<String, Long> dataTypeIdsByCode;
+    private final Map<Tuple2<Long, Long>, Collection<AuthoritativeSource>> authSourcesByOrgUnitAndDataType;
+
+
+    public AuthSourceRatingEngine(Collection<OrganisationalUnit> orgUnits,
+                                  Collection<DataType> dataTypes,
+                                  Collection<AuthoritativeSource> authSources) {
+        checkNotNull(orgUnits, "orgUnits cannot be null");
+        checkNotNull(dataTypes, "dataTypes cannot be null");
+        checkNotNull(authSources, "authSources cannot be null");
+
+        Forest<OrganisationalUnit, Long> orgUnitForest = HierarchyUtilities.toForest(orgUnits
+                .stream()
+                .map(ou -> new FlatNode<>(ou.id().get(), ou.parentId(), ou))
+                .collect(toList()));
+
+        Forest<DataType, Long> dataTypeForest = HierarchyUtilities.toForest(dataTypes
+                .stream()
+                .map(dt -> new FlatNode<>(dt.id().get(), dt.parentId(), dt))
+                .collect(toList()));
+
+        Map<String, Long> dataTypeIdsByCode = indexBy(
+                DataType::code,
+                dt -> dt.id().get(),
+                dataTypes);
+
+        this.orgUnitsById = orgUnitForest.getAllNodes();
+        this.orgUnitDepths = HierarchyUtilities.assignDepths(orgUnitForest);
+        this.dataTypesById = dataTypeForest.getAllNodes();
+        this.dataTypeDepths = HierarchyUtilities.assignDepths(dataTypeForest);
+        this.dataTypeIdsByCode = dataTypeIdsByCode;
+        this.authSourcesByOrgUnitAndDataType = indexAuthSources(authSources, dataTypeIdsByCode);
+    }
+
+
+    private AuthSourceRatingEngine(AuthSourceRatingEngine hierarchies,
+                                   Collection<AuthoritativeSource> authSources) {
+        this.orgUnitsById = hierarchies.orgUnitsById;
+        this.orgUnitDepths = hierarchies.orgUnitDepths;
+        this.dataTypesById = hierarchies.dataTypesById;
+        this.dataTypeDepths = hierarchies.dataTypeDepths;
+        this.dataTypeIdsByCode = hierarchies.dataTypeIdsByCode;
+        this.authSourcesByOrgUnitAndDataType = indexAuthSources(authSources, dataTypeIdsByCode);
+    }
+
+
+    /**
+     * Creates a new engine which shares this engine's (immutable) org unit
+     * and data type hierarchies but uses the given authoritative sources.
+     * Useful when the hierarchies are cached but the authoritative sources
+     * have changed.
+     */
+    public AuthSourceRatingEngine withAuthSources(Collection<AuthoritativeSource> authSources) {
+        checkNotNull(authSources, "authSources cannot be null");
+        return new AuthSourceRatingEngine(this, authSources);
+    }
+
+
+    public boolean containsOrgUnit(long id) {
+        return orgUnitsById.containsKey(id);
+    }
+
+
+    public Optional<DataType> findDataTypeById(long id) {
+        return Optional
+                .ofNullable(dataTypesById.get(id))
+                .map(Node::getData);
+    }
+
+
+    public Optional<DataType> findDataTypeByCode(String code) {
+        return Optional
+                .ofNullable(dataTypeIdsByCode.get(code))
+                .flatMap(this::findDataTypeById);
+    }
+
+
+    /**
+     * Rates every decorator (on the supplied flows) and returns copies
+     * carrying the newly calculated rating.
+     *
+     * @param flows  logical flows, keyed internally by id
+     * @param decorators  decorators to (re)rate
+     * @param orgUnitIdsByAppId  owning org unit of each target application
+     * @return re-rated copies of the decorators, in input order
+     */
+    public List<DataTypeDecorator> calculate(Collection<LogicalFlow> flows,
+                                             Collection<DataTypeDecorator> decorators,
+                                             Map<Long, Long> orgUnitIdsByAppId) {
+        checkNotNull(flows, "flows cannot be null");
+        checkNotNull(decorators, "decorators cannot be null");
+        checkNotNull(orgUnitIdsByAppId, "orgUnitIdsByAppId cannot be null");
+
+        Map<Long, LogicalFlow> flowsById = indexBy(f -> f.id().get(), flows);
+
+        List<Tuple2<DataTypeDecorator, Tuple2<Long, Long>>> decoratorsWithVantagePoint = decorators
+                .stream()
+                .filter(d -> flowsById.containsKey(d.dataFlowId()))
+                .map(d -> tuple(d, determineVantagePoint(flowsById.get(d.dataFlowId()), d, orgUnitIdsByAppId)))
+                .collect(toList());
+
+        AuthoritativeSourceResolver resolver = new AuthoritativeSourceResolver(
+                mkVantagePoints(decoratorsWithVantagePoint
+                        .stream()
+                        .map(t -> t.v2)
+                        .filter(Objects::nonNull)
+                        .collect(toSet())));
+
+        return decoratorsWithVantagePoint
+                .stream()
+                .map(t -> {
+                    DataTypeDecorator decorator = t.v1;
+                    Tuple2<Long, Long> orgUnitAndDataType = t.v2;
+                    AuthoritativenessRating rating = orgUnitAndDataType == null
+                            ? AuthoritativenessRating.NO_OPINION
+                            : resolver.resolve(
+                                    mkRef(EntityKind.ORG_UNIT, orgUnitAndDataType.v1),
+                                    flowsById.get(decorator.dataFlowId()).source(),
+                                    dataTypesById.get(orgUnitAndDataType.v2).getData().code());
+                    return (DataTypeDecorator) ImmutableDataTypeDecorator
+                            .copyOf(decorator)
+                            .withRating(rating);
+                })
+                .collect(toList());
+    }
+
+
+    /**
+     * As {@link #calculate} but only returns decorators whose rating differs
+     * from the rating they were supplied with.
+     */
+    public List<DataTypeDecorator> calculateChanges(Collection<LogicalFlow> flows,
+                                                    Collection<DataTypeDecorator> decorators,
+                                                    Map<Long, Long> orgUnitIdsByAppId) {
+        Map<Long, Optional<AuthoritativenessRating>> currentRatingsById = indexBy(
+                d -> d.id().get(),
+                DataTypeDecorator::rating,
+                decorators);
+
+        return calculate(flows, decorators, orgUnitIdsByAppId)
+                .stream()
+                .filter(d -> ! d.rating().equals(currentRatingsById.get(d.id().get())))
+                .collect(toList());
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * @return tuple of (target org unit id, data type id) or null if the
+     * decorator cannot be rated against an authoritative source
+     */
+    private Tuple2<Long, Long> determineVantagePoint(LogicalFlow flow,
+                                                     DataTypeDecorator decorator,
+                                                     Map<Long, Long> orgUnitIdsByAppId) {
+        if (! IS_APP_TO_APP_FLOW.test(flow) || decorator.decoratorEntity().kind() != EntityKind.DATA_TYPE) {
+            return null;
+        }
+
+        Long orgUnitId = orgUnitIdsByAppId.get(flow.target().id());
+        long dataTypeId = decorator.dataTypeId();
+
+        return orgUnitId != null && orgUnitsById.containsKey(orgUnitId) && dataTypesById.containsKey(dataTypeId)
+                ? tuple(orgUnitId, dataTypeId)
+                : null;
+    }
+
+
+    /**
+     * Equivalent to `AuthoritativeSourceDao.findExpandedAuthoritativeRatingVantagePoints`
+     * but restricted to the given (org unit, data type) pairs.  An authoritative source
+     * applies if it is declared against the org unit (or an ancestor) for the data type
+     * (or an ancestor).
+     */
+    private List<AuthoritativeRatingVantagePoint> mkVantagePoints(Set<Tuple2<Long, Long>> orgUnitAndDataTypes) {
+        List<AuthoritativeRatingVantagePoint> vantagePoints = new ArrayList<>();
+
+        for (Tuple2<Long, Long> orgUnitAndDataType : orgUnitAndDataTypes) {
+            EntityReference vantagePoint = mkRef(EntityKind.ORG_UNIT, orgUnitAndDataType.v1);
+            Node<DataType, Long> impliedDataType = dataTypesById.get(orgUnitAndDataType.v2);
+
+            for (Node<OrganisationalUnit, Long> declaredOrgUnit : selfAndParents(orgUnitsById.get(orgUnitAndDataType.v1))) {
+                for (Node<DataType, Long> declaredDataType : selfAndParents(impliedDataType)) {
+                    Collection<AuthoritativeSource> authSources = authSourcesByOrgUnitAndDataType.get(tuple(
+                            declaredOrgUnit.getId(),
+                            declaredDataType.getId()));
+
+                    if (authSources == null) {
+                        continue;
+                    }
+
+                    for (AuthoritativeSource authSource : authSources) {
+                        vantagePoints.add(ImmutableAuthoritativeRatingVantagePoint.builder()
+                                .vantagePoint(vantagePoint)
+                                .vantagePointRank(orgUnitDepths.get(declaredOrgUnit.getId()))
+                                .dataType(mkRef(EntityKind.DATA_TYPE, declaredDataType.getId()))
+                                .dataTypeCode(impliedDataType.getData().code())
+                                .dataTypeRank(dataTypeDepths.get(declaredDataType.getId()))
+                                .applicationId(authSource.applicationReference().id())
+                                .rating(authSource.rating())
+                                .build());
+                    }
+                }
+            }
+        }
+
+        return vantagePoints;
+    }
+
+
+    private static Map<Tuple2<Long, Long>, Collection<AuthoritativeSource>> indexAuthSources(
+            Collection<AuthoritativeSource> authSources,
+            Map<String, Long> dataTypeIdsByCode) {
+        return groupBy(
+                authSource -> tuple(
+                        authSource.parentReference().id(),
+                        dataTypeIdsByCode.get(authSource.dataType())),
+                authSources
+                    .stream()
+                    .filter(authSource -> authSource.parentReference().kind() == EntityKind.ORG_UNIT)
+                    .filter(authSource -> dataTypeIdsByCode.containsKey(authSource.dataType()))
+                    .collect(toList()));
+    }
+
+
+    private static <T> List<Node<T, Long>> selfAndParents(Node<T, Long> node) {
+        List<Node<T, Long>> result = newArrayList(node);
+        result.addAll(HierarchyUtilities.parents(node));
+        return result;
+    }
+
+}
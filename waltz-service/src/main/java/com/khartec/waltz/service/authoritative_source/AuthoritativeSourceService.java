@@ -27,12 +27,15 @@ import com.khartec.waltz.data.data_type.DataTypeDao;
 import com.khartec.waltz.data.data_type.DataTypeIdSelectorFactory;
 import com.khartec.waltz.data.orgunit.OrganisationalUnitDao;
 import com.khartec.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
 import com.khartec.waltz.model.*;
 import com.khartec.waltz.model.application.Application;
 import com.khartec.waltz.model.authoritativesource.*;
 import com.khartec.waltz.model.changelog.ChangeLog;
 import com.khartec.waltz.model.changelog.ImmutableChangeLog;
 import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
 import com.khartec.waltz.model.orgunit.OrganisationalUnit;
 import com.khartec.waltz.model.rating.AuthoritativenessRating;
 import com.khartec.waltz.service.changelog.ChangeLogService;
@@ -44,6 +47,7 @@ import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
@@ -51,6 +55,8 @@ import java.util.List;
 import java.util.Map;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.MapUtilities.indexBy;
+import static com.khartec.waltz.common.StreamUtilities.batchProcessingCollector;
 import static com.khartec.waltz.model.EntityKind.ORG_UNIT;
 import static com.khartec.waltz.model.EntityReference.mkRef;
 import static com.khartec.waltz.schema.tables.AuthoritativeSource.AUTHORITATIVE_SOURCE;
@@ -70,10 +76,14 @@ public class AuthoritativeSourceService {
     private final AuthSourceRatingCalculator ratingCalculator;
     private final ChangeLogService changeLogService;
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final LogicalFlowDao logicalFlowDao;
     private final DataTypeIdSelectorFactory dataTypeIdSelectorFactory = new DataTypeIdSelectorFactory();
     private final ApplicationIdSelectorFactory applicationIdSelectorFactory = new ApplicationIdSelectorFactory();
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
 
+    @Value("${waltz.authoritative.source.rating.batchSize:1000}")
+    private int ratingUpdateBatchSize;
+
 
     @Autowired
     public AuthoritativeSourceService(AuthoritativeSourceDao authoritativeSourceDao,
@@ -82,7 +92,8 @@ public class AuthoritativeSourceService {
                                       ApplicationDao applicationDao,
                                       AuthSourceRatingCalculator ratingCalculator,
                                       ChangeLogService changeLogService,
-                                      LogicalFlowDecoratorDao logicalFlowDecoratorDao) {
+                                      LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                                      LogicalFlowDao logicalFlowDao) {
         checkNotNull(authoritativeSourceDao, "authoritativeSourceDao must not be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
         checkNotNull(organisationalUnitDao, "organisationalUnitDao cannot be null");
@@ -90,6 +101,7 @@ public class AuthoritativeSourceService {
         checkNotNull(ratingCalculator, "ratingCalculator cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
 
         this.authoritativeSourceDao = authoritativeSourceDao;
         this.dataTypeDao = dataTypeDao;
@@ -98,6 +110,7 @@ public class AuthoritativeSourceService {
         this.ratingCalculator = ratingCalculator;
         this.changeLogService = changeLogService;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.logicalFlowDao = logicalFlowDao;
     }
 
 
@@ -127,7 +140,7 @@ public class AuthoritativeSourceService {
                 .id()
                 .orElseThrow(() -> new IllegalArgumentException("cannot update an auth source without an id"));
         AuthoritativeSource updatedAuthSource = getById(authSourceId);
-        ratingCalculator.update(updatedAuthSource.dataType(), updatedAuthSource.parentReference());
+        ratingCalculator.updateAsync(updatedAuthSource.dataType(), updatedAuthSource.parentReference());
         logUpdate(command, username);
         return updateCount;
     }
@@ -135,7 +148,7 @@ public class AuthoritativeSourceService {
 
     public int insert(AuthoritativeSourceCreateCommand command, String username) {
         int insertedCount = authoritativeSourceDao.insert(command);
-        ratingCalculator.update(command.dataTypeId(), mkRef(ORG_UNIT, command.orgUnitId()));
+        ratingCalculator.updateAsync(command.dataTypeId(), mkRef(ORG_UNIT, command.orgUnitId()));
         logInsert(command, username);
         return insertedCount;
     }
@@ -146,7 +159,7 @@ public class AuthoritativeSourceService {
         logRemoval(id, username);
         AuthoritativeSource authSourceToDelete = getById(id);
         int deletedCount = authoritativeSourceDao.remove(id);
-        ratingCalculator.update(authSourceToDelete.dataType(), authSourceToDelete.parentReference());
+        ratingCalculator.updateAsync(authSourceToDelete.dataType(), authSourceToDelete.parentReference());
         return deletedCount;
     }
 
@@ -167,14 +180,51 @@ public class AuthoritativeSourceService {
     }
 
 
+    /**
+     * Recalculates the rating of every logical flow decorator in a single pass.
+     *
+     * Flows, decorators, applications, org units, data types and authoritative
+     * sources are each loaded once, ratings are resolved in memory (see
+     * {@link AuthSourceRatingEngine}) and only decorators whose rating has
+     * changed are written back, in batches.
+     */
     public boolean fastRecalculateAllFlowRatings() {
-        logicalFlowDecoratorDao.updateRatingsByCondition(AuthoritativenessRating.NO_OPINION, DSL.trueCondition());
-        List<AuthoritativeRatingVantagePoint> authoritativeRatingVantagePoints = authoritativeSourceDao.findAuthoritativeRatingVantagePoints();
-        authoritativeRatingVantagePoints.forEach(a -> {
-            LOG.info("Updating decorators for: {}", a);
-            int updateCount = logicalFlowDecoratorDao.updateDecoratorsForAuthSource(a);
-            LOG.info("Updated {} decorators for: {}", updateCount, a);
-        });
+        long st = System.currentTimeMillis();
+
+        AuthSourceRatingEngine engine = new AuthSourceRatingEngine(
+                organisationalUnitDao.findAll(),
+                dataTypeDao.findAll(),
+                authoritativeSourceDao.findAll());
+
+        Map<Long, Long> orgUnitIdsByAppId = indexBy(
+                app -> app.id().get(),
+                Application::organisationalUnitId,
+                applicationDao.findAll());
+
+        List<LogicalFlow> flows = logicalFlowDao.findAllNotRemoved();
+        List<DataTypeDecorator> decorators = logicalFlowDecoratorDao.findAll();
+        long loadedAt = System.currentTimeMillis();
+
+        List<DataTypeDecorator> changedDecorators = engine.calculateChanges(
+                flows,
+                decorators,
+                orgUnitIdsByAppId);
+        long calculatedAt = System.currentTimeMillis();
+
+        changedDecorators
+                .stream()
+                .collect(batchProcessingCollector(
+                        ratingUpdateBatchSize,
+                        batch -> logicalFlowDecoratorDao.updateRatings(batch)));
+
+        LOG.info(
+                "Recalculated ratings for {} decorators, {} changed. Load: {}ms, calculate: {}ms, write: {}ms",
+                decorators.size(),
+                changedDecorators.size(),
+                loadedAt - st,
+                calculatedAt - loadedAt,
+                System.currentTimeMillis() - calculatedAt);
+
         return true;
     }
 
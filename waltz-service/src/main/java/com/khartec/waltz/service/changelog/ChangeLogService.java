@@ -40,7 +40,6 @@ import com.khartec.waltz.model.measurable_rating_replacement.MeasurableRatingRep
 import com.khartec.waltz.model.physical_flow.PhysicalFlow;
 import com.khartec.waltz.model.physical_specification.PhysicalSpecification;
 import com.khartec.waltz.model.tally.DateTally;
-import org.jooq.lambda.Unchecked;
 import org.jooq.lambda.tuple.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -241,14 +240,10 @@ public class ChangeLogService {
             return changeLogDao.findByParentReference(mkRef(EntityKind.PHYSICAL_SPECIFICATION, flow.specificationId()), date, limit);
         });
 
-        return Unchecked.supplier(() -> {
-            List<ChangeLog> flowLogs = flowLogsFuture.get();
-            List<ChangeLog> specLogs = specLogsFuture.get();
-            List<ChangeLog> all = new ArrayList<>();
-            all.addAll(flowLogs);
-            all.addAll(specLogs);
-            return (List<ChangeLog>) CollectionUtilities.sort(all, Comparator.comparing(ChangeLog::createdAt).reversed());
-        }).get();
+        List<ChangeLog> all = new ArrayList<>();
+        all.addAll(dbExecutorPool.await(flowLogsFuture));
+        all.addAll(dbExecutorPool.await(specLogsFuture));
+        return (List<ChangeLog>) CollectionUtilities.sort(all, Comparator.comparing(ChangeLog::createdAt).reversed());
     }
 
 
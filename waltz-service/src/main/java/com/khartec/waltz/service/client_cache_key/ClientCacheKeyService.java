@@ -34,6 +34,9 @@ import static java.util.UUID.randomUUID;
 @Service
 public class ClientCacheKeyService {
 
+    public static final String TAXONOMY_KEY = "TAXONOMY";
+    public static final String REFERENCE_DATA_KEY = "REFERENCE_DATA";
+
     private final ClientCacheKeyDao clientCacheKeyDao;
 
 
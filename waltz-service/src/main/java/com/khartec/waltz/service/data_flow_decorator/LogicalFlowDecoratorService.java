@@ -40,7 +40,7 @@ import com.khartec.waltz.model.logical_flow.LogicalFlow;
 import com.khartec.waltz.model.rating.AuthoritativenessRating;
 import com.khartec.waltz.service.changelog.ChangeLogService;
 import com.khartec.waltz.service.logical_flow.LogicalFlowService;
-import com.khartec.waltz.service.usage_info.DataTypeUsageService;
+import com.khartec.waltz.service.usage_info.DataTypeUsageRecalculationQueue;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,7 +73,7 @@ public class LogicalFlowDecoratorService {
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
     private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
     private final ApplicationIdSelectorFactory applicationIdSelectorFactory = new ApplicationIdSelectorFactory();
-    private final DataTypeUsageService dataTypeUsageService;
+    private final DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue;
     private final DataTypeDao dataTypeDao;
     private final LogicalFlowDao logicalFlowDao;
     private final ChangeLogService changeLogService;
@@ -83,7 +83,7 @@ public class LogicalFlowDecoratorService {
     public LogicalFlowDecoratorService(LogicalFlowDecoratorSummaryDao logicalFlowDecoratorSummaryDao,
                                        LogicalFlowDecoratorDao logicalFlowDecoratorDao,
                                        LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
-                                       DataTypeUsageService dataTypeUsageService,
+                                       DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue,
                                        DataTypeDao dataTypeDao,
                                        LogicalFlowDao logicalFlowDao,
                                        LogicalFlowService logicalFlowService,
@@ -92,7 +92,7 @@ public class LogicalFlowDecoratorService {
 
         checkNotNull(logicalFlowDecoratorSummaryDao, "logicalFlowDecoratorDao cannot be null");
         checkNotNull(ratingsCalculator, "ratingsCalculator cannot be null");
-        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(dataTypeUsageRecalculationQueue, "dataTypeUsageRecalculationQueue cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
         checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
         checkNotNull(logicalFlowService, "logicalFlowService cannot be null");
@@ -101,7 +101,7 @@ public class LogicalFlowDecoratorService {
 
         this.logicalFlowDecoratorSummaryDao = logicalFlowDecoratorSummaryDao;
         this.ratingsCalculator = ratingsCalculator;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.dataTypeUsageRecalculationQueue = dataTypeUsageRecalculationQueue;
         this.dataTypeDao = dataTypeDao;
         this.logicalFlowDao = logicalFlowDao;
         this.changeLogService = changeLogService;
@@ -142,7 +142,7 @@ public class LogicalFlowDecoratorService {
                 .flatMap(f -> Stream.of(f.source(), f.target()))
                 .collect(Collectors.toList());
 
-        dataTypeUsageService.recalculateForApplications(effectedEntities);
+        dataTypeUsageRecalculationQueue.enqueue(effectedEntities);
         bulkAudit(actions, username, effectedFlows);
 
         return added;
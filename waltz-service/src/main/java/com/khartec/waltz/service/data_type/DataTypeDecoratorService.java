@@ -34,8 +34,9 @@ import com.khartec.waltz.model.rating.AuthoritativenessRating;
 import com.khartec.waltz.service.changelog.ChangeLogService;
 import com.khartec.waltz.service.data_flow_decorator.LogicalFlowDecoratorRatingsCalculator;
 import com.khartec.waltz.service.data_flow_decorator.LogicalFlowDecoratorService;
+import com.khartec.waltz.service.flow_graph.FlowGraphService;
 import com.khartec.waltz.service.physical_flow.PhysicalFlowService;
-import com.khartec.waltz.service.usage_info.DataTypeUsageService;
+import com.khartec.waltz.service.usage_info.DataTypeUsageRecalculationQueue;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.impl.DSL;
@@ -62,8 +63,9 @@ public class DataTypeDecoratorService {
     private final DataTypeDecoratorDaoSelectorFactory dataTypeDecoratorDaoSelectorFactory;
     private final LogicalFlowDao logicalFlowDao;
     private final LogicalFlowDecoratorRatingsCalculator ratingsCalculator;
-    private final DataTypeUsageService dataTypeUsageService;
+    private final DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue;
     private final DataTypeService dataTypeService;
+    private final FlowGraphService flowGraphService;
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final PhysicalSpecificationDao physicalSpecificationDao;
 
@@ -75,19 +77,22 @@ public class DataTypeDecoratorService {
                                     DataTypeDecoratorDaoSelectorFactory dataTypeDecoratorDaoSelectorFactory,
                                     LogicalFlowDao logicalFlowDao,
                                     LogicalFlowDecoratorRatingsCalculator ratingsCalculator,
-                                    DataTypeUsageService dataTypeUsageService,
+                                    DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue,
                                     DataTypeService dataTypeService,
+                                    FlowGraphService flowGraphService,
                                     PhysicalSpecificationDao physicalSpecificationDao) {
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(logicalFlowDecoratorService, "logicalFlowDecoratorService cannot be null");
         checkNotNull(physicalFlowService, "physicalFlowService cannot be null");
+        checkNotNull(flowGraphService, "flowGraphService cannot be null");
 
         this.changeLogService = changeLogService;
         this.physicalFlowService = physicalFlowService;
         this.logicalFlowDao = logicalFlowDao;
         this.ratingsCalculator = ratingsCalculator;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.dataTypeUsageRecalculationQueue = dataTypeUsageRecalculationQueue;
         this.dataTypeService = dataTypeService;
+        this.flowGraphService = flowGraphService;
         this.dataTypeDecoratorDaoSelectorFactory = dataTypeDecoratorDaoSelectorFactory;
         this.physicalSpecificationDao = physicalSpecificationDao;
     }
@@ -110,6 +115,7 @@ public class DataTypeDecoratorService {
         }
 
         auditEntityDataTypeChanges(userName, entityReference, currentDataTypeNames);
+        flowGraphService.invalidate();
         return true;
     }
 
@@ -201,7 +207,7 @@ public class DataTypeDecoratorService {
     private void recalculateDataTypeUsageForApplications(EntityReference associatedEntityReference) {
         if(LOGICAL_DATA_FLOW.equals(associatedEntityReference.kind())) {
             LogicalFlow flow = logicalFlowDao.getByFlowId(associatedEntityReference.id());
-            dataTypeUsageService.recalculateForApplications(newArrayList(flow.source(), flow.target()));
+            dataTypeUsageRecalculationQueue.enqueue(newArrayList(flow.source(), flow.target()));
         }
     }
 
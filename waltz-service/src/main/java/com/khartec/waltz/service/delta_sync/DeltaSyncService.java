@@ -0,0 +1,320 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.delta_sync;
+
+import com.khartec.waltz.data.application.ApplicationDao;
+import com.khartec.waltz.data.changelog.ChangeLogDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.data.measurable_rating.MeasurableRatingDao;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityLifecycleStatus;
+import com.khartec.waltz.model.EntityLifecycleStatusProvider;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.Operation;
+import com.khartec.waltz.model.WaltzEntity;
+import com.khartec.waltz.model.application.Application;
+import com.khartec.waltz.model.delta_sync.DeltaSyncPage;
+import com.khartec.waltz.model.delta_sync.ImmutableDeltaSyncPage;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.measurable_rating.MeasurableRating;
+import org.jooq.lambda.tuple.Tuple2;
+import org.jooq.lambda.tuple.Tuple4;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.ListUtilities.map;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.common.StringUtilities.isEmpty;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Provides the changes made to applications, logical flows and
+ * measurable ratings since a given time, so that clients can keep a copy
+ * up to date without re-reading everything.
+ *
+ * Changes are found via the last updated timestamps of each table and
+ * are read in pages using keyset pagination (the key of the last row
+ * returned is encoded in the page token).  Measurable ratings are deleted
+ * rather than flagged as removed, so their removals are found via the
+ * change log.
+ *
+ * The returned high-water mark trails the current time by a small
+ * overlap so that rows committed slightly out of timestamp order are
+ * picked up by the following sync rather than being missed.
+ */
+@Service
+public class DeltaSyncService {
+
+    private static final String TOKEN_SEPARATOR = "|";
+
+    private final ApplicationDao applicationDao;
+    private final ChangeLogDao changeLogDao;
+    private final LogicalFlowDao logicalFlowDao;
+    private final MeasurableRatingDao measurableRatingDao;
+
+    @Value("${waltz.delta.sync.maxPageSize:5000}")
+    private int maxPageSize;
+
+    @Value("${waltz.delta.sync.overlapSeconds:60}")
+    private long overlapSeconds;
+
+
+    @Autowired
+    public DeltaSyncService(ApplicationDao applicationDao,
+                            ChangeLogDao changeLogDao,
+                            LogicalFlowDao logicalFlowDao,
+                            MeasurableRatingDao measurableRatingDao) {
+        checkNotNull(applicationDao, "applicationDao cannot be null");
+        checkNotNull(changeLogDao, "changeLogDao cannot be null");
+        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
+        checkNotNull(measurableRatingDao, "measurableRatingDao cannot be null");
+
+        this.applicationDao = applicationDao;
+        this.changeLogDao = changeLogDao;
+        this.logicalFlowDao = logicalFlowDao;
+        this.measurableRatingDao = measurableRatingDao;
+    }
+
+
+    public DeltaSyncPage<Application> findApplicationChanges(LocalDateTime since,
+                                                             Optional<String> pageToken,
+                                                             Optional<Integer> limit) {
+        checkNotNull(since, "since cannot be null");
+        int pageSize = determinePageSize(limit);
+
+        Optional<Tuple2<Timestamp, Long>> after = pageToken
+                .map(token -> decodeToken(token, 2))
+                .map(parts -> tuple(Timestamp.valueOf(parts[0]), Long.valueOf(parts[1])));
+
+        List<Tuple2<Timestamp, Application>> rows = applicationDao.findChangedSince(
+                Timestamp.valueOf(since),
+                after,
+                pageSize + 1);
+
+        List<Tuple2<Timestamp, Application>> page = limitTo(rows, pageSize);
+
+        Optional<String> nextPageToken = rows.size() > pageSize
+                ? Optional.of(encodeToken(
+                        last(page).v1,
+                        last(page).v2.id().get()))
+                : Optional.empty();
+
+        return mkPage(
+                EntityKind.APPLICATION,
+                map(page, t -> t.v2),
+                since,
+                page.isEmpty() ? Optional.empty() : Optional.of(last(page).v1.toLocalDateTime()),
+                nextPageToken);
+    }
+
+
+    public DeltaSyncPage<LogicalFlow> findLogicalFlowChanges(LocalDateTime since,
+                                                             Optional<String> pageToken,
+                                                             Optional<Integer> limit) {
+        checkNotNull(since, "since cannot be null");
+        int pageSize = determinePageSize(limit);
+
+        Optional<Tuple2<Timestamp, Long>> after = pageToken
+                .map(token -> decodeToken(token, 2))
+                .map(parts -> tuple(Timestamp.valueOf(parts[0]), Long.valueOf(parts[1])));
+
+        List<LogicalFlow> rows = logicalFlowDao.findChangedSince(
+                Timestamp.valueOf(since),
+                after,
+                pageSize + 1);
+
+        List<LogicalFlow> flows = limitTo(rows, pageSize);
+
+        Optional<String> nextPageToken = rows.size() > pageSize
+                ? Optional.of(encodeToken(
+                        Timestamp.valueOf(last(flows).lastUpdatedAt()),
+                        last(flows).id().get()))
+                : Optional.empty();
+
+        return mkPage(
+                EntityKind.LOGICAL_DATA_FLOW,
+                flows,
+                since,
+                flows.isEmpty() ? Optional.empty() : Optional.of(last(flows).lastUpdatedAt()),
+                nextPageToken);
+    }
+
+
+    public DeltaSyncPage<MeasurableRating> findMeasurableRatingChanges(LocalDateTime since,
+                                                                       Optional<String> pageToken,
+                                                                       Optional<Integer> limit) {
+        checkNotNull(since, "since cannot be null");
+        int pageSize = determinePageSize(limit);
+
+        Optional<Tuple4<Timestamp, String, Long, Long>> after = pageToken
+                .map(token -> decodeToken(token, 4))
+                .map(parts -> tuple(
+                        Timestamp.valueOf(parts[0]),
+                        parts[1],
+                        Long.valueOf(parts[2]),
+                        Long.valueOf(parts[3])));
+
+        List<MeasurableRating> rows = measurableRatingDao.findChangedSince(
+                Timestamp.valueOf(since),
+                after,
+                pageSize + 1);
+
+        List<MeasurableRating> ratings = limitTo(rows, pageSize);
+
+        Optional<String> nextPageToken = rows.size() > pageSize
+                ? Optional.of(encodeToken(
+                        Timestamp.valueOf(last(ratings).lastUpdatedAt()),
+                        last(ratings).entityReference().kind().name(),
+                        last(ratings).entityReference().id(),
+                        last(ratings).measurableId()))
+                : Optional.empty();
+
+        // removals are not paged, they are only reported with the first page
+        Set<EntityReference> entitiesWithRemovals = pageToken.isPresent()
+                ? Collections.emptySet()
+                : changeLogDao.findParentsWithChildOperationSince(
+                        EntityKind.MEASURABLE,
+                        Operation.REMOVE,
+                        Timestamp.valueOf(since),
+                        asSet(EntityKind.MEASURABLE, EntityKind.MEASURABLE_CATEGORY));
+
+        return ImmutableDeltaSyncPage.<MeasurableRating>builder()
+                .kind(EntityKind.MEASURABLE_RATING)
+                .changed(ratings)
+                .removed(entitiesWithRemovals)
+                .highWaterMark(determineHighWaterMark(
+                        since,
+                        ratings.isEmpty() ? Optional.empty() : Optional.of(last(ratings).lastUpdatedAt())))
+                .nextPageToken(nextPageToken)
+                .build();
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * Splits entities into those which are still present and references
+     * to those which have been removed.
+     */
+    private <T extends WaltzEntity & EntityLifecycleStatusProvider> DeltaSyncPage<T> mkPage(EntityKind kind,
+                                                                                           List<T> entities,
+                                                                                           LocalDateTime since,
+                                                                                           Optional<LocalDateTime> latest,
+                                                                                           Optional<String> nextPageToken) {
+        List<T> changed = new ArrayList<>();
+        Set<EntityReference> removed = new HashSet<>();
+
+        for (T entity : entities) {
+            if (entity.entityLifecycleStatus() == EntityLifecycleStatus.REMOVED) {
+                removed.add(entity.entityReference());
+            } else {
+                changed.add(entity);
+            }
+        }
+
+        return ImmutableDeltaSyncPage.<T>builder()
+                .kind(kind)
+                .changed(changed)
+                .removed(removed)
+                .highWaterMark(determineHighWaterMark(since, latest))
+                .nextPageToken(nextPageToken)
+                .build();
+    }
+
+
+    private LocalDateTime determineHighWaterMark(LocalDateTime since,
+                                                 Optional<LocalDateTime> latest) {
+        return determineHighWaterMark(since, latest, nowUtc().minusSeconds(overlapSeconds));
+    }
+
+
+    /**
+     * The latest change seen, unless that is after <code>safeLimit</code>
+     * (rows may still be committing) in which case <code>safeLimit</code>.
+     * Never earlier than <code>since</code>.
+     */
+    static LocalDateTime determineHighWaterMark(LocalDateTime since,
+                                                Optional<LocalDateTime> latest,
+                                                LocalDateTime safeLimit) {
+        LocalDateTime mark = latest
+                .filter(l -> l.isBefore(safeLimit))
+                .orElse(safeLimit);
+        return mark.isAfter(since) ? mark : since;
+    }
+
+
+    private int determinePageSize(Optional<Integer> limit) {
+        int pageSize = limit.orElse(maxPageSize);
+        checkTrue(pageSize > 0, "limit must be greater than zero");
+        return Math.min(pageSize, maxPageSize);
+    }
+
+
+    private static <T> List<T> limitTo(List<T> rows, int pageSize) {
+        return rows.size() > pageSize
+                ? rows.subList(0, pageSize)
+                : rows;
+    }
+
+
+    private static <T> T last(List<T> xs) {
+        return xs.get(xs.size() - 1);
+    }
+
+
+    static String encodeToken(Object... parts) {
+        StringJoiner joiner = new StringJoiner(TOKEN_SEPARATOR);
+        for (Object part : parts) {
+            joiner.add(part.toString());
+        }
+        return Base64
+                .getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    static String[] decodeToken(String token, int expectedParts) {
+        checkTrue(! isEmpty(token), "page token cannot be empty");
+
+        String[] parts;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            parts = decoded.split(Pattern.quote(TOKEN_SEPARATOR));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+
+        checkTrue(parts.length == expectedParts, "Invalid page token: %s", token);
+        return parts;
+    }
+
+}
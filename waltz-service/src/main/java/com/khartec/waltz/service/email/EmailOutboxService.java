@@ -0,0 +1,340 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.email;
+
+import com.khartec.waltz.data.email.EmailOutboxDao;
+import com.khartec.waltz.model.email.EmailMessage;
+import com.khartec.waltz.model.email.EmailOutboxStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.StreamUtilities.batchProcessingCollector;
+
+
+/**
+ * Durable outbox for notification emails.
+ *
+ * Messages are written to the <code>email_outbox</code> table by {@link #enqueue}
+ * and sent in the background by a small pool of workers, subject to a rate limit.
+ * Failed sends are retried with exponential backoff and, after
+ * <code>maxAttempts</code>, moved to DEAD where they can be inspected and
+ * requeued via JMX.
+ */
+@Service
+@ManagedResource(description = "Outbox for Waltz notification emails")
+public class EmailOutboxService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private final EmailOutboxDao emailOutboxDao;
+    private final WaltzEmailer waltzEmailer;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong deadLetterCount = new AtomicLong(0);
+    private volatile String lastError = null;
+    private long nextPermitNanos = 0;
+
+    private ExecutorService dispatcher = null;
+    private ExecutorService senders = null;
+
+    @Value("${waltz.email.batchSize:50}")
+    private int recipientsPerMessage;
+
+    @Value("${waltz.email.outbox.concurrency:2}")
+    private int concurrency;
+
+    @Value("${waltz.email.outbox.claimSize:20}")
+    private int claimSize;
+
+    @Value("${waltz.email.outbox.maxPerMinute:60}")
+    private int maxPerMinute;
+
+    @Value("${waltz.email.outbox.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Value("${waltz.email.outbox.retryBackoffSeconds:60}")
+    private long retryBackoffSeconds;
+
+    @Value("${waltz.email.outbox.maxBackoffSeconds:3600}")
+    private long maxBackoffSeconds;
+
+    @Value("${waltz.email.outbox.staleMinutes:15}")
+    private long staleMinutes;
+
+    @Value("${waltz.email.outbox.retainSentDays:30}")
+    private long retainSentDays;
+
+
+    @Autowired
+    public EmailOutboxService(EmailOutboxDao emailOutboxDao,
+                              WaltzEmailer waltzEmailer) {
+        checkNotNull(emailOutboxDao, "emailOutboxDao cannot be null");
+        checkNotNull(waltzEmailer, "waltzEmailer cannot be null");
+
+        this.emailOutboxDao = emailOutboxDao;
+        this.waltzEmailer = waltzEmailer;
+    }
+
+
+    EmailOutboxService(EmailOutboxDao emailOutboxDao,
+                       WaltzEmailer waltzEmailer,
+                       int maxAttempts,
+                       long retryBackoffSeconds,
+                       long maxBackoffSeconds) {
+        this(emailOutboxDao, waltzEmailer);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffSeconds = retryBackoffSeconds;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+    }
+
+
+    /**
+     * Queues an email for the given recipients.  Recipients are split into
+     * messages of at most <code>waltz.email.batchSize</code> addresses.
+     * @return number of messages queued
+     */
+    public int enqueue(String subject, String body, Collection<String> recipients) {
+        checkNotNull(recipients, "recipients cannot be null");
+
+        List<List<String>> recipientBatches = new ArrayList<>();
+        recipients
+                .stream()
+                .distinct()
+                .collect(batchProcessingCollector(recipientsPerMessage, batch -> {
+                    if (! batch.isEmpty()) recipientBatches.add(new ArrayList<>(batch));
+                }));
+
+        int count = emailOutboxDao.enqueue(subject, body, recipientBatches);
+        LOG.info("Queued email: {}, for {} recipients in {} messages", subject, recipients.size(), count);
+        return count;
+    }
+
+
+    /**
+     * Triggers a drain of the outbox unless one is already in progress.
+     * The drain itself runs on a dedicated thread so the (shared) scheduler
+     * thread is never held up by a slow mail server.
+     */
+    @Scheduled(fixedDelayString = "${waltz.email.outbox.pollMillis:5000}")
+    public void poll() {
+        if (draining.compareAndSet(false, true)) {
+            getDispatcher().submit(() -> {
+                try {
+                    drain();
+                } catch (Exception e) {
+                    LOG.error("Failed to drain email outbox", e);
+                } finally {
+                    draining.set(false);
+                }
+            });
+        }
+    }
+
+
+    @Scheduled(fixedRate = 3_600_000)
+    public void housekeep() {
+        int released = emailOutboxDao.releaseStale(nowUtc().minusMinutes(staleMinutes));
+        int removed = emailOutboxDao.deleteSentBefore(nowUtc().minusDays(retainSentDays));
+        if (released > 0 || removed > 0) {
+            LOG.info("Email outbox housekeeping, released {} stale messages, removed {} sent messages", released, removed);
+        }
+    }
+
+
+    @ManagedOperation(description = "Move all DEAD messages back to PENDING")
+    public int requeueDead() {
+        int count = emailOutboxDao.requeueDead();
+        LOG.warn("Requeued {} dead email messages (via jmx)", count);
+        return count;
+    }
+
+
+    @ManagedAttribute(description = "Messages sent since startup")
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Failed sends which will be retried, since startup")
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Messages moved to DEAD since startup")
+    public long getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Most recent send failure")
+    public String getLastError() {
+        return lastError;
+    }
+
+
+    @ManagedAttribute(description = "Messages in the outbox by status")
+    public String[] getStatusCounts() {
+        Map<EmailOutboxStatus, Integer> counts = emailOutboxDao.countByStatus();
+        return counts
+                .entrySet()
+                .stream()
+                .map(e -> e.getKey() + ": " + e.getValue())
+                .toArray(String[]::new);
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * Sends everything currently due, returning once the outbox has no more
+     * due messages.
+     */
+    void drain() throws InterruptedException {
+        List<EmailMessage> claimed = emailOutboxDao.claimDue(claimSize);
+        while (! claimed.isEmpty()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (EmailMessage message : claimed) {
+                futures.add(getSenders().submit(() -> send(message)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Unexpected error whilst sending email", e.getCause());
+                }
+            }
+            claimed = emailOutboxDao.claimDue(claimSize);
+        }
+    }
+
+
+    private void send(EmailMessage message) {
+        long id = message.id().get();
+        try {
+            awaitPermit();
+            waltzEmailer.sendEmail(
+                    message.subject(),
+                    message.body(),
+                    message.recipients().toArray(new String[0]));
+            emailOutboxDao.markSent(id);
+            sentCount.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emailOutboxDao.markForRetry(id, "Interrupted", nowUtc());
+        } catch (Exception e) {
+            int attempts = message.attempts() + 1;
+            lastError = "Message: " + id + ", " + e.getMessage();
+            if (attempts >= maxAttempts) {
+                LOG.error("Failed to send email message: {} after {} attempts, moving to DEAD", id, attempts, e);
+                emailOutboxDao.markDead(id, e.getMessage());
+                deadLetterCount.incrementAndGet();
+            } else {
+                Duration backoff = calcBackoff(attempts, retryBackoffSeconds, maxBackoffSeconds);
+                LOG.warn("Failed to send email message: {} (attempt {}), will retry in {}s: {}", id, attempts, backoff.getSeconds(), e.getMessage());
+                emailOutboxDao.markForRetry(id, e.getMessage(), nowUtc().plus(backoff));
+                retryCount.incrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * Spaces sends evenly so that no more than <code>maxPerMinute</code>
+     * messages are sent per minute across all workers.
+     */
+    private void awaitPermit() throws InterruptedException {
+        if (maxPerMinute <= 0) {
+            return; // unlimited
+        }
+
+        long intervalNanos = TimeUnit.MINUTES.toNanos(1) / maxPerMinute;
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permitAt = Math.max(now, nextPermitNanos);
+            nextPermitNanos = permitAt + intervalNanos;
+            waitNanos = permitAt - now;
+        }
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+
+    static Duration calcBackoff(int attempts, long baseSeconds, long maxSeconds) {
+        int exponent = Math.max(0, Math.min(attempts - 1, 30));
+        long seconds = baseSeconds * (1L << exponent);
+        return Duration.ofSeconds(Math.min(seconds, maxSeconds));
+    }
+
+
+    private synchronized ExecutorService getDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = Executors.newSingleThreadExecutor(
+                    (runnable) -> {
+                        Thread t = new Thread(runnable, "Email Outbox");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+        return dispatcher;
+    }
+
+
+    private synchronized ExecutorService getSenders() {
+        if (senders == null) {
+            senders = Executors.newFixedThreadPool(
+                    Math.max(1, concurrency),
+                    (runnable) -> {
+                        Thread t = new Thread(runnable, "Email Outbox Sender");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+        return senders;
+    }
+
+}
@@ -47,7 +47,6 @@ import java.util.concurrent.Future;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static java.util.stream.Collectors.toList;
-import static org.jooq.lambda.Unchecked.supplier;
 
 @Service
 public class EntitySearchService {
@@ -131,7 +130,7 @@ public class EntitySearchService {
 
         return futures
                 .stream()
-                .flatMap(f -> supplier(f::get).get().stream())
+                .flatMap(f -> dbExecutorPool.await(f).stream())
                 .map(WaltzEntity::entityReference)
                 .collect(toList());
     }
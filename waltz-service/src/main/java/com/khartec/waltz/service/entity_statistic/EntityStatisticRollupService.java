@@ -0,0 +1,203 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.entity_statistic;
+
+import com.khartec.waltz.data.entity_statistic.EntityStatisticRollupDao;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityLifecycleStatus;
+import com.khartec.waltz.model.HierarchyQueryScope;
+import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.entity_statistic.RollupKind;
+import com.khartec.waltz.model.tally.TallyPack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+
+
+/**
+ * Keeps the pre-aggregated entity statistic rollup up to date and answers
+ * summary requests from it where possible.
+ *
+ * Statistic values are loaded into Waltz externally, so the rollup is
+ * refreshed by periodically looking for statistics whose current values have
+ * changed and rebuilding only those.  A full rebuild (needed when apps move
+ * between org units or change lifecycle status) is available as the
+ * `ENTITY_STATISTIC_ROLLUP_REBUILD` scheduled job.
+ *
+ * Configuration:
+ * <ul>
+ *     <li>`waltz.entity.statistic.rollup.enabled` - read summaries from the rollup (default: true)</li>
+ *     <li>`waltz.entity.statistic.rollup.refreshMillis` - delay between checks for newly loaded values (default: 300000)</li>
+ * </ul>
+ */
+@Service
+public class EntityStatisticRollupService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityStatisticRollupService.class);
+
+    private final EntityStatisticRollupDao rollupDao;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private ExecutorService executor;
+
+    @Value("${waltz.entity.statistic.rollup.enabled:true}")
+    private boolean enabled;
+
+
+    @Autowired
+    public EntityStatisticRollupService(EntityStatisticRollupDao rollupDao) {
+        checkNotNull(rollupDao, "rollupDao cannot be null");
+        this.rollupDao = rollupDao;
+    }
+
+
+    EntityStatisticRollupService(EntityStatisticRollupDao rollupDao,
+                                 boolean enabled) {
+        this(rollupDao);
+        this.enabled = enabled;
+    }
+
+
+    /**
+     * The rollup holds tallies for active applications beneath each org unit,
+     * any other selection must be calculated live.
+     *
+     * @param options  selection options of a summary request
+     * @return true if the rollup can answer requests for these options
+     */
+    public boolean canUseRollup(IdSelectionOptions options) {
+        return enabled
+                && options.entityReference().kind() == EntityKind.ORG_UNIT
+                && options.scope() == HierarchyQueryScope.CHILDREN
+                && options.entityLifecycleStatuses().equals(asSet(EntityLifecycleStatus.ACTIVE))
+                && options.filters().omitApplicationKinds().isEmpty();
+    }
+
+
+    /**
+     * @param statisticIds  candidate statistics
+     * @return those statistics which have been rolled up
+     */
+    public Set<Long> findRolledUpStatisticIds(Collection<Long> statisticIds) {
+        return rollupDao.findRolledUpStatisticIds(statisticIds);
+    }
+
+
+    public List<TallyPack<String>> findTallies(Collection<Long> statisticIds,
+                                               RollupKind rollupKind,
+                                               long orgUnitId) {
+        return rollupDao.findTallies(statisticIds, rollupKind, orgUnitId);
+    }
+
+
+    /**
+     * Rebuilds the rollup for the given statistics, for use by loaders
+     * which want their values reflected immediately.
+     *
+     * @param statisticIds  statistics whose values have changed
+     * @return number of rollup rows written
+     */
+    public int refresh(Collection<Long> statisticIds) {
+        checkNotNull(statisticIds, "statisticIds cannot be null");
+        return rollupDao.refresh(statisticIds);
+    }
+
+
+    /**
+     * Rebuilds the rollup for every statistic.
+     * @return number of rollup rows written
+     */
+    public int rebuild() {
+        long st = System.currentTimeMillis();
+        Set<Long> statisticIds = rollupDao.findRollupStatisticIds();
+        int rowCount = refreshEach(statisticIds);
+        LOG.info("Rebuilt rollup for {} statistics ({} rows) in {}ms",
+                statisticIds.size(),
+                rowCount,
+                System.currentTimeMillis() - st);
+        return rowCount;
+    }
+
+
+    @Scheduled(fixedDelayString = "${waltz.entity.statistic.rollup.refreshMillis:300000}")
+    public void refreshStale() {
+        if (! enabled || ! refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        getExecutor().submit(() -> {
+            try {
+                Set<Long> staleIds = rollupDao.findStaleStatisticIds();
+                if (! staleIds.isEmpty()) {
+                    long st = System.currentTimeMillis();
+                    int rowCount = refreshEach(staleIds);
+                    LOG.info("Refreshed rollup for {} changed statistics ({} rows) in {}ms",
+                            staleIds.size(),
+                            rowCount,
+                            System.currentTimeMillis() - st);
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to refresh entity statistic rollup", e);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * Each statistic is refreshed in its own transaction to keep
+     * transactions (and locks on the rollup table) short.
+     */
+    private int refreshEach(Collection<Long> statisticIds) {
+        return statisticIds
+                .stream()
+                .mapToInt(statisticId -> rollupDao.refresh(asSet(statisticId)))
+                .sum();
+    }
+
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread t = new Thread(runnable, "Entity Statistic Rollup");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+}
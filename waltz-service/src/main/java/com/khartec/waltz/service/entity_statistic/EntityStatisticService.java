@@ -22,6 +22,7 @@ import com.khartec.waltz.common.Checks;
 import com.khartec.waltz.data.application.ApplicationIdSelectorFactory;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticDao;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticDefinitionDao;
+import com.khartec.waltz.data.entity_statistic.EntityStatisticRollupDao;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticSummaryDao;
 import com.khartec.waltz.data.entity_statistic.EntityStatisticValueDao;
 import com.khartec.waltz.model.Duration;
@@ -43,11 +44,14 @@ import org.springframework.stereotype.Service;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static com.khartec.waltz.common.ListUtilities.concat;
 import static com.khartec.waltz.common.MapUtilities.groupBy;
+import static com.khartec.waltz.common.SetUtilities.*;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 
 @Service
 public class EntityStatisticService {
@@ -57,23 +61,27 @@ public class EntityStatisticService {
     private final EntityStatisticDefinitionDao definitionDao;
     private final EntityStatisticSummaryDao summaryDao;
     private final EntityStatisticDao statisticDao;
+    private final EntityStatisticRollupService rollupService;
 
 
     @Autowired
     public EntityStatisticService(EntityStatisticValueDao valueDao,
                                   EntityStatisticDefinitionDao definitionDao,
                                   EntityStatisticSummaryDao summaryDao,
-                                  EntityStatisticDao statisticDao)
+                                  EntityStatisticDao statisticDao,
+                                  EntityStatisticRollupService rollupService)
     {
         checkNotNull(valueDao, "valueDao cannot be null");
         checkNotNull(definitionDao, "definitionDao cannot be null");
         checkNotNull(summaryDao, "summaryDao cannot be null");
         checkNotNull(statisticDao, "statisticDao cannot be null");
+        checkNotNull(rollupService, "rollupService cannot be null");
 
         this.valueDao = valueDao;
         this.definitionDao = definitionDao;
         this.summaryDao = summaryDao;
         this.statisticDao = statisticDao;
+        this.rollupService = rollupService;
 
     }
 
@@ -115,16 +123,29 @@ public class EntityStatisticService {
                 d -> d.id().orElse(null),
                 definitionDao.findByIds(statisticIds));
 
+        Set<Long> countIds = fromCollection(definitionIdsByRollupKind.getOrDefault(RollupKind.COUNT_BY_ENTITY, emptyList()));
+        Set<Long> sumIds = fromCollection(definitionIdsByRollupKind.getOrDefault(RollupKind.SUM_BY_VALUE, emptyList()));
+        Set<Long> avgIds = fromCollection(definitionIdsByRollupKind.getOrDefault(RollupKind.AVG_BY_VALUE, emptyList()));
+
+        // statistics for plain org unit selections are read from the rollup, the rest are calculated live
+        Set<Long> rolledUpIds = rollupService.canUseRollup(options)
+                ? rollupService.findRolledUpStatisticIds(union(countIds, sumIds, avgIds))
+                : emptySet();
+
+        long orgUnitId = options.entityReference().id();
 
         return concat(
+                rollupService.findTallies(intersection(countIds, rolledUpIds), RollupKind.COUNT_BY_ENTITY, orgUnitId),
+                rollupService.findTallies(intersection(sumIds, rolledUpIds), RollupKind.SUM_BY_VALUE, orgUnitId),
+                rollupService.findTallies(intersection(avgIds, rolledUpIds), RollupKind.AVG_BY_VALUE, orgUnitId),
                 summaryDao.generateWithCountByEntity(
-                        definitionIdsByRollupKind.getOrDefault(RollupKind.COUNT_BY_ENTITY, emptyList()),
+                        minus(countIds, rolledUpIds),
                         appIdSelector),
                 summaryDao.generateWithSumByValue(
-                        definitionIdsByRollupKind.getOrDefault(RollupKind.SUM_BY_VALUE, emptyList()),
+                        minus(sumIds, rolledUpIds),
                         appIdSelector),
                 summaryDao.generateWithAvgByValue(
-                        definitionIdsByRollupKind.getOrDefault(RollupKind.AVG_BY_VALUE, emptyList()),
+                        minus(avgIds, rolledUpIds),
                         appIdSelector),
                 summaryDao.generateWithNoRollup(
                         definitionIdsByRollupKind.getOrDefault(RollupKind.NONE, emptyList()),
@@ -139,6 +160,12 @@ public class EntityStatisticService {
         Checks.checkNotNull(options, "options cannot be null");
         Checks.checkNotNull(rollupKind, "rollupKind cannot be null");
 
+        if (canUseRollup(statisticId, rollupKind, options)) {
+            return rollupService
+                    .findTallies(asSet(statisticId), rollupKind, options.entityReference().id())
+                    .get(0);
+        }
+
         Select<Record1<Long>> appIdSelector = factory.apply(options);
 
         switch(rollupKind) {
@@ -190,4 +217,14 @@ public class EntityStatisticService {
     public List<EntityStatisticDefinition> findAllActiveDefinitions(boolean rollupOnly) {
         return definitionDao.findAllActiveDefinitions(rollupOnly);
     }
+
+
+    // -- HELPERS ---
+
+    private boolean canUseRollup(Long statisticId, RollupKind rollupKind, IdSelectionOptions options) {
+        return EntityStatisticRollupDao.SUPPORTED_ROLLUP_KINDS.contains(rollupKind)
+                && rollupService.canUseRollup(options)
+                && ! rollupService.findRolledUpStatisticIds(asSet(statisticId)).isEmpty();
+    }
+
 }
@@ -0,0 +1,197 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.flow_diagram;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.flow_diagram.FlowDiagramAnnotation;
+import com.khartec.waltz.model.flow_diagram.FlowDiagramEntity;
+import com.khartec.waltz.model.flow_diagram.ImmutableFlowDiagramAnnotation;
+import com.khartec.waltz.model.flow_diagram.ImmutableFlowDiagramEntity;
+
+import java.util.*;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+
+
+/**
+ * The differences between the stored entities/annotations of a diagram and
+ * those in a save command.  Used so a save only writes what has changed.
+ *
+ * Entities are matched on kind and id, annotations on annotation id.
+ * Measurable and change initiative entities are explicitly linked to
+ * diagrams (rather than being part of the picture) so are never removed.
+ */
+public class FlowDiagramChanges {
+
+    private static final Set<EntityKind> RETAINED_KINDS = asSet(
+            EntityKind.MEASURABLE,
+            EntityKind.CHANGE_INITIATIVE);
+
+    private final List<FlowDiagramEntity> entitiesToAdd = new ArrayList<>();
+    private final List<FlowDiagramEntity> entitiesToUpdate = new ArrayList<>();
+    private final List<EntityReference> entitiesToRemove = new ArrayList<>();
+    private final List<FlowDiagramAnnotation> annotationsToAdd = new ArrayList<>();
+    private final List<FlowDiagramAnnotation> annotationsToUpdate = new ArrayList<>();
+    private final List<String> annotationsToRemove = new ArrayList<>();
+
+
+    private FlowDiagramChanges() {
+    }
+
+
+    public static FlowDiagramChanges determineChanges(long diagramId,
+                                                      Collection<FlowDiagramEntity> existingEntities,
+                                                      Collection<FlowDiagramEntity> desiredEntities,
+                                                      Collection<FlowDiagramAnnotation> existingAnnotations,
+                                                      Collection<FlowDiagramAnnotation> desiredAnnotations) {
+        checkNotNull(existingEntities, "existingEntities cannot be null");
+        checkNotNull(desiredEntities, "desiredEntities cannot be null");
+        checkNotNull(existingAnnotations, "existingAnnotations cannot be null");
+        checkNotNull(desiredAnnotations, "desiredAnnotations cannot be null");
+
+        FlowDiagramChanges changes = new FlowDiagramChanges();
+
+        Map<EntityReference, FlowDiagramEntity> existingByRef = new HashMap<>();
+        existingEntities.forEach(e -> existingByRef.put(toKey(e.entityReference()), e));
+
+        Map<EntityReference, FlowDiagramEntity> desiredByRef = new LinkedHashMap<>();
+        desiredEntities.forEach(e -> desiredByRef.put(toKey(e.entityReference()), e));
+
+        desiredByRef.forEach((ref, desired) -> {
+            FlowDiagramEntity existing = existingByRef.get(ref);
+            if (existing == null) {
+                changes.entitiesToAdd.add(withDiagramId(desired, diagramId));
+            } else if (existing.isNotable() != desired.isNotable()) {
+                changes.entitiesToUpdate.add(withDiagramId(desired, diagramId));
+            }
+        });
+
+        existingByRef.keySet()
+                .stream()
+                .filter(ref -> ! desiredByRef.containsKey(ref))
+                .filter(ref -> ! RETAINED_KINDS.contains(ref.kind()))
+                .forEach(changes.entitiesToRemove::add);
+
+        Map<String, FlowDiagramAnnotation> existingById = new HashMap<>();
+        existingAnnotations.forEach(a -> existingById.put(a.annotationId(), a));
+
+        Map<String, FlowDiagramAnnotation> desiredById = new LinkedHashMap<>();
+        desiredAnnotations.forEach(a -> desiredById.put(a.annotationId(), a));
+
+        desiredById.forEach((id, desired) -> {
+            FlowDiagramAnnotation existing = existingById.get(id);
+            if (existing == null) {
+                changes.annotationsToAdd.add(withDiagramId(desired, diagramId));
+            } else if (! sameContent(existing, desired)) {
+                changes.annotationsToUpdate.add(withDiagramId(desired, diagramId));
+            }
+        });
+
+        existingById.keySet()
+                .stream()
+                .filter(id -> ! desiredById.containsKey(id))
+                .forEach(changes.annotationsToRemove::add);
+
+        return changes;
+    }
+
+
+    public List<FlowDiagramEntity> entitiesToAdd() {
+        return entitiesToAdd;
+    }
+
+
+    public List<FlowDiagramEntity> entitiesToUpdate() {
+        return entitiesToUpdate;
+    }
+
+
+    public List<EntityReference> entitiesToRemove() {
+        return entitiesToRemove;
+    }
+
+
+    public List<FlowDiagramAnnotation> annotationsToAdd() {
+        return annotationsToAdd;
+    }
+
+
+    public List<FlowDiagramAnnotation> annotationsToUpdate() {
+        return annotationsToUpdate;
+    }
+
+
+    public List<String> annotationsToRemove() {
+        return annotationsToRemove;
+    }
+
+
+    /**
+     * @return total number of rows which will be inserted, updated or deleted
+     */
+    public int rowCount() {
+        return entitiesToAdd.size()
+                + entitiesToUpdate.size()
+                + entitiesToRemove.size()
+                + annotationsToAdd.size()
+                + annotationsToUpdate.size()
+                + annotationsToRemove.size();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format(
+                "entities: +%d ~%d -%d, annotations: +%d ~%d -%d",
+                entitiesToAdd.size(),
+                entitiesToUpdate.size(),
+                entitiesToRemove.size(),
+                annotationsToAdd.size(),
+                annotationsToUpdate.size(),
+                annotationsToRemove.size());
+    }
+
+
+    // -- HELPERS ---
+
+    private static EntityReference toKey(EntityReference ref) {
+        return mkRef(ref.kind(), ref.id());
+    }
+
+
+    private static boolean sameContent(FlowDiagramAnnotation a, FlowDiagramAnnotation b) {
+        return toKey(a.entityReference()).equals(toKey(b.entityReference()))
+                && Objects.equals(a.note(), b.note());
+    }
+
+
+    private static FlowDiagramEntity withDiagramId(FlowDiagramEntity entity, long diagramId) {
+        return ImmutableFlowDiagramEntity.copyOf(entity).withDiagramId(diagramId);
+    }
+
+
+    private static FlowDiagramAnnotation withDiagramId(FlowDiagramAnnotation annotation, long diagramId) {
+        return ImmutableFlowDiagramAnnotation.copyOf(annotation).withDiagramId(diagramId);
+    }
+
+}
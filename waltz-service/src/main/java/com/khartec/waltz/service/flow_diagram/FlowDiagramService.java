@@ -49,6 +49,8 @@ import com.khartec.waltz.service.changelog.ChangeLogService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.exception.InvalidResultException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -56,6 +58,7 @@ import java.util.*;
 import java.util.stream.Stream;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.CollectionUtilities.notEmpty;
 import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
 import static com.khartec.waltz.common.ListUtilities.map;
 import static com.khartec.waltz.common.ListUtilities.newArrayList;
@@ -72,6 +75,8 @@ import static java.util.stream.Collectors.toList;
 @Service
 public class FlowDiagramService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(FlowDiagramService.class);
+
     private final ChangeLogService changeLogService;
     private final FlowDiagramDao flowDiagramDao;
     private final FlowDiagramEntityDao flowDiagramEntityDao;
@@ -166,31 +171,47 @@ public class FlowDiagramService {
 
         Long diagramId;
 
-        List<EntityReference> existingEntities = newArrayList();
-
         if (diagram.id().isPresent()) {
             // update
             diagramId = diagram.id().get();
+            FlowDiagram existingDiagram = flowDiagramDao.getById(diagramId);
+            boolean layoutChanged = existingDiagram == null
+                    || ! command.layoutData().equals(existingDiagram.layoutData());
 
-            if(!flowDiagramDao.update(diagram)) {
+            if(!flowDiagramDao.update(diagram, layoutChanged)) {
                 throw new InvalidResultException("Could not update diagram with Id: " + diagramId);
             }
 
-            existingEntities = map(flowDiagramEntityDao.findForDiagram(diagramId), fde -> fde.entityReference());
             auditChange("updated", mkRef(FLOW_DIAGRAM, diagramId), username, Operation.UPDATE);
-            flowDiagramEntityDao.deleteForDiagram(diagramId);
-            flowDiagramAnnotationDao.deleteForDiagram(diagramId);
+
+            List<FlowDiagramEntity> existingEntities = flowDiagramEntityDao.findForDiagram(diagramId);
+            applyChanges(diagramId, FlowDiagramChanges.determineChanges(
+                    diagramId,
+                    existingEntities,
+                    command.entities(),
+                    flowDiagramAnnotationDao.findByDiagramId(diagramId),
+                    command.annotations()));
+
+            auditEntityChange(
+                    mkRef(FLOW_DIAGRAM, diagramId),
+                    map(existingEntities, FlowDiagramEntity::entityReference),
+                    map(command.entities(), FlowDiagramEntity::entityReference),
+                    username);
         } else {
             // create
             diagramId = flowDiagramDao.create(diagram);
             auditChange("added", mkRef(FLOW_DIAGRAM, diagramId), username, Operation.ADD);
-        }
 
-        createEntities(diagramId, command.entities());
-        createAnnotations(diagramId, command.annotations());
+            createEntities(diagramId, command.entities());
+            createAnnotations(diagramId, command.annotations());
+
+            auditEntityChange(
+                    mkRef(FLOW_DIAGRAM, diagramId),
+                    emptyList(),
+                    map(command.entities(), FlowDiagramEntity::entityReference),
+                    username);
+        }
 
-        List<EntityReference> newEntities = map(command.entities(), FlowDiagramEntity::entityReference);
-        auditEntityChange(mkRef(FLOW_DIAGRAM, diagramId), existingEntities, newEntities, username);
         return diagramId;
     }
 
@@ -210,6 +231,36 @@ public class FlowDiagramService {
     }
 
 
+    private void applyChanges(long diagramId, FlowDiagramChanges changes) {
+        long st = System.currentTimeMillis();
+
+        if (notEmpty(changes.entitiesToRemove())) {
+            flowDiagramEntityDao.deleteEntitiesForDiagram(diagramId, changes.entitiesToRemove());
+        }
+        if (notEmpty(changes.entitiesToUpdate())) {
+            flowDiagramEntityDao.updateEntities(changes.entitiesToUpdate());
+        }
+        if (notEmpty(changes.entitiesToAdd())) {
+            flowDiagramEntityDao.createEntities(changes.entitiesToAdd());
+        }
+        if (notEmpty(changes.annotationsToRemove())) {
+            flowDiagramAnnotationDao.deleteAnnotations(diagramId, changes.annotationsToRemove());
+        }
+        if (notEmpty(changes.annotationsToUpdate())) {
+            flowDiagramAnnotationDao.updateAnnotations(changes.annotationsToUpdate());
+        }
+        if (notEmpty(changes.annotationsToAdd())) {
+            flowDiagramAnnotationDao.createAnnotations(changes.annotationsToAdd());
+        }
+
+        LOG.debug("Saved diagram: {}, {} rows written ({}) in {}ms",
+                diagramId,
+                changes.rowCount(),
+                changes,
+                System.currentTimeMillis() - st);
+    }
+
+
     private int[] createEntities(long diagramId,
                                  List<FlowDiagramEntity> entities) {
         entities = entities
@@ -0,0 +1,316 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.service.flow_graph;
+
+import com.khartec.waltz.common.hierarchy.FlatNode;
+import com.khartec.waltz.common.hierarchy.Forest;
+import com.khartec.waltz.common.hierarchy.HierarchyUtilities;
+import com.khartec.waltz.common.hierarchy.Node;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.flow_graph.FlowImpact;
+import com.khartec.waltz.model.flow_graph.FlowPath;
+import com.khartec.waltz.model.flow_graph.ImmutableFlowImpact;
+import com.khartec.waltz.model.flow_graph.ImmutableFlowPath;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.BFSShortestPath;
+import org.jgrapht.alg.shortestpath.KShortestSimplePaths;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.MaskSubgraph;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.MapUtilities.groupBy;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * An immutable, in-memory snapshot of the active logical flows and their
+ * data type decorations.  Instances are expensive to build but cheap to query
+ * and are intended to be cached (see {@link FlowGraphService}).
+ */
+public class FlowGraph {
+
+    /**
+     * A logical flow as an edge in the graph, carrying the ids of the
+     * data types it has been decorated with.
+     */
+    static class FlowEdge {
+
+        private final long flowId;
+        private final Set<Long> dataTypeIds;
+
+
+        FlowEdge(long flowId, Set<Long> dataTypeIds) {
+            this.flowId = flowId;
+            this.dataTypeIds = dataTypeIds;
+        }
+
+
+        long getFlowId() {
+            return flowId;
+        }
+
+
+        boolean carriesAny(Set<Long> candidateDataTypeIds) {
+            for (Long dataTypeId : dataTypeIds) {
+                if (candidateDataTypeIds.contains(dataTypeId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+
+        @Override
+        public String toString() {
+            return "FlowEdge{flowId=" + flowId + "}";
+        }
+    }
+
+
+    private final Graph<EntityReference, FlowEdge> graph;
+    private final Forest<DataType, Long> dataTypeForest;
+    private final LocalDateTime builtAt;
+
+
+    private FlowGraph(Graph<EntityReference, FlowEdge> graph,
+                      Forest<DataType, Long> dataTypeForest) {
+        this.graph = graph;
+        this.dataTypeForest = dataTypeForest;
+        this.builtAt = nowUtc();
+    }
+
+
+    public static FlowGraph build(Collection<LogicalFlow> flows,
+                                  Collection<DataTypeDecorator> decorators,
+                                  Collection<DataType> dataTypes) {
+        checkNotNull(flows, "flows cannot be null");
+        checkNotNull(decorators, "decorators cannot be null");
+        checkNotNull(dataTypes, "dataTypes cannot be null");
+
+        Map<Long, Collection<Long>> dataTypeIdsByFlowId = groupBy(
+                DataTypeDecorator::dataFlowId,
+                DataTypeDecorator::dataTypeId,
+                decorators);
+
+        Graph<EntityReference, FlowEdge> g = new DefaultDirectedGraph<>(FlowEdge.class);
+
+        for (LogicalFlow flow : flows) {
+            if (! flow.id().isPresent() || flow.source().equals(flow.target())) {
+                continue;
+            }
+            long flowId = flow.id().get();
+            g.addVertex(flow.source());
+            g.addVertex(flow.target());
+            g.addEdge(
+                    flow.source(),
+                    flow.target(),
+                    new FlowEdge(
+                            flowId,
+                            new HashSet<>(dataTypeIdsByFlowId.getOrDefault(flowId, emptyList()))));
+        }
+
+        List<FlatNode<DataType, Long>> dataTypeNodes = dataTypes
+                .stream()
+                .map(dt -> new FlatNode<>(dt.id().get(), dt.parentId(), dt))
+                .collect(toList());
+
+        return new FlowGraph(g, HierarchyUtilities.toForest(dataTypeNodes));
+    }
+
+
+    public LocalDateTime getBuiltAt() {
+        return builtAt;
+    }
+
+
+    public int vertexCount() {
+        return graph.vertexSet().size();
+    }
+
+
+    public int edgeCount() {
+        return graph.edgeSet().size();
+    }
+
+
+    /**
+     * Finds up to `limit` shortest paths between the source and the target.
+     * Paths are ordered shortest first.  If only a single path is requested
+     * a breadth first search is used, otherwise candidate paths are bounded
+     * by `maxHops` to keep the search tractable on large graphs.
+     *
+     * @param source  starting entity
+     * @param target  destination entity
+     * @param dataTypeId  if present, only flows carrying this data type (or a descendant) are traversed
+     * @param limit  maximum number of paths to return
+     * @param maxHops  maximum length of any returned path (only used if limit > 1)
+     * @return list of paths, empty if no route exists
+     */
+    public List<FlowPath> findShortestPaths(EntityReference source,
+                                            EntityReference target,
+                                            Optional<Long> dataTypeId,
+                                            int limit,
+                                            int maxHops) {
+        checkNotNull(source, "source cannot be null");
+        checkNotNull(target, "target cannot be null");
+        checkTrue(limit > 0, "limit must be positive");
+        checkTrue(maxHops > 0, "maxHops must be positive");
+
+        if (! graph.containsVertex(source) || ! graph.containsVertex(target) || source.equals(target)) {
+            return emptyList();
+        }
+
+        Graph<EntityReference, FlowEdge> g = maskByDataType(dataTypeId);
+
+        if (limit == 1) {
+            GraphPath<EntityReference, FlowEdge> path = new BFSShortestPath<>(g).getPath(source, target);
+            return path == null
+                    ? emptyList()
+                    : Collections.singletonList(toFlowPath(path));
+        } else {
+            return new KShortestSimplePaths<>(g, maxHops)
+                    .getPaths(source, target, limit)
+                    .stream()
+                    .map(this::toFlowPath)
+                    .collect(toList());
+        }
+    }
+
+
+    /**
+     * Walks the graph downstream from the given sources, collecting every
+     * entity reachable within `maxDepth` flows.
+     *
+     * @param sources  starting entities
+     * @param dataTypeId  if present, only flows carrying this data type (or a descendant) are traversed
+     * @param maxDepth  if present, limits the number of flows followed from any source
+     * @return reachable entities and the flows used to reach them
+     */
+    public FlowImpact findDownstreamImpact(Set<EntityReference> sources,
+                                           Optional<Long> dataTypeId,
+                                           Optional<Integer> maxDepth) {
+        checkNotNull(sources, "sources cannot be null");
+
+        Set<Long> dataTypeIds = dataTypeId
+                .map(this::findDataTypeIdsInScope)
+                .orElse(null);
+        int depthLimit = maxDepth.orElse(Integer.MAX_VALUE);
+
+        Set<EntityReference> visited = new HashSet<>();
+        Set<Long> flowIds = new HashSet<>();
+        Deque<EntityReference> frontier = new ArrayDeque<>();
+
+        for (EntityReference source : sources) {
+            if (graph.containsVertex(source) && visited.add(source)) {
+                frontier.add(source);
+            }
+        }
+
+        int depth = 0;
+        while (! frontier.isEmpty() && depth < depthLimit) {
+            Deque<EntityReference> next = new ArrayDeque<>();
+            for (EntityReference v : frontier) {
+                for (FlowEdge edge : graph.outgoingEdgesOf(v)) {
+                    if (dataTypeIds != null && ! edge.carriesAny(dataTypeIds)) {
+                        continue;
+                    }
+                    flowIds.add(edge.getFlowId());
+                    EntityReference downstream = graph.getEdgeTarget(edge);
+                    if (visited.add(downstream)) {
+                        next.add(downstream);
+                    }
+                }
+            }
+            frontier = next;
+            depth++;
+        }
+
+        Set<EntityReference> reachable = visited
+                .stream()
+                .filter(ref -> ! sources.contains(ref))
+                .collect(Collectors.toSet());
+
+        return ImmutableFlowImpact.builder()
+                .sources(sources)
+                .entities(reachable)
+                .flowIds(flowIds)
+                .build();
+    }
+
+
+    // -- HELPERS ---
+
+    private Graph<EntityReference, FlowEdge> maskByDataType(Optional<Long> dataTypeId) {
+        return dataTypeId
+                .map(this::findDataTypeIdsInScope)
+                .map(dtIds -> (Graph<EntityReference, FlowEdge>) new MaskSubgraph<>(
+                        graph,
+                        v -> false,
+                        e -> ! e.carriesAny(dtIds)))
+                .orElse(graph);
+    }
+
+
+    /**
+     * @param dataTypeId  root of the data type sub-tree
+     * @return the given data type id and the ids of all its descendants
+     */
+    Set<Long> findDataTypeIdsInScope(long dataTypeId) {
+        Node<DataType, Long> root = dataTypeForest.getAllNodes().get(dataTypeId);
+        if (root == null) {
+            return emptySet();
+        }
+
+        Set<Long> result = new HashSet<>();
+        Deque<Node<DataType, Long>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (! stack.isEmpty()) {
+            Node<DataType, Long> node = stack.pop();
+            if (result.add(node.getId())) {
+                node.getChildren().forEach(stack::push);
+            }
+        }
+        return result;
+    }
+
+
+    private FlowPath toFlowPath(GraphPath<EntityReference, FlowEdge> path) {
+        return ImmutableFlowPath.builder()
+                .entities(path.getVertexList())
+                .flowIds(path
+                        .getEdgeList()
+                        .stream()
+                        .map(FlowEdge::getFlowId)
+                        .collect(toList()))
+                .build();
+    }
+
+}
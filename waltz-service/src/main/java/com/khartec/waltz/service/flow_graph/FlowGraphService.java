@@ -0,0 +1,193 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.service.flow_graph;
+
+import com.khartec.waltz.data.DBExecutorPoolInterface;
+import com.khartec.waltz.data.data_type.DataTypeDao;
+import com.khartec.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.model.flow_graph.FlowImpact;
+import com.khartec.waltz.model.flow_graph.FlowImpactQuery;
+import com.khartec.waltz.model.flow_graph.FlowPath;
+import com.khartec.waltz.model.flow_graph.FlowPathQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+
+
+/**
+ * Provides path finding and impact analysis over the logical flow graph.
+ *
+ * The graph is loaded once and held in memory.  When the underlying flows
+ * change (see {@link #invalidate()}) or the cached graph exceeds its maximum
+ * age, a replacement is built on the db executor pool whilst queries continue
+ * to be answered by the existing graph.  Only the very first request blocks
+ * whilst the graph is loaded.
+ */
+@Service
+public class FlowGraphService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowGraphService.class);
+
+    private final DataTypeDao dataTypeDao;
+    private final DBExecutorPoolInterface dbExecutorPool;
+    private final LogicalFlowDao logicalFlowDao;
+    private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+
+    private final AtomicBoolean stale = new AtomicBoolean(false);
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private volatile FlowGraph cachedGraph = null;
+
+    @Value("${waltz.flow.graph.maxAgeSeconds:900}")
+    private long maxAgeSeconds;
+
+
+    @Autowired
+    public FlowGraphService(DataTypeDao dataTypeDao,
+                            DBExecutorPoolInterface dbExecutorPool,
+                            LogicalFlowDao logicalFlowDao,
+                            LogicalFlowDecoratorDao logicalFlowDecoratorDao) {
+        checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
+        checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
+        checkNotNull(logicalFlowDao, "logicalFlowDao cannot be null");
+        checkNotNull(logicalFlowDecoratorDao, "logicalFlowDecoratorDao cannot be null");
+
+        this.dataTypeDao = dataTypeDao;
+        this.dbExecutorPool = dbExecutorPool;
+        this.logicalFlowDao = logicalFlowDao;
+        this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+    }
+
+
+    public List<FlowPath> findShortestPaths(FlowPathQuery query) {
+        checkNotNull(query, "query cannot be null");
+        return getGraph().findShortestPaths(
+                query.source(),
+                query.target(),
+                query.dataTypeId(),
+                query.limit(),
+                query.maxHops());
+    }
+
+
+    public FlowImpact findDownstreamImpact(FlowImpactQuery query) {
+        checkNotNull(query, "query cannot be null");
+        return getGraph().findDownstreamImpact(
+                query.sources(),
+                query.dataTypeId(),
+                query.maxDepth());
+    }
+
+
+    /**
+     * Marks the cached graph as out of date.  A replacement will be
+     * built in the background when the graph is next requested.
+     */
+    public void invalidate() {
+        stale.set(true);
+    }
+
+
+    /**
+     * Synchronously rebuilds the graph, replacing any cached version.
+     * @return the number of flows (edges) in the new graph
+     */
+    public int rebuild() {
+        stale.set(false);
+        FlowGraph graph = loadGraph();
+        cachedGraph = graph;
+        return graph.edgeCount();
+    }
+
+
+    // -- HELPERS ---
+
+    private FlowGraph getGraph() {
+        FlowGraph graph = cachedGraph;
+        if (graph == null) {
+            synchronized (this) {
+                if (cachedGraph == null) {
+                    rebuild();
+                }
+                return cachedGraph;
+            }
+        }
+
+        if (isOutOfDate(graph)) {
+            scheduleRebuild();
+        }
+
+        return graph;
+    }
+
+
+    private boolean isOutOfDate(FlowGraph graph) {
+        LocalDateTime expiry = graph.getBuiltAt().plusSeconds(maxAgeSeconds);
+        return stale.get() || nowUtc().isAfter(expiry);
+    }
+
+
+    private void scheduleRebuild() {
+        if (! rebuilding.compareAndSet(false, true)) {
+            return; // already in progress
+        }
+
+        try {
+            // the flag is cleared on completion, even if the task expires before it starts
+            dbExecutorPool.submit(
+                    () -> {
+                        try {
+                            return rebuild();
+                        } catch (Exception e) {
+                            LOG.error("Failed to rebuild flow graph, will continue to use previous version", e);
+                            stale.set(true);
+                            return -1;
+                        }
+                    },
+                    () -> rebuilding.set(false));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("DB executor is busy, flow graph rebuild will be retried on a later request");
+        }
+    }
+
+
+    private FlowGraph loadGraph() {
+        long st = System.currentTimeMillis();
+        FlowGraph graph = FlowGraph.build(
+                logicalFlowDao.findAllActive(),
+                logicalFlowDecoratorDao.findAll(),
+                dataTypeDao.findAll());
+        LOG.info("Loaded flow graph with {} entities and {} flows in {}ms",
+                graph.vertexCount(),
+                graph.edgeCount(),
+                System.currentTimeMillis() - st);
+        return graph;
+    }
+
+}
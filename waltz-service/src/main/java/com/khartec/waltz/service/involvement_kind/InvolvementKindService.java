@@ -29,6 +29,7 @@ import com.khartec.waltz.model.involvement_kind.ImmutableInvolvementKindChangeCo
 import com.khartec.waltz.model.involvement_kind.InvolvementKind;
 import com.khartec.waltz.model.involvement_kind.InvolvementKindChangeCommand;
 import com.khartec.waltz.model.involvement_kind.InvolvementKindCreateCommand;
+import com.khartec.waltz.service.client_cache_key.ClientCacheKeyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -40,13 +41,17 @@ import static com.khartec.waltz.common.FunctionUtilities.time;
 @Service
 public class InvolvementKindService {
 
+    private final ClientCacheKeyService clientCacheKeyService;
     private final InvolvementKindDao involvementKindDao;
 
 
     @Autowired
-    public InvolvementKindService(InvolvementKindDao involvementKindDao) {
+    public InvolvementKindService(ClientCacheKeyService clientCacheKeyService,
+                                  InvolvementKindDao involvementKindDao) {
+        checkNotNull(clientCacheKeyService, "clientCacheKeyService cannot be null");
         checkNotNull(involvementKindDao, "involvementKindDao cannot be null");
 
+        this.clientCacheKeyService = clientCacheKeyService;
         this.involvementKindDao = involvementKindDao;
     }
 
@@ -72,7 +77,9 @@ public class InvolvementKindService {
         checkNotNull(command, "command cannot be null");
         checkNotNull(username, "username cannot be null");
 
-        return involvementKindDao.create(command, username);
+        Long id = involvementKindDao.create(command, username);
+        clientCacheKeyService.createOrUpdate(ClientCacheKeyService.REFERENCE_DATA_KEY);
+        return id;
     }
 
 
@@ -85,6 +92,7 @@ public class InvolvementKindService {
                 .withLastUpdate(UserTimestamp.mkForUser(username));
 
         boolean success = involvementKindDao.update(updateCommand);
+        clientCacheKeyService.createOrUpdate(ClientCacheKeyService.REFERENCE_DATA_KEY);
         return ImmutableCommandResponse.<InvolvementKindChangeCommand>builder()
                 .originalCommand(command)
                 .entityReference(EntityReference.mkRef(EntityKind.INVOLVEMENT_KIND, command.id()))
@@ -94,7 +102,11 @@ public class InvolvementKindService {
 
 
     public boolean delete(long id) {
-        return involvementKindDao.deleteIfNotUsed(id);
+        boolean deleted = involvementKindDao.deleteIfNotUsed(id);
+        if (deleted) {
+            clientCacheKeyService.createOrUpdate(ClientCacheKeyService.REFERENCE_DATA_KEY);
+        }
+        return deleted;
     }
 
 }
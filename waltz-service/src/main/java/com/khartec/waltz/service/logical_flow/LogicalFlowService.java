@@ -36,10 +36,11 @@ import com.khartec.waltz.model.rating.AuthoritativenessRating;
 import com.khartec.waltz.model.tally.TallyPack;
 import com.khartec.waltz.service.changelog.ChangeLogService;
 import com.khartec.waltz.service.data_type.DataTypeService;
-import com.khartec.waltz.service.usage_info.DataTypeUsageService;
+import com.khartec.waltz.service.flow_graph.FlowGraphService;
+import com.khartec.waltz.service.single_flight.SingleFlightService;
+import com.khartec.waltz.service.usage_info.DataTypeUsageRecalculationQueue;
 import org.jooq.Record1;
 import org.jooq.Select;
-import org.jooq.lambda.Unchecked;
 import org.jooq.lambda.tuple.Tuple2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -50,7 +51,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -71,11 +71,13 @@ public class LogicalFlowService {
 
     private final ChangeLogService changeLogService;
     private final DataTypeService dataTypeService;
-    private final DataTypeUsageService dataTypeUsageService;
+    private final DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue;
     private final DBExecutorPoolInterface dbExecutorPool;
+    private final FlowGraphService flowGraphService;
     private final LogicalFlowDao logicalFlowDao;
     private final LogicalFlowStatsDao logicalFlowStatsDao;
     private final LogicalFlowDecoratorDao logicalFlowDecoratorDao;
+    private final SingleFlightService singleFlightService;
 
     private final ApplicationIdSelectorFactory appIdSelectorFactory = new ApplicationIdSelectorFactory();
     private final LogicalFlowIdSelectorFactory logicalFlowIdSelectorFactory = new LogicalFlowIdSelectorFactory();
@@ -85,26 +87,32 @@ public class LogicalFlowService {
     @Autowired
     public LogicalFlowService(ChangeLogService changeLogService,
                               DataTypeService dataTypeService,
-                              DataTypeUsageService dataTypeUsageService,
+                              DataTypeUsageRecalculationQueue dataTypeUsageRecalculationQueue,
                               DBExecutorPoolInterface dbExecutorPool,
+                              FlowGraphService flowGraphService,
                               LogicalFlowDao logicalFlowDao,
                               LogicalFlowStatsDao logicalFlowStatsDao,
-                              LogicalFlowDecoratorDao logicalFlowDecoratorDao) {
+                              LogicalFlowDecoratorDao logicalFlowDecoratorDao,
+                              SingleFlightService singleFlightService) {
         checkNotNull(changeLogService, "changeLogService cannot be null");
         checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
         checkNotNull(dataTypeService, "dataTypeService cannot be null");
-        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(dataTypeUsageRecalculationQueue, "dataTypeUsageRecalculationQueue cannot be null");
+        checkNotNull(flowGraphService, "flowGraphService cannot be null");
         checkNotNull(logicalFlowDao, "logicalFlowDao must not be null");
         checkNotNull(logicalFlowDecoratorDao, "logicalFlowDataTypeDecoratorDao cannot be null");
         checkNotNull(logicalFlowStatsDao, "logicalFlowStatsDao cannot be null");
+        checkNotNull(singleFlightService, "singleFlightService cannot be null");
 
         this.changeLogService = changeLogService;
         this.dataTypeService = dataTypeService;
-        this.dataTypeUsageService = dataTypeUsageService;
+        this.dataTypeUsageRecalculationQueue = dataTypeUsageRecalculationQueue;
         this.dbExecutorPool = dbExecutorPool;
+        this.flowGraphService = flowGraphService;
         this.logicalFlowDao = logicalFlowDao;
         this.logicalFlowStatsDao = logicalFlowStatsDao;
         this.logicalFlowDecoratorDao = logicalFlowDecoratorDao;
+        this.singleFlightService = singleFlightService;
     }
 
 
@@ -173,6 +181,7 @@ public class LogicalFlowService {
 
         LogicalFlow logicalFlow = logicalFlowDao.addFlow(flowToAdd);
         attemptToAddUnknownDecoration(logicalFlow, username);
+        flowGraphService.invalidate();
 
         changeLogService.writeChangeLogEntries(logicalFlow, username, "Added", Operation.ADD);
 
@@ -219,7 +228,9 @@ public class LogicalFlowService {
                         .build())
                 .collect(toList());
 
-        return logicalFlowDao.addFlows(flowsToAdd, username);
+        List<LogicalFlow> addedFlows = logicalFlowDao.addFlows(flowsToAdd, username);
+        flowGraphService.invalidate();
+        return addedFlows;
     }
 
 
@@ -235,7 +246,7 @@ public class LogicalFlowService {
 
     /**
      * Removes the given logical flow and creates an audit log entry.
-     * The removal is a soft removal. After the removal usage stats are recalculated
+     * The removal is a soft removal. After the removal usage stats are queued for recalculation
      *
      * todo: #WALTZ-1894 for cleanupOrphans task
      *
@@ -247,10 +258,11 @@ public class LogicalFlowService {
         LogicalFlow logicalFlow = logicalFlowDao.getByFlowId(flowId);
 
         int deleted = logicalFlowDao.removeFlow(flowId, username);
+        flowGraphService.invalidate();
 
         Set<EntityReference> affectedEntityRefs = SetUtilities.fromArray(logicalFlow.source(), logicalFlow.target());
 
-        dataTypeUsageService.recalculateForApplications(affectedEntityRefs);
+        dataTypeUsageRecalculationQueue.enqueue(affectedEntityRefs);
 
         changeLogService.writeChangeLogEntries(logicalFlow, username,
                 "Removed : datatypes [" + getAssociatedDatatypeNamesAsCsv(flowId) + "]",
@@ -261,11 +273,21 @@ public class LogicalFlowService {
 
 
     /**
-     * Calculate Stats by selector
+     * Calculate Stats by selector.  Concurrent requests for the same
+     * selection share a single calculation.
      * @param options determines which flows are in-scope for this calculation
      * @return statistics about the in-scope flows
      */
     public LogicalFlowStatistics calculateStats(IdSelectionOptions options) {
+        checkNotNull(options, "options cannot be null");
+        return singleFlightService.execute(
+                "LogicalFlowService.calculateStats",
+                options,
+                () -> calculateStatsUncoalesced(options));
+    }
+
+
+    private LogicalFlowStatistics calculateStatsUncoalesced(IdSelectionOptions options) {
         switch (options.entityReference().kind()) {
             case APP_GROUP:
             case CHANGE_INITIATIVE:
@@ -298,19 +320,18 @@ public class LogicalFlowService {
                 FunctionUtilities.time("DFS.flowCounts",
                     () -> logicalFlowStatsDao.countDistinctFlowInvolvementByAppIdSelector(appIdSelector)));
 
-        Supplier<ImmutableLogicalFlowStatistics> statSupplier = Unchecked.supplier(() -> ImmutableLogicalFlowStatistics.builder()
-                .dataTypeCounts(dataTypeCounts.get())
-                .appCounts(appCounts.get())
-                .flowCounts(flowCounts.get())
-                .build());
-
-        return statSupplier.get();
+        return ImmutableLogicalFlowStatistics.builder()
+                .dataTypeCounts(dbExecutorPool.await(dataTypeCounts))
+                .appCounts(dbExecutorPool.await(appCounts))
+                .flowCounts(dbExecutorPool.await(flowCounts))
+                .build();
     }
 
 
     public boolean restoreFlow(long logicalFlowId, String username) {
         boolean result = logicalFlowDao.restoreFlow(logicalFlowId, username);
         if (result) {
+            flowGraphService.invalidate();
             changeLogService.writeChangeLogEntries(mkRef(LOGICAL_DATA_FLOW, logicalFlowId), username, "Restored", Operation.ADD);
         }
         return result;
@@ -36,6 +36,7 @@ import com.khartec.waltz.model.measurable_rating.SaveMeasurableRatingCommand;
 import com.khartec.waltz.model.tally.MeasurableRatingTally;
 import com.khartec.waltz.model.tally.Tally;
 import com.khartec.waltz.service.changelog.ChangeLogService;
+import com.khartec.waltz.service.single_flight.SingleFlightService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -56,6 +57,7 @@ public class MeasurableRatingService {
     private final MeasurableCategoryDao measurableCategoryDao;
     private final ChangeLogService changeLogService;
     private final EntityReferenceNameResolver entityReferenceNameResolver;
+    private final SingleFlightService singleFlightService;
 
     private final MeasurableIdSelectorFactory measurableIdSelectorFactory = new MeasurableIdSelectorFactory();
     private final ApplicationIdSelectorFactory applicationIdSelectorFactory = new ApplicationIdSelectorFactory();
@@ -66,17 +68,20 @@ public class MeasurableRatingService {
                                    MeasurableDao measurableDao,
                                    MeasurableCategoryDao measurableCategoryDao,
                                    ChangeLogService changeLogService,
-                                   EntityReferenceNameResolver entityReferenceNameResolver) {
+                                   EntityReferenceNameResolver entityReferenceNameResolver,
+                                   SingleFlightService singleFlightService) {
         checkNotNull(measurableRatingDao, "measurableRatingDao cannot be null");
         checkNotNull(measurableDao, "measurableDao cannot be null");
         checkNotNull(measurableCategoryDao, "measurableCategoryDao cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
+        checkNotNull(singleFlightService, "singleFlightService cannot be null");
 
         this.measurableRatingDao = measurableRatingDao;
         this.measurableDao = measurableDao;
         this.measurableCategoryDao = measurableCategoryDao;
         this.changeLogService = changeLogService;
         this.entityReferenceNameResolver = entityReferenceNameResolver;
+        this.singleFlightService = singleFlightService;
     }
 
     // -- READ
@@ -201,8 +206,13 @@ public class MeasurableRatingService {
 
     public List<MeasurableRatingTally> statsByAppSelector(IdSelectionOptions options) {
         checkNotNull(options, "options cannot be null");
-        Select<Record1<Long>> selector = applicationIdSelectorFactory.apply(options);
-        return measurableRatingDao.statsByAppSelector(selector);
+        return singleFlightService.execute(
+                "MeasurableRatingService.statsByAppSelector",
+                options,
+                () -> {
+                    Select<Record1<Long>> selector = applicationIdSelectorFactory.apply(options);
+                    return measurableRatingDao.statsByAppSelector(selector);
+                });
     }
 
 
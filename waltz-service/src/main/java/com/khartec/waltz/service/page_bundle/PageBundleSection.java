@@ -0,0 +1,37 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.page_bundle;
+
+import com.khartec.waltz.model.IdSelectionOptions;
+import org.jooq.Record1;
+import org.jooq.Select;
+
+
+/**
+ * Loads the data for one named section of a page bundle.  The application
+ * id selector has already been built from the options and is shared
+ * between all sections of the bundle.
+ */
+@FunctionalInterface
+public interface PageBundleSection {
+
+    Object load(IdSelectionOptions options, Select<Record1<Long>> appIdSelector);
+
+}
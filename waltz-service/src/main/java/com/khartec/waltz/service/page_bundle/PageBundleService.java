@@ -0,0 +1,210 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.page_bundle;
+
+import com.khartec.waltz.common.exception.DeadlineExceededException;
+import com.khartec.waltz.data.DBExecutorPoolInterface;
+import com.khartec.waltz.data.application.ApplicationDao;
+import com.khartec.waltz.data.application.ApplicationIdSelectorFactory;
+import com.khartec.waltz.data.measurable_rating.MeasurableRatingDao;
+import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.page_bundle.ImmutablePageBundleSectionResult;
+import com.khartec.waltz.model.page_bundle.PageBundleRequest;
+import com.khartec.waltz.model.page_bundle.PageBundleSectionResult;
+import com.khartec.waltz.model.page_bundle.PageBundleSectionStatus;
+import com.khartec.waltz.service.logical_flow.LogicalFlowService;
+import org.jooq.Record1;
+import org.jooq.Select;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Loads several sections of a page in one go.  The application id selector
+ * is built once and every requested section is run concurrently on the db
+ * executor pool, each with its own deadline.  A section which fails or
+ * times out is reported as such without affecting the others.
+ */
+@Service
+public class PageBundleService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PageBundleService.class);
+
+    private final ApplicationIdSelectorFactory appIdSelectorFactory = new ApplicationIdSelectorFactory();
+    private final DBExecutorPoolInterface dbExecutorPool;
+    private final Map<String, PageBundleSection> sections = new TreeMap<>();
+
+    @Value("${waltz.page.bundle.sectionTimeoutSeconds:30}")
+    private long maxSectionTimeoutSeconds;
+
+
+    @Autowired
+    public PageBundleService(ApplicationDao applicationDao,
+                             DBExecutorPoolInterface dbExecutorPool,
+                             LogicalFlowService logicalFlowService,
+                             MeasurableRatingDao measurableRatingDao) {
+        checkNotNull(applicationDao, "applicationDao cannot be null");
+        checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
+        checkNotNull(logicalFlowService, "logicalFlowService cannot be null");
+        checkNotNull(measurableRatingDao, "measurableRatingDao cannot be null");
+
+        this.dbExecutorPool = dbExecutorPool;
+
+        sections.put("applications", (options, appIdSelector) -> applicationDao.findByAppIdSelector(appIdSelector));
+        sections.put("application-kind-tallies", (options, appIdSelector) -> applicationDao.countByApplicationKind(appIdSelector));
+        sections.put("measurable-ratings", (options, appIdSelector) -> measurableRatingDao.findByApplicationIdSelector(appIdSelector));
+        sections.put("measurable-rating-tallies", (options, appIdSelector) -> measurableRatingDao.statsByAppSelector(appIdSelector));
+        sections.put("logical-flows", (options, appIdSelector) -> logicalFlowService.findBySelector(options));
+        sections.put("logical-flow-stats", (options, appIdSelector) -> logicalFlowService.calculateStats(options));
+    }
+
+
+    PageBundleService(DBExecutorPoolInterface dbExecutorPool,
+                      Map<String, PageBundleSection> sections,
+                      long maxSectionTimeoutSeconds) {
+        checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
+        checkNotNull(sections, "sections cannot be null");
+
+        this.dbExecutorPool = dbExecutorPool;
+        this.sections.putAll(sections);
+        this.maxSectionTimeoutSeconds = maxSectionTimeoutSeconds;
+    }
+
+
+    public Set<String> findSectionNames() {
+        return sections.keySet();
+    }
+
+
+    /**
+     * Runs the requested sections, passing each result to the consumer in
+     * the order the sections were requested.  Results are passed on as
+     * soon as they (and all sections before them) are available so the
+     * caller can stream them back.
+     *
+     * @param request  selection options and section names
+     * @param resultConsumer  receives one result per distinct section name
+     */
+    public void execute(PageBundleRequest request,
+                        Consumer<PageBundleSectionResult> resultConsumer) {
+        checkNotNull(request, "request cannot be null");
+        checkNotNull(resultConsumer, "resultConsumer cannot be null");
+
+        IdSelectionOptions options = request.selectionOptions();
+        Select<Record1<Long>> appIdSelector = appIdSelectorFactory.apply(options);
+        Duration timeout = determineTimeout(request.sectionTimeoutMillis());
+
+        Map<String, Supplier<PageBundleSectionResult>> pendingResults = new LinkedHashMap<>();
+        long submittedAt = System.currentTimeMillis();
+
+        for (String name : new LinkedHashSet<>(request.sections())) {
+            PageBundleSection section = sections.get(name);
+            if (section == null) {
+                PageBundleSectionResult unknown = mkResult(name, PageBundleSectionStatus.UNKNOWN_SECTION, "Unknown section, see /api/page-bundle/sections", 0);
+                pendingResults.put(name, () -> unknown);
+                continue;
+            }
+
+            try {
+                Future<Tuple2<Object, Long>> future = dbExecutorPool.submit(
+                        () -> timeLoad(section, options, appIdSelector),
+                        timeout);
+                pendingResults.put(name, () -> awaitResult(name, future, submittedAt));
+            } catch (RejectedExecutionException e) {
+                PageBundleSectionResult rejected = mkResult(name, PageBundleSectionStatus.REJECTED, "Server busy, try again later", 0);
+                pendingResults.put(name, () -> rejected);
+            }
+        }
+
+        pendingResults
+                .values()
+                .forEach(pending -> resultConsumer.accept(pending.get()));
+    }
+
+
+    // -- HELPERS ---
+
+    private PageBundleSectionResult awaitResult(String name,
+                                                Future<Tuple2<Object, Long>> future,
+                                                long submittedAt) {
+        try {
+            Tuple2<Object, Long> dataAndDuration = dbExecutorPool.await(future);
+            return ImmutablePageBundleSectionResult.builder()
+                    .name(name)
+                    .status(PageBundleSectionStatus.OK)
+                    .data(dataAndDuration.v1)
+                    .durationMillis(dataAndDuration.v2)
+                    .build();
+        } catch (DeadlineExceededException e) {
+            LOG.warn("Page bundle section: {} timed out", name);
+            return mkResult(name, PageBundleSectionStatus.TIMEOUT, e.getMessage(), System.currentTimeMillis() - submittedAt);
+        } catch (RuntimeException e) {
+            LOG.warn("Page bundle section: {} failed: {}", name, e.getMessage());
+            return mkResult(name, PageBundleSectionStatus.ERROR, e.getMessage(), System.currentTimeMillis() - submittedAt);
+        }
+    }
+
+
+    private static Tuple2<Object, Long> timeLoad(PageBundleSection section,
+                                                 IdSelectionOptions options,
+                                                 Select<Record1<Long>> appIdSelector) {
+        long st = System.currentTimeMillis();
+        Object data = section.load(options, appIdSelector);
+        return tuple(data, System.currentTimeMillis() - st);
+    }
+
+
+    private static PageBundleSectionResult mkResult(String name,
+                                                    PageBundleSectionStatus status,
+                                                    String error,
+                                                    long durationMillis) {
+        return ImmutablePageBundleSectionResult.builder()
+                .name(name)
+                .status(status)
+                .error(Optional.ofNullable(error))
+                .durationMillis(durationMillis)
+                .build();
+    }
+
+
+    private Duration determineTimeout(Optional<Long> requestedMillis) {
+        Duration max = Duration.ofSeconds(maxSectionTimeoutSeconds);
+        return requestedMillis
+                .filter(ms -> ms > 0)
+                .map(Duration::ofMillis)
+                .filter(d -> d.compareTo(max) < 0)
+                .orElse(max);
+    }
+
+}
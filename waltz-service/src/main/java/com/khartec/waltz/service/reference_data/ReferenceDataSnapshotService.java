@@ -0,0 +1,396 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.reference_data;
+
+import com.khartec.waltz.data.DBExecutorPoolInterface;
+import com.khartec.waltz.model.client_cache_key.ClientCacheKey;
+import com.khartec.waltz.model.reference_data.ImmutableReferenceDataSnapshot;
+import com.khartec.waltz.model.reference_data.ReferenceDataSnapshot;
+import com.khartec.waltz.model.settings.ImmutableSetting;
+import com.khartec.waltz.model.settings.Setting;
+import com.khartec.waltz.service.client_cache_key.ClientCacheKeyService;
+import com.khartec.waltz.service.data_type.DataTypeService;
+import com.khartec.waltz.service.enum_value.EnumValueService;
+import com.khartec.waltz.service.involvement_kind.InvolvementKindService;
+import com.khartec.waltz.service.measurable.MeasurableService;
+import com.khartec.waltz.service.measurable_category.MeasurableCategoryService;
+import com.khartec.waltz.service.orgunit.OrganisationalUnitService;
+import com.khartec.waltz.service.rating_scheme.RatingSchemeService;
+import com.khartec.waltz.service.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.CollectionUtilities.map;
+import static com.khartec.waltz.common.CompressionUtilities.gzip;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+
+
+/**
+ * Maintains a single, precompressed snapshot of the reference data the
+ * client loads on startup (data types, taxonomies, org units etc).
+ *
+ * The snapshot version is a digest of the client cache keys
+ * ({@link #TRACKED_KEYS}) held in the database, so every node of a
+ * deployment agrees on it.  Changes to the reference data bump one of
+ * those keys.  Nodes notice the new version when they next check the
+ * keys and rebuild their snapshot in the background, continuing to serve
+ * the previous one until the replacement is ready.
+ */
+@Service
+public class ReferenceDataSnapshotService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceDataSnapshotService.class);
+
+    public static final Set<String> TRACKED_KEYS = asSet(
+            ClientCacheKeyService.REFERENCE_DATA_KEY,
+            ClientCacheKeyService.TAXONOMY_KEY);
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final ClientCacheKeyService clientCacheKeyService;
+    private final DBExecutorPoolInterface dbExecutorPool;
+    private final Function<String, ReferenceDataSnapshot> snapshotLoader;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private volatile Function<ReferenceDataSnapshot, byte[]> encoder = null;
+    private volatile EncodedSnapshot cachedSnapshot = null;
+    private volatile String checkedVersion = null;
+    private volatile long versionCheckedAt = 0;
+
+    @Value("${waltz.reference.data.versionCheckSeconds:15}")
+    private long versionCheckSeconds;
+
+
+    @Autowired
+    public ReferenceDataSnapshotService(ClientCacheKeyService clientCacheKeyService,
+                                        DataTypeService dataTypeService,
+                                        DBExecutorPoolInterface dbExecutorPool,
+                                        EnumValueService enumValueService,
+                                        InvolvementKindService involvementKindService,
+                                        MeasurableCategoryService measurableCategoryService,
+                                        MeasurableService measurableService,
+                                        OrganisationalUnitService organisationalUnitService,
+                                        RatingSchemeService ratingSchemeService,
+                                        SettingsService settingsService) {
+        this(clientCacheKeyService,
+                dbExecutorPool,
+                mkSnapshotLoader(
+                        dataTypeService,
+                        enumValueService,
+                        involvementKindService,
+                        measurableCategoryService,
+                        measurableService,
+                        organisationalUnitService,
+                        ratingSchemeService,
+                        settingsService));
+    }
+
+
+    ReferenceDataSnapshotService(ClientCacheKeyService clientCacheKeyService,
+                                 DBExecutorPoolInterface dbExecutorPool,
+                                 Function<String, ReferenceDataSnapshot> snapshotLoader) {
+        checkNotNull(clientCacheKeyService, "clientCacheKeyService cannot be null");
+        checkNotNull(dbExecutorPool, "dbExecutorPool cannot be null");
+        checkNotNull(snapshotLoader, "snapshotLoader cannot be null");
+
+        this.clientCacheKeyService = clientCacheKeyService;
+        this.dbExecutorPool = dbExecutorPool;
+        this.snapshotLoader = snapshotLoader;
+    }
+
+
+    ReferenceDataSnapshotService(ClientCacheKeyService clientCacheKeyService,
+                                 DBExecutorPoolInterface dbExecutorPool,
+                                 Function<String, ReferenceDataSnapshot> snapshotLoader,
+                                 long versionCheckSeconds) {
+        this(clientCacheKeyService, dbExecutorPool, snapshotLoader);
+        this.versionCheckSeconds = versionCheckSeconds;
+    }
+
+
+    /**
+     * Sets the function used to turn a snapshot into (uncompressed) bytes,
+     * typically JSON.  The encoding is supplied by the web tier so the
+     * snapshot is written exactly as the individual endpoints would write it.
+     */
+    public void setEncoder(Function<ReferenceDataSnapshot, byte[]> encoder) {
+        checkNotNull(encoder, "encoder cannot be null");
+        this.encoder = encoder;
+    }
+
+
+    /**
+     * The current reference data version according to the database.  The
+     * cache keys are re-read at most once every `versionCheckSeconds`.
+     */
+    public String getVersion() {
+        String version = checkedVersion;
+        long now = System.currentTimeMillis();
+        if (version == null || now - versionCheckedAt > versionCheckSeconds * 1000) {
+            version = readVersion();
+            checkedVersion = version;
+            versionCheckedAt = now;
+        }
+        return version;
+    }
+
+
+    /**
+     * Returns the most recently built snapshot.  If it is behind the
+     * current version a rebuild is started in the background and the
+     * existing snapshot is returned.  Only the very first call blocks
+     * whilst the snapshot is built.
+     */
+    public EncodedSnapshot getSnapshot() {
+        EncodedSnapshot snapshot = cachedSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (cachedSnapshot == null) {
+                    rebuild();
+                }
+                return cachedSnapshot;
+            }
+        }
+
+        if (! snapshot.version().equals(getVersion())) {
+            scheduleRebuild();
+        }
+
+        return snapshot;
+    }
+
+
+    /**
+     * Bumps the reference data cache key, causing every node to rebuild its
+     * snapshot.  Use after reference data has been changed outside of Waltz
+     * (e.g. by a data load).
+     */
+    public String invalidate() {
+        clientCacheKeyService.createOrUpdate(ClientCacheKeyService.REFERENCE_DATA_KEY);
+        checkedVersion = null;
+        return getVersion();
+    }
+
+
+    /**
+     * Synchronously rebuilds the snapshot, replacing any cached version.
+     * @return the version of the new snapshot
+     */
+    public String rebuild() {
+        checkNotNull(encoder, "encoder has not been set");
+
+        long st = System.currentTimeMillis();
+        ReferenceDataSnapshot snapshot = loadConsistentSnapshot();
+        byte[] raw = encoder.apply(snapshot);
+        EncodedSnapshot encoded = new EncodedSnapshot(
+                snapshot.version(),
+                snapshot.builtAt(),
+                gzip(raw),
+                raw.length);
+
+        cachedSnapshot = encoded;
+        checkedVersion = encoded.version();
+        versionCheckedAt = System.currentTimeMillis();
+
+        LOG.info("Built reference data snapshot version {}, {} bytes ({} compressed) in {}ms",
+                encoded.version(),
+                encoded.uncompressedLength(),
+                encoded.gzippedBytes().length,
+                System.currentTimeMillis() - st);
+
+        return encoded.version();
+    }
+
+
+    // -- HELPERS ---
+
+    private void scheduleRebuild() {
+        if (! rebuilding.compareAndSet(false, true)) {
+            return; // already in progress
+        }
+
+        try {
+            // the flag is cleared on completion, even if the task expires before it starts
+            dbExecutorPool.submit(
+                    () -> {
+                        try {
+                            return rebuild();
+                        } catch (Exception e) {
+                            LOG.error("Failed to rebuild reference data snapshot, will continue to use previous version", e);
+                            return null;
+                        }
+                    },
+                    () -> rebuilding.set(false));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("DB executor is busy, reference data snapshot rebuild will be retried on a later request");
+        }
+    }
+
+
+    /**
+     * Loads the snapshot, re-reading the version afterwards.  If the keys
+     * moved during the load the data may be newer than the version we read
+     * first, so we go round again (a few times) to avoid nodes serving
+     * different content under the same version.
+     */
+    private ReferenceDataSnapshot loadConsistentSnapshot() {
+        String version = readVersion();
+        for (int attempt = 1; ; attempt++) {
+            ReferenceDataSnapshot snapshot = snapshotLoader.apply(version);
+            String versionAfterLoad = readVersion();
+            if (version.equals(versionAfterLoad) || attempt == MAX_LOAD_ATTEMPTS) {
+                return snapshot;
+            }
+            LOG.info("Reference data changed whilst building snapshot ({} -> {}), reloading", version, versionAfterLoad);
+            version = versionAfterLoad;
+        }
+    }
+
+
+    private static Function<String, ReferenceDataSnapshot> mkSnapshotLoader(DataTypeService dataTypeService,
+                                                                            EnumValueService enumValueService,
+                                                                            InvolvementKindService involvementKindService,
+                                                                            MeasurableCategoryService measurableCategoryService,
+                                                                            MeasurableService measurableService,
+                                                                            OrganisationalUnitService organisationalUnitService,
+                                                                            RatingSchemeService ratingSchemeService,
+                                                                            SettingsService settingsService) {
+        checkNotNull(dataTypeService, "dataTypeService cannot be null");
+        checkNotNull(enumValueService, "enumValueService cannot be null");
+        checkNotNull(involvementKindService, "involvementKindService cannot be null");
+        checkNotNull(measurableCategoryService, "measurableCategoryService cannot be null");
+        checkNotNull(measurableService, "measurableService cannot be null");
+        checkNotNull(organisationalUnitService, "organisationalUnitService cannot be null");
+        checkNotNull(ratingSchemeService, "ratingSchemeService cannot be null");
+        checkNotNull(settingsService, "settingsService cannot be null");
+
+        return version -> ImmutableReferenceDataSnapshot.builder()
+                .version(version)
+                .builtAt(nowUtc())
+                .dataTypes(dataTypeService.findAll())
+                .measurableCategories(measurableCategoryService.findAll())
+                .measurables(measurableService.findAll())
+                .orgUnits(organisationalUnitService.findAll())
+                .involvementKinds(involvementKindService.findAll())
+                .ratingSchemes(ratingSchemeService.findAll())
+                .enumValues(enumValueService.findAll())
+                .settings(map(settingsService.findAll(), ReferenceDataSnapshotService::mask))
+                .build();
+    }
+
+
+    private String readVersion() {
+        String keys = clientCacheKeyService
+                .findAll()
+                .stream()
+                .filter(k -> TRACKED_KEYS.contains(k.key()))
+                .sorted(comparing(ClientCacheKey::key))
+                .map(k -> k.key() + "=" + k.guid())
+                .collect(joining(";"));
+        return digest(keys);
+    }
+
+
+    private static String digest(String str) {
+        try {
+            byte[] hash = MessageDigest
+                    .getInstance("SHA-1")
+                    .digest(str.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+
+    private static Setting mask(Setting setting) {
+        return setting.restricted()
+                ? ImmutableSetting.copyOf(setting).withValue("****")
+                : setting;
+    }
+
+
+    /**
+     * A built snapshot, held gzipped so it can be written straight to
+     * clients which accept gzip encoding.
+     */
+    public static final class EncodedSnapshot {
+
+        private final String version;
+        private final LocalDateTime builtAt;
+        private final byte[] gzippedBytes;
+        private final int uncompressedLength;
+
+
+        EncodedSnapshot(String version,
+                        LocalDateTime builtAt,
+                        byte[] gzippedBytes,
+                        int uncompressedLength) {
+            this.version = version;
+            this.builtAt = builtAt;
+            this.gzippedBytes = gzippedBytes;
+            this.uncompressedLength = uncompressedLength;
+        }
+
+
+        public String version() {
+            return version;
+        }
+
+
+        public LocalDateTime builtAt() {
+            return builtAt;
+        }
+
+
+        /**
+         * The shared, gzipped content.  Callers must not modify the array.
+         */
+        public byte[] gzippedBytes() {
+            return gzippedBytes;
+        }
+
+
+        public int uncompressedLength() {
+            return uncompressedLength;
+        }
+    }
+
+}
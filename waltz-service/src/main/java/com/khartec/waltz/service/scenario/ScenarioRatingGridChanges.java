@@ -0,0 +1,137 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.scenario;
+
+import com.khartec.waltz.model.scenario.ImmutableScenarioRatingGridChange;
+import com.khartec.waltz.model.scenario.ImmutableScenarioRatingGridSummary;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridChange;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridSummary;
+import com.khartec.waltz.model.scenario.ScenarioRatingItem;
+import org.jooq.lambda.tuple.Tuple3;
+
+import java.util.*;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Determines which cells of a scenario rating grid need to be added, updated
+ * or removed to reach the requested state.  Cells are identified by
+ * application, row and column; where a cell is requested more than once
+ * the last request wins.
+ */
+public class ScenarioRatingGridChanges {
+
+    private final List<ScenarioRatingGridChange> toAdd = new ArrayList<>();
+    private final List<ScenarioRatingGridChange> toUpdate = new ArrayList<>();
+    private final List<ScenarioRatingGridChange> toRemove = new ArrayList<>();
+    private int unchanged = 0;
+
+
+    private ScenarioRatingGridChanges() {
+    }
+
+
+    public static ScenarioRatingGridChanges determineChanges(Collection<ScenarioRatingItem> existingItems,
+                                                             Collection<ScenarioRatingGridChange> requestedChanges) {
+        checkNotNull(existingItems, "existingItems cannot be null");
+        checkNotNull(requestedChanges, "requestedChanges cannot be null");
+
+        Map<Tuple3<Long, Long, Long>, ScenarioRatingItem> existingByCell = new HashMap<>(existingItems.size());
+        existingItems.forEach(item -> existingByCell.put(
+                tuple(item.item().id(), item.row().id(), item.column().id()),
+                item));
+
+        Map<Tuple3<Long, Long, Long>, ScenarioRatingGridChange> requestedByCell = new LinkedHashMap<>();
+        requestedChanges.forEach(change -> requestedByCell.put(
+                tuple(change.appId(), change.rowId(), change.columnId()),
+                change));
+
+        ScenarioRatingGridChanges changes = new ScenarioRatingGridChanges();
+
+        requestedByCell.forEach((cell, requested) -> {
+            ScenarioRatingItem existing = existingByCell.get(cell);
+
+            if (! requested.rating().isPresent()) {
+                if (existing == null) {
+                    changes.unchanged++;
+                } else {
+                    changes.toRemove.add(requested);
+                }
+            } else if (existing == null) {
+                changes.toAdd.add(ImmutableScenarioRatingGridChange
+                        .copyOf(requested)
+                        .withComment(requested.comment().orElse("")));
+            } else {
+                String comment = requested.comment().orElse(existing.description());
+                boolean ratingChanged = existing.rating() != requested.rating().get();
+                boolean commentChanged = ! Objects.equals(existing.description(), comment);
+
+                if (ratingChanged || commentChanged) {
+                    changes.toUpdate.add(ImmutableScenarioRatingGridChange
+                            .copyOf(requested)
+                            .withComment(comment));
+                } else {
+                    changes.unchanged++;
+                }
+            }
+        });
+
+        return changes;
+    }
+
+
+    /**
+     * @return cells to add, each with a rating and comment
+     */
+    public List<ScenarioRatingGridChange> toAdd() {
+        return toAdd;
+    }
+
+
+    /**
+     * @return cells to update, each with a rating and the (possibly unchanged) comment
+     */
+    public List<ScenarioRatingGridChange> toUpdate() {
+        return toUpdate;
+    }
+
+
+    public List<ScenarioRatingGridChange> toRemove() {
+        return toRemove;
+    }
+
+
+    public boolean isEmpty() {
+        return toAdd.isEmpty() && toUpdate.isEmpty() && toRemove.isEmpty();
+    }
+
+
+    public ScenarioRatingGridSummary toSummary() {
+        return ImmutableScenarioRatingGridSummary.builder()
+                .added(toAdd.size())
+                .updated(toUpdate.size())
+                .removed(toRemove.size())
+                .unchanged(unchanged)
+                .build();
+    }
+
+}
@@ -23,10 +23,14 @@ import com.khartec.waltz.model.application.Application;
 import com.khartec.waltz.model.rating.RagName;
 import com.khartec.waltz.model.scenario.ChangeScenarioCommand;
 import com.khartec.waltz.model.scenario.Scenario;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridChange;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridSummary;
 import com.khartec.waltz.model.scenario.ScenarioRatingItem;
 import com.khartec.waltz.service.application.ApplicationService;
 import com.khartec.waltz.service.changelog.ChangeLogService;
 import com.khartec.waltz.service.rating_scheme.RatingSchemeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -40,6 +44,9 @@ import static com.khartec.waltz.service.scenario.ScenarioUtilities.mkBasicLogEnt
 @Service
 public class ScenarioRatingItemService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ScenarioRatingItemService.class);
+
+
     private final ScenarioRatingItemDao scenarioRatingItemDao;
     private final ChangeLogService changeLogService;
     private final ApplicationService applicationService;
@@ -102,6 +109,58 @@ public class ScenarioRatingItemService {
         return result;
     }
 
+    /**
+     * Applies many rating changes to a scenario at once.  Only cells which
+     * differ from the current grid are written, and a single change log
+     * entry summarising the update is recorded.
+     *
+     * @param scenarioId  scenario to modify
+     * @param changes  desired cell states, a cell without a rating is removed
+     * @param userId  who is making the change
+     * @return counts of the cells added, updated, removed and left unchanged
+     */
+    public ScenarioRatingGridSummary applyGridChanges(long scenarioId,
+                                                      List<ScenarioRatingGridChange> changes,
+                                                      String userId) {
+        checkNotNull(changes, "changes cannot be null");
+
+        long st = System.currentTimeMillis();
+
+        ScenarioRatingGridChanges gridChanges = ScenarioRatingGridChanges.determineChanges(
+                scenarioRatingItemDao.findForScenarioId(scenarioId),
+                changes);
+
+        ScenarioRatingGridSummary summary = gridChanges.toSummary();
+
+        if (gridChanges.isEmpty()) {
+            return summary;
+        }
+
+        scenarioRatingItemDao.applyGridChanges(
+                scenarioId,
+                gridChanges.toAdd(),
+                gridChanges.toUpdate(),
+                gridChanges.toRemove(),
+                userId);
+
+        Scenario scenario = scenarioService.getById(scenarioId);
+        String message = String.format(
+                "Bulk rating update for %s: %d added, %d updated, %d removed",
+                scenario.name(),
+                summary.added(),
+                summary.updated(),
+                summary.removed());
+        changeLogService.write(mkBasicLogEntry(scenarioId, message, userId));
+
+        LOG.info("Applied {} rating changes to scenario {} in {}ms",
+                changes.size(),
+                scenarioId,
+                System.currentTimeMillis() - st);
+
+        return summary;
+    }
+
+
     private void writeUpdateRatingLog(ChangeScenarioCommand command, String userId) {
         String message;
         Application application = applicationService.getById(command.appId());
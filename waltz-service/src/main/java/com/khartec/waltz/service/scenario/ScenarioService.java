@@ -19,9 +19,7 @@
 package com.khartec.waltz.service.scenario;
 
 import com.khartec.waltz.data.roadmap.RoadmapIdSelectorFactory;
-import com.khartec.waltz.data.scenario.ScenarioAxisItemDao;
 import com.khartec.waltz.data.scenario.ScenarioDao;
-import com.khartec.waltz.data.scenario.ScenarioRatingItemDao;
 import com.khartec.waltz.model.*;
 import com.khartec.waltz.model.changelog.ChangeLog;
 import com.khartec.waltz.model.changelog.ImmutableChangeLog;
@@ -45,24 +43,16 @@ import static com.khartec.waltz.service.scenario.ScenarioUtilities.mkBasicLogEnt
 public class ScenarioService {
 
     private final ScenarioDao scenarioDao;
-    private final ScenarioAxisItemDao scenarioAxisItemDao;
-    private final ScenarioRatingItemDao scenarioRatingItemDao;
     private final RoadmapIdSelectorFactory roadmapIdSelectorFactory = new RoadmapIdSelectorFactory();
     private final ChangeLogService changeLogService;
 
 
     @Autowired
     public ScenarioService(ScenarioDao scenarioDao,
-                           ScenarioAxisItemDao scenarioAxisItemDao,
-                           ScenarioRatingItemDao scenarioRatingItemDao,
                            ChangeLogService changeLogService) {
         checkNotNull(scenarioDao, "scenarioDao cannot be null");
-        checkNotNull(scenarioAxisItemDao, "scenarioAxisItemDao cannot be null");
-        checkNotNull(scenarioRatingItemDao, "scenarioRatingItemDao cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
         this.scenarioDao = scenarioDao;
-        this.scenarioAxisItemDao = scenarioAxisItemDao;
-        this.scenarioRatingItemDao = scenarioRatingItemDao;
         this.changeLogService = changeLogService;
     }
 
@@ -85,8 +75,6 @@ public class ScenarioService {
 
     public Scenario cloneScenario(CloneScenarioCommand command) {
         Scenario clonedScenario = scenarioDao.cloneScenario(command);
-        scenarioRatingItemDao.cloneItems(command, clonedScenario.id().get());
-        scenarioAxisItemDao.cloneItems(command, clonedScenario.id().get());
 
         writeLogEntriesForCloningOperation(command, clonedScenario);
 
@@ -0,0 +1,124 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.scheduled_job;
+
+import com.khartec.waltz.model.scheduled_job.JobExecutionOutcome;
+import com.khartec.waltz.model.scheduled_job.JobKey;
+import com.khartec.waltz.model.scheduled_job.ScheduledJobExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * Keeps an in-memory history of the most recent executions of each
+ * scheduled job.  Exposed via jmx and the scheduled job endpoint.
+ */
+@Service
+@ManagedResource(description = "Execution history of the Waltz scheduled jobs")
+public class ScheduledJobHistory {
+
+    private static final Comparator<ScheduledJobExecution> MOST_RECENT_FIRST = Comparator
+            .comparing(ScheduledJobExecution::startedAt)
+            .reversed();
+
+    private final Map<JobKey, Deque<ScheduledJobExecution>> executionsByJob = new EnumMap<>(JobKey.class);
+    private final AtomicLong executionCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    @Value("${waltz.scheduled.jobs.historySize:20}")
+    private int historySize;
+
+
+    public synchronized void record(Collection<ScheduledJobExecution> executions) {
+        checkNotNull(executions, "executions cannot be null");
+
+        for (ScheduledJobExecution execution : executions) {
+            Deque<ScheduledJobExecution> history = executionsByJob.computeIfAbsent(
+                    execution.jobKey(),
+                    k -> new ArrayDeque<>());
+
+            history.addFirst(execution);
+            while (history.size() > historySize) {
+                history.removeLast();
+            }
+
+            executionCount.incrementAndGet();
+            if (execution.outcome() != JobExecutionOutcome.COMPLETED) {
+                failureCount.incrementAndGet();
+            }
+        }
+    }
+
+
+    public synchronized List<ScheduledJobExecution> findAll() {
+        return executionsByJob
+                .values()
+                .stream()
+                .flatMap(Collection::stream)
+                .sorted(MOST_RECENT_FIRST)
+                .collect(toList());
+    }
+
+
+    public synchronized List<ScheduledJobExecution> findForJob(JobKey jobKey) {
+        checkNotNull(jobKey, "jobKey cannot be null");
+        return new ArrayList<>(executionsByJob.getOrDefault(jobKey, new ArrayDeque<>()));
+    }
+
+
+    @ManagedAttribute(description = "Total number of job executions recorded")
+    public long getExecutionCount() {
+        return executionCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Total number of job executions which errored, timed out or were skipped")
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Most recent execution of each job")
+    public synchronized String[] getLatestExecutions() {
+        return executionsByJob
+                .values()
+                .stream()
+                .map(Deque::peekFirst)
+                .filter(Objects::nonNull)
+                .map(e -> String.format(
+                        "%s: %s at %s in %dms, rows: %s%s",
+                        e.jobKey(),
+                        e.outcome(),
+                        e.startedAt(),
+                        e.durationMillis(),
+                        e.rowsAffected().map(String::valueOf).orElse("-"),
+                        e.message().map(m -> ", " + m).orElse("")))
+                .toArray(String[]::new);
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.scheduled_job;
+
+import com.khartec.waltz.model.scheduled_job.ImmutableScheduledJobExecution;
+import com.khartec.waltz.model.scheduled_job.JobExecutionOutcome;
+import com.khartec.waltz.model.scheduled_job.JobKey;
+import com.khartec.waltz.model.scheduled_job.ScheduledJobExecution;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedAcyclicGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * Runs a set of jobs respecting the dependencies between them.
+ *
+ * Dependencies are expressed as a DAG where an edge `a -> b` means `b` may only
+ * start once `a` has finished.  Jobs whose dependencies have all finished run in
+ * parallel on the supplied (bounded) executor.  Each job is given a timeout, if
+ * it is exceeded the job is recorded as TIMED_OUT and its thread interrupted.
+ * As an interrupt does not stop a running jdbc statement the job is only
+ * marked as finished, via the {@link JobLifecycle}, once its thread has
+ * actually stopped, so it cannot be started again whilst still running.  Jobs downstream
+ * of a failed (or timed out) job are not run, they are recorded as skipped and
+ * will be picked up on a later run.
+ */
+public class ScheduledJobRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScheduledJobRunner.class);
+
+
+    /**
+     * Hooks allowing the caller to decide whether a job should be run and to
+     * track its status (typically via the scheduled job table).
+     */
+    public interface JobLifecycle {
+
+        boolean isRunnable(JobKey jobKey);
+
+        /**
+         * @return true if the job was successfully claimed and should now be executed
+         */
+        boolean markAsRunning(JobKey jobKey);
+
+        /**
+         * Called once the job is no longer running, for a timed out job this
+         * may be some time after the timeout
+         */
+        void markAsFinished(JobKey jobKey, JobExecutionOutcome outcome);
+    }
+
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+
+
+    public ScheduledJobRunner(ExecutorService executor,
+                              ScheduledExecutorService timer) {
+        checkNotNull(executor, "executor cannot be null");
+        checkNotNull(timer, "timer cannot be null");
+
+        this.executor = executor;
+        this.timer = timer;
+    }
+
+
+    /**
+     * Runs the jobs, blocking until all have completed, failed, timed out or been skipped.
+     *
+     * @param dependencies  DAG of job keys, edges point from a job to its dependents
+     * @param jobs  the work associated with each job key, the result is inspected for a row count
+     * @param timeouts  maximum duration for each job
+     * @param lifecycle  decides if a job should run and is notified of its outcome
+     * @return executions of the jobs which were attempted or skipped (not-runnable jobs are omitted)
+     */
+    public List<ScheduledJobExecution> run(DirectedAcyclicGraph<JobKey, DefaultEdge> dependencies,
+                                           Map<JobKey, Callable<?>> jobs,
+                                           Function<JobKey, Duration> timeouts,
+                                           JobLifecycle lifecycle) {
+        checkNotNull(dependencies, "dependencies cannot be null");
+        checkNotNull(jobs, "jobs cannot be null");
+        checkNotNull(timeouts, "timeouts cannot be null");
+        checkNotNull(lifecycle, "lifecycle cannot be null");
+
+        Map<JobKey, CompletableFuture<Optional<ScheduledJobExecution>>> futures = new LinkedHashMap<>();
+
+        // the DAG iterates in topological order so upstream futures always exist
+        for (JobKey jobKey : dependencies) {
+            List<CompletableFuture<Optional<ScheduledJobExecution>>> upstream = Graphs
+                    .predecessorListOf(dependencies, jobKey)
+                    .stream()
+                    .map(futures::get)
+                    .collect(toList());
+
+            CompletableFuture<Optional<ScheduledJobExecution>> future = CompletableFuture
+                    .allOf(upstream.toArray(new CompletableFuture[0]))
+                    .thenComposeAsync(
+                            x -> startIfReady(jobKey, jobs.get(jobKey), timeouts.apply(jobKey), upstream, lifecycle),
+                            executor);
+
+            futures.put(jobKey, future);
+        }
+
+        return futures
+                .values()
+                .stream()
+                .map(CompletableFuture::join)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(toList());
+    }
+
+
+    // -- HELPERS ---
+
+    private CompletableFuture<Optional<ScheduledJobExecution>> startIfReady(
+            JobKey jobKey,
+            Callable<?> job,
+            Duration timeout,
+            List<CompletableFuture<Optional<ScheduledJobExecution>>> upstream,
+            JobLifecycle lifecycle) {
+
+        LocalDateTime startedAt = nowUtc();
+
+        try {
+            if (job == null || ! lifecycle.isRunnable(jobKey)) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            Optional<ScheduledJobExecution> failedUpstream = upstream
+                    .stream()
+                    .map(CompletableFuture::join)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .filter(e -> e.outcome() != JobExecutionOutcome.COMPLETED)
+                    .findFirst();
+
+            if (failedUpstream.isPresent()) {
+                LOG.warn("Skipping job: {} as upstream job: {} did not complete", jobKey, failedUpstream.get().jobKey());
+                return CompletableFuture.completedFuture(Optional.of(mkExecution(
+                        jobKey,
+                        JobExecutionOutcome.SKIPPED_UPSTREAM_FAILURE,
+                        startedAt,
+                        0,
+                        null,
+                        "Upstream job did not complete: " + failedUpstream.get().jobKey())));
+            }
+
+            if (! lifecycle.markAsRunning(jobKey)) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to start job: " + jobKey, e);
+            return CompletableFuture.completedFuture(Optional.of(mkExecution(
+                    jobKey,
+                    JobExecutionOutcome.ERRORED,
+                    startedAt,
+                    0,
+                    null,
+                    e.getMessage())));
+        }
+
+        return start(jobKey, job, timeout, lifecycle);
+    }
+
+
+    private CompletableFuture<Optional<ScheduledJobExecution>> start(JobKey jobKey,
+                                                                      Callable<?> job,
+                                                                      Duration timeout,
+                                                                      JobLifecycle lifecycle) {
+        CompletableFuture<Optional<ScheduledJobExecution>> result = new CompletableFuture<>();
+        LocalDateTime startedAt = nowUtc();
+        long st = System.currentTimeMillis();
+
+        LOG.info("Starting job: {}", jobKey);
+
+        JobWorker worker = new JobWorker();
+
+        executor.submit(() -> {
+            if (! worker.begin()) {
+                // timed out whilst waiting for a thread, never started
+                lifecycle.markAsFinished(jobKey, JobExecutionOutcome.TIMED_OUT);
+                return;
+            }
+
+            ScheduledJobExecution outcome;
+            try {
+                Object jobResult = job.call();
+                outcome = mkExecution(
+                        jobKey,
+                        JobExecutionOutcome.COMPLETED,
+                        startedAt,
+                        System.currentTimeMillis() - st,
+                        toRowCount(jobResult),
+                        null);
+            } catch (Exception e) {
+                LOG.error("Failed to run job: " + jobKey, e);
+                outcome = mkExecution(
+                        jobKey,
+                        JobExecutionOutcome.ERRORED,
+                        startedAt,
+                        System.currentTimeMillis() - st,
+                        null,
+                        e.getMessage());
+            } finally {
+                worker.end();
+            }
+
+            if (result.complete(Optional.of(outcome))) {
+                LOG.info("Finished job: {}, outcome: {}, duration: {}ms", jobKey, outcome.outcome(), outcome.durationMillis());
+                lifecycle.markAsFinished(jobKey, outcome.outcome());
+            } else {
+                // only now is it safe for the job to be picked up again
+                LOG.warn("Job: {} stopped {}ms after it timed out", jobKey, System.currentTimeMillis() - st - timeout.toMillis());
+                lifecycle.markAsFinished(jobKey, JobExecutionOutcome.TIMED_OUT);
+            }
+        });
+
+        ScheduledFuture<?> watchdog = timer.schedule(
+                () -> {
+                    ScheduledJobExecution outcome = mkExecution(
+                            jobKey,
+                            JobExecutionOutcome.TIMED_OUT,
+                            startedAt,
+                            System.currentTimeMillis() - st,
+                            null,
+                            "Exceeded timeout of " + timeout);
+
+                    if (result.complete(Optional.of(outcome))) {
+                        LOG.error("Job: {} exceeded timeout of {}, interrupting, it remains running until it stops", jobKey, timeout);
+                        worker.interrupt();
+                    }
+                },
+                timeout.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+        result.thenRun(() -> watchdog.cancel(false));
+
+        return result;
+    }
+
+
+    /**
+     * Tracks the thread running a job so the watchdog can interrupt it
+     * without risking interrupting whatever that thread runs next.
+     */
+    private static class JobWorker {
+
+        private Thread thread = null;
+        private boolean cancelled = false;
+
+
+        /**
+         * @return false if the job has already been cancelled and should not start
+         */
+        synchronized boolean begin() {
+            if (cancelled) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+
+        synchronized void end() {
+            thread = null;
+            // clear any interrupt which arrived after the job returned
+            Thread.interrupted();
+        }
+
+
+        synchronized void interrupt() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+
+    private static Integer toRowCount(Object jobResult) {
+        if (jobResult instanceof Number) {
+            return ((Number) jobResult).intValue();
+        } else if (jobResult instanceof int[]) {
+            return Arrays.stream((int[]) jobResult).sum();
+        } else {
+            return null;
+        }
+    }
+
+
+    private static ScheduledJobExecution mkExecution(JobKey jobKey,
+                                                     JobExecutionOutcome outcome,
+                                                     LocalDateTime startedAt,
+                                                     long durationMillis,
+                                                     Integer rowsAffected,
+                                                     String message) {
+        return ImmutableScheduledJobExecution.builder()
+                .jobKey(jobKey)
+                .outcome(outcome)
+                .startedAt(startedAt)
+                .durationMillis(durationMillis)
+                .rowsAffected(Optional.ofNullable(rowsAffected))
+                .message(Optional.ofNullable(message))
+                .build();
+    }
+
+}
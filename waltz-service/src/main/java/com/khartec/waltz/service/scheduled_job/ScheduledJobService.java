@@ -21,24 +21,53 @@ package com.khartec.waltz.service.scheduled_job;
 
 import com.khartec.waltz.data.scheduled_job.ScheduledJobDao;
 import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.scheduled_job.JobExecutionOutcome;
 import com.khartec.waltz.model.scheduled_job.JobKey;
 import com.khartec.waltz.model.scheduled_job.JobLifecycleStatus;
+import com.khartec.waltz.model.scheduled_job.ScheduledJobExecution;
 import com.khartec.waltz.service.authoritative_source.AuthoritativeSourceService;
 import com.khartec.waltz.service.complexity.ComplexityRatingService;
 import com.khartec.waltz.service.entity_hierarchy.EntityHierarchyService;
+import com.khartec.waltz.service.entity_statistic.EntityStatisticRollupService;
 import com.khartec.waltz.service.logical_flow.LogicalFlowService;
 import com.khartec.waltz.service.physical_specification_data_type.PhysicalSpecDataTypeService;
 import com.khartec.waltz.service.usage_info.DataTypeUsageService;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedAcyclicGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.function.Consumer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.StringUtilities.mkSafe;
 
+
+/**
+ * Periodically runs any scheduled jobs which have been marked as runnable.
+ *
+ * Jobs are arranged in a dependency graph (hierarchies, then data type ripple,
+ * then usages and ratings) and independent jobs are run in parallel, see
+ * {@link ScheduledJobRunner}.  Outcomes are recorded in {@link ScheduledJobHistory}.
+ *
+ * Configuration:
+ * <ul>
+ *     <li>`waltz.scheduled.jobs.parallelism` - max number of jobs running at once (default: 3)</li>
+ *     <li>`waltz.scheduled.jobs.timeoutMinutes` - default timeout per job (default: 60)</li>
+ *     <li>`waltz.scheduled.jobs.timeoutOverrides` - per job timeouts in minutes,
+ *     e.g. `COMPLEXITY_REBUILD=120;AUTH_SOURCE_RECALC_FLOW_RATINGS=30`</li>
+ * </ul>
+ */
 @Service
 public class ScheduledJobService {
 
@@ -48,9 +77,26 @@ public class ScheduledJobService {
     private final ComplexityRatingService complexityRatingService;
     private final DataTypeUsageService dataTypeUsageService;
     private final EntityHierarchyService entityHierarchyService;
+    private final EntityStatisticRollupService entityStatisticRollupService;
     private final LogicalFlowService logicalFlowService;
     private final PhysicalSpecDataTypeService physicalSpecDataTypeService;
     private final ScheduledJobDao scheduledJobDao;
+    private final ScheduledJobHistory scheduledJobHistory;
+
+    private final DirectedAcyclicGraph<JobKey, DefaultEdge> dependencies = mkDependencies();
+    private final Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+    private final Map<JobKey, Duration> timeoutOverrides = new EnumMap<>(JobKey.class);
+
+    private ScheduledJobRunner runner;
+
+    @Value("${waltz.scheduled.jobs.parallelism:3}")
+    private int parallelism;
+
+    @Value("${waltz.scheduled.jobs.timeoutMinutes:60}")
+    private long defaultTimeoutMinutes;
+
+    @Value("${waltz.scheduled.jobs.timeoutOverrides:}")
+    private String timeoutOverridesStr;
 
 
     @Autowired
@@ -58,76 +104,132 @@ public class ScheduledJobService {
                                ComplexityRatingService complexityRatingService,
                                DataTypeUsageService dataTypeUsageService,
                                EntityHierarchyService entityHierarchyService,
+                               EntityStatisticRollupService entityStatisticRollupService,
                                LogicalFlowService logicalFlowService,
                                PhysicalSpecDataTypeService physicalSpecDataTypeService,
-                               ScheduledJobDao scheduledJobDao) {
+                               ScheduledJobDao scheduledJobDao,
+                               ScheduledJobHistory scheduledJobHistory) {
         checkNotNull(authoritativeSourceService, "authoritativeSourceService cannot be null");
         checkNotNull(complexityRatingService, "complexityRatingService cannot be null");
         checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        checkNotNull(entityStatisticRollupService, "entityStatisticRollupService cannot be null");
         checkNotNull(logicalFlowService, "logicalFlowService cannot be null");
         checkNotNull(physicalSpecDataTypeService, "physicalSpecDataTypeService cannot be null");
         checkNotNull(scheduledJobDao, "scheduledJobDao cannot be null");
+        checkNotNull(scheduledJobHistory, "scheduledJobHistory cannot be null");
 
         this.authoritativeSourceService = authoritativeSourceService;
         this.complexityRatingService = complexityRatingService;
         this.dataTypeUsageService = dataTypeUsageService;
         this.entityHierarchyService = entityHierarchyService;
+        this.entityStatisticRollupService = entityStatisticRollupService;
         this.logicalFlowService = logicalFlowService;
         this.physicalSpecDataTypeService = physicalSpecDataTypeService;
         this.scheduledJobDao = scheduledJobDao;
+        this.scheduledJobHistory = scheduledJobHistory;
+
+        jobs.put(JobKey.HIERARCHY_REBUILD_CHANGE_INITIATIVE, () -> entityHierarchyService.buildFor(EntityKind.CHANGE_INITIATIVE));
+        jobs.put(JobKey.HIERARCHY_REBUILD_DATA_TYPE, () -> entityHierarchyService.buildFor(EntityKind.DATA_TYPE));
+        jobs.put(JobKey.HIERARCHY_REBUILD_ENTITY_STATISTICS, () -> entityHierarchyService.buildFor(EntityKind.ENTITY_STATISTIC));
+        jobs.put(JobKey.HIERARCHY_REBUILD_MEASURABLE, () -> entityHierarchyService.buildFor(EntityKind.MEASURABLE));
+        jobs.put(JobKey.HIERARCHY_REBUILD_ORG_UNIT, () -> entityHierarchyService.buildFor(EntityKind.ORG_UNIT));
+        jobs.put(JobKey.HIERARCHY_REBUILD_PERSON, () -> entityHierarchyService.buildFor(EntityKind.PERSON));
+        jobs.put(JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, physicalSpecDataTypeService::rippleDataTypesToLogicalFlows);
+        jobs.put(JobKey.DATA_TYPE_USAGE_RECALC_APPLICATION, dataTypeUsageService::recalculateForAllApplications);
+        jobs.put(JobKey.COMPLEXITY_REBUILD, complexityRatingService::rebuild);
+        jobs.put(JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS, authoritativeSourceService::fastRecalculateAllFlowRatings);
+        jobs.put(JobKey.LOGICAL_FLOW_CLEANUP_ORPHANS, logicalFlowService::cleanupOrphans);
+        jobs.put(JobKey.ENTITY_STATISTIC_ROLLUP_REBUILD, entityStatisticRollupService::rebuild);
     }
 
 
     @Scheduled(fixedRate = 300_000)
     public void run() {
         Thread.currentThread().setName("WaltzScheduledJobService");
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_CHANGE_INITIATIVE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.CHANGE_INITIATIVE));
 
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_DATA_TYPE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.DATA_TYPE));
+        List<ScheduledJobExecution> executions = getRunner().run(
+                dependencies,
+                jobs,
+                jobKey -> timeoutOverrides.getOrDefault(jobKey, Duration.ofMinutes(defaultTimeoutMinutes)),
+                new ScheduledJobRunner.JobLifecycle() {
+                    @Override
+                    public boolean isRunnable(JobKey jobKey) {
+                        return scheduledJobDao.isJobRunnable(jobKey);
+                    }
+
+                    @Override
+                    public boolean markAsRunning(JobKey jobKey) {
+                        return scheduledJobDao.markJobAsRunning(jobKey);
+                    }
+
+                    @Override
+                    public void markAsFinished(JobKey jobKey, JobExecutionOutcome outcome) {
+                        scheduledJobDao.updateJobStatus(
+                                jobKey,
+                                outcome == JobExecutionOutcome.COMPLETED
+                                        ? JobLifecycleStatus.COMPLETED
+                                        : JobLifecycleStatus.ERRORED);
+                    }
+                });
+
+        scheduledJobHistory.record(executions);
+    }
 
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_ENTITY_STATISTICS,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.ENTITY_STATISTIC));
 
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_MEASURABLE,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.MEASURABLE));
+    // -- HELPERS ---
 
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_ORG_UNIT,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.ORG_UNIT));
+    private synchronized ScheduledJobRunner getRunner() {
+        if (runner != null) {
+            return runner;
+        }
 
-        runIfNeeded(JobKey.HIERARCHY_REBUILD_PERSON,
-                (jk) -> entityHierarchyService.buildFor(EntityKind.PERSON));
+        runner = new ScheduledJobRunner(
+                Executors.newFixedThreadPool(
+                        Integer.max(parallelism, 1),
+                        (runnable) -> {
+                            Thread t = new Thread(runnable, "WaltzScheduledJob");
+                            t.setDaemon(true);
+                            return t;
+                        }),
+                Executors.newSingleThreadScheduledExecutor(
+                        (runnable) -> {
+                            Thread t = new Thread(runnable, "WaltzScheduledJobTimer");
+                            t.setDaemon(true);
+                            return t;
+                        }));
+
+        Stream.of(mkSafe(timeoutOverridesStr).split(";"))
+                .map(setting -> setting.split("="))
+                .filter(nv -> nv.length == 2)
+                .forEach(nv -> timeoutOverrides.put(
+                        JobKey.valueOf(nv[0].trim()),
+                        Duration.ofMinutes(Long.parseLong(nv[1].trim()))));
+
+        return runner;
+    }
 
-        runIfNeeded(JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL,
-                (jk) -> physicalSpecDataTypeService.rippleDataTypesToLogicalFlows());
 
-        runIfNeeded(JobKey.DATA_TYPE_USAGE_RECALC_APPLICATION,
-                (jk) -> dataTypeUsageService.recalculateForAllApplications());
+    /**
+     * Hierarchies first, then data type ripple, then data type usages and flow ratings.
+     * Orphan cleanup runs last, as it always has.
+     */
+    private static DirectedAcyclicGraph<JobKey, DefaultEdge> mkDependencies() {
+        DirectedAcyclicGraph<JobKey, DefaultEdge> g = new DirectedAcyclicGraph<>(DefaultEdge.class);
 
-        runIfNeeded(JobKey.COMPLEXITY_REBUILD,
-                (jk) -> complexityRatingService.rebuild());
+        Stream.of(JobKey.values()).forEach(g::addVertex);
 
-        runIfNeeded(JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS,
-                (jk) -> authoritativeSourceService.fastRecalculateAllFlowRatings());
+        g.addEdge(JobKey.HIERARCHY_REBUILD_DATA_TYPE, JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL);
 
-        runIfNeeded(JobKey.LOGICAL_FLOW_CLEANUP_ORPHANS,
-                (jk) -> logicalFlowService.cleanupOrphans());
-    }
+        g.addEdge(JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, JobKey.DATA_TYPE_USAGE_RECALC_APPLICATION);
 
+        g.addEdge(JobKey.DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS);
+        g.addEdge(JobKey.HIERARCHY_REBUILD_ORG_UNIT, JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS);
+        g.addEdge(JobKey.HIERARCHY_REBUILD_ORG_UNIT, JobKey.ENTITY_STATISTIC_ROLLUP_REBUILD);
 
-    private void runIfNeeded(JobKey jobKey, Consumer<JobKey> jobExecutor) {
-        try {
-            if (scheduledJobDao.isJobRunnable(jobKey)
-                    && scheduledJobDao.markJobAsRunning(jobKey)) {
-                jobExecutor
-                        .andThen((jk) -> scheduledJobDao.updateJobStatus(jk, JobLifecycleStatus.COMPLETED))
-                        .accept(jobKey);
-            }
-        } catch (Exception e) {
-            LOG.error("Failed to run job: " + jobKey, e);
-            scheduledJobDao.updateJobStatus(jobKey, JobLifecycleStatus.ERRORED);
-        }
+        g.addEdge(JobKey.DATA_TYPE_USAGE_RECALC_APPLICATION, JobKey.LOGICAL_FLOW_CLEANUP_ORPHANS);
+        g.addEdge(JobKey.AUTH_SOURCE_RECALC_FLOW_RATINGS, JobKey.LOGICAL_FLOW_CLEANUP_ORPHANS);
+
+        return g;
     }
 
 }
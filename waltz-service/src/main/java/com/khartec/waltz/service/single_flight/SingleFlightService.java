@@ -0,0 +1,309 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.single_flight;
+
+import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.ImmutableIdSelectionOptions;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+
+/**
+ * Coalesces concurrent, identical, expensive reads.
+ *
+ * Calls are keyed by an operation name (typically `Service.method`) and
+ * a key (typically the normalized {@link IdSelectionOptions}).  Whilst a call
+ * for a key is in flight, further calls for the same key wait for, and share,
+ * its result rather than repeating the work.  Optionally the result is then
+ * kept for a short while (`waltz.single.flight.resultTtlMillis`) so
+ * callers arriving just after it completed also share it.
+ *
+ * Results are shared between callers, so they must not be modified.
+ *
+ * Counters (per operation and overall) are exposed via JMX.
+ */
+@Service
+@ManagedResource(description = "Coalesces concurrent identical expensive reads")
+public class SingleFlightService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlightService.class);
+
+    private static final ThreadLocal<Set<Tuple2<String, Object>>> LEADING = ThreadLocal.withInitial(HashSet::new);
+
+    private final Map<Tuple2<String, Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Tuple2<String, Object>, CachedResult> recentResults = new ConcurrentHashMap<>();
+    private final Map<String, Counters> countersByOperation = new ConcurrentHashMap<>();
+
+    @Value("${waltz.single.flight.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${waltz.single.flight.resultTtlMillis:0}")
+    private long resultTtlMillis = 0;
+
+    @Value("${waltz.single.flight.maxCachedResults:500}")
+    private int maxCachedResults = 500;
+
+
+    /**
+     * Runs (or joins) the computation for the given operation and key.
+     * Exceptions thrown by the computation are rethrown to every caller
+     * sharing it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object key, Supplier<T> computation) {
+        checkNotNull(operation, "operation cannot be null");
+        checkNotNull(key, "key cannot be null");
+        checkNotNull(computation, "computation cannot be null");
+
+        Counters counters = countersByOperation.computeIfAbsent(operation, k -> new Counters());
+        counters.calls.increment();
+
+        Tuple2<String, Object> flightKey = tuple(operation, key);
+
+        if (! enabled || LEADING.get().contains(flightKey)) {
+            // disabled, or a re-entrant call which would otherwise wait on itself
+            counters.executed.increment();
+            return computation.get();
+        }
+
+        CachedResult cached = recentResults.get(flightKey);
+        if (cached != null) {
+            if (cached.isLive()) {
+                counters.cacheHits.increment();
+                return (T) cached.value;
+            }
+            recentResults.remove(flightKey, cached);
+        }
+
+        CompletableFuture<Object> ours = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, ours);
+
+        if (existing != null) {
+            counters.joined.increment();
+            return (T) join(existing);
+        }
+
+        counters.executed.increment();
+        LEADING.get().add(flightKey);
+        try {
+            T result = computation.get();
+            remember(flightKey, result);
+            ours.complete(result);
+            return result;
+        } catch (Throwable t) {
+            // always complete, callers waiting on us would otherwise hang
+            ours.completeExceptionally(t);
+            throw t;
+        } finally {
+            LEADING.get().remove(flightKey);
+            inFlight.remove(flightKey, ours);
+        }
+    }
+
+
+    /**
+     * Convenience for the common case of a computation driven by selection
+     * options.  The options are normalized so that, for example, entity
+     * references which differ only by name share a key.
+     */
+    public <T> T execute(String operation, IdSelectionOptions options, Supplier<T> computation) {
+        checkNotNull(options, "options cannot be null");
+        return execute(operation, (Object) normalize(options), computation);
+    }
+
+
+    public static IdSelectionOptions normalize(IdSelectionOptions options) {
+        return ImmutableIdSelectionOptions
+                .copyOf(options)
+                .withEntityReference(mkRef(
+                        options.entityReference().kind(),
+                        options.entityReference().id()));
+    }
+
+
+    // -- JMX ---
+
+    @ManagedAttribute(description = "Calls made through the coalescer")
+    public long getCallCount() {
+        return sum(c -> c.calls);
+    }
+
+
+    @ManagedAttribute(description = "Calls which actually ran their computation")
+    public long getExecutedCount() {
+        return sum(c -> c.executed);
+    }
+
+
+    @ManagedAttribute(description = "Calls which shared an in-flight computation")
+    public long getJoinedCount() {
+        return sum(c -> c.joined);
+    }
+
+
+    @ManagedAttribute(description = "Calls answered from the short lived result cache")
+    public long getCacheHitCount() {
+        return sum(c -> c.cacheHits);
+    }
+
+
+    @ManagedAttribute(description = "Fraction of calls which did not run their own computation")
+    public double getCoalescingRatio() {
+        long calls = getCallCount();
+        return calls == 0
+                ? 0
+                : (getJoinedCount() + getCacheHitCount()) / (double) calls;
+    }
+
+
+    @ManagedAttribute(description = "Computations currently in flight")
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+
+    @ManagedAttribute(description = "Per operation counts: calls / executed / joined / cache hits")
+    public String[] getOperationStatistics() {
+        return countersByOperation
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> String.format(
+                        "%s: %d / %d / %d / %d",
+                        e.getKey(),
+                        e.getValue().calls.sum(),
+                        e.getValue().executed.sum(),
+                        e.getValue().joined.sum(),
+                        e.getValue().cacheHits.sum()))
+                .toArray(String[]::new);
+    }
+
+
+    @ManagedAttribute(description = "How long results are kept after completing, in milliseconds (0 = not kept)")
+    public long getResultTtlMillis() {
+        return resultTtlMillis;
+    }
+
+
+    @ManagedAttribute(description = "How long results are kept after completing, in milliseconds (0 = not kept)")
+    public void setResultTtlMillis(long resultTtlMillis) {
+        this.resultTtlMillis = Math.max(0, resultTtlMillis);
+    }
+
+
+    @ManagedOperation(description = "Discard cached results and reset counters")
+    public void reset() {
+        recentResults.clear();
+        countersByOperation.clear();
+    }
+
+
+    // -- HELPERS ---
+
+    private void remember(Tuple2<String, Object> flightKey, Object result) {
+        long ttl = resultTtlMillis;
+        if (ttl <= 0) {
+            return;
+        }
+
+        if (recentResults.size() >= maxCachedResults) {
+            recentResults.values().removeIf(r -> ! r.isLive());
+            if (recentResults.size() >= maxCachedResults) {
+                LOG.debug("Single flight result cache full, not caching result for: {}", flightKey.v1);
+                return;
+            }
+        }
+
+        recentResults.put(flightKey, new CachedResult(result, System.currentTimeMillis() + ttl));
+    }
+
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting for shared computation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException("Shared computation failed", cause);
+            }
+        }
+    }
+
+
+    private long sum(Function<Counters, LongAdder> counter) {
+        return countersByOperation
+                .values()
+                .stream()
+                .mapToLong(c -> counter.apply(c).sum())
+                .sum();
+    }
+
+
+    private static class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder executed = new LongAdder();
+        private final LongAdder joined = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+    }
+
+
+    private static class CachedResult {
+
+        private final Object value;
+        private final long expiresAt;
+
+
+        CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+
+        boolean isLive() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+}
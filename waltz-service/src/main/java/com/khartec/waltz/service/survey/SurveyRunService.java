@@ -18,7 +18,6 @@
 
 package com.khartec.waltz.service.survey;
 
-import com.khartec.waltz.common.ListUtilities;
 import com.khartec.waltz.common.SetUtilities;
 import com.khartec.waltz.data.GenericSelector;
 import com.khartec.waltz.data.GenericSelectorFactory;
@@ -32,7 +31,11 @@ import com.khartec.waltz.model.survey.*;
 import com.khartec.waltz.service.changelog.ChangeLogService;
 import org.jooq.Record1;
 import org.jooq.Select;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -40,18 +43,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static com.khartec.waltz.common.Checks.checkTrue;
 import static com.khartec.waltz.common.ListUtilities.map;
 import static com.khartec.waltz.common.MapUtilities.indexBy;
 import static com.khartec.waltz.common.SetUtilities.fromCollection;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 @Service
 public class SurveyRunService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SurveyRunService.class);
+
     private final ChangeLogService changeLogService;
     private final InvolvementDao involvementDao;
     private final PersonDao personDao;
@@ -64,6 +72,9 @@ public class SurveyRunService {
     private final GenericSelectorFactory genericSelectorFactory = new GenericSelectorFactory();
     private final SurveyInstanceIdSelectorFactory surveyInstanceIdSelectorFactory = new SurveyInstanceIdSelectorFactory();
 
+    @Value("${waltz.survey.issuance.batchSize:500}")
+    private int issuanceBatchSize;
+
 
     @Autowired
     public SurveyRunService(ChangeLogService changeLogService,
@@ -292,51 +303,53 @@ public class SurveyRunService {
                         toList()
                 ));
 
-        // delete existing instances and recipients
-        deleteSurveyInstancesAndRecipients(surveyRunId);
-
-        // insert new instances and recipients
-        instancesAndRecipientsToSave.forEach(
-                (k,v) -> {
+        List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> instancesWithRecipients = instancesAndRecipientsToSave
+                .entrySet()
+                .stream()
+                .flatMap(e -> {
+                    SurveyInstanceCreateCommand command = mkInstanceCreateCommand(e.getKey());
+                    List<Long> personIds = map(e.getValue(), r -> r.person().id().get());
                     if (surveyRun.issuanceKind() == SurveyIssuanceKind.GROUP) {
                         // one instance per group
-                        long instanceId = createSurveyInstance(k);
-                        v.forEach(r -> createSurveyInstanceRecipient(instanceId, r));
+                        return Stream.of(tuple(command, personIds));
                     } else {
                         // one instance for each individual
-                        v.forEach(r -> {
-                            long instanceId = createSurveyInstance(k);
-                            createSurveyInstanceRecipient(instanceId, r);
-                        });
+                        return personIds.stream().map(p -> tuple(command, singletonList(p)));
                     }
-                }
-        );
-
-        return true;
-    }
+                })
+                .collect(toList());
 
+        // replace existing instances and recipients
+        bulkCreate(surveyRunId, true, instancesWithRecipients);
 
-    private void deleteSurveyInstancesAndRecipients(long surveyRunId) {
-        surveyInstanceRecipientDao.deleteForSurveyRun(surveyRunId);
-        surveyInstanceDao.deleteForSurveyRun(surveyRunId);
+        return true;
     }
 
 
-    private long createSurveyInstance(SurveyInstance surveyInstance) {
-        return surveyInstanceDao.create(ImmutableSurveyInstanceCreateCommand.builder()
+    private SurveyInstanceCreateCommand mkInstanceCreateCommand(SurveyInstance surveyInstance) {
+        return ImmutableSurveyInstanceCreateCommand.builder()
                 .surveyRunId(surveyInstance.surveyRunId())
                 .entityReference(surveyInstance.surveyEntity())
                 .status(surveyInstance.status())
                 .dueDate(surveyInstance.dueDate())
-                .build());
+                .build();
     }
 
 
-    private long createSurveyInstanceRecipient(long surveyInstanceId, SurveyInstanceRecipient surveyInstanceRecipient) {
-        return surveyInstanceRecipientDao.create(ImmutableSurveyInstanceRecipientCreateCommand.builder()
-                .surveyInstanceId(surveyInstanceId)
-                .personId(surveyInstanceRecipient.person().id().get())
-                .build());
+    private int bulkCreate(long surveyRunId,
+                           boolean replaceExisting,
+                           List<Tuple2<SurveyInstanceCreateCommand, List<Long>>> instancesWithRecipients) {
+        long st = System.currentTimeMillis();
+        LOG.info("Issuing {} instances for survey run: {}", instancesWithRecipients.size(), surveyRunId);
+
+        int count = surveyInstanceDao.bulkCreate(
+                surveyRunId,
+                replaceExisting,
+                instancesWithRecipients,
+                issuanceBatchSize);
+
+        LOG.info("Issued {} instances for survey run: {} in {}ms", count, surveyRunId, System.currentTimeMillis() - st);
+        return count;
     }
 
 
@@ -416,44 +429,32 @@ public class SurveyRunService {
         SurveyRun run = getById(runId);
         EntityReference subjectRef = run.selectionOptions().entityReference();
 
-        switch (run.issuanceKind()) {
-            case INDIVIDUAL:
-                map(personIds, p -> mkSurveyInstance(
-                        subjectRef,
-                        run,
-                        ListUtilities.newArrayList(p),
-                        owningRole));
-                return true;
-            case GROUP:
-                mkSurveyInstance(
-                        subjectRef,
-                        run,
-                        personIds,
-                        owningRole);
-                return true;
-            default:
-                return false;
-        }
-    }
-
-
-    private int[] mkSurveyInstance(EntityReference entityRef,
-                                   SurveyRun run,
-                                   List<Long> personIds,
-                                   String owningRole) {
         SurveyInstanceCreateCommand instanceCreateCommand = ImmutableSurveyInstanceCreateCommand
                 .builder()
                 .dueDate(run.dueDate())
-                .entityReference(entityRef)
+                .entityReference(subjectRef)
                 .surveyRunId(run.id().get())
                 .status(SurveyInstanceStatus.NOT_STARTED)
                 .owningRole(owningRole)
                 .ownerId(run.ownerId())
                 .build();
-        long instanceId = surveyInstanceDao.create(instanceCreateCommand);
-        return surveyInstanceDao.createInstanceRecipients(
-                instanceId,
-                personIds);
+
+        switch (run.issuanceKind()) {
+            case INDIVIDUAL:
+                bulkCreate(
+                        runId,
+                        false,
+                        map(personIds, p -> tuple(instanceCreateCommand, singletonList(p))));
+                return true;
+            case GROUP:
+                bulkCreate(
+                        runId,
+                        false,
+                        singletonList(tuple(instanceCreateCommand, personIds)));
+                return true;
+            default:
+                return false;
+        }
     }
 
 
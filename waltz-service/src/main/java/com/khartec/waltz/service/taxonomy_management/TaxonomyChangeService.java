@@ -126,7 +126,7 @@ public class TaxonomyChangeService {
 
         TaxonomyCommandProcessor processor = getCommandProcessor(command);
         TaxonomyChangeCommand updatedCommand = processor.apply(command, userId);
-        clientCacheKeyService.createOrUpdate("TAXONOMY");
+        clientCacheKeyService.createOrUpdate(ClientCacheKeyService.TAXONOMY_KEY);
 
         updatedCommand = taxonomyChangeDao.update(updatedCommand);
 
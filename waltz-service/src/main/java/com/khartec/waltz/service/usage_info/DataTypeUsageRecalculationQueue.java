@@ -0,0 +1,274 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.usage_info;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+
+
+/**
+ * Collects applications and actors whose data type usages need recalculating
+ * (typically after flows or flow decorations change) and recalculates them in
+ * batches on a background thread.
+ *
+ * Requests are debounced: the batch is processed once no new entities have been
+ * queued for `waltz.data.type.usage.debounceMillis`, or once the oldest entry has
+ * waited `waltz.data.type.usage.maxDelayMillis`, whichever is sooner.  All queued
+ * entities are recalculated together in a single transaction.
+ *
+ * Callers needing to read the recalculated usages immediately should call
+ * {@link #flush()}.  If a batch fails its entities are queued again and
+ * retried after `maxDelayMillis`.
+ */
+@Service
+@ManagedResource(description = "Queue of pending data type usage recalculations")
+public class DataTypeUsageRecalculationQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataTypeUsageRecalculationQueue.class);
+    private static final Set<EntityKind> SUPPORTED_KINDS = EnumSet.of(EntityKind.APPLICATION, EntityKind.ACTOR);
+
+    private final Consumer<Set<EntityReference>> recalculator;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            (runnable) -> {
+                Thread t = new Thread(runnable, "DataTypeUsage Recalculator");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final Set<EntityReference> pending = new HashSet<>();
+    private long oldestPendingAt = 0;
+    private ScheduledFuture<?> scheduledRun = null;
+
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong recalculatedCount = new AtomicLong();
+    private final AtomicLong failedBatchCount = new AtomicLong();
+    private volatile int lastBatchSize = 0;
+    private volatile int largestBatchSize = 0;
+    private volatile long lastBatchDurationMillis = 0;
+
+    @Value("${waltz.data.type.usage.debounceMillis:2000}")
+    private long debounceMillis;
+
+    @Value("${waltz.data.type.usage.maxDelayMillis:10000}")
+    private long maxDelayMillis;
+
+
+    @Autowired
+    public DataTypeUsageRecalculationQueue(DataTypeUsageService dataTypeUsageService) {
+        checkNotNull(dataTypeUsageService, "dataTypeUsageService cannot be null");
+        this.recalculator = dataTypeUsageService::recalculateForApplications;
+    }
+
+
+    DataTypeUsageRecalculationQueue(Consumer<Set<EntityReference>> recalculator,
+                                    long debounceMillis,
+                                    long maxDelayMillis) {
+        checkNotNull(recalculator, "recalculator cannot be null");
+        this.recalculator = recalculator;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+
+    /**
+     * Queues the given entities for recalculation.  Only applications and
+     * actors are retained, other kinds are ignored.
+     */
+    public void enqueue(Collection<EntityReference> refs) {
+        checkNotNull(refs, "refs cannot be null");
+
+        synchronized (this) {
+            int sizeBefore = pending.size();
+
+            refs.stream()
+                    .filter(ref -> SUPPORTED_KINDS.contains(ref.kind()))
+                    .forEach(pending::add);
+
+            int added = pending.size() - sizeBefore;
+            if (added == 0) {
+                return;
+            }
+
+            queuedCount.addAndGet(added);
+
+            long now = System.currentTimeMillis();
+            if (oldestPendingAt == 0) {
+                oldestPendingAt = now;
+            }
+
+            long runAt = Math.min(now + debounceMillis, oldestPendingAt + maxDelayMillis);
+
+            if (scheduledRun != null) {
+                scheduledRun.cancel(false);
+            }
+            scheduledRun = executor.schedule(
+                    this::processPending,
+                    Math.max(runAt - now, 0),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Synchronously recalculates everything currently queued.  When this method
+     * returns all entities queued before the call have been recalculated.
+     *
+     * @return number of entities recalculated by this flush
+     * @throws IllegalStateException if the recalculation failed, the entities
+     *   remain queued and will be retried
+     */
+    @ManagedOperation(description = "Recalculate all pending data type usages now")
+    public int flush() {
+        try {
+            return executor.submit(this::processPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst flushing data type usage recalculations", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to flush data type usage recalculations", e.getCause());
+        }
+    }
+
+
+    @ManagedAttribute(description = "Number of entities waiting to be recalculated")
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+
+    @ManagedAttribute(description = "Total number of entities queued (after de-duplication)")
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Number of batches processed")
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Number of batches which failed")
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Total number of entities recalculated")
+    public long getRecalculatedCount() {
+        return recalculatedCount.get();
+    }
+
+
+    @ManagedAttribute(description = "Number of entities in the most recent batch")
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+
+    @ManagedAttribute(description = "Number of entities in the largest batch")
+    public int getLargestBatchSize() {
+        return largestBatchSize;
+    }
+
+
+    @ManagedAttribute(description = "Duration (ms) of the most recent batch")
+    public long getLastBatchDurationMillis() {
+        return lastBatchDurationMillis;
+    }
+
+
+    // -- HELPERS ---
+
+    /**
+     * Only ever invoked on the (single) executor thread, therefore batches
+     * never overlap.  A failed batch is queued again and the failure rethrown
+     * so that {@link #flush()} reports it.
+     */
+    private int processPending() {
+        Set<EntityReference> batch;
+        synchronized (this) {
+            batch = new HashSet<>(pending);
+            pending.clear();
+            oldestPendingAt = 0;
+            if (scheduledRun != null) {
+                scheduledRun.cancel(false);
+                scheduledRun = null;
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long st = System.currentTimeMillis();
+        try {
+            recalculator.accept(batch);
+            recalculatedCount.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            failedBatchCount.incrementAndGet();
+            LOG.error("Failed to recalculate data type usages for {} entities, will retry: {}", batch.size(), batch, e);
+            requeue(batch);
+            throw e;
+        } finally {
+            batchCount.incrementAndGet();
+            lastBatchSize = batch.size();
+            largestBatchSize = Math.max(largestBatchSize, batch.size());
+            lastBatchDurationMillis = System.currentTimeMillis() - st;
+        }
+
+        LOG.debug("Recalculated data type usages for {} entities in {}ms", batch.size(), lastBatchDurationMillis);
+        return batch.size();
+    }
+
+
+    private synchronized void requeue(Set<EntityReference> batch) {
+        pending.addAll(batch);
+        if (oldestPendingAt == 0) {
+            oldestPendingAt = System.currentTimeMillis();
+        }
+
+        if (scheduledRun != null) {
+            scheduledRun.cancel(false);
+        }
+        scheduledRun = executor.schedule(
+                this::processPending,
+                maxDelayMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -31,6 +31,7 @@ import com.khartec.waltz.model.tally.Tally;
 import com.khartec.waltz.model.usage_info.UsageInfo;
 import com.khartec.waltz.model.usage_info.UsageKind;
 import com.khartec.waltz.service.changelog.ChangeLogService;
+import com.khartec.waltz.service.single_flight.SingleFlightService;
 import org.jooq.Record1;
 import org.jooq.Select;
 import org.jooq.impl.DSL;
@@ -38,6 +39,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -58,18 +60,22 @@ public class DataTypeUsageService {
     private final ApplicationIdSelectorFactory appIdSelectorFactor = new ApplicationIdSelectorFactory();
     private final DataTypeIdSelectorFactory dataTypeIdSelectorFactory = new DataTypeIdSelectorFactory();
     private final ChangeLogService changeLogService;
+    private final SingleFlightService singleFlightService;
 
 
     @Autowired
     public DataTypeUsageService(DataTypeUsageDao dataTypeUsageDao,
                                 DataTypeDao dataTypeDao,
-                                ChangeLogService changeLogService) {
+                                ChangeLogService changeLogService,
+                                SingleFlightService singleFlightService) {
         checkNotNull(dataTypeUsageDao, "dataTypeUsageDao cannot be null");
         checkNotNull(dataTypeDao, "dataTypeDao cannot be null");
         checkNotNull(changeLogService, "changeLogService cannot be null");
+        checkNotNull(singleFlightService, "singleFlightService cannot be null");
         this.dataTypeUsageDao = dataTypeUsageDao;
         this.dataTypeDao = dataTypeDao;
         this.changeLogService = changeLogService;
+        this.singleFlightService = singleFlightService;
     }
 
 
@@ -97,8 +103,14 @@ public class DataTypeUsageService {
 
 
     public List<Tally<String>> findUsageStatsForDataTypeSelector(IdSelectionOptions idSelectionOptions) {
-        Select<Record1<Long>> dataTypeIdSelector = dataTypeIdSelectorFactory.apply(idSelectionOptions);
-        return dataTypeUsageDao.findUsageStatsForDataTypeSelector(dataTypeIdSelector, idSelectionOptions);
+        checkNotNull(idSelectionOptions, "idSelectionOptions cannot be null");
+        return singleFlightService.execute(
+                "DataTypeUsageService.findUsageStatsForDataTypeSelector",
+                idSelectionOptions,
+                () -> {
+                    Select<Record1<Long>> dataTypeIdSelector = dataTypeIdSelectorFactory.apply(idSelectionOptions);
+                    return dataTypeUsageDao.findUsageStatsForDataTypeSelector(dataTypeIdSelector, idSelectionOptions);
+                });
     }
 
 
@@ -164,14 +176,16 @@ public class DataTypeUsageService {
                 .map(EntityReference::id)
                 .collect(Collectors.toSet());
 
-        if (isEmpty(appIds) && isEmpty(actorIds)) {
-            return true;
-        } else {
-            Select<Record1<Long>> appIdSelector = convertApplicationIdsToIdSelector(appIds);
-            Select<Record1<Long>> actorIdSelector = convertActorIdsToIdSelector(actorIds);
-            return dataTypeUsageDao.recalculateForIdSelector(EntityKind.APPLICATION, appIdSelector) &&
-                    dataTypeUsageDao.recalculateForIdSelector(EntityKind.ACTOR, actorIdSelector);
+        Map<EntityKind, Select<Record1<Long>>> idSelectorsByKind = new EnumMap<>(EntityKind.class);
+        if (notEmpty(appIds)) {
+            idSelectorsByKind.put(EntityKind.APPLICATION, convertApplicationIdsToIdSelector(appIds));
         }
+        if (notEmpty(actorIds)) {
+            idSelectorsByKind.put(EntityKind.ACTOR, convertActorIdsToIdSelector(actorIds));
+        }
+
+        return idSelectorsByKind.isEmpty()
+                || dataTypeUsageDao.recalculateForIdSelectors(idSelectorsByKind);
     }
 
 
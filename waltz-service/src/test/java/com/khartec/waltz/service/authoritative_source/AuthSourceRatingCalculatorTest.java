@@ -0,0 +1,384 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.service.authoritative_source;
+
+import com.khartec.waltz.data.application.ApplicationDao;
+import com.khartec.waltz.data.authoritative_source.AuthoritativeSourceDao;
+import com.khartec.waltz.data.data_type.DataTypeDao;
+import com.khartec.waltz.data.datatype_decorator.LogicalFlowDecoratorDao;
+import com.khartec.waltz.data.logical_flow.LogicalFlowDao;
+import com.khartec.waltz.data.orgunit.OrganisationalUnitDao;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.application.Application;
+import com.khartec.waltz.model.application.ApplicationKind;
+import com.khartec.waltz.model.application.ImmutableApplication;
+import com.khartec.waltz.model.application.LifecyclePhase;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeSource;
+import com.khartec.waltz.model.authoritativesource.ImmutableAuthoritativeSource;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.datatype.ImmutableDataType;
+import com.khartec.waltz.model.datatype.ImmutableDataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.ImmutableLogicalFlow;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.orgunit.ImmutableOrganisationalUnit;
+import com.khartec.waltz.model.orgunit.OrganisationalUnit;
+import com.khartec.waltz.model.rating.AuthoritativenessRating;
+import com.khartec.waltz.model.rating.RagRating;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static com.khartec.waltz.model.rating.AuthoritativenessRating.*;
+import static org.junit.Assert.*;
+
+/**
+ * Org units: 1 with child 2.  Data types: 10 with child 11.  App 100 (in org
+ * unit 2) receives data type 11 from apps 101 and 102.  App 101 is the
+ * PRIMARY source of data type 10 for org unit 1.
+ */
+public class AuthSourceRatingCalculatorTest {
+
+    private static final EntityReference ORG_UNIT_1 = mkRef(EntityKind.ORG_UNIT, 1);
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    private final StubOrgUnitDao orgUnitDao = new StubOrgUnitDao();
+    private final StubDataTypeDao dataTypeDao = new StubDataTypeDao();
+    private final StubDecoratorDao decoratorDao = new StubDecoratorDao();
+
+    private final AuthSourceRatingCalculator calculator = new AuthSourceRatingCalculator(
+            new StubApplicationDao(),
+            new StubAuthSourceDao(),
+            dataTypeDao,
+            new StubLogicalFlowDao(),
+            decoratorDao,
+            orgUnitDao,
+            900);
+
+
+    @Test
+    public void onlyChangedRatingsInTheSliceAreWritten() {
+        decoratorDao.slice = newArrayList(
+                mkDecorator(1, 1, NO_OPINION),
+                mkDecorator(2, 2, DISCOURAGED));
+
+        int[] updated = calculator.update(10, ORG_UNIT_1);
+
+        assertEquals(1, updated.length);
+        assertEquals(newArrayList("1/10"), decoratorDao.sliceQueries);
+        assertEquals(1, decoratorDao.written.size());
+        DataTypeDecorator written = decoratorDao.written.get(0);
+        assertEquals(Optional.of(1L), written.id());
+        assertEquals(Optional.of(PRIMARY), written.rating());
+    }
+
+
+    @Test
+    public void emptySliceWritesNothing() {
+        assertEquals(0, calculator.update(10, ORG_UNIT_1).length);
+        assertTrue(decoratorDao.written.isEmpty());
+    }
+
+
+    @Test
+    public void vantagePointsWhichAreNotOrgUnitsAreIgnored() {
+        assertEquals(0, calculator.update(10, mkRef(EntityKind.APPLICATION, 100)).length);
+        assertEquals(0, dataTypeDao.loadCount);
+        assertTrue(decoratorDao.sliceQueries.isEmpty());
+    }
+
+
+    @Test
+    public void hierarchiesAreCachedBetweenUpdates() {
+        calculator.update(10, ORG_UNIT_1);
+        calculator.update(11, ORG_UNIT_1);
+
+        assertEquals(1, orgUnitDao.loadCount);
+        assertEquals(1, dataTypeDao.loadCount);
+        assertEquals(newArrayList("1/10", "1/11"), decoratorDao.sliceQueries);
+    }
+
+
+    @Test
+    public void newDataTypeCausesHierarchiesToBeReloaded() {
+        calculator.update(10, ORG_UNIT_1);
+        dataTypeDao.dataTypes.add(mkDataType(12, 10L));
+
+        calculator.update(12, ORG_UNIT_1);
+
+        assertEquals(2, dataTypeDao.loadCount);
+        assertEquals(newArrayList("1/10", "1/12"), decoratorDao.sliceQueries);
+    }
+
+
+    @Test
+    public void unknownDataTypeIsSkipped() {
+        assertEquals(0, calculator.update(99, ORG_UNIT_1).length);
+        assertEquals("reloaded once in case it was new", 2, dataTypeDao.loadCount);
+        assertTrue(decoratorDao.sliceQueries.isEmpty());
+    }
+
+
+    @Test
+    public void asyncUpdatesRunInSubmissionOrderOnOneThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        decoratorDao.gate = release;
+
+        List<Future<int[]>> futures = newArrayList(
+                calculator.updateAsync(10, ORG_UNIT_1),
+                calculator.updateAsync(11, ORG_UNIT_1),
+                calculator.updateAsync(10, mkRef(EntityKind.ORG_UNIT, 2)));
+
+        assertFalse("should return before the update runs", futures.get(0).isDone());
+        release.countDown();
+        for (Future<int[]> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(newArrayList("1/10", "1/11", "2/10"), decoratorDao.sliceQueries);
+        assertEquals(
+                Collections.singleton("Auth Source Rating"),
+                decoratorDao.threadNames.stream().collect(Collectors.toSet()));
+    }
+
+
+    @Test
+    public void asyncFailureIsReportedViaTheFuture() throws Exception {
+        decoratorDao.failure = new IllegalStateException("db down");
+
+        Future<int[]> future = calculator.updateAsync(10, ORG_UNIT_1);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertEquals("db down", e.getCause().getMessage());
+        }
+    }
+
+
+    // -- HELPERS ---
+
+    private static DataTypeDecorator mkDecorator(long flowId, long id, AuthoritativenessRating rating) {
+        return ImmutableDataTypeDecorator.builder()
+                .id(id)
+                .entityReference(mkRef(EntityKind.LOGICAL_DATA_FLOW, flowId))
+                .decoratorEntity(mkRef(EntityKind.DATA_TYPE, 11))
+                .rating(rating)
+                .lastUpdatedBy("test")
+                .lastUpdatedAt(NOW)
+                .provenance("test")
+                .build();
+    }
+
+
+    private static DataType mkDataType(long id, Long parentId) {
+        return ImmutableDataType.builder()
+                .id(id)
+                .parentId(Optional.ofNullable(parentId))
+                .name("dt" + id)
+                .code("DT" + id)
+                .description("")
+                .build();
+    }
+
+
+    private static OrganisationalUnit mkOrgUnit(long id, Long parentId) {
+        return ImmutableOrganisationalUnit.builder()
+                .id(id)
+                .parentId(Optional.ofNullable(parentId))
+                .name("ou" + id)
+                .build();
+    }
+
+
+    private static LogicalFlow mkFlow(long id, long sourceAppId) {
+        return ImmutableLogicalFlow.builder()
+                .id(id)
+                .source(mkRef(EntityKind.APPLICATION, sourceAppId))
+                .target(mkRef(EntityKind.APPLICATION, 100))
+                .lastUpdatedBy("test")
+                .lastUpdatedAt(NOW)
+                .build();
+    }
+
+
+    // -- stubs ---
+
+    private static class StubOrgUnitDao extends OrganisationalUnitDao {
+
+        private int loadCount = 0;
+
+
+        StubOrgUnitDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public synchronized List<OrganisationalUnit> findAll() {
+            loadCount++;
+            return newArrayList(mkOrgUnit(1, null), mkOrgUnit(2, 1L));
+        }
+    }
+
+
+    private static class StubDataTypeDao extends DataTypeDao {
+
+        private final List<DataType> dataTypes = newArrayList(mkDataType(10, null), mkDataType(11, 10L));
+        private int loadCount = 0;
+
+
+        StubDataTypeDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public synchronized List<DataType> findAll() {
+            loadCount++;
+            return new ArrayList<>(dataTypes);
+        }
+    }
+
+
+    private static class StubAuthSourceDao extends AuthoritativeSourceDao {
+
+        StubAuthSourceDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public List<AuthoritativeSource> findAll() {
+            return newArrayList(ImmutableAuthoritativeSource.builder()
+                    .id(1L)
+                    .parentReference(ORG_UNIT_1)
+                    .dataType("DT10")
+                    .applicationReference(mkRef(EntityKind.APPLICATION, 101))
+                    .appOrgUnitReference(ORG_UNIT_1)
+                    .rating(PRIMARY)
+                    .build());
+        }
+    }
+
+
+    private static class StubLogicalFlowDao extends LogicalFlowDao {
+
+        StubLogicalFlowDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public List<LogicalFlow> findActiveByFlowIds(Collection<Long> dataFlowIds) {
+            return newArrayList(mkFlow(1, 101), mkFlow(2, 102))
+                    .stream()
+                    .filter(f -> dataFlowIds.contains(f.id().get()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+
+    private static class StubApplicationDao extends ApplicationDao {
+
+        StubApplicationDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public List<Application> findByIds(Collection<Long> ids) {
+            return ids
+                    .stream()
+                    .map(id -> (Application) ImmutableApplication.builder()
+                            .id(id)
+                            .name("app" + id)
+                            .description("")
+                            .organisationalUnitId(2L)
+                            .applicationKind(ApplicationKind.IN_HOUSE)
+                            .lifecyclePhase(LifecyclePhase.PRODUCTION)
+                            .overallRating(RagRating.G)
+                            .build())
+                    .collect(Collectors.toList());
+        }
+    }
+
+
+    private static class StubDecoratorDao extends LogicalFlowDecoratorDao {
+
+        private final List<String> sliceQueries = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        private final List<DataTypeDecorator> written = Collections.synchronizedList(new ArrayList<>());
+        private volatile List<DataTypeDecorator> slice = Collections.emptyList();
+        private volatile RuntimeException failure = null;
+        private volatile CountDownLatch gate = null;
+
+
+        StubDecoratorDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public List<DataTypeDecorator> findByTargetOrgUnitAndDataType(long orgUnitId, long dataTypeId) {
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            sliceQueries.add(orgUnitId + "/" + dataTypeId);
+            threadNames.add(Thread.currentThread().getName());
+            return slice;
+        }
+
+
+        @Override
+        public int[] updateRatings(Collection<DataTypeDecorator> decorators) {
+            written.addAll(decorators);
+            int[] counts = new int[decorators.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.authoritative_source;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.authoritativesource.AuthoritativeSource;
+import com.khartec.waltz.model.authoritativesource.ImmutableAuthoritativeSource;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.datatype.ImmutableDataType;
+import com.khartec.waltz.model.datatype.ImmutableDataTypeDecorator;
+import com.khartec.waltz.model.logical_flow.ImmutableLogicalFlow;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.orgunit.ImmutableOrganisationalUnit;
+import com.khartec.waltz.model.orgunit.OrganisationalUnit;
+import com.khartec.waltz.model.rating.AuthoritativenessRating;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static com.khartec.waltz.model.rating.AuthoritativenessRating.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks the in-memory rating engine gives the same ratings as the
+ * original, sql based, algorithm used by
+ * `AuthoritativeSourceService.fastRecalculateAllFlowRatings`.  The sql
+ * algorithm is modelled in {@link #legacyCalculate} and both are run
+ * against the same generated data set.
+ */
+public class AuthSourceRatingEngineTest {
+
+    private static final int ORG_UNIT_COUNT = 200;
+    private static final int DATA_TYPE_COUNT = 80;
+    private static final int APP_COUNT = 2_000;
+    private static final int FLOW_COUNT = 20_000;
+    private static final int AUTH_SOURCE_COUNT = 300;
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    private final Random rnd = new Random(42);
+
+    private final Map<Long, Long> orgUnitParents = new HashMap<>();
+    private final Map<Long, Long> dataTypeParents = new HashMap<>();
+    private final Map<Long, Long> orgUnitIdsByAppId = new HashMap<>();
+
+    private final List<OrganisationalUnit> orgUnits = new ArrayList<>();
+    private final List<DataType> dataTypes = new ArrayList<>();
+    private final List<LogicalFlow> flows = new ArrayList<>();
+    private final List<DataTypeDecorator> decorators = new ArrayList<>();
+    private final List<AuthoritativeSource> authSources = new ArrayList<>();
+
+
+    @Test
+    public void engineGivesSameRatingsAsLegacyAlgorithm() {
+        generateData();
+
+        Map<Long, AuthoritativenessRating> expected = legacyCalculate();
+        List<DataTypeDecorator> actual = new AuthSourceRatingEngine(orgUnits, dataTypes, authSources)
+                .calculate(flows, decorators, orgUnitIdsByAppId);
+
+        assertEquals(decorators.size(), actual.size());
+        actual.forEach(d -> assertEquals(
+                "rating for decorator: " + d,
+                expected.get(d.id().get()),
+                d.rating().get()));
+
+        Set<AuthoritativenessRating> ratingsSeen = EnumSet.noneOf(AuthoritativenessRating.class);
+        actual.forEach(d -> ratingsSeen.add(d.rating().get()));
+        assertTrue("data set should exercise all ratings", ratingsSeen.containsAll(EnumSet.of(PRIMARY, SECONDARY, DISCOURAGED, NO_OPINION)));
+    }
+
+
+    @Test
+    public void onlyChangedDecoratorsAreReturned() {
+        generateData();
+
+        AuthSourceRatingEngine engine = new AuthSourceRatingEngine(orgUnits, dataTypes, authSources);
+        List<DataTypeDecorator> rated = engine.calculate(flows, decorators, orgUnitIdsByAppId);
+
+        assertTrue(engine.calculateChanges(flows, rated, orgUnitIdsByAppId).isEmpty());
+
+        long changeCount = rated
+                .stream()
+                .filter(d -> d.rating().get() != NO_OPINION)
+                .count();
+        assertEquals(changeCount, engine.calculateChanges(flows, decorators, orgUnitIdsByAppId).size());
+    }
+
+
+    @Test
+    public void decoratorsOnUnknownFlowsAreIgnored() {
+        generateData();
+
+        List<DataTypeDecorator> rated = new AuthSourceRatingEngine(orgUnits, dataTypes, authSources)
+                .calculate(flows.subList(0, 10), decorators, orgUnitIdsByAppId);
+
+        assertTrue(rated.stream().allMatch(d -> d.dataFlowId() <= 10));
+    }
+
+
+    // -- LEGACY ---
+
+    /**
+     * Models the sql based algorithm: reset everything to NO_OPINION, then for each
+     * declared authoritative source (most specific org unit, then data type, first)
+     * rate any NO_OPINION or DISCOURAGED decorators of app to app flows whose target
+     * is within the org unit tree and whose data type is within the data type tree.
+     */
+    private Map<Long, AuthoritativenessRating> legacyCalculate() {
+        Map<Long, AuthoritativenessRating> ratings = new HashMap<>();
+        decorators.forEach(d -> ratings.put(d.id().get(), NO_OPINION));
+
+        Map<Long, LogicalFlow> flowsById = new HashMap<>();
+        flows.forEach(f -> flowsById.put(f.id().get(), f));
+
+        Map<String, Long> dataTypeIdsByCode = new HashMap<>();
+        dataTypes.forEach(dt -> dataTypeIdsByCode.put(dt.code(), dt.id().get()));
+
+        List<AuthoritativeSource> ordered = new ArrayList<>(authSources);
+        ordered.sort(Comparator
+                .comparingInt((AuthoritativeSource a) -> -depth(a.parentReference().id(), orgUnitParents))
+                .thenComparingInt(a -> -depth(dataTypeIdsByCode.get(a.dataType()), dataTypeParents)));
+
+        for (AuthoritativeSource authSource : ordered) {
+            long declaredOrgUnitId = authSource.parentReference().id();
+            long declaredDataTypeId = dataTypeIdsByCode.get(authSource.dataType());
+
+            for (DataTypeDecorator decorator : decorators) {
+                LogicalFlow flow = flowsById.get(decorator.dataFlowId());
+                AuthoritativenessRating current = ratings.get(decorator.id().get());
+
+                boolean applicable = flow.source().kind() == EntityKind.APPLICATION
+                        && flow.target().kind() == EntityKind.APPLICATION
+                        && (current == NO_OPINION || current == DISCOURAGED)
+                        && isSelfOrDescendant(orgUnitIdsByAppId.get(flow.target().id()), declaredOrgUnitId, orgUnitParents)
+                        && isSelfOrDescendant(decorator.dataTypeId(), declaredDataTypeId, dataTypeParents);
+
+                if (applicable) {
+                    ratings.put(
+                            decorator.id().get(),
+                            flow.source().id() == authSource.applicationReference().id()
+                                    ? authSource.rating()
+                                    : DISCOURAGED);
+                }
+            }
+        }
+
+        return ratings;
+    }
+
+
+    private static int depth(Long id, Map<Long, Long> parents) {
+        int depth = 1;
+        for (Long p = parents.get(id); p != null; p = parents.get(p)) {
+            depth++;
+        }
+        return depth;
+    }
+
+
+    private static boolean isSelfOrDescendant(Long id, long ancestorId, Map<Long, Long> parents) {
+        for (Long p = id; p != null; p = parents.get(p)) {
+            if (p == ancestorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    // -- DATA GENERATION ---
+
+    private void generateData() {
+        for (long id = 1; id <= ORG_UNIT_COUNT; id++) {
+            Long parentId = id <= 3 ? null : 1 + (long) rnd.nextInt((int) id - 1);
+            orgUnitParents.put(id, parentId);
+            orgUnits.add(ImmutableOrganisationalUnit.builder()
+                    .id(id)
+                    .parentId(Optional.ofNullable(parentId))
+                    .name("ou" + id)
+                    .build());
+        }
+
+        for (long id = 1; id <= DATA_TYPE_COUNT; id++) {
+            Long parentId = id <= 5 ? null : 1 + (long) rnd.nextInt((int) id - 1);
+            dataTypeParents.put(id, parentId);
+            dataTypes.add(ImmutableDataType.builder()
+                    .id(id)
+                    .parentId(Optional.ofNullable(parentId))
+                    .name("dt" + id)
+                    .code("DT" + id)
+                    .description("")
+                    .build());
+        }
+
+        for (long id = 1; id <= APP_COUNT; id++) {
+            orgUnitIdsByAppId.put(id, 1 + (long) rnd.nextInt(ORG_UNIT_COUNT));
+        }
+
+        long decoratorId = 1;
+        for (long id = 1; id <= FLOW_COUNT; id++) {
+            EntityReference source = rnd.nextInt(20) == 0
+                    ? mkRef(EntityKind.ACTOR, 1 + rnd.nextInt(10))
+                    : mkRef(EntityKind.APPLICATION, 1 + rnd.nextInt(APP_COUNT));
+            flows.add(ImmutableLogicalFlow.builder()
+                    .id(id)
+                    .source(source)
+                    .target(mkRef(EntityKind.APPLICATION, 1 + rnd.nextInt(APP_COUNT)))
+                    .lastUpdatedBy("test")
+                    .lastUpdatedAt(NOW)
+                    .build());
+
+            Set<Long> flowDataTypes = new HashSet<>();
+            for (int i = 0; i <= rnd.nextInt(3); i++) {
+                flowDataTypes.add(1 + (long) rnd.nextInt(DATA_TYPE_COUNT));
+            }
+            for (Long dataTypeId : flowDataTypes) {
+                decorators.add(ImmutableDataTypeDecorator.builder()
+                        .id(decoratorId++)
+                        .entityReference(mkRef(EntityKind.LOGICAL_DATA_FLOW, id))
+                        .decoratorEntity(mkRef(EntityKind.DATA_TYPE, dataTypeId))
+                        .rating(NO_OPINION)
+                        .lastUpdatedBy("test")
+                        .lastUpdatedAt(NOW)
+                        .provenance("test")
+                        .build());
+            }
+        }
+
+        Set<String> declared = new HashSet<>();
+        while (authSources.size() < AUTH_SOURCE_COUNT) {
+            long orgUnitId = 1 + rnd.nextInt(ORG_UNIT_COUNT);
+            long dataTypeId = 1 + rnd.nextInt(DATA_TYPE_COUNT);
+            long appId = 1 + rnd.nextInt(APP_COUNT);
+            if (declared.add(orgUnitId + "/" + dataTypeId + "/" + appId)) {
+                authSources.add(ImmutableAuthoritativeSource.builder()
+                        .id((long) authSources.size() + 1)
+                        .parentReference(mkRef(EntityKind.ORG_UNIT, orgUnitId))
+                        .dataType("DT" + dataTypeId)
+                        .applicationReference(mkRef(EntityKind.APPLICATION, appId))
+                        .appOrgUnitReference(mkRef(EntityKind.ORG_UNIT, orgUnitIdsByAppId.get(appId)))
+                        .rating(rnd.nextBoolean() ? PRIMARY : SECONDARY)
+                        .build());
+            }
+        }
+    }
+
+}
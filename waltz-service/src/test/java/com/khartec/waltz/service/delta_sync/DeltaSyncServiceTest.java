@@ -0,0 +1,105 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.delta_sync;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeltaSyncServiceTest {
+
+    private static final LocalDateTime SINCE = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final LocalDateTime SAFE_LIMIT = LocalDateTime.of(2020, 6, 1, 12, 0);
+
+
+    @Test
+    public void tokenRoundTripsTimestampAndId() {
+        Timestamp ts = Timestamp.valueOf(LocalDateTime.of(2020, 3, 4, 5, 6, 7, 123_456_789));
+
+        String[] parts = DeltaSyncService.decodeToken(DeltaSyncService.encodeToken(ts, 42L), 2);
+
+        assertEquals(ts, Timestamp.valueOf(parts[0]));
+        assertEquals(42L, (long) Long.valueOf(parts[1]));
+    }
+
+
+    @Test
+    public void tokenRoundTripsCompositeKey() {
+        Timestamp ts = Timestamp.valueOf(LocalDateTime.of(2020, 3, 4, 5, 6, 7));
+
+        String[] parts = DeltaSyncService.decodeToken(DeltaSyncService.encodeToken(ts, "APPLICATION", 12L, 99L), 4);
+
+        assertEquals(ts, Timestamp.valueOf(parts[0]));
+        assertEquals("APPLICATION", parts[1]);
+        assertEquals("12", parts[2]);
+        assertEquals("99", parts[3]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenWithWrongNumberOfPartsIsRejected() {
+        String token = DeltaSyncService.encodeToken(Timestamp.valueOf(SINCE), 42L);
+        DeltaSyncService.decodeToken(token, 4);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenWhichIsNotBase64IsRejected() {
+        DeltaSyncService.decodeToken("not*base64!", 2);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTokenIsRejected() {
+        DeltaSyncService.decodeToken("", 2);
+    }
+
+
+    @Test
+    public void highWaterMarkIsLatestChangeWhenSafelyInThePast() {
+        LocalDateTime latest = LocalDateTime.of(2020, 5, 1, 0, 0);
+        assertEquals(latest, DeltaSyncService.determineHighWaterMark(SINCE, Optional.of(latest), SAFE_LIMIT));
+    }
+
+
+    @Test
+    public void highWaterMarkTrailsRecentChangesBySafeLimit() {
+        LocalDateTime latest = SAFE_LIMIT.plusSeconds(30);
+        assertEquals(SAFE_LIMIT, DeltaSyncService.determineHighWaterMark(SINCE, Optional.of(latest), SAFE_LIMIT));
+    }
+
+
+    @Test
+    public void highWaterMarkIsSafeLimitWhenNothingChanged() {
+        assertEquals(SAFE_LIMIT, DeltaSyncService.determineHighWaterMark(SINCE, Optional.empty(), SAFE_LIMIT));
+    }
+
+
+    @Test
+    public void highWaterMarkNeverMovesBackwards() {
+        LocalDateTime recentSince = SAFE_LIMIT.plusSeconds(10);
+        assertEquals(recentSince, DeltaSyncService.determineHighWaterMark(recentSince, Optional.empty(), SAFE_LIMIT));
+    }
+
+}
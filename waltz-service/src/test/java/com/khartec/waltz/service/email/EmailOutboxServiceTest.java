@@ -0,0 +1,246 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.email;
+
+import com.khartec.waltz.data.email.EmailOutboxDao;
+import com.khartec.waltz.model.email.EmailMessage;
+import com.khartec.waltz.model.email.EmailOutboxStatus;
+import com.khartec.waltz.model.email.ImmutableEmailMessage;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.service.email.EmailOutboxService.calcBackoff;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EmailOutboxServiceTest {
+
+    private final InMemoryOutboxDao dao = new InMemoryOutboxDao();
+    private final StubEmailer emailer = new StubEmailer();
+
+
+    @Test
+    public void backoffDoublesWithEachAttempt() {
+        assertEquals(Duration.ofSeconds(60), calcBackoff(1, 60, 3600));
+        assertEquals(Duration.ofSeconds(120), calcBackoff(2, 60, 3600));
+        assertEquals(Duration.ofSeconds(240), calcBackoff(3, 60, 3600));
+    }
+
+
+    @Test
+    public void backoffIsCapped() {
+        assertEquals(Duration.ofSeconds(3600), calcBackoff(10, 60, 3600));
+        assertEquals(Duration.ofSeconds(3600), calcBackoff(500, 60, 3600));
+    }
+
+
+    @Test
+    public void successfulSendIsMarkedSent() throws InterruptedException {
+        EmailOutboxService service = new EmailOutboxService(dao, emailer, 5, 60, 3600);
+        dao.add(1L, 0);
+
+        service.drain();
+
+        EmailMessage message = dao.get(1L);
+        assertEquals(EmailOutboxStatus.SENT, message.status());
+        assertEquals(1, message.attempts());
+        assertEquals(newArrayList("subject 1"), emailer.sent);
+        assertEquals(1, service.getSentCount());
+    }
+
+
+    @Test
+    public void failedSendIsRetriedWithBackoff() throws InterruptedException {
+        EmailOutboxService service = new EmailOutboxService(dao, emailer, 5, 60, 3600);
+        emailer.failures = Integer.MAX_VALUE;
+        dao.add(1L, 1);
+
+        LocalDateTime before = nowUtc();
+        service.drain();
+
+        EmailMessage message = dao.get(1L);
+        assertEquals(EmailOutboxStatus.PENDING, message.status());
+        assertEquals(2, message.attempts());
+        assertEquals(Optional.of("mail server unavailable"), message.lastError());
+        // second attempt failed, so the backoff has doubled
+        assertTrue(! message.nextAttemptAt().isBefore(before.plusSeconds(120)));
+        assertTrue(message.nextAttemptAt().isBefore(before.plusSeconds(125)));
+        assertEquals(1, service.getRetryCount());
+        assertEquals(0, service.getSentCount());
+    }
+
+
+    @Test
+    public void messageIsDeadAfterMaxAttempts() throws InterruptedException {
+        // no backoff, so each retry is immediately due again within the same drain
+        EmailOutboxService service = new EmailOutboxService(dao, emailer, 3, 0, 0);
+        emailer.failures = Integer.MAX_VALUE;
+        dao.add(1L, 0);
+
+        service.drain();
+
+        EmailMessage message = dao.get(1L);
+        assertEquals(EmailOutboxStatus.DEAD, message.status());
+        assertEquals(3, message.attempts());
+        assertEquals(2, service.getRetryCount());
+        assertEquals(1, service.getDeadLetterCount());
+    }
+
+
+    @Test
+    public void messageIsSentOnceMailServerRecovers() throws InterruptedException {
+        EmailOutboxService service = new EmailOutboxService(dao, emailer, 3, 0, 0);
+        emailer.failures = 1;
+        dao.add(1L, 0);
+
+        service.drain();
+
+        EmailMessage message = dao.get(1L);
+        assertEquals(EmailOutboxStatus.SENT, message.status());
+        assertEquals(2, message.attempts());
+        assertEquals(1, service.getRetryCount());
+        assertEquals(1, service.getSentCount());
+    }
+
+
+    // -- stubs ---
+
+    private static class StubEmailer extends WaltzEmailer {
+
+        private final List<String> sent = new ArrayList<>();
+        private int failures = 0;
+
+
+        StubEmailer() {
+            super(null);
+        }
+
+
+        @Override
+        public synchronized void sendEmail(String subject, String body, String[] to) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("mail server unavailable");
+            }
+            sent.add(subject);
+        }
+
+    }
+
+
+    /**
+     * Keeps messages in memory, updating them as the real dao would.
+     */
+    private static class InMemoryOutboxDao extends EmailOutboxDao {
+
+        private final Map<Long, EmailMessage> messages = new ConcurrentHashMap<>();
+
+
+        InMemoryOutboxDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        void add(long id, int attempts) {
+            LocalDateTime now = nowUtc();
+            messages.put(id, ImmutableEmailMessage.builder()
+                    .id(id)
+                    .subject("subject " + id)
+                    .body("body")
+                    .recipients(newArrayList("someone@example.com"))
+                    .status(EmailOutboxStatus.PENDING)
+                    .attempts(attempts)
+                    .createdAt(now)
+                    .nextAttemptAt(now)
+                    .build());
+        }
+
+
+        EmailMessage get(long id) {
+            return messages.get(id);
+        }
+
+
+        @Override
+        public synchronized List<EmailMessage> claimDue(int limit) {
+            LocalDateTime now = nowUtc();
+            List<EmailMessage> due = messages
+                    .values()
+                    .stream()
+                    .filter(m -> m.status() == EmailOutboxStatus.PENDING)
+                    .filter(m -> ! m.nextAttemptAt().isAfter(now))
+                    .collect(Collectors.toList());
+            due.forEach(m -> update(m, EmailOutboxStatus.SENDING, m.attempts(), m.nextAttemptAt(), m.lastError()));
+            return due;
+        }
+
+
+        @Override
+        public boolean markSent(long id) {
+            EmailMessage m = messages.get(id);
+            update(m, EmailOutboxStatus.SENT, m.attempts() + 1, m.nextAttemptAt(), Optional.empty());
+            return true;
+        }
+
+
+        @Override
+        public boolean markForRetry(long id, String error, LocalDateTime nextAttemptAt) {
+            EmailMessage m = messages.get(id);
+            update(m, EmailOutboxStatus.PENDING, m.attempts() + 1, nextAttemptAt, Optional.ofNullable(error));
+            return true;
+        }
+
+
+        @Override
+        public boolean markDead(long id, String error) {
+            EmailMessage m = messages.get(id);
+            update(m, EmailOutboxStatus.DEAD, m.attempts() + 1, m.nextAttemptAt(), Optional.ofNullable(error));
+            return true;
+        }
+
+
+        private void update(EmailMessage m,
+                            EmailOutboxStatus status,
+                            int attempts,
+                            LocalDateTime nextAttemptAt,
+                            Optional<String> lastError) {
+            messages.put(m.id().get(), ImmutableEmailMessage
+                    .copyOf(m)
+                    .withStatus(status)
+                    .withAttempts(attempts)
+                    .withNextAttemptAt(nextAttemptAt)
+                    .withLastError(lastError));
+        }
+
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.service.entity_statistic;
+
+import com.khartec.waltz.data.entity_statistic.EntityStatisticRollupDao;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityLifecycleStatus;
+import com.khartec.waltz.model.HierarchyQueryScope;
+import com.khartec.waltz.model.IdSelectionOptions;
+import com.khartec.waltz.model.ImmutableIdSelectionOptions;
+import com.khartec.waltz.model.ImmutableSelectionFilters;
+import com.khartec.waltz.model.application.ApplicationKind;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static com.khartec.waltz.model.IdSelectionOptions.mkOpts;
+import static org.junit.Assert.*;
+
+public class EntityStatisticRollupServiceTest {
+
+    private final StubRollupDao dao = new StubRollupDao();
+
+
+    @Test
+    public void rollupAnswersOrgUnitChildSelectionsOfActiveApps() {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+
+        assertTrue(service.canUseRollup(mkOpts(mkRef(EntityKind.ORG_UNIT, 1), HierarchyQueryScope.CHILDREN)));
+        assertFalse(service.canUseRollup(mkOpts(mkRef(EntityKind.ORG_UNIT, 1), HierarchyQueryScope.EXACT)));
+        assertFalse(service.canUseRollup(mkOpts(mkRef(EntityKind.APP_GROUP, 1), HierarchyQueryScope.CHILDREN)));
+        assertFalse(service.canUseRollup(ImmutableIdSelectionOptions
+                .copyOf(mkOpts(mkRef(EntityKind.ORG_UNIT, 1), HierarchyQueryScope.CHILDREN))
+                .withEntityLifecycleStatuses(EntityLifecycleStatus.ACTIVE, EntityLifecycleStatus.REMOVED)));
+        assertFalse(service.canUseRollup(ImmutableIdSelectionOptions
+                .copyOf(mkOpts(mkRef(EntityKind.ORG_UNIT, 1), HierarchyQueryScope.CHILDREN))
+                .withFilters(ImmutableSelectionFilters.builder().addOmitApplicationKinds(ApplicationKind.EUC).build())));
+    }
+
+
+    @Test
+    public void rollupIsNotUsedWhenDisabled() {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, false);
+        IdSelectionOptions options = mkOpts(mkRef(EntityKind.ORG_UNIT, 1), HierarchyQueryScope.CHILDREN);
+
+        assertFalse(service.canUseRollup(options));
+    }
+
+
+    @Test
+    public void staleStatisticsAreRefreshedOneAtATime() throws InterruptedException {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+        dao.stale = asSet(1L, 2L, 3L);
+
+        service.refreshStale();
+
+        assertTrue(dao.awaitStaleChecks(1));
+        assertTrue(awaitRefreshes(3));
+        assertEquals(
+                asSet(asSet(1L), asSet(2L), asSet(3L)),
+                new HashSet<>(dao.refreshed));
+    }
+
+
+    @Test
+    public void nothingIsRefreshedWhenNothingIsStale() throws InterruptedException {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+
+        service.refreshStale();
+
+        assertTrue(dao.awaitStaleChecks(1));
+        Thread.sleep(50);
+        assertTrue(dao.refreshed.isEmpty());
+    }
+
+
+    @Test
+    public void refreshIsSkippedWhenDisabled() throws InterruptedException {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, false);
+        dao.stale = asSet(1L);
+
+        service.refreshStale();
+
+        Thread.sleep(50);
+        assertEquals(0, dao.staleChecks.get());
+    }
+
+
+    @Test
+    public void refreshIsNotQueuedWhilstOneIsInProgress() throws InterruptedException {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+        dao.stale = asSet(1L);
+        dao.refreshGate = new CountDownLatch(1);
+
+        service.refreshStale();
+        assertTrue(dao.awaitStaleChecks(1));
+        service.refreshStale();
+        service.refreshStale();
+
+        dao.refreshGate.countDown();
+        assertTrue(awaitRefreshes(1));
+        Thread.sleep(50);
+        assertEquals(1, dao.staleChecks.get());
+
+        service.refreshStale();
+        assertTrue("may refresh again once the first has finished", dao.awaitStaleChecks(2));
+    }
+
+
+    @Test
+    public void failedRefreshDoesNotBlockLaterRefreshes() throws InterruptedException {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+        dao.stale = asSet(1L);
+        dao.failure = new IllegalStateException("deadlock");
+
+        service.refreshStale();
+        for (int i = 0; i < 500 && dao.failureCount.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dao.failureCount.get());
+
+        dao.failure = null;
+        for (int i = 0; i < 100 && dao.refreshed.isEmpty(); i++) {
+            service.refreshStale();
+            Thread.sleep(10);
+        }
+        assertEquals(asSet(1L), dao.refreshed.get(0));
+    }
+
+
+    @Test
+    public void rebuildRefreshesEveryStatisticAndSumsRows() {
+        EntityStatisticRollupService service = new EntityStatisticRollupService(dao, true);
+        dao.all = asSet(1L, 2L);
+
+        assertEquals(2 * StubRollupDao.ROWS_PER_STATISTIC, service.rebuild());
+        assertEquals(asSet(asSet(1L), asSet(2L)), new HashSet<>(dao.refreshed));
+    }
+
+
+    // -- HELPERS ---
+
+    private boolean awaitRefreshes(int expected) throws InterruptedException {
+        for (int i = 0; i < 500 && dao.refreshed.size() < expected; i++) {
+            Thread.sleep(10);
+        }
+        return dao.refreshed.size() == expected;
+    }
+
+
+    private static class StubRollupDao extends EntityStatisticRollupDao {
+
+        private static final int ROWS_PER_STATISTIC = 7;
+
+        private final List<Set<Long>> refreshed = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger staleChecks = new AtomicInteger();
+        private final AtomicInteger failureCount = new AtomicInteger();
+        private volatile Set<Long> all = Collections.emptySet();
+        private volatile Set<Long> stale = Collections.emptySet();
+        private volatile RuntimeException failure = null;
+        private volatile CountDownLatch refreshGate = null;
+
+
+        StubRollupDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        @Override
+        public Set<Long> findRollupStatisticIds() {
+            return all;
+        }
+
+
+        @Override
+        public Set<Long> findStaleStatisticIds() {
+            staleChecks.incrementAndGet();
+            return stale;
+        }
+
+
+        @Override
+        public int refresh(Collection<Long> statisticIds) {
+            CountDownLatch gate = refreshGate;
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            RuntimeException toThrow = failure;
+            if (toThrow != null) {
+                failureCount.incrementAndGet();
+                throw toThrow;
+            }
+            refreshed.add(new HashSet<>(statisticIds));
+            return ROWS_PER_STATISTIC;
+        }
+
+
+        boolean awaitStaleChecks(int expected) throws InterruptedException {
+            for (int i = 0; i < 500 && staleChecks.get() < expected; i++) {
+                Thread.sleep(10);
+            }
+            return staleChecks.get() >= expected;
+        }
+    }
+
+}
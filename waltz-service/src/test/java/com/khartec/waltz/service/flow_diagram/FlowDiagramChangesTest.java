@@ -0,0 +1,167 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.flow_diagram;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.flow_diagram.FlowDiagramAnnotation;
+import com.khartec.waltz.model.flow_diagram.FlowDiagramEntity;
+import com.khartec.waltz.model.flow_diagram.ImmutableFlowDiagramAnnotation;
+import com.khartec.waltz.model.flow_diagram.ImmutableFlowDiagramEntity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.khartec.waltz.common.CompressionUtilities.gzipToBase64;
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlowDiagramChangesTest {
+
+    private static final long DIAGRAM_ID = 1L;
+    private static final int NODE_COUNT = 500;
+
+
+    @Test
+    public void unchangedDiagramRequiresNoWrites() {
+        List<FlowDiagramEntity> entities = mkEntities(0, NODE_COUNT);
+        List<FlowDiagramAnnotation> annotations = mkAnnotations(50, "note");
+
+        FlowDiagramChanges changes = FlowDiagramChanges.determineChanges(
+                DIAGRAM_ID,
+                entities,
+                withNames(entities),
+                annotations,
+                annotations);
+
+        assertEquals(0, changes.rowCount());
+    }
+
+
+    @Test
+    public void onlyChangedRowsAreWritten() {
+        List<FlowDiagramEntity> existing = mkEntities(0, NODE_COUNT);
+        List<FlowDiagramEntity> desired = mkEntities(5, NODE_COUNT + 5); // drop 5, add 5
+        desired.set(100, ImmutableFlowDiagramEntity.copyOf(desired.get(100)).withIsNotable(true));
+
+        List<FlowDiagramAnnotation> existingAnnotations = mkAnnotations(50, "note");
+        List<FlowDiagramAnnotation> desiredAnnotations = mkAnnotations(49, "note");
+        desiredAnnotations.set(0, ImmutableFlowDiagramAnnotation.copyOf(desiredAnnotations.get(0)).withNote("changed"));
+
+        FlowDiagramChanges changes = FlowDiagramChanges.determineChanges(
+                DIAGRAM_ID,
+                existing,
+                desired,
+                existingAnnotations,
+                desiredAnnotations);
+
+        assertEquals(5, changes.entitiesToAdd().size());
+        assertEquals(5, changes.entitiesToRemove().size());
+        assertEquals(1, changes.entitiesToUpdate().size());
+        assertEquals(1, changes.annotationsToUpdate().size());
+        assertEquals(newArrayList("a49"), changes.annotationsToRemove());
+        assertTrue(changes.entitiesToAdd().stream().allMatch(e -> e.diagramId().get() == DIAGRAM_ID));
+
+        assertEquals(13, changes.rowCount());
+    }
+
+
+    @Test
+    public void explicitlyLinkedEntitiesAreNeverRemoved() {
+        List<FlowDiagramEntity> existing = newArrayList(
+                mkEntity(mkRef(EntityKind.APPLICATION, 1)),
+                mkEntity(mkRef(EntityKind.MEASURABLE, 2)),
+                mkEntity(mkRef(EntityKind.CHANGE_INITIATIVE, 3)));
+
+        FlowDiagramChanges changes = FlowDiagramChanges.determineChanges(
+                DIAGRAM_ID,
+                existing,
+                emptyList(),
+                emptyList(),
+                emptyList());
+
+        assertEquals(newArrayList(mkRef(EntityKind.APPLICATION, 1)), changes.entitiesToRemove());
+    }
+
+
+    @Test
+    public void layoutOfLargeDiagramCompresses() {
+        StringBuilder layout = new StringBuilder("{\"positions\":{");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            layout.append(String.format(
+                    "\"APPLICATION/%d\":{\"x\":%.4f,\"y\":%.4f},",
+                    i,
+                    Math.sin(i) * 1000,
+                    Math.cos(i) * 1000));
+        }
+        layout.append("\"ACTOR/1\":{\"x\":0,\"y\":0}},\"diagramTransform\":\"translate(0,0) scale(1)\"}");
+
+        int original = layout.length();
+        int compressed = gzipToBase64(layout.toString()).length();
+        assertTrue(compressed < original / 2);
+    }
+
+
+    // -- HELPERS ---
+
+    private static List<FlowDiagramEntity> mkEntities(int from, int to) {
+        List<FlowDiagramEntity> entities = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            entities.add(mkEntity(mkRef(EntityKind.APPLICATION, i)));
+        }
+        return entities;
+    }
+
+
+    private static FlowDiagramEntity mkEntity(EntityReference ref) {
+        return ImmutableFlowDiagramEntity.builder()
+                .diagramId(DIAGRAM_ID)
+                .entityReference(ref)
+                .build();
+    }
+
+
+    private static List<FlowDiagramEntity> withNames(List<FlowDiagramEntity> entities) {
+        List<FlowDiagramEntity> named = new ArrayList<>();
+        entities.forEach(e -> named.add(ImmutableFlowDiagramEntity
+                .copyOf(e)
+                .withEntityReference(mkRef(e.entityReference().kind(), e.entityReference().id(), "app" + e.entityReference().id()))));
+        return named;
+    }
+
+
+    private static List<FlowDiagramAnnotation> mkAnnotations(int count, String note) {
+        List<FlowDiagramAnnotation> annotations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            annotations.add(ImmutableFlowDiagramAnnotation.builder()
+                    .annotationId("a" + i)
+                    .diagramId(DIAGRAM_ID)
+                    .entityReference(mkRef(EntityKind.APPLICATION, i))
+                    .note(note)
+                    .build());
+        }
+        return annotations;
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.service.flow_graph;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import com.khartec.waltz.model.datatype.DataType;
+import com.khartec.waltz.model.datatype.DataTypeDecorator;
+import com.khartec.waltz.model.datatype.ImmutableDataType;
+import com.khartec.waltz.model.datatype.ImmutableDataTypeDecorator;
+import com.khartec.waltz.model.flow_graph.FlowImpact;
+import com.khartec.waltz.model.flow_graph.FlowPath;
+import com.khartec.waltz.model.logical_flow.ImmutableLogicalFlow;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlowGraphTest {
+
+    private static final EntityReference A = mkRef(EntityKind.APPLICATION, 1);
+    private static final EntityReference B = mkRef(EntityKind.APPLICATION, 2);
+    private static final EntityReference C = mkRef(EntityKind.APPLICATION, 3);
+    private static final EntityReference D = mkRef(EntityKind.ACTOR, 4);
+
+    private static final long PARENT_TYPE = 10L;
+    private static final long CHILD_TYPE = 11L;
+    private static final long OTHER_TYPE = 20L;
+
+
+    /**
+     * <pre>
+     *   A --(child)--> B --(child)--> D
+     *   A --(other)--> C --(other)--> D
+     *   B --(other)--> C
+     * </pre>
+     */
+    private final FlowGraph graph = FlowGraph.build(
+            newArrayList(
+                    mkFlow(100, A, B),
+                    mkFlow(101, B, D),
+                    mkFlow(102, A, C),
+                    mkFlow(103, C, D),
+                    mkFlow(104, B, C)),
+            newArrayList(
+                    mkDecorator(100, CHILD_TYPE),
+                    mkDecorator(101, CHILD_TYPE),
+                    mkDecorator(102, OTHER_TYPE),
+                    mkDecorator(103, OTHER_TYPE),
+                    mkDecorator(104, OTHER_TYPE)),
+            newArrayList(
+                    mkDataType(PARENT_TYPE, Optional.empty()),
+                    mkDataType(CHILD_TYPE, Optional.of(PARENT_TYPE)),
+                    mkDataType(OTHER_TYPE, Optional.empty())));
+
+
+    @Test
+    public void shortestPathIsFound() {
+        List<FlowPath> paths = graph.findShortestPaths(A, D, Optional.empty(), 1, 8);
+        assertEquals(1, paths.size());
+        assertEquals(2, paths.get(0).length());
+        assertEquals(A, paths.get(0).entities().get(0));
+        assertEquals(D, paths.get(0).entities().get(2));
+    }
+
+
+    @Test
+    public void multiplePathsAreReturnedShortestFirst() {
+        List<FlowPath> paths = graph.findShortestPaths(A, D, Optional.empty(), 5, 8);
+        assertEquals(3, paths.size());
+        assertEquals(2, paths.get(0).length());
+        assertEquals(3, paths.get(2).length());
+    }
+
+
+    @Test
+    public void pathsCanBeRestrictedByDataTypeHierarchy() {
+        List<FlowPath> paths = graph.findShortestPaths(A, D, Optional.of(PARENT_TYPE), 5, 8);
+        assertEquals(1, paths.size());
+        assertEquals(newArrayList(100L, 101L), paths.get(0).flowIds());
+    }
+
+
+    @Test
+    public void noPathGivesEmptyList() {
+        assertTrue(graph.findShortestPaths(D, A, Optional.empty(), 1, 8).isEmpty());
+        assertTrue(graph.findShortestPaths(mkRef(EntityKind.APPLICATION, 99), A, Optional.empty(), 1, 8).isEmpty());
+    }
+
+
+    @Test
+    public void impactIncludesAllDownstreamEntities() {
+        FlowImpact impact = graph.findDownstreamImpact(asSet(A), Optional.empty(), Optional.empty());
+        assertEquals(asSet(B, C, D), impact.entities());
+        assertEquals(asSet(100L, 101L, 102L, 103L, 104L), impact.flowIds());
+    }
+
+
+    @Test
+    public void impactCanBeRestrictedByDataTypeAndDepth() {
+        FlowImpact byType = graph.findDownstreamImpact(asSet(A), Optional.of(CHILD_TYPE), Optional.empty());
+        assertEquals(asSet(B, D), byType.entities());
+
+        FlowImpact byDepth = graph.findDownstreamImpact(asSet(A), Optional.empty(), Optional.of(1));
+        assertEquals(asSet(B, C), byDepth.entities());
+    }
+
+
+    // -- HELPERS ---
+
+    private static LogicalFlow mkFlow(long id, EntityReference source, EntityReference target) {
+        return ImmutableLogicalFlow.builder()
+                .id(id)
+                .source(source)
+                .target(target)
+                .lastUpdatedBy("test")
+                .lastUpdatedAt(LocalDateTime.now())
+                .build();
+    }
+
+
+    private static DataTypeDecorator mkDecorator(long flowId, long dataTypeId) {
+        return ImmutableDataTypeDecorator.builder()
+                .entityReference(mkRef(EntityKind.LOGICAL_DATA_FLOW, flowId))
+                .decoratorEntity(mkRef(EntityKind.DATA_TYPE, dataTypeId))
+                .lastUpdatedBy("test")
+                .lastUpdatedAt(LocalDateTime.now())
+                .provenance("test")
+                .build();
+    }
+
+
+    private static DataType mkDataType(long id, Optional<Long> parentId) {
+        return ImmutableDataType.builder()
+                .id(id)
+                .parentId(parentId)
+                .name("dt" + id)
+                .code("DT" + id)
+                .description("")
+                .build();
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.service.page_bundle;
+
+import com.khartec.waltz.data.DBExecutorPool;
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.HierarchyQueryScope;
+import com.khartec.waltz.model.page_bundle.ImmutablePageBundleRequest;
+import com.khartec.waltz.model.page_bundle.PageBundleSectionResult;
+import com.khartec.waltz.model.page_bundle.PageBundleSectionStatus;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static com.khartec.waltz.model.IdSelectionOptions.mkOpts;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public class PageBundleServiceTest {
+
+    private final RecordingPool pool = new RecordingPool();
+    private final Map<String, PageBundleSection> sections = new HashMap<>();
+    private final List<PageBundleSectionResult> results = new ArrayList<>();
+
+
+    @Test
+    public void resultsAreGivenInRequestedOrder() {
+        sections.put("slow", (options, selector) -> sleepThenReturn(200, "slow data"));
+        sections.put("fast", (options, selector) -> "fast data");
+
+        execute(Optional.empty(), "slow", "fast", "slow");
+
+        assertEquals(newArrayList("slow", "fast"), names());
+        assertEquals(newArrayList(PageBundleSectionStatus.OK, PageBundleSectionStatus.OK), statuses());
+        assertEquals("slow data", results.get(0).data());
+        assertEquals("fast data", results.get(1).data());
+        assertTrue(results.get(0).durationMillis() >= 200);
+    }
+
+
+    @Test
+    public void failingSectionDoesNotAffectOthers() {
+        sections.put("broken", (options, selector) -> { throw new IllegalStateException("boom"); });
+        sections.put("fine", (options, selector) -> "data");
+
+        execute(Optional.empty(), "broken", "fine");
+
+        assertEquals(newArrayList(PageBundleSectionStatus.ERROR, PageBundleSectionStatus.OK), statuses());
+        assertEquals(Optional.of("boom"), results.get(0).error());
+        assertNull(results.get(0).data());
+    }
+
+
+    @Test
+    public void slowSectionTimesOutWithoutDelayingOthers() {
+        sections.put("stuck", (options, selector) -> sleepThenReturn(5_000, "too late"));
+        sections.put("fine", (options, selector) -> "data");
+
+        long st = System.currentTimeMillis();
+        execute(Optional.of(100L), "stuck", "fine");
+
+        assertTrue("should not wait for the stuck section", System.currentTimeMillis() - st < 2_000);
+        assertEquals(newArrayList(PageBundleSectionStatus.TIMEOUT, PageBundleSectionStatus.OK), statuses());
+        assertTrue(results.get(0).error().isPresent());
+    }
+
+
+    @Test
+    public void unknownSectionsAreReported() {
+        sections.put("fine", (options, selector) -> "data");
+
+        execute(Optional.empty(), "nope", "fine");
+
+        assertEquals(newArrayList(PageBundleSectionStatus.UNKNOWN_SECTION, PageBundleSectionStatus.OK), statuses());
+        assertEquals("unknown sections are not submitted", 1, pool.timeouts.size());
+    }
+
+
+    @Test
+    public void sectionsRejectedByABusyPoolAreReported() {
+        sections.put("fine", (options, selector) -> "data");
+        pool.reject = true;
+
+        execute(Optional.empty(), "fine");
+
+        assertEquals(newArrayList(PageBundleSectionStatus.REJECTED), statuses());
+    }
+
+
+    @Test
+    public void requestedTimeoutIsCappedAtTheMaximum() {
+        sections.put("fine", (options, selector) -> "data");
+
+        execute(Optional.of(250L), "fine");
+        execute(Optional.of(60_000L), "fine");
+        execute(Optional.of(0L), "fine");
+        execute(Optional.empty(), "fine");
+
+        assertEquals(
+                newArrayList(Duration.ofMillis(250), Duration.ofSeconds(2), Duration.ofSeconds(2), Duration.ofSeconds(2)),
+                pool.timeouts);
+    }
+
+
+    // -- HELPERS ---
+
+    private void execute(Optional<Long> sectionTimeoutMillis, String... sectionNames) {
+        PageBundleService service = new PageBundleService(pool, sections, 2);
+        service.execute(
+                ImmutablePageBundleRequest.builder()
+                        .selectionOptions(mkOpts(mkRef(EntityKind.APPLICATION, 1), HierarchyQueryScope.EXACT))
+                        .addSections(sectionNames)
+                        .sectionTimeoutMillis(sectionTimeoutMillis)
+                        .build(),
+                results::add);
+    }
+
+
+    private List<String> names() {
+        return results.stream().map(PageBundleSectionResult::name).collect(toList());
+    }
+
+
+    private List<PageBundleSectionStatus> statuses() {
+        return results.stream().map(PageBundleSectionResult::status).collect(toList());
+    }
+
+
+    private static String sleepThenReturn(long millis, String result) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted");
+        }
+        return result;
+    }
+
+
+    private static class RecordingPool extends DBExecutorPool {
+
+        private final List<Duration> timeouts = new ArrayList<>();
+        private boolean reject = false;
+
+
+        RecordingPool() {
+            super(4, 10, Duration.ofSeconds(5));
+        }
+
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task, Duration timeout) {
+            timeouts.add(timeout);
+            if (reject) {
+                throw new RejectedExecutionException("busy");
+            }
+            return super.submit(task, timeout);
+        }
+    }
+
+}
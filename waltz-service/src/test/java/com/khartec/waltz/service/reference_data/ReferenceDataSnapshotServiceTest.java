@@ -0,0 +1,354 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.service.reference_data;
+
+import com.khartec.waltz.data.DBExecutorPool;
+import com.khartec.waltz.data.client_cache_key.ClientCacheKeyDao;
+import com.khartec.waltz.model.client_cache_key.ClientCacheKey;
+import com.khartec.waltz.model.client_cache_key.ImmutableClientCacheKey;
+import com.khartec.waltz.model.reference_data.ImmutableReferenceDataSnapshot;
+import com.khartec.waltz.model.reference_data.ReferenceDataSnapshot;
+import com.khartec.waltz.service.client_cache_key.ClientCacheKeyService;
+import com.khartec.waltz.service.reference_data.ReferenceDataSnapshotService.EncodedSnapshot;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static com.khartec.waltz.common.CompressionUtilities.gunzip;
+import static com.khartec.waltz.common.DateTimeUtilities.nowUtc;
+import static com.khartec.waltz.service.client_cache_key.ClientCacheKeyService.REFERENCE_DATA_KEY;
+import static com.khartec.waltz.service.client_cache_key.ClientCacheKeyService.TAXONOMY_KEY;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public class ReferenceDataSnapshotServiceTest {
+
+    private final InMemoryCacheKeyDao keyDao = new InMemoryCacheKeyDao();
+    private final StubLoader loader = new StubLoader();
+    private final DBExecutorPool pool = new DBExecutorPool(1, 1, Duration.ofSeconds(5));
+
+
+    @Test
+    public void versionDependsOnlyOnTrackedKeys() {
+        keyDao.put("OTHER", "x");
+        keyDao.put(TAXONOMY_KEY, "a");
+        keyDao.put(REFERENCE_DATA_KEY, "b");
+        String version = versionOf(keyDao);
+
+        InMemoryCacheKeyDao reordered = new InMemoryCacheKeyDao();
+        reordered.put(REFERENCE_DATA_KEY, "b");
+        reordered.put(TAXONOMY_KEY, "a");
+        assertEquals("order of keys is irrelevant", version, versionOf(reordered));
+
+        keyDao.put("OTHER", "y");
+        assertEquals("untracked keys are ignored", version, versionOf(keyDao));
+
+        keyDao.put(TAXONOMY_KEY, "c");
+        assertNotEquals(version, versionOf(keyDao));
+
+        keyDao.put(TAXONOMY_KEY, "a");
+        keyDao.put(REFERENCE_DATA_KEY, "d");
+        assertNotEquals(version, versionOf(keyDao));
+    }
+
+
+    @Test
+    public void versionIsOnlyRereadAfterCheckInterval() {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(3600);
+        String version = service.getVersion();
+
+        keyDao.put(REFERENCE_DATA_KEY, "b");
+
+        assertEquals(version, service.getVersion());
+    }
+
+
+    @Test
+    public void firstSnapshotIsBuiltOnDemand() {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(3600);
+
+        EncodedSnapshot snapshot = service.getSnapshot();
+
+        assertEquals(versionOf(keyDao), snapshot.version());
+        assertEquals("snapshot " + snapshot.version(), decode(snapshot));
+        assertEquals(decode(snapshot).length(), snapshot.uncompressedLength());
+
+        assertSame(snapshot, service.getSnapshot());
+        assertEquals(1, loader.loads.get());
+    }
+
+
+    @Test
+    public void staleSnapshotIsServedWhilstRebuilding() throws InterruptedException {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(0);
+        EncodedSnapshot original = service.getSnapshot();
+
+        CountDownLatch release = loader.blockNextLoad();
+        keyDao.put(REFERENCE_DATA_KEY, "b");
+        Thread.sleep(5);
+
+        assertSame(original, service.getSnapshot());
+        assertTrue(loader.loading.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            assertSame("previous snapshot is served until the rebuild completes", original, service.getSnapshot());
+        }
+        assertEquals("only one rebuild is started", 2, loader.loads.get());
+
+        release.countDown();
+
+        String newVersion = versionOf(keyDao);
+        awaitTrue(() -> service.getSnapshot().version().equals(newVersion));
+    }
+
+
+    @Test
+    public void snapshotIsReloadedIfKeysChangeWhilstBuilding() {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(3600);
+
+        loader.onLoad = onlyOnce(() -> keyDao.put(TAXONOMY_KEY, "changed"));
+        EncodedSnapshot snapshot = service.getSnapshot();
+
+        assertEquals(2, loader.loads.get());
+        assertEquals(versionOf(keyDao), snapshot.version());
+        assertEquals(snapshot.version(), service.getVersion());
+        assertEquals("snapshot " + snapshot.version(), decode(snapshot));
+    }
+
+
+    @Test
+    public void failedRebuildKeepsPreviousSnapshotAndIsRetried() throws InterruptedException {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(0);
+        EncodedSnapshot original = service.getSnapshot();
+
+        loader.failure = new IllegalStateException("db unavailable");
+        keyDao.put(REFERENCE_DATA_KEY, "b");
+        Thread.sleep(5);
+
+        assertSame(original, service.getSnapshot());
+        awaitTrue(() -> loader.failures.get() == 1);
+        assertSame(original, service.getSnapshot());
+
+        loader.failure = null;
+        String newVersion = versionOf(keyDao);
+        awaitTrue(() -> service.getSnapshot().version().equals(newVersion));
+    }
+
+
+    @Test
+    public void rebuildIsDeferredWhilstExecutorIsBusy() throws InterruptedException {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        ReferenceDataSnapshotService service = mkService(0);
+        EncodedSnapshot original = service.getSnapshot();
+
+        CountDownLatch busy = new CountDownLatch(1);
+        pool.submit(() -> busy.await(5, TimeUnit.SECONDS));
+        pool.submit(() -> busy.await(5, TimeUnit.SECONDS));
+
+        keyDao.put(REFERENCE_DATA_KEY, "b");
+        Thread.sleep(5);
+
+        assertSame(original, service.getSnapshot());
+        assertEquals(1, loader.loads.get());
+
+        busy.countDown();
+
+        String newVersion = versionOf(keyDao);
+        awaitTrue(() -> service.getSnapshot().version().equals(newVersion));
+    }
+
+
+    @Test
+    public void invalidateBumpsReferenceDataKey() {
+        keyDao.put(REFERENCE_DATA_KEY, "a");
+        keyDao.put(TAXONOMY_KEY, "b");
+        ReferenceDataSnapshotService service = mkService(3600);
+        String version = service.getVersion();
+
+        String newVersion = service.invalidate();
+
+        assertNotEquals(version, newVersion);
+        assertNotEquals("a", keyDao.keys.get(REFERENCE_DATA_KEY));
+        assertEquals("b", keyDao.keys.get(TAXONOMY_KEY));
+        assertEquals(versionOf(keyDao), newVersion);
+        assertEquals(newVersion, service.getVersion());
+    }
+
+
+    // -- HELPERS ---
+
+    private ReferenceDataSnapshotService mkService(long versionCheckSeconds) {
+        return mkService(keyDao, versionCheckSeconds);
+    }
+
+
+    private ReferenceDataSnapshotService mkService(ClientCacheKeyDao dao, long versionCheckSeconds) {
+        ReferenceDataSnapshotService service = new ReferenceDataSnapshotService(
+                new ClientCacheKeyService(dao),
+                pool,
+                loader,
+                versionCheckSeconds);
+        service.setEncoder(s -> ("snapshot " + s.version()).getBytes(StandardCharsets.UTF_8));
+        return service;
+    }
+
+
+    private String versionOf(ClientCacheKeyDao dao) {
+        return mkService(dao, 3600).getVersion();
+    }
+
+
+    private static String decode(EncodedSnapshot snapshot) {
+        return new String(gunzip(snapshot.gzippedBytes()), StandardCharsets.UTF_8);
+    }
+
+
+    private static Runnable onlyOnce(Runnable runnable) {
+        AtomicInteger calls = new AtomicInteger();
+        return () -> {
+            if (calls.getAndIncrement() == 0) {
+                runnable.run();
+            }
+        };
+    }
+
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (! condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+
+    // -- stubs ---
+
+    /**
+     * Builds empty snapshots, counting loads.  Loads may be made to fail,
+     * block or run a callback (e.g. to change a key mid-build).
+     */
+    private static class StubLoader implements Function<String, ReferenceDataSnapshot> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch loading = new CountDownLatch(1);
+        private volatile CountDownLatch release = null;
+        private volatile RuntimeException failure = null;
+        private volatile Runnable onLoad = () -> {};
+
+
+        CountDownLatch blockNextLoad() {
+            release = new CountDownLatch(1);
+            return release;
+        }
+
+
+        @Override
+        public ReferenceDataSnapshot apply(String version) {
+            loads.incrementAndGet();
+            CountDownLatch latch = release;
+            if (latch != null) {
+                release = null;
+                loading.countDown();
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            RuntimeException e = failure;
+            if (e != null) {
+                failures.incrementAndGet();
+                throw e;
+            }
+            onLoad.run();
+            return ImmutableReferenceDataSnapshot.builder()
+                    .version(version)
+                    .builtAt(nowUtc())
+                    .build();
+        }
+    }
+
+
+    /**
+     * Holds cache keys in memory, updating them as the real dao would.
+     */
+    private static class InMemoryCacheKeyDao extends ClientCacheKeyDao {
+
+        private final Map<String, String> keys = new LinkedHashMap<>();
+
+
+        InMemoryCacheKeyDao() {
+            super(DSL.using(SQLDialect.DEFAULT));
+        }
+
+
+        synchronized void put(String key, String guid) {
+            keys.put(key, guid);
+        }
+
+
+        @Override
+        public synchronized List<ClientCacheKey> findAll() {
+            return keys
+                    .entrySet()
+                    .stream()
+                    .map(e -> ImmutableClientCacheKey.builder()
+                            .key(e.getKey())
+                            .guid(e.getValue())
+                            .build())
+                    .collect(toList());
+        }
+
+
+        @Override
+        public synchronized ClientCacheKey getByKey(String key) {
+            return ImmutableClientCacheKey.builder()
+                    .key(key)
+                    .guid(keys.get(key))
+                    .build();
+        }
+
+
+        @Override
+        public synchronized boolean createOrUpdate(String key, String guid) {
+            keys.put(key, guid);
+            return true;
+        }
+    }
+
+}
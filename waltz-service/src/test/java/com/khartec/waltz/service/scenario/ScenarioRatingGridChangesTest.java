@@ -0,0 +1,151 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.scenario;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.scenario.ImmutableScenarioRatingGridChange;
+import com.khartec.waltz.model.scenario.ImmutableScenarioRatingItem;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridChange;
+import com.khartec.waltz.model.scenario.ScenarioRatingGridSummary;
+import com.khartec.waltz.model.scenario.ScenarioRatingItem;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScenarioRatingGridChangesTest {
+
+    @Test
+    public void cellsAreAddedUpdatedAndRemoved() {
+        List<ScenarioRatingItem> existing = newArrayList(
+                mkItem(1, 10, 20, 'R', ""),
+                mkItem(2, 10, 20, 'G', ""),
+                mkItem(3, 10, 20, 'A', "keep"));
+
+        ScenarioRatingGridChanges changes = ScenarioRatingGridChanges.determineChanges(
+                existing,
+                newArrayList(
+                        mkChange(1, 10, 20, Optional.empty(), Optional.empty()),
+                        mkChange(2, 10, 20, Optional.of('R'), Optional.empty()),
+                        mkChange(3, 10, 20, Optional.of('A'), Optional.empty()),
+                        mkChange(4, 10, 20, Optional.of('G'), Optional.of("new")),
+                        mkChange(5, 10, 20, Optional.empty(), Optional.empty())));
+
+        ScenarioRatingGridSummary summary = changes.toSummary();
+        assertEquals(1, summary.added());
+        assertEquals(1, summary.updated());
+        assertEquals(1, summary.removed());
+        assertEquals(2, summary.unchanged());
+        assertEquals(Optional.of("new"), changes.toAdd().get(0).comment());
+    }
+
+
+    @Test
+    public void commentOnlyChangesAreUpdates() {
+        ScenarioRatingGridChanges changes = ScenarioRatingGridChanges.determineChanges(
+                newArrayList(mkItem(1, 10, 20, 'R', "old")),
+                newArrayList(mkChange(1, 10, 20, Optional.of('R'), Optional.of("new"))));
+
+        assertEquals(1, changes.toUpdate().size());
+        assertEquals(Optional.of("new"), changes.toUpdate().get(0).comment());
+    }
+
+
+    @Test
+    public void lastRequestForACellWins() {
+        ScenarioRatingGridChanges changes = ScenarioRatingGridChanges.determineChanges(
+                emptyList(),
+                newArrayList(
+                        mkChange(1, 10, 20, Optional.of('R'), Optional.empty()),
+                        mkChange(1, 10, 20, Optional.of('G'), Optional.empty())));
+
+        assertEquals(1, changes.toAdd().size());
+        assertEquals(Optional.of('G'), changes.toAdd().get(0).rating());
+    }
+
+
+    @Test
+    public void largeGridsAreDiffedQuickly() {
+        int apps = 1_000;
+        int rows = 10;
+        int cols = 10;
+
+        List<ScenarioRatingItem> existing = new ArrayList<>(apps * rows * cols);
+        List<ScenarioRatingGridChange> requested = new ArrayList<>(apps * rows * cols);
+
+        for (int a = 0; a < apps; a++) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    existing.add(mkItem(a, r, c, 'G', ""));
+                    // every tenth cell is re-rated, the rest are resubmitted as-is
+                    char rating = (a + r + c) % 10 == 0 ? 'R' : 'G';
+                    requested.add(mkChange(a, r, c, Optional.of(rating), Optional.empty()));
+                }
+            }
+        }
+
+        ScenarioRatingGridChanges changes = ScenarioRatingGridChanges.determineChanges(existing, requested);
+
+        assertEquals(10_000, changes.toUpdate().size());
+        assertEquals(90_000, changes.toSummary().unchanged());
+        assertTrue(changes.toAdd().isEmpty());
+        assertTrue(changes.toRemove().isEmpty());
+    }
+
+
+    // -- HELPERS ---
+
+    private static ScenarioRatingItem mkItem(long appId, long rowId, long columnId, char rating, String description) {
+        return ImmutableScenarioRatingItem.builder()
+                .scenarioId(1L)
+                .item(mkRef(EntityKind.APPLICATION, appId))
+                .row(mkRef(EntityKind.MEASURABLE, rowId))
+                .column(mkRef(EntityKind.MEASURABLE, columnId))
+                .rating(rating)
+                .description(description)
+                .lastUpdatedBy("test")
+                .lastUpdatedAt(LocalDateTime.now())
+                .build();
+    }
+
+
+    private static ScenarioRatingGridChange mkChange(long appId,
+                                                     long rowId,
+                                                     long columnId,
+                                                     Optional<Character> rating,
+                                                     Optional<String> comment) {
+        return ImmutableScenarioRatingGridChange.builder()
+                .appId(appId)
+                .rowId(rowId)
+                .columnId(columnId)
+                .rating(rating)
+                .comment(comment)
+                .build();
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.scheduled_job;
+
+import com.khartec.waltz.model.scheduled_job.JobExecutionOutcome;
+import com.khartec.waltz.model.scheduled_job.JobKey;
+import com.khartec.waltz.model.scheduled_job.ScheduledJobExecution;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedAcyclicGraph;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.khartec.waltz.model.scheduled_job.JobKey.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledJobRunnerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledJobRunner runner = new ScheduledJobRunner(executor, timer);
+
+    private final List<JobKey> completionOrder = Collections.synchronizedList(new ArrayList<>());
+    private final Map<JobKey, JobExecutionOutcome> finished = new ConcurrentHashMap<>();
+
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+
+    @Test
+    public void dependentsRunAfterTheirDependencies() {
+        Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+        jobs.put(HIERARCHY_REBUILD_DATA_TYPE, mkJob(HIERARCHY_REBUILD_DATA_TYPE, 50, 1));
+        jobs.put(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, mkJob(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, 0, 2));
+        jobs.put(COMPLEXITY_REBUILD, mkJob(COMPLEXITY_REBUILD, 0, 3));
+
+        List<ScheduledJobExecution> executions = runner.run(mkDag(), jobs, k -> Duration.ofSeconds(5), lifecycle(true));
+
+        assertEquals(3, executions.size());
+        assertTrue(executions.stream().allMatch(e -> e.outcome() == JobExecutionOutcome.COMPLETED));
+        assertTrue(completionOrder.indexOf(HIERARCHY_REBUILD_DATA_TYPE) < completionOrder.indexOf(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL));
+        assertEquals("independent job should not wait for slow job", COMPLEXITY_REBUILD, completionOrder.get(0));
+        assertEquals(Optional.of(2), find(executions, DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL).rowsAffected());
+    }
+
+
+    @Test
+    public void failuresCauseDependentsToBeSkipped() {
+        Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+        jobs.put(HIERARCHY_REBUILD_DATA_TYPE, () -> { throw new IllegalStateException("boom"); });
+        jobs.put(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, mkJob(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL, 0, 2));
+
+        List<ScheduledJobExecution> executions = runner.run(mkDag(), jobs, k -> Duration.ofSeconds(5), lifecycle(true));
+
+        assertEquals(JobExecutionOutcome.ERRORED, find(executions, HIERARCHY_REBUILD_DATA_TYPE).outcome());
+        assertEquals(JobExecutionOutcome.SKIPPED_UPSTREAM_FAILURE, find(executions, DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL).outcome());
+        assertEquals(JobExecutionOutcome.ERRORED, finished.get(HIERARCHY_REBUILD_DATA_TYPE));
+        assertTrue("skipped jobs are left runnable", ! finished.containsKey(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL));
+    }
+
+
+    @Test
+    public void slowJobsTimeOut() throws InterruptedException {
+        Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+        jobs.put(COMPLEXITY_REBUILD, mkJob(COMPLEXITY_REBUILD, 5_000, 1));
+
+        List<ScheduledJobExecution> executions = runner.run(mkDag(), jobs, k -> Duration.ofMillis(100), lifecycle(true));
+
+        assertEquals(JobExecutionOutcome.TIMED_OUT, find(executions, COMPLEXITY_REBUILD).outcome());
+        assertEquals(JobExecutionOutcome.TIMED_OUT, awaitFinished(COMPLEXITY_REBUILD));
+        assertTrue("interrupted job should not complete", completionOrder.isEmpty());
+    }
+
+
+    @Test
+    public void timedOutJobIsNotFinishedUntilItStops() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+        jobs.put(COMPLEXITY_REBUILD, () -> {
+            // like a jdbc statement, ignores interrupts
+            while (true) {
+                try {
+                    release.await();
+                    return 1;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        List<ScheduledJobExecution> executions = runner.run(mkDag(), jobs, k -> Duration.ofMillis(100), lifecycle(true));
+
+        assertEquals(JobExecutionOutcome.TIMED_OUT, find(executions, COMPLEXITY_REBUILD).outcome());
+        Thread.sleep(200);
+        assertTrue("job is still running so must not be marked as finished", ! finished.containsKey(COMPLEXITY_REBUILD));
+
+        release.countDown();
+        assertEquals(JobExecutionOutcome.TIMED_OUT, awaitFinished(COMPLEXITY_REBUILD));
+    }
+
+
+    @Test
+    public void jobsWhichAreNotRunnableAreNotRecorded() {
+        Map<JobKey, Callable<?>> jobs = new EnumMap<>(JobKey.class);
+        jobs.put(COMPLEXITY_REBUILD, mkJob(COMPLEXITY_REBUILD, 0, 1));
+
+        assertTrue(runner.run(mkDag(), jobs, k -> Duration.ofSeconds(5), lifecycle(false)).isEmpty());
+        assertTrue(completionOrder.isEmpty());
+    }
+
+
+    // -- HELPERS ---
+
+    private static DirectedAcyclicGraph<JobKey, DefaultEdge> mkDag() {
+        DirectedAcyclicGraph<JobKey, DefaultEdge> g = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        g.addVertex(HIERARCHY_REBUILD_DATA_TYPE);
+        g.addVertex(DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL);
+        g.addVertex(COMPLEXITY_REBUILD);
+        g.addEdge(HIERARCHY_REBUILD_DATA_TYPE, DATA_TYPE_RIPPLE_PHYSICAL_TO_LOGICAL);
+        return g;
+    }
+
+
+    private Callable<Integer> mkJob(JobKey jobKey, long sleepMillis, int rows) {
+        return () -> {
+            Thread.sleep(sleepMillis);
+            completionOrder.add(jobKey);
+            return rows;
+        };
+    }
+
+
+    private ScheduledJobRunner.JobLifecycle lifecycle(boolean runnable) {
+        return new ScheduledJobRunner.JobLifecycle() {
+            @Override
+            public boolean isRunnable(JobKey jobKey) {
+                return runnable;
+            }
+
+            @Override
+            public boolean markAsRunning(JobKey jobKey) {
+                return true;
+            }
+
+            @Override
+            public void markAsFinished(JobKey jobKey, JobExecutionOutcome outcome) {
+                finished.put(jobKey, outcome);
+            }
+        };
+    }
+
+
+    private JobExecutionOutcome awaitFinished(JobKey jobKey) throws InterruptedException {
+        for (int i = 0; i < 500 && ! finished.containsKey(jobKey); i++) {
+            Thread.sleep(10);
+        }
+        return finished.get(jobKey);
+    }
+
+
+    private static ScheduledJobExecution find(List<ScheduledJobExecution> executions, JobKey jobKey) {
+        return executions
+                .stream()
+                .filter(e -> e.jobKey() == jobKey)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No execution for: " + jobKey));
+    }
+
+}
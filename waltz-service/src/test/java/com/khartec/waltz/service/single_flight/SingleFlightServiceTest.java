@@ -0,0 +1,155 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.single_flight;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightServiceTest {
+
+    private final SingleFlightService singleFlight = new SingleFlightService();
+
+
+    @Test
+    public void concurrentIdenticalCallsShareOneComputation() throws Exception {
+        int callers = 8;
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("op", "key", () -> {
+                    computations.incrementAndGet();
+                    await(release);
+                    return "result";
+                })));
+            }
+
+            waitUntil(() -> singleFlight.getJoinedCount() == callers - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("result", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, computations.get());
+            assertEquals(callers, singleFlight.getCallCount());
+            assertEquals(0, singleFlight.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void failuresAreSharedAndNotRemembered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Object> leader = executor.submit(() -> singleFlight.execute("op", "key", () -> {
+                await(release);
+                throw new IllegalStateException("boom");
+            }));
+
+            waitUntil(() -> singleFlight.getInFlightCount() == 1);
+            new Thread(() -> {
+                waitUntil(() -> singleFlight.getJoinedCount() == 1);
+                release.countDown();
+            }).start();
+
+            try {
+                singleFlight.execute("op", "key", () -> "not used");
+                fail("expected the leader's exception");
+            } catch (IllegalStateException e) {
+                assertEquals("boom", e.getMessage());
+            }
+
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail("expected the leader to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            assertEquals("ok", singleFlight.execute("op", "key", () -> "ok"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void resultsAreKeptForTheirTtl() {
+        AtomicInteger computations = new AtomicInteger();
+        singleFlight.setResultTtlMillis(60_000);
+
+        singleFlight.execute("op", "key", computations::incrementAndGet);
+        singleFlight.execute("op", "key", computations::incrementAndGet);
+        singleFlight.execute("op", "other", computations::incrementAndGet);
+
+        assertEquals(2, computations.get());
+        assertEquals(1, singleFlight.getCacheHitCount());
+    }
+
+
+    @Test
+    public void reentrantCallsForTheSameKeyDoNotDeadlock() {
+        String result = singleFlight.execute("op", "key",
+                () -> singleFlight.execute("op", "key", () -> "inner"));
+        assertEquals("inner", result);
+    }
+
+
+    // -- HELPERS ---
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static void waitUntil(Callable<Boolean> condition) {
+        long giveUpAt = System.currentTimeMillis() + 5_000;
+        try {
+            while (! condition.call()) {
+                if (System.currentTimeMillis() > giveUpAt) {
+                    throw new IllegalStateException("Condition not met in time");
+                }
+                Thread.sleep(5);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.service.usage_info;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DataTypeUsageRecalculationQueueTest {
+
+    private static final EntityReference APP_1 = mkRef(EntityKind.APPLICATION, 1);
+    private static final EntityReference APP_2 = mkRef(EntityKind.APPLICATION, 2);
+    private static final EntityReference ACTOR_3 = mkRef(EntityKind.ACTOR, 3);
+    private static final EntityReference MEASURABLE_4 = mkRef(EntityKind.MEASURABLE, 4);
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private final List<Set<EntityReference>> batches = new CopyOnWriteArrayList<>();
+
+
+    @Test
+    public void requestsAreCoalescedIntoOneBatch() {
+        DataTypeUsageRecalculationQueue queue = new DataTypeUsageRecalculationQueue(batches::add, NEVER, NEVER);
+
+        queue.enqueue(newArrayList(APP_1, APP_2));
+        queue.enqueue(newArrayList(APP_1, ACTOR_3, MEASURABLE_4));
+
+        assertEquals(3, queue.getQueueDepth());
+        assertEquals(3, queue.flush());
+        assertEquals(newArrayList(asSet(APP_1, APP_2, ACTOR_3)), batches);
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+
+    @Test
+    public void flushWithNothingQueuedDoesNothing() {
+        DataTypeUsageRecalculationQueue queue = new DataTypeUsageRecalculationQueue(batches::add, NEVER, NEVER);
+
+        assertEquals(0, queue.flush());
+        assertTrue(batches.isEmpty());
+    }
+
+
+    @Test
+    public void batchRunsOnceRequestsStopArriving() throws InterruptedException {
+        CountDownLatch recalculated = new CountDownLatch(1);
+        DataTypeUsageRecalculationQueue queue = new DataTypeUsageRecalculationQueue(
+                batch -> {
+                    batches.add(batch);
+                    recalculated.countDown();
+                },
+                20,
+                NEVER);
+
+        queue.enqueue(newArrayList(APP_1));
+        queue.enqueue(newArrayList(APP_2));
+
+        assertTrue(recalculated.await(5, TimeUnit.SECONDS));
+        assertEquals(newArrayList(asSet(APP_1, APP_2)), batches);
+    }
+
+
+    @Test
+    public void failedBatchIsReportedByFlushAndKeptForRetry() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        DataTypeUsageRecalculationQueue queue = new DataTypeUsageRecalculationQueue(
+                batch -> {
+                    if (failing.get()) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    batches.add(batch);
+                },
+                NEVER,
+                NEVER);
+
+        queue.enqueue(newArrayList(APP_1, APP_2));
+
+        try {
+            queue.flush();
+            fail("flush should report the failed recalculation");
+        } catch (IllegalStateException e) {
+            assertEquals("database unavailable", e.getCause().getMessage());
+        }
+
+        assertEquals(1, queue.getFailedBatchCount());
+        assertEquals(2, queue.getQueueDepth());
+
+        failing.set(false);
+        assertEquals(2, queue.flush());
+        assertEquals(newArrayList(asSet(APP_1, APP_2)), batches);
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+}
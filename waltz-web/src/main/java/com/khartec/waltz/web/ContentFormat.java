@@ -0,0 +1,209 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static com.khartec.waltz.common.StringUtilities.isEmpty;
+
+
+/**
+ * Wire formats which the api can read and write.  All formats share the
+ * same mapper configuration so they carry exactly the same data, only
+ * the encoding differs.
+ *
+ * JSON is the default and is always used unless a client explicitly asks
+ * for one of the binary formats (via the <code>Accept</code> header) or
+ * sends one (via the <code>Content-Type</code> header).
+ */
+public enum ContentFormat {
+
+    JSON("application/json", new JsonFactory()),
+    SMILE("application/x-jackson-smile", mkSmileFactory()),
+    CBOR("application/cbor", new CBORFactory());
+
+
+    private final String mimeType;
+    private final ObjectMapper mapper;
+    private final ObjectMapper projectingMapper;
+
+
+    ContentFormat(String mimeType, JsonFactory factory) {
+        this.mimeType = mimeType;
+        this.mapper = mkMapper(factory);
+
+        // kept separate so the default path never pays for filtering
+        this.projectingMapper = mapper
+                .copy()
+                .addMixIn(Object.class, FieldProjectionFilter.MixIn.class);
+    }
+
+
+    public String mimeType() {
+        return mimeType;
+    }
+
+
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+
+    /**
+     * Writer which only includes the given properties for each item of a
+     * top level list (see {@link FieldProjectionFilter}).
+     *
+     * @param fields  properties to include
+     * @return writer configured to project list items
+     */
+    public ObjectWriter projectingWriter(Set<String> fields) {
+        SimpleFilterProvider filters = new SimpleFilterProvider()
+                .addFilter(FieldProjectionFilter.FILTER_ID, new FieldProjectionFilter(fields));
+        return projectingMapper.writer(filters);
+    }
+
+
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+
+    /**
+     * Picks the format to respond with given the value of an
+     * <code>Accept</code> header.  A binary format is only chosen if it is
+     * listed explicitly and is not ranked below json (by its q value),
+     * wildcards and missing headers give json.
+     *
+     * @param acceptHeader  value of the accept header, may be null
+     * @return format to render the response with
+     */
+    public static ContentFormat negotiate(String acceptHeader) {
+        if (isEmpty(acceptHeader)) {
+            return JSON;
+        }
+
+        ContentFormat best = JSON;
+        double bestQuality = 0;
+
+        for (String range : acceptHeader.split(",")) {
+            String[] parts = range.split(";");
+            String type = parts[0].trim();
+            double quality = readQuality(parts);
+
+            if (quality <= 0) {
+                continue;
+            }
+
+            Optional<ContentFormat> format = fromMimeType(type);
+            if (! format.isPresent()) {
+                continue;
+            }
+
+            boolean isBetter = quality > bestQuality
+                    || (quality == bestQuality && format.get() == JSON);
+
+            if (isBetter) {
+                best = format.get();
+                bestQuality = quality;
+            }
+        }
+
+        return best;
+    }
+
+
+    /**
+     * Determines the format of a request body given the value of its
+     * <code>Content-Type</code> header.  Anything not recognised is
+     * treated as json.
+     *
+     * @param contentType  value of the content type header, may be null
+     * @return format to parse the request body with
+     */
+    public static ContentFormat fromContentType(String contentType) {
+        if (isEmpty(contentType)) {
+            return JSON;
+        }
+        String type = contentType.split(";")[0].trim();
+        return fromMimeType(type).orElse(JSON);
+    }
+
+
+    // -- HELPERS ---
+
+    private static Optional<ContentFormat> fromMimeType(String type) {
+        for (ContentFormat format : values()) {
+            if (format.mimeType.equalsIgnoreCase(type)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    private static double readQuality(String[] rangeParts) {
+        for (int i = 1; i < rangeParts.length; i++) {
+            String param = rangeParts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException nfe) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+
+    private static SmileFactory mkSmileFactory() {
+        // back-references to previously written property names and short
+        // string values, our payloads are long lists of identically shaped
+        // objects so this is where most of the saving comes from
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        return factory;
+    }
+
+
+    private static ObjectMapper mkMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JSR310Module()); // DateTime etc
+        mapper.registerModule(new Jdk8Module()); // Optional etc
+
+        // Force timestamps to be sent as ISO-8601 formatted strings
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        return mapper;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+
+import java.util.Set;
+
+
+/**
+ * Restricts the properties written for each item of a top level list to
+ * those requested via the <code>fields=</code> parameter.  Nested objects
+ * (e.g. entity references within an item) are always written in full.
+ *
+ * Applied to every type via {@link MixIn} on a dedicated mapper, see
+ * {@link ContentFormat#projectingWriter(Set)}.
+ */
+class FieldProjectionFilter extends SimpleBeanPropertyFilter {
+
+    static final String FILTER_ID = "waltzFieldProjection";
+
+    private final Set<String> fields;
+
+
+    FieldProjectionFilter(Set<String> fields) {
+        this.fields = fields;
+    }
+
+
+    @Override
+    public void serializeAsField(Object pojo,
+                                 JsonGenerator jgen,
+                                 SerializerProvider provider,
+                                 PropertyWriter writer) throws Exception {
+        if (! isListItem(jgen.getOutputContext()) || fields.contains(writer.getName())) {
+            writer.serializeAsField(pojo, jgen, provider);
+        } else if (! jgen.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, jgen, provider);
+        }
+    }
+
+
+    // -- HELPERS ---
+
+    private static boolean isListItem(JsonStreamContext ctx) {
+        JsonStreamContext parent = ctx.getParent();
+        return parent != null
+                && parent.inArray()
+                && parent.getParent() != null
+                && parent.getParent().inRoot();
+    }
+
+
+    @JsonFilter(FILTER_ID)
+    static class MixIn {
+    }
+
+}
@@ -19,25 +19,38 @@
 package com.khartec.waltz.web;
 
 import com.khartec.waltz.common.LoggingUtilities;
+import com.khartec.waltz.common.exception.DeadlineExceededException;
 import com.khartec.waltz.common.exception.DuplicateKeyException;
 import com.khartec.waltz.common.exception.InsufficientPrivelegeException;
 import com.khartec.waltz.common.exception.NotFoundException;
 import com.khartec.waltz.common.exception.UpdateFailedException;
 import com.khartec.waltz.service.DIConfiguration;
 import com.khartec.waltz.service.settings.SettingsService;
+import com.khartec.waltz.web.admission.AdmissionControl;
+import com.khartec.waltz.web.admission.AdmissionRejectedException;
 import com.khartec.waltz.web.endpoints.Endpoint;
 import com.khartec.waltz.web.endpoints.api.StaticResourcesEndpoint;
 import com.khartec.waltz.web.endpoints.extracts.DataExtractor;
+import com.khartec.waltz.web.server.ServerSettings;
+import com.khartec.waltz.web.server.WaltzJettyServerFactory;
 import org.jooq.exception.DataAccessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jmx.export.MBeanExporter;
 import spark.Request;
 import spark.Response;
 import spark.Spark;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+import static com.khartec.waltz.common.StringUtilities.isEmpty;
+import static com.khartec.waltz.web.WebUtilities.getUsername;
 import static com.khartec.waltz.web.WebUtilities.reportException;
 import static spark.Spark.*;
 
@@ -69,6 +82,7 @@ public class Main {
         boolean sslEnabled = Boolean.valueOf(System.getProperty("waltz.ssl.enabled", "false"));
 
         String home = System.getProperty("user.home");
+        ServerSettings serverSettings = ServerSettings.load();
 
         System.out.println("\n" +
                 "    :::       :::     :::     :::    ::::::::::: ::::::::: \n" +
@@ -84,8 +98,13 @@ public class Main {
         System.out.println("Home is: " + home);
         System.out.println("Listening on port: " + listenPortStr);
         System.out.println("SSL Enabled: " + sslEnabled);
+        System.out.println("Server: " + serverSettings);
         System.out.println("----------------------------------------------------");
 
+        EmbeddedServers.add(
+                EmbeddedServers.Identifiers.JETTY,
+                new EmbeddedJettyFactory(new WaltzJettyServerFactory(serverSettings)));
+
         if (sslEnabled) {
             Spark.secure(home + "/.waltz/keystore.jks", "password", null, null);
         }
@@ -103,6 +122,10 @@ public class Main {
 
         ctx = new AnnotationConfigApplicationContext(DIConfiguration.class);
 
+        AdmissionControl
+                .configure(ctx.getBean(SettingsService.class))
+                .ifPresent(control -> ctx.getBean(MBeanExporter.class).registerManagedResource(control));
+
         Map<String, Endpoint> endpoints = ctx.getBeansOfType(Endpoint.class);
         endpoints.forEach((name, endpoint) -> {
             LOG.info("Registering Endpoint: {}", name);
@@ -121,6 +144,7 @@ public class Main {
         LOG.info("Completed endpoint registration");
 
         registerExceptionHandlers();
+        enableLoggingContext();
         enableGZIP();
         enableCORS();
 
@@ -171,6 +195,29 @@ public class Main {
         });
 
 
+        exception(RejectedExecutionException.class, (e, req, resp) -> {
+            LOG.warn("Request rejected as server is busy: {}", req.pathInfo());
+            resp.header("Retry-After", "5");
+            reportException(503, "BUSY", "Server is busy, please retry shortly", resp, LOG);
+        });
+
+
+        exception(AdmissionRejectedException.class, (e, req, resp) -> {
+            LOG.warn("Request rejected by admission control: {}, {}", req.pathInfo(), e.getMessage());
+            resp.header("Retry-After", Integer.toString(e.getRetryAfterSeconds()));
+            String code = e.getStatus() == AdmissionRejectedException.TOO_MANY_REQUESTS
+                    ? "TOO_MANY_REQUESTS"
+                    : "BUSY";
+            reportException(e.getStatus(), code, e.getMessage(), resp, LOG);
+        });
+
+
+        exception(DeadlineExceededException.class, (e, req, resp) -> {
+            LOG.warn("Request timed out: {}, {}", req.pathInfo(), e.getMessage());
+            reportException(503, "TIMEOUT", e.getMessage(), resp, LOG);
+        });
+
+
         exception(InsufficientPrivelegeException.class, (e, req, resp) ->
            reportException(403, "NOT_AUTHORIZED", e.getMessage(), resp, LOG));
 
@@ -200,6 +247,25 @@ public class Main {
     }
 
 
+    /**
+     * Puts the request id and user into the logging context so they
+     * appear against log lines written whilst handling the request,
+     * including those from the db executor threads.
+     */
+    private void enableLoggingContext() {
+        before((req, res) -> {
+            String requestId = req.headers("X-Request-Id");
+            MDC.put("requestId", isEmpty(requestId) ? UUID.randomUUID().toString() : requestId);
+            String user = getUsername(req);
+            if (! isEmpty(user)) {
+                MDC.put("user", user);
+            }
+        });
+
+        afterAfter((req, res) -> MDC.clear());
+    }
+
+
     private void enableGZIP() {
         SettingsService settingsService = ctx.getBean(SettingsService.class);
 
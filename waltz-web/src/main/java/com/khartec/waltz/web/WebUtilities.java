@@ -19,9 +19,7 @@
 package com.khartec.waltz.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.khartec.waltz.common.EnumUtilities;
 import com.khartec.waltz.common.SetUtilities;
 import com.khartec.waltz.common.StringUtilities;
@@ -61,12 +59,7 @@ public class WebUtilities {
     private static final ObjectMapper mapper;
 
     static {
-        mapper = new ObjectMapper();
-        mapper.registerModule(new JSR310Module()); // DateTime etc
-        mapper.registerModule(new Jdk8Module()); // Optional etc
-
-        // Force timestamps to be sent as ISO-8601 formatted strings
-        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        mapper = ContentFormat.JSON.mapper();
 
         mimeTypes.addMimeMapping("ttf", "application/x-font-ttf");
     }
@@ -75,6 +68,91 @@ public class WebUtilities {
     public static final ResponseTransformer transformer = mapper::writeValueAsString;
 
 
+    /**
+     * Picks the response format from the client's <code>Accept</code> header
+     * (see {@link ContentFormat#negotiate(String)}) and sets the response
+     * content type to match.  Should the route then fail,
+     * {@link #reportException(int, String, String, Response, Logger)} puts
+     * the content type back to json to match the error body.
+     *
+     * @param request  spark request object
+     * @param response  spark response object
+     * @return format the response body should be rendered with
+     */
+    public static ContentFormat negotiateFormat(Request request,
+                                                Response response) {
+        ContentFormat format = ContentFormat.negotiate(request.headers("Accept"));
+        response.type(format.mimeType());
+        response.header("Vary", "Accept");
+        return format;
+    }
+
+
+    /**
+     * Renders the given object in the given format.  Json is returned as a
+     * string (exactly as {@link #transformer} would produce it), binary
+     * formats are returned as a byte array which spark writes out as-is.
+     *
+     * @param format  format to render with
+     * @param obj  object to render
+     * @return rendered object, either a <code>String</code> or <code>byte[]</code>
+     * @throws Exception if the object could not be rendered
+     */
+    public static Object render(ContentFormat format,
+                                Object obj) throws Exception {
+        return format.isBinary()
+                ? format.mapper().writeValueAsBytes(obj)
+                : transformer.render(obj);
+    }
+
+
+    /**
+     * As {@link #render(ContentFormat, Object)} but, if any fields are
+     * given, each item of a top level list is restricted to just those
+     * properties.
+     *
+     * @param format  format to render with
+     * @param obj  object to render
+     * @param fields  properties to include for each list item, empty for all
+     * @return rendered object, either a <code>String</code> or <code>byte[]</code>
+     * @throws Exception if the object could not be rendered
+     */
+    public static Object render(ContentFormat format,
+                                Object obj,
+                                Set<String> fields) throws Exception {
+        if (fields.isEmpty()) {
+            return render(format, obj);
+        }
+
+        ObjectWriter writer = format.projectingWriter(fields);
+        return format.isBinary()
+                ? writer.writeValueAsBytes(obj)
+                : writer.writeValueAsString(obj);
+    }
+
+
+    /**
+     * Reads the optional, comma separated, <code>fields</code> query
+     * parameter used to request a sparse projection of list items,
+     * e.g. <code>?fields=id,name,assetCode</code>.
+     *
+     * @param request  spark request object
+     * @return requested property names, empty if all properties are wanted
+     */
+    public static Set<String> readFields(Request request) {
+        String fieldsParam = request.queryParams("fields");
+        if (StringUtilities.isEmpty(fieldsParam)) {
+            return Collections.emptySet();
+        }
+
+        return Arrays
+                .stream(fieldsParam.split(","))
+                .map(String::trim)
+                .filter(f -> ! f.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+
     /**
      * @see StringUtilities
      */
@@ -229,7 +307,9 @@ public class WebUtilities {
 
     /**
      * Reads the body of the request and attempts to convert it into an instance of
-     * the given class.
+     * the given class.  The body is parsed according to the request
+     * <code>Content-Type</code>, json is assumed unless a supported binary
+     * format is given (see {@link ContentFormat}).
      *
      * @param request Http request
      * @param objClass Class of the object we are parsing
@@ -239,7 +319,11 @@ public class WebUtilities {
      */
     public static <T> T readBody(Request request,
                                  Class<T> objClass) throws IOException {
-        return mapper.readValue(
+        ObjectMapper bodyMapper = ContentFormat
+                .fromContentType(request.contentType())
+                .mapper();
+
+        return bodyMapper.readValue(
                 request.bodyAsBytes(),
                 objClass);
     }
@@ -312,6 +396,8 @@ public class WebUtilities {
                                        Response res,
                                        Logger log) {
         res.status(statusCode);
+        // errors are always json, even if a binary format was negotiated before the failure
+        res.type(TYPE_JSON);
         ImmutableWebError webError = ImmutableWebError.builder()
                 .message(message)
                 .id(maybeErrorCode)
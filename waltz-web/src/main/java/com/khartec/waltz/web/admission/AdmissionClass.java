@@ -0,0 +1,87 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.admission;
+
+
+/**
+ * Groups of expensive endpoints which share a concurrency limit.  Routes
+ * not registered with a class are not limited.
+ *
+ * The limits for each class may be overridden via settings named
+ * <code>server.admission.[class].[property]</code>, e.g.
+ * <code>server.admission.extract.max-concurrent</code>.
+ *
+ * Per user limits should allow for the calls a single page makes at once,
+ * requests beyond them wait in the queue rather than being rejected.
+ */
+public enum AdmissionClass {
+
+    /** Data extracts (csv/xlsx downloads) */
+    EXTRACT(4, 16, 2, 10_000),
+
+    /** Administrative rebuilds and recalculations */
+    MAINTENANCE(1, 2, 1, 1_000),
+
+    /** Statistics calculated over large selections (e.g. whole org units) */
+    SELECTOR_STATS(8, 32, 6, 15_000);
+
+
+    private final int defaultMaxConcurrent;
+    private final int defaultMaxQueued;
+    private final int defaultMaxPerUser;
+    private final long defaultMaxWaitMillis;
+
+
+    AdmissionClass(int defaultMaxConcurrent,
+                   int defaultMaxQueued,
+                   int defaultMaxPerUser,
+                   long defaultMaxWaitMillis) {
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        this.defaultMaxQueued = defaultMaxQueued;
+        this.defaultMaxPerUser = defaultMaxPerUser;
+        this.defaultMaxWaitMillis = defaultMaxWaitMillis;
+    }
+
+
+    public String settingName(String property) {
+        return "server.admission." + name().toLowerCase().replace('_', '-') + "." + property;
+    }
+
+
+    public int defaultMaxConcurrent() {
+        return defaultMaxConcurrent;
+    }
+
+
+    public int defaultMaxQueued() {
+        return defaultMaxQueued;
+    }
+
+
+    public int defaultMaxPerUser() {
+        return defaultMaxPerUser;
+    }
+
+
+    public long defaultMaxWaitMillis() {
+        return defaultMaxWaitMillis;
+    }
+
+}
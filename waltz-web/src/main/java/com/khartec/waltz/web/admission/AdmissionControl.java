@@ -0,0 +1,214 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.admission;
+
+import com.khartec.waltz.service.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import spark.Route;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.web.WebUtilities.getUsername;
+
+
+/**
+ * Limits how many requests of each {@link AdmissionClass} run at once so that
+ * expensive work (extracts, rebuilds, large stats) cannot tie up all of the
+ * request threads and database connections.
+ *
+ * Routes opt in by being registered with a class, see
+ * {@link com.khartec.waltz.web.endpoints.EndpointUtilities} and
+ * {@link com.khartec.waltz.web.endpoints.extracts.DataExtractor}.  Limits are
+ * read from settings when the server starts ({@link #configure(SettingsService)}),
+ * until then routes are not limited.  Rejections are reported as 429/503 with
+ * a <code>Retry-After</code> header.
+ */
+@ManagedResource(description = "Concurrency limits for expensive endpoints")
+public class AdmissionControl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControl.class);
+
+    public static final String ENABLED_NAME = "server.admission.enabled";
+    public static final String RETRY_AFTER_NAME = "server.admission.retry-after-seconds";
+
+    private static volatile AdmissionControl instance = null;
+
+    private final Map<AdmissionClass, AdmissionLimiter> limiters;
+
+
+    AdmissionControl(Map<AdmissionClass, AdmissionLimiter> limiters) {
+        checkNotNull(limiters, "limiters cannot be null");
+        this.limiters = new EnumMap<>(limiters);
+    }
+
+
+    /**
+     * Builds the limiters from settings and makes them active for all
+     * routes registered via {@link #admit(AdmissionClass, Route)}.
+     * @return the active admission control, or empty if disabled by settings
+     */
+    public static Optional<AdmissionControl> configure(SettingsService settingsService) {
+        checkNotNull(settingsService, "settingsService cannot be null");
+
+        boolean enabled = settingsService
+                .getValue(ENABLED_NAME)
+                .map(Boolean::parseBoolean)
+                .orElse(true);
+
+        if (! enabled) {
+            LOG.info("Admission control disabled");
+            instance = null;
+            return Optional.empty();
+        }
+
+        int retryAfterSeconds = readInt(settingsService, RETRY_AFTER_NAME, 5);
+
+        Map<AdmissionClass, AdmissionLimiter> limiters = new EnumMap<>(AdmissionClass.class);
+        for (AdmissionClass admissionClass : AdmissionClass.values()) {
+            AdmissionLimiter limiter = new AdmissionLimiter(
+                    admissionClass,
+                    readInt(settingsService, admissionClass.settingName("max-concurrent"), admissionClass.defaultMaxConcurrent()),
+                    readInt(settingsService, admissionClass.settingName("max-queued"), admissionClass.defaultMaxQueued()),
+                    readInt(settingsService, admissionClass.settingName("max-per-user"), admissionClass.defaultMaxPerUser()),
+                    readInt(settingsService, admissionClass.settingName("max-wait-ms"), (int) admissionClass.defaultMaxWaitMillis()),
+                    retryAfterSeconds);
+
+            LOG.info("Admission control for {}: concurrent: {}, queued: {}, per user: {}, max wait: {}ms",
+                    admissionClass,
+                    limiter.maxConcurrent(),
+                    limiter.maxQueued(),
+                    limiter.maxPerUser(),
+                    limiter.maxWaitMillis());
+
+            limiters.put(admissionClass, limiter);
+        }
+
+        AdmissionControl control = new AdmissionControl(limiters);
+        instance = control;
+        return Optional.of(control);
+    }
+
+
+    /**
+     * Wraps a route so it only runs once admitted to the given class.
+     */
+    public static Route admit(AdmissionClass admissionClass, Route route) {
+        checkNotNull(admissionClass, "admissionClass cannot be null");
+        checkNotNull(route, "route cannot be null");
+
+        return (request, response) -> {
+            AdmissionControl control = instance;
+            if (control == null) {
+                return route.handle(request, response);
+            }
+
+            AdmissionLimiter limiter = control.limiters.get(admissionClass);
+            String user = getUsername(request);
+
+            limiter.acquire(user);
+            try {
+                return route.handle(request, response);
+            } finally {
+                limiter.release(user);
+            }
+        };
+    }
+
+
+    // -- JMX ---
+
+    @ManagedAttribute(description = "Per class: active/max, queued/max, admitted, queued, rejected (queue full / timeout / per user), max wait ms")
+    public String[] getClassStatistics() {
+        return limiters
+                .values()
+                .stream()
+                .map(l -> String.format(
+                        "%s: active %d/%d, queued %d/%d, admitted %d, queued %d, rejected %d / %d / %d, max wait %dms",
+                        l.admissionClass(),
+                        l.activeNow(),
+                        l.maxConcurrent(),
+                        l.queuedNow(),
+                        l.maxQueued(),
+                        l.admittedCount(),
+                        l.queuedCount(),
+                        l.rejectedQueueFullCount(),
+                        l.rejectedTimeoutCount(),
+                        l.rejectedPerUserCount(),
+                        l.maxWaitObservedMillis()))
+                .toArray(String[]::new);
+    }
+
+
+    @ManagedAttribute(description = "Requests currently running in a limited class")
+    public int getActiveCount() {
+        return limiters.values().stream().mapToInt(AdmissionLimiter::activeNow).sum();
+    }
+
+
+    @ManagedAttribute(description = "Requests currently waiting to be admitted")
+    public int getQueuedCount() {
+        return limiters.values().stream().mapToInt(AdmissionLimiter::queuedNow).sum();
+    }
+
+
+    @ManagedAttribute(description = "Requests which have had to wait to be admitted")
+    public long getTotalQueuedCount() {
+        return limiters.values().stream().mapToLong(AdmissionLimiter::queuedCount).sum();
+    }
+
+
+    @ManagedAttribute(description = "Requests rejected, for any reason")
+    public long getRejectedCount() {
+        return limiters
+                .values()
+                .stream()
+                .mapToLong(l -> l.rejectedQueueFullCount() + l.rejectedTimeoutCount() + l.rejectedPerUserCount())
+                .sum();
+    }
+
+
+    @ManagedOperation(description = "Reset the admitted / queued / rejected counts")
+    public void resetStatistics() {
+        limiters.values().forEach(AdmissionLimiter::resetStatistics);
+    }
+
+
+    // -- HELPERS ---
+
+    private static int readInt(SettingsService settingsService, String name, int dflt) {
+        Optional<String> value = settingsService.getValue(name);
+        try {
+            return value
+                    .map(v -> Integer.parseInt(v.trim()))
+                    .orElse(dflt);
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid value for setting {}: '{}', using default: {}", name, value.orElse(""), dflt);
+            return dflt;
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.admission;
+
+import com.khartec.waltz.model.user.UserUtilities;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.khartec.waltz.common.Checks.checkTrue;
+import static com.khartec.waltz.web.admission.AdmissionRejectedException.SERVICE_UNAVAILABLE;
+import static com.khartec.waltz.web.admission.AdmissionRejectedException.TOO_MANY_REQUESTS;
+
+
+/**
+ * Concurrency limit for a single {@link AdmissionClass}.
+ *
+ * At most `maxConcurrent` requests run at once, and each user may hold at
+ * most `maxPerUser` of those so one user cannot occupy the whole class.  Up
+ * to `maxQueued` further requests, whether waiting for the class or for one
+ * of their user's earlier requests, wait (fairly, in arrival order) for at
+ * most `maxWaitMillis`, anything beyond that is rejected straight away.
+ *
+ * The anonymous user is shared by everyone when authentication is not
+ * configured, so it is not limited per user.
+ */
+class AdmissionLimiter {
+
+    private final AdmissionClass admissionClass;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final int maxPerUser;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, Semaphore> permitsByUser = new ConcurrentHashMap<>();
+
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder rejectedQueueFullCount = new LongAdder();
+    private final LongAdder rejectedTimeoutCount = new LongAdder();
+    private final LongAdder rejectedPerUserCount = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+
+    AdmissionLimiter(AdmissionClass admissionClass,
+                     int maxConcurrent,
+                     int maxQueued,
+                     int maxPerUser,
+                     long maxWaitMillis,
+                     int retryAfterSeconds) {
+        checkTrue(maxConcurrent > 0, "maxConcurrent must be positive");
+        checkTrue(maxQueued >= 0, "maxQueued cannot be negative");
+        checkTrue(maxPerUser > 0, "maxPerUser must be positive");
+        checkTrue(maxWaitMillis >= 0, "maxWaitMillis cannot be negative");
+
+        this.admissionClass = admissionClass;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxPerUser = maxPerUser;
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+
+    /**
+     * Blocks until the request may proceed, or throws an
+     * {@link AdmissionRejectedException}.  Callers must {@link #release(String)}
+     * once done.
+     */
+    void acquire(String user) {
+        Semaphore userPermits = userPermits(user);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        boolean isQueued = false;
+        boolean hasUserPermit = false;
+
+        try {
+            if (userPermits != null) {
+                // a zero timeout (rather than tryAcquire()) respects queue fairness
+                if (! tryAcquire(userPermits, 0)) {
+                    isQueued = enqueue();
+                    if (! tryAcquire(userPermits, remainingNanos(deadline))) {
+                        rejectedPerUserCount.increment();
+                        throw reject(TOO_MANY_REQUESTS, "Timed out waiting for your other %s requests to finish, please retry shortly");
+                    }
+                }
+                hasUserPermit = true;
+            }
+
+            if (! tryAcquire(permits, 0)) {
+                isQueued = isQueued || enqueue();
+                if (! tryAcquire(permits, remainingNanos(deadline))) {
+                    rejectedTimeoutCount.increment();
+                    throw reject(SERVICE_UNAVAILABLE, "Timed out waiting to start %s request, please retry shortly");
+                }
+            }
+        } catch (RuntimeException e) {
+            if (hasUserPermit) {
+                userPermits.release();
+            }
+            throw e;
+        } finally {
+            if (isQueued) {
+                queued.decrementAndGet();
+                maxWaitNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+            }
+        }
+
+        admittedCount.increment();
+    }
+
+
+    void release(String user) {
+        permits.release();
+        Semaphore userPermits = userPermits(user);
+        if (userPermits != null) {
+            userPermits.release();
+        }
+    }
+
+
+    // -- statistics ---
+
+    AdmissionClass admissionClass() { return admissionClass; }
+    int maxConcurrent() { return maxConcurrent; }
+    int maxQueued() { return maxQueued; }
+    int maxPerUser() { return maxPerUser; }
+    long maxWaitMillis() { return maxWaitMillis; }
+    int activeNow() { return maxConcurrent - permits.availablePermits(); }
+    int queuedNow() { return queued.get(); }
+    long admittedCount() { return admittedCount.sum(); }
+    long queuedCount() { return queuedCount.sum(); }
+    long rejectedQueueFullCount() { return rejectedQueueFullCount.sum(); }
+    long rejectedTimeoutCount() { return rejectedTimeoutCount.sum(); }
+    long rejectedPerUserCount() { return rejectedPerUserCount.sum(); }
+    long maxWaitObservedMillis() { return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()); }
+
+
+    void resetStatistics() {
+        admittedCount.reset();
+        queuedCount.reset();
+        rejectedQueueFullCount.reset();
+        rejectedTimeoutCount.reset();
+        rejectedPerUserCount.reset();
+        maxWaitNanos.set(0);
+    }
+
+
+    // -- helpers ---
+
+    /**
+     * @return the user's permits, or null if the user is not limited
+     */
+    private Semaphore userPermits(String user) {
+        if (user == null || user.isEmpty() || UserUtilities.ANONYMOUS_USERNAME.equalsIgnoreCase(user)) {
+            return null;
+        }
+        return permitsByUser.computeIfAbsent(
+                user.toLowerCase(),
+                k -> new Semaphore(maxPerUser, true));
+    }
+
+
+    /**
+     * Takes a place in the queue, or throws if the queue is full.
+     * @return true, for convenience
+     */
+    private boolean enqueue() {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectedQueueFullCount.increment();
+            throw reject(SERVICE_UNAVAILABLE, "Too many %s requests in progress, please retry shortly");
+        }
+        queuedCount.increment();
+        return true;
+    }
+
+
+    private boolean tryAcquire(Semaphore semaphore, long nanos) {
+        try {
+            return semaphore.tryAcquire(nanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(SERVICE_UNAVAILABLE, "Interrupted waiting to start %s request");
+        }
+    }
+
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+
+    private AdmissionRejectedException reject(int status, String messageFormat) {
+        return new AdmissionRejectedException(
+                admissionClass,
+                status,
+                retryAfterSeconds,
+                String.format(messageFormat, admissionClass.name().toLowerCase()));
+    }
+
+}
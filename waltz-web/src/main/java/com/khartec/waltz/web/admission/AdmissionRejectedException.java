@@ -0,0 +1,64 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.admission;
+
+
+/**
+ * Thrown when a request cannot be admitted to an {@link AdmissionClass}.
+ * The status is 429 if the caller already has too many requests of that class
+ * in progress, otherwise 503 (the class is at capacity and its queue is full,
+ * or the request waited too long in the queue).
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+    public static final int SERVICE_UNAVAILABLE = 503;
+
+    private final AdmissionClass admissionClass;
+    private final int status;
+    private final int retryAfterSeconds;
+
+
+    public AdmissionRejectedException(AdmissionClass admissionClass,
+                                      int status,
+                                      int retryAfterSeconds,
+                                      String message) {
+        super(message);
+        this.admissionClass = admissionClass;
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+
+    public AdmissionClass getAdmissionClass() {
+        return admissionClass;
+    }
+
+
+    public int getStatus() {
+        return status;
+    }
+
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
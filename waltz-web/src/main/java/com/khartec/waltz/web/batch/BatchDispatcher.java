@@ -0,0 +1,388 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.khartec.waltz.common.exception.DeadlineExceededException;
+import com.khartec.waltz.common.exception.DuplicateKeyException;
+import com.khartec.waltz.common.exception.InsufficientPrivelegeException;
+import com.khartec.waltz.common.exception.NotFoundException;
+import com.khartec.waltz.common.exception.UpdateFailedException;
+import com.khartec.waltz.model.batch.BatchRequestItem;
+import com.khartec.waltz.model.batch.BatchResultItem;
+import com.khartec.waltz.model.batch.ImmutableBatchResultItem;
+import com.khartec.waltz.web.ContentFormat;
+import com.khartec.waltz.web.WebException;
+import com.khartec.waltz.web.admission.AdmissionRejectedException;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import spark.HaltException;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+import spark.Route;
+import spark.routematch.RouteMatch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.Checks.checkTrue;
+import static com.khartec.waltz.web.WebUtilities.reportException;
+
+
+/**
+ * Runs the items of a batch against the routes known to the
+ * {@link RouteRegistry}, in-process, without going back through http.
+ *
+ * Each item gets its own request and response, see
+ * {@link BatchServletRequest}, so routes behave exactly as they would if
+ * called directly, including failures being reported with the same status
+ * codes.  The caller's authentication, established by the filters which
+ * ran for the batch request itself, applies to every item.
+ *
+ * Items of a batch are shared between the calling thread and up to
+ * `parallelism - 1` threads from a dedicated executor.  Items not started
+ * before the batch timeout are reported with a 503.  Items already running
+ * at the timeout are waited for as they read from the batch request, which
+ * is recycled once the batch returns.
+ */
+public class BatchDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchDispatcher.class);
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int FINISHED = 2;
+    private static final int TIMED_OUT = 3;
+
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final long timeoutMillis;
+
+
+    public BatchDispatcher(int threadCount, int parallelism, long timeoutMillis) {
+        checkTrue(threadCount > 0, "threadCount must be positive");
+        checkTrue(parallelism > 0, "parallelism must be positive");
+        checkTrue(timeoutMillis > 0, "timeoutMillis must be positive");
+
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threadCount * 4),
+                (runnable) -> {
+                    Thread t = new Thread(runnable, "Batch Executor");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+
+    public List<BatchResultItem> dispatch(Request batchRequest,
+                                          Response batchResponse,
+                                          List<BatchRequestItem> items) {
+        checkNotNull(batchRequest, "batchRequest cannot be null");
+        checkNotNull(batchResponse, "batchResponse cannot be null");
+        checkNotNull(items, "items cannot be null");
+
+        int count = items.size();
+        AtomicReferenceArray<BatchResultItem> results = new AtomicReferenceArray<>(count);
+        AtomicIntegerArray states = new AtomicIntegerArray(count);
+        AtomicInteger nextIdx = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        Runnable worker = () -> {
+            int idx;
+            while ((idx = nextIdx.getAndIncrement()) < count && System.nanoTime() < deadline) {
+                if (! states.compareAndSet(idx, PENDING, RUNNING)) {
+                    continue; // batch timed out
+                }
+                try {
+                    results.set(idx, execute(batchRequest, batchResponse, items.get(idx)));
+                } finally {
+                    synchronized (states) {
+                        states.set(idx, FINISHED);
+                        states.notifyAll();
+                    }
+                }
+            }
+        };
+
+        List<Future<?>> helpers = startHelpers(worker, Math.min(parallelism, count) - 1);
+        worker.run();
+        awaitItems(states, deadline);
+        helpers.forEach(h -> h.cancel(false));
+
+        List<BatchResultItem> resultList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BatchResultItem result = results.get(i);
+            resultList.add(result == null
+                    ? mkTimedOutResult(items.get(i))
+                    : result);
+        }
+        return resultList;
+    }
+
+
+    // -- helpers ---
+
+    private List<Future<?>> startHelpers(Runnable worker, int helperCount) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 0; i < helperCount; i++) {
+            try {
+                helpers.add(executor.submit(() -> {
+                    if (context != null) {
+                        MDC.setContextMap(context);
+                    }
+                    try {
+                        worker.run();
+                    } finally {
+                        MDC.clear();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // executor is busy, the calling thread (and any helpers which did start) will get through the items
+                LOG.debug("Batch executor busy, running with {} helper(s)", helpers.size());
+                break;
+            }
+        }
+        return helpers;
+    }
+
+
+    /**
+     * Waits until every item has finished or, at the deadline, marks those
+     * not yet started as timed out and waits only for those still running.
+     */
+    private static void awaitItems(AtomicIntegerArray states, long deadline) {
+        boolean interrupted = false;
+        boolean timedOut = false;
+
+        synchronized (states) {
+            while (true) {
+                if (! timedOut && (interrupted || System.nanoTime() >= deadline)) {
+                    timedOut = true;
+                    for (int i = 0; i < states.length(); i++) {
+                        states.compareAndSet(i, PENDING, TIMED_OUT);
+                    }
+                    int running = countRunning(states, true);
+                    if (running > 0) {
+                        LOG.warn("Batch timed out, waiting for {} item(s) already in progress", running);
+                    }
+                }
+
+                if (countRunning(states, timedOut) == 0) {
+                    break;
+                }
+
+                try {
+                    if (timedOut) {
+                        states.wait();
+                    } else {
+                        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        states.wait(Math.max(remainingMillis, 1));
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Items which still need waiting for: running ones and, until the
+     * batch has timed out, pending ones too.
+     */
+    private static int countRunning(AtomicIntegerArray states, boolean timedOut) {
+        int running = 0;
+        for (int i = 0; i < states.length(); i++) {
+            int state = states.get(i);
+            if (state == RUNNING || (state == PENDING && ! timedOut)) {
+                running++;
+            }
+        }
+        return running;
+    }
+
+
+    private BatchResultItem execute(Request batchRequest,
+                                    Response batchResponse,
+                                    BatchRequestItem item) {
+        long start = System.currentTimeMillis();
+
+        BatchServletResponse itemResponse = new BatchServletResponse(batchResponse.raw());
+        Response response = RequestResponseFactory.create(itemResponse);
+        Object result = null;
+
+        try {
+            BatchServletRequest itemRequest = new BatchServletRequest(
+                    batchRequest.raw(),
+                    item.method(),
+                    item.path(),
+                    toJson(item.body()));
+
+            Optional<RouteMatch> match = RouteRegistry.find(itemRequest.getMethod(), itemRequest.path());
+            if (match.isPresent()) {
+                Request request = RequestResponseFactory.create(match.get(), itemRequest);
+                result = ((Route) match.get().getTarget()).handle(request, response);
+            } else {
+                reportException(404, "NOT_FOUND", "No route for: " + item.method() + " " + item.path(), response, LOG);
+            }
+        } catch (HaltException e) {
+            response.status(e.statusCode());
+            result = e.body();
+        } catch (Exception e) {
+            reportFailure(item, e, response);
+        }
+
+        byte[] body = resolveBody(itemResponse, response, result);
+        String contentType = itemResponse.getContentType();
+
+        return ImmutableBatchResultItem.builder()
+                .status(itemResponse.getStatus())
+                .body(embed(contentType, body))
+                .contentType(Optional.ofNullable(contentType))
+                .durationMillis(System.currentTimeMillis() - start)
+                .build();
+    }
+
+
+    /**
+     * Mirrors spark: content written directly to the response wins, then
+     * the value returned by the route, then any body set on the response.
+     */
+    private static byte[] resolveBody(BatchServletResponse itemResponse,
+                                      Response response,
+                                      Object result) {
+        if (itemResponse.hasWrittenBody()) {
+            return itemResponse.bodyBytes();
+        } else if (result instanceof byte[]) {
+            return (byte[]) result;
+        } else if (result != null) {
+            return result.toString().getBytes(StandardCharsets.UTF_8);
+        } else if (response.body() != null) {
+            return response.body().getBytes(StandardCharsets.UTF_8);
+        } else {
+            return new byte[0];
+        }
+    }
+
+
+    static Object embed(String contentType, byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+
+        String type = contentType == null ? "" : contentType.toLowerCase();
+
+        if (type.isEmpty() || type.contains("json")) {
+            try {
+                return ContentFormat.JSON.mapper().readTree(body);
+            } catch (IOException e) {
+                // not json after all, fall through
+            }
+        }
+
+        return type.isEmpty() || type.startsWith("text")
+                ? new String(body, StandardCharsets.UTF_8)
+                : body;
+    }
+
+
+    private static byte[] toJson(Object body) throws JsonProcessingException {
+        return body == null
+                ? null
+                : ContentFormat.JSON.mapper().writeValueAsBytes(body);
+    }
+
+
+    /**
+     * Reports failures with the same status and code as the exception
+     * handlers registered in <code>Main</code>.
+     */
+    private static void reportFailure(BatchRequestItem item, Exception e, Response response) {
+        if (e instanceof NotFoundException) {
+            reportException(404, ((NotFoundException) e).getCode(), e.getMessage(), response, LOG);
+        } else if (e instanceof InsufficientPrivelegeException) {
+            reportException(403, "NOT_AUTHORIZED", e.getMessage(), response, LOG);
+        } else if (e instanceof AdmissionRejectedException) {
+            AdmissionRejectedException rejection = (AdmissionRejectedException) e;
+            String code = rejection.getStatus() == AdmissionRejectedException.TOO_MANY_REQUESTS
+                    ? "TOO_MANY_REQUESTS"
+                    : "BUSY";
+            response.header("Retry-After", Integer.toString(rejection.getRetryAfterSeconds()));
+            reportException(rejection.getStatus(), code, e.getMessage(), response, LOG);
+        } else if (e instanceof RejectedExecutionException) {
+            response.header("Retry-After", "5");
+            reportException(503, "BUSY", "Server is busy, please retry shortly", response, LOG);
+        } else if (e instanceof DeadlineExceededException) {
+            reportException(503, "TIMEOUT", e.getMessage(), response, LOG);
+        } else if (e instanceof UpdateFailedException) {
+            reportException(500, ((UpdateFailedException) e).getCode(), e.getMessage(), response, LOG);
+        } else if (e instanceof WebException) {
+            reportException(500, ((WebException) e).getCode(), e.getMessage(), response, LOG);
+        } else if (e instanceof DuplicateKeyException) {
+            reportException(500, "DUPLICATE", "Duplicate detected: " + e.getMessage(), response, LOG);
+        } else if (e instanceof DataAccessException) {
+            LOG.error("Batch item failed: {} {}", item.method(), item.path(), e);
+            reportException(500, ((DataAccessException) e).sqlState(), "Exception: " + e.getMessage(), response, LOG);
+        } else {
+            LOG.error("Batch item failed: {} {}", item.method(), item.path(), e);
+            String message = "Exception: " + e.getMessage() + " / " + e.getClass().getCanonicalName();
+            reportException(500, "unknown", message, response, LOG);
+        }
+    }
+
+
+    private static BatchResultItem mkTimedOutResult(BatchRequestItem item) {
+        return ImmutableBatchResultItem.builder()
+                .status(503)
+                .body("Batch timed out before " + item.method() + " " + item.path() + " completed")
+                .contentType("text/plain")
+                .durationMillis(0)
+                .build();
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A request for one item of a batch.  Method, path, query parameters and
+ * body are the item's own, everything else (notably the authenticated
+ * user held as an attribute) is read from the enclosing batch request.
+ * Attributes set whilst handling the item are kept local to it so items
+ * running in parallel do not see each other's.
+ */
+class BatchServletRequest extends HttpServletRequestWrapper {
+
+    private static final String JSON = "application/json";
+
+    private final String method;
+    private final String path;
+    private final String queryString;
+    private final Map<String, String[]> parameters;
+    private final byte[] body;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final Set<String> removedAttributes = ConcurrentHashMap.newKeySet();
+
+
+    BatchServletRequest(HttpServletRequest batchRequest,
+                        String method,
+                        String pathAndQuery,
+                        byte[] body) {
+        super(batchRequest);
+
+        int queryIdx = pathAndQuery.indexOf('?');
+        String path = queryIdx < 0 ? pathAndQuery : pathAndQuery.substring(0, queryIdx);
+
+        this.method = method.toUpperCase();
+        this.path = path.startsWith("/") ? path : "/" + path;
+        this.queryString = queryIdx < 0 ? null : pathAndQuery.substring(queryIdx + 1);
+        this.parameters = parseQueryString(queryString);
+        this.body = body == null ? new byte[0] : body;
+    }
+
+
+    String path() {
+        return path;
+    }
+
+
+    // -- request line ---
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return path;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer()
+                .append(getScheme())
+                .append("://")
+                .append(getServerName())
+                .append(':')
+                .append(getServerPort())
+                .append(getRequestURI());
+        return url;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+
+    // -- parameters ---
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+
+    // -- headers ---
+
+    @Override
+    public String getHeader(String name) {
+        if (! isOverriddenHeader(name)) {
+            return super.getHeader(name);
+        } else if ("Content-Length".equalsIgnoreCase(name)) {
+            return Integer.toString(body.length);
+        } else if ("Accept-Encoding".equalsIgnoreCase(name)) {
+            return null;
+        } else {
+            return JSON;
+        }
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        if (! isOverriddenHeader(name)) {
+            return super.getHeaders(name);
+        }
+        String value = getHeader(name);
+        return value == null
+                ? Collections.emptyEnumeration()
+                : Collections.enumeration(Collections.singletonList(value));
+    }
+
+    @Override
+    public String getContentType() {
+        return JSON;
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return StandardCharsets.UTF_8.name();
+    }
+
+
+    // -- body ---
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return bytes.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException("Batch items are read synchronously");
+            }
+
+            @Override
+            public int read() {
+                return bytes.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return bytes.read(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+    }
+
+
+    // -- attributes ---
+
+    @Override
+    public Object getAttribute(String name) {
+        Object value = attributes.get(name);
+        if (value != null) {
+            return value;
+        }
+        return removedAttributes.contains(name)
+                ? null
+                : super.getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        Set<String> names = new HashSet<>(Collections.list(super.getAttributeNames()));
+        names.removeAll(removedAttributes);
+        names.addAll(attributes.keySet());
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            removeAttribute(name);
+        } else {
+            removedAttributes.remove(name);
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+        removedAttributes.add(name);
+    }
+
+
+    // -- async ---
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Async is not supported for batch items");
+    }
+
+
+    // -- helpers ---
+
+    private static boolean isOverriddenHeader(String name) {
+        return "Content-Type".equalsIgnoreCase(name)
+                || "Content-Length".equalsIgnoreCase(name)
+                || "Accept".equalsIgnoreCase(name)
+                || "Accept-Encoding".equalsIgnoreCase(name);
+    }
+
+
+    private static Map<String, String[]> parseQueryString(String queryString) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (queryString != null) {
+            for (String pair : queryString.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eqIdx = pair.indexOf('=');
+                String name = decode(eqIdx < 0 ? pair : pair.substring(0, eqIdx));
+                String value = eqIdx < 0 ? "" : decode(pair.substring(eqIdx + 1));
+                values.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            }
+        }
+
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        values.forEach((k, v) -> parameters.put(k, v.toArray(new String[0])));
+        return parameters;
+    }
+
+
+    private static String decode(String str) {
+        try {
+            return URLDecoder.decode(str, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A response for one item of a batch.  Status, headers and body are
+ * captured in memory rather than being written to the enclosing batch
+ * response.
+ */
+class BatchServletResponse extends HttpServletResponseWrapper {
+
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final ServletOutputStream outputStream = new CapturingOutputStream();
+
+    private int status = SC_OK;
+    private String contentType = null;
+    private String characterEncoding = StandardCharsets.UTF_8.name();
+    private PrintWriter writer = null;
+    private boolean committed = false;
+
+
+    BatchServletResponse(HttpServletResponse batchResponse) {
+        super(batchResponse);
+    }
+
+
+    /**
+     * @return true if the route wrote its response directly, rather
+     * than returning it
+     */
+    boolean hasWrittenBody() {
+        flushWriter();
+        return committed || body.size() > 0;
+    }
+
+
+    byte[] bodyBytes() {
+        flushWriter();
+        return body.toByteArray();
+    }
+
+
+    // -- status ---
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        status = sc;
+        body.reset();
+        if (msg != null) {
+            byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+            body.write(bytes, 0, bytes.length);
+        }
+        committed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        status = SC_FOUND;
+        setHeader("Location", location);
+        committed = true;
+    }
+
+
+    // -- headers ---
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            setContentType(value);
+        } else if (value == null) {
+            headers.remove(name);
+        } else {
+            headers.put(name, new ArrayList<>(Collections.singletonList(value)));
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            setContentType(value);
+        } else if (value != null) {
+            headers.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, Long.toString(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, Long.toString(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            return getContentType();
+        }
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        return headers.getOrDefault(name, Collections.emptyList());
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return headers.keySet();
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        // cookies cannot be returned from a batch item
+    }
+
+
+    // -- content ---
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // derived from the captured body
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // derived from the captured body
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        // not relevant to batch items
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+
+    // -- buffer ---
+
+    @Override
+    public void flushBuffer() {
+        flushWriter();
+        committed = true;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void resetBuffer() {
+        flushWriter();
+        body.reset();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        headers.clear();
+        status = SC_OK;
+        contentType = null;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        // the whole body is buffered
+    }
+
+
+    // -- helpers ---
+
+    private void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+
+    private class CapturingOutputStream extends ServletOutputStream {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Batch items are written synchronously");
+        }
+
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            committed = true;
+        }
+
+        @Override
+        public void close() {
+            committed = true;
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import spark.Route;
+import spark.Spark;
+import spark.routematch.RouteMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+
+
+/**
+ * Registers routes with Spark whilst also remembering them so they can be
+ * invoked in-process, see {@link BatchDispatcher}.
+ *
+ * Routes are matched in the same way as Spark: segment by segment, in
+ * registration order, with <code>:name</code> matching any single segment
+ * and a trailing <code>*</code> matching the remainder of the path.
+ */
+public final class RouteRegistry {
+
+    private static final Map<String, List<RegisteredRoute>> routesByMethod = new ConcurrentHashMap<>();
+
+
+    private RouteRegistry() {
+    }
+
+
+    public static void get(String path, Route route) {
+        Spark.get(path, route);
+        register("GET", path, route);
+    }
+
+
+    public static void post(String path, Route route) {
+        Spark.post(path, route);
+        register("POST", path, route);
+    }
+
+
+    public static void put(String path, Route route) {
+        Spark.put(path, route);
+        register("PUT", path, route);
+    }
+
+
+    public static void delete(String path, Route route) {
+        Spark.delete(path, route);
+        register("DELETE", path, route);
+    }
+
+
+    /**
+     * @param method  http method, e.g. GET
+     * @param path  request path, without any query string
+     * @return a match whose target is the {@link Route} to invoke
+     */
+    public static Optional<RouteMatch> find(String method, String path) {
+        checkNotNull(method, "method cannot be null");
+        checkNotNull(path, "path cannot be null");
+
+        List<String> segments = toSegments(path);
+        return routesByMethod
+                .getOrDefault(method.toUpperCase(), Collections.emptyList())
+                .stream()
+                .filter(r -> r.matches(segments))
+                .findFirst()
+                .map(r -> new RouteMatch(r.route, r.path, path, "*/*"));
+    }
+
+
+    /**
+     * Remembers the route for in-process dispatch only, without
+     * registering it with Spark (which would start the server).
+     */
+    static void register(String method, String path, Route route) {
+        routesByMethod
+                .computeIfAbsent(method, k -> new CopyOnWriteArrayList<>())
+                .add(new RegisteredRoute(path, route));
+    }
+
+
+    // -- helpers ---
+
+    private static List<String> toSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (! segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+
+    private static class RegisteredRoute {
+
+        private final String path;
+        private final Route route;
+        private final List<String> segments;
+        private final boolean wildcardSuffix;
+
+
+        RegisteredRoute(String path, Route route) {
+            this.path = path;
+            this.route = route;
+            this.segments = toSegments(path);
+            this.wildcardSuffix = ! segments.isEmpty() && "*".equals(segments.get(segments.size() - 1));
+        }
+
+
+        boolean matches(List<String> requestSegments) {
+            int size = segments.size();
+            if (requestSegments.size() != size
+                    && ! (wildcardSuffix && requestSegments.size() >= size)) {
+                return false;
+            }
+
+            for (int i = 0; i < size; i++) {
+                String expected = segments.get(i);
+                boolean matches = expected.startsWith(":")
+                        || "*".equals(expected)
+                        || expected.equals(requestSegments.get(i));
+                if (! matches) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
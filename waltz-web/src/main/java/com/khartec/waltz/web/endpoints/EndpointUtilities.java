@@ -18,21 +18,36 @@
 
 package com.khartec.waltz.web.endpoints;
 
+import com.khartec.waltz.web.ContentFormat;
 import com.khartec.waltz.web.DatumRoute;
 import com.khartec.waltz.web.ListRoute;
-import com.khartec.waltz.web.WebUtilities;
-import spark.ResponseTransformer;
+import com.khartec.waltz.web.admission.AdmissionClass;
+import com.khartec.waltz.web.batch.RouteRegistry;
 import spark.Route;
-import spark.Spark;
 
-import static com.khartec.waltz.web.WebUtilities.TYPE_JSON;
+import static com.khartec.waltz.web.WebUtilities.negotiateFormat;
+import static com.khartec.waltz.web.WebUtilities.readFields;
+import static com.khartec.waltz.web.WebUtilities.render;
+import static com.khartec.waltz.web.admission.AdmissionControl.admit;
 
 
+/**
+ * Registers routes whose results are rendered according to the client's
+ * <code>Accept</code> header, json unless Smile or CBOR is explicitly
+ * requested (see {@link ContentFormat}).
+ *
+ * List routes also honour an optional <code>fields=</code> parameter which
+ * restricts each item to the named properties (see
+ * {@link com.khartec.waltz.web.WebUtilities#readFields(spark.Request)}).
+ *
+ * Expensive routes should be registered with an {@link AdmissionClass} so
+ * they are subject to that class's concurrency limits.
+ *
+ * Routes are registered via the {@link RouteRegistry} so they may also be
+ * called as part of a batch (see <code>/api/batch</code>).
+ */
 public class EndpointUtilities {
 
-    private static final ResponseTransformer transformer = WebUtilities.transformer;
-
-
     /**
      * Helper method to register a route which provides a list of items.
      * This helps comprehension as the return types of routes becomes explicit.
@@ -41,7 +56,7 @@ public class EndpointUtilities {
      * @param <T>
      */
     public static <T> void getForList(String path, ListRoute<T> handler) {
-        Spark.get(path, wrapListHandler(handler), transformer);
+        RouteRegistry.get(path, wrapListHandler(handler));
     }
 
 
@@ -54,31 +69,48 @@ public class EndpointUtilities {
      * @param <T>
      */
     public static <T> void getForDatum(String path, DatumRoute<T> handler) {
-        Spark.get(path, wrapDatumHandler(handler), transformer);
+        RouteRegistry.get(path, wrapDatumHandler(handler));
     }
 
     public static <T> void postForDatum(String path, DatumRoute<T> handler) {
-        Spark.post(path, wrapDatumHandler(handler), transformer);
+        RouteRegistry.post(path, wrapDatumHandler(handler));
     }
 
     public static <T> void postForList(String path, ListRoute<T> handler) {
-        Spark.post(path, wrapListHandler(handler), transformer);
+        RouteRegistry.post(path, wrapListHandler(handler));
     }
 
     public static <T> void deleteForList(String path, ListRoute<T> handler) {
-        Spark.delete(path, wrapListHandler(handler), transformer);
+        RouteRegistry.delete(path, wrapListHandler(handler));
     }
 
     public static <T> void deleteForDatum(String path, DatumRoute<T> handler) {
-        Spark.delete(path, wrapDatumHandler(handler), transformer);
+        RouteRegistry.delete(path, wrapDatumHandler(handler));
     }
 
     public static <T> void putForDatum(String path, DatumRoute<T> handler) {
-        Spark.put(path, wrapDatumHandler(handler), transformer);
+        RouteRegistry.put(path, wrapDatumHandler(handler));
     }
 
     public static <T> void putForList(String path, ListRoute<T> handler) {
-        Spark.put(path, wrapListHandler(handler), transformer);
+        RouteRegistry.put(path, wrapListHandler(handler));
+    }
+
+
+    public static <T> void getForList(String path, AdmissionClass admissionClass, ListRoute<T> handler) {
+        RouteRegistry.get(path, admit(admissionClass, wrapListHandler(handler)));
+    }
+
+    public static <T> void getForDatum(String path, AdmissionClass admissionClass, DatumRoute<T> handler) {
+        RouteRegistry.get(path, admit(admissionClass, wrapDatumHandler(handler)));
+    }
+
+    public static <T> void postForList(String path, AdmissionClass admissionClass, ListRoute<T> handler) {
+        RouteRegistry.post(path, admit(admissionClass, wrapListHandler(handler)));
+    }
+
+    public static <T> void postForDatum(String path, AdmissionClass admissionClass, DatumRoute<T> handler) {
+        RouteRegistry.post(path, admit(admissionClass, wrapDatumHandler(handler)));
     }
 
 
@@ -86,15 +118,15 @@ public class EndpointUtilities {
 
     private static <T> Route wrapListHandler(ListRoute<T> handler) {
         return (request, response) -> {
-            response.type(TYPE_JSON);
-            return handler.apply(request, response);
+            ContentFormat format = negotiateFormat(request, response);
+            return render(format, handler.apply(request, response), readFields(request));
         };
     }
 
     private static <T> Route wrapDatumHandler(DatumRoute<T> handler) {
         return (request, response) -> {
-            response.type(TYPE_JSON);
-            return handler.apply(request, response);
+            ContentFormat format = negotiateFormat(request, response);
+            return render(format, handler.apply(request, response));
         };
     }
 
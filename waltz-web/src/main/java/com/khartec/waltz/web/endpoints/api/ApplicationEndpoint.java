@@ -168,7 +168,8 @@ public class ApplicationEndpoint implements Endpoint {
                     .findByIds(ids);
         };
 
-        ListRoute<Application> findAllRoute = (req, res) -> appService.findAll();
+        ListRoute<Object> findAllRoute = (req, res) -> Collections.unmodifiableCollection(
+                appService.findAll(readFields(req)));
 
         DatumRoute<Application> getByIdRoute = (req, res) -> {
             String id = req.params("id");
@@ -176,8 +177,10 @@ public class ApplicationEndpoint implements Endpoint {
                     .getById(parseLong(id));
         };
 
-        ListRoute<Application> findBySelectorRoute = ((request, response)
-                -> appService.findByAppIdSelector(readIdSelectionOptionsFromBody(request)));
+        ListRoute<Object> findBySelectorRoute = ((request, response)
+                -> Collections.unmodifiableCollection(appService.findByAppIdSelector(
+                        readIdSelectionOptionsFromBody(request),
+                        readFields(request))));
 
         ListRoute<Application> findByAssetCodeRoute = ((request, response)
                 -> appService.findByAssetCode(request.splat()[0]));
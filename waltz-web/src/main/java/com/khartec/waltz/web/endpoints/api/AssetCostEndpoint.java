@@ -23,6 +23,7 @@ import com.khartec.waltz.model.cost.ApplicationCost;
 import com.khartec.waltz.model.cost.AssetCost;
 import com.khartec.waltz.model.cost.Cost;
 import com.khartec.waltz.service.asset_cost.AssetCostService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.endpoints.Endpoint;
 import org.jooq.lambda.tuple.Tuple2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,8 +67,8 @@ public class AssetCostEndpoint implements Endpoint {
         getForList(findByAppIdPath, this::findByAppIdRoute);
         postForList(findAppCostsByAppIdsPath, this::findAppCostsByAppIds);
         postForList(findTopAppCostsByAppIdsPath, this::findTopAppCostsByAppIds);
-        postForDatum(calculateTotalCostForAppSelectorPath, this::calculateTotalCostForAppSelectorRoute);
-        postForList(calcCombinedAmountsForSelectorPath, this::calcCombinedAmountsForSelectorRoute);
+        postForDatum(calculateTotalCostForAppSelectorPath, AdmissionClass.SELECTOR_STATS, this::calculateTotalCostForAppSelectorRoute);
+        postForList(calcCombinedAmountsForSelectorPath, AdmissionClass.SELECTOR_STATS, this::calcCombinedAmountsForSelectorRoute);
 
     }
 
@@ -29,6 +29,7 @@ import com.khartec.waltz.model.authoritativesource.NonAuthoritativeSource;
 import com.khartec.waltz.model.user.SystemRole;
 import com.khartec.waltz.service.authoritative_source.AuthoritativeSourceService;
 import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.ListRoute;
 import com.khartec.waltz.web.endpoints.Endpoint;
 import org.slf4j.Logger;
@@ -102,7 +103,7 @@ public class AuthoritativeSourceEndpoint implements Endpoint {
         ListRoute<AuthoritativeSource> findAllRoute = (request, response)
                 -> authoritativeSourceService.findAll();
 
-        getForDatum(recalculateFlowRatingsPath, this::recalculateFlowRatingsRoute);
+        getForDatum(recalculateFlowRatingsPath, AdmissionClass.MAINTENANCE, this::recalculateFlowRatingsRoute);
         getForDatum(cleanupOrphansPath, this::cleanupOrphansRoute);
         postForList(calculateConsumersForDataTypeIdSelectorPath, this::calculateConsumersForDataTypeIdSelectorRoute);
         postForList(findNonAuthSourcesPath, findNonAuthSourcesRoute);
@@ -0,0 +1,94 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.khartec.waltz.model.batch.BatchRequestItem;
+import com.khartec.waltz.model.batch.BatchResultItem;
+import com.khartec.waltz.web.ContentFormat;
+import com.khartec.waltz.web.batch.BatchDispatcher;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import spark.Request;
+import spark.Response;
+
+import java.util.List;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.web.WebUtilities.*;
+import static spark.Spark.post;
+
+
+/**
+ * Runs many calls in one request, e.g. fetching the involvements of
+ * several thousand applications.  The body is a list of
+ * {@link BatchRequestItem}s, the response a list of
+ * {@link BatchResultItem}s in the same order, each with the status the
+ * call would have had on its own.
+ *
+ * Only routes registered via <code>EndpointUtilities</code> (or the
+ * extract helpers) may be batched, batches may not be nested.
+ */
+@Service
+public class BatchEndpoint implements Endpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchEndpoint.class);
+    private static final String BASE_URL = mkPath("api", "batch");
+
+    private BatchDispatcher dispatcher;
+
+    @Value("${waltz.batch.threads:8}")
+    private int threadCount;
+
+    @Value("${waltz.batch.parallelism:4}")
+    private int parallelism;
+
+    @Value("${waltz.batch.maxItems:1000}")
+    private int maxItems;
+
+    @Value("${waltz.batch.timeoutSeconds:60}")
+    private long timeoutSeconds;
+
+
+    @Override
+    public void register() {
+        dispatcher = new BatchDispatcher(threadCount, parallelism, timeoutSeconds * 1000);
+        post(BASE_URL, this::batchRoute);
+    }
+
+
+    private Object batchRoute(Request request, Response response) throws Exception {
+        List<BatchRequestItem> items = newArrayList(readBody(request, BatchRequestItem[].class));
+        if (items.size() > maxItems) {
+            reportException(400, "BATCH_TOO_LARGE", "Batch may contain at most " + maxItems + " items", response, LOG);
+            return response.body();
+        }
+
+        long start = System.currentTimeMillis();
+        List<BatchResultItem> results = dispatcher.dispatch(request, response, items);
+        LOG.debug("User: {}, ran batch of {} items in {}ms", getUsername(request), items.size(), System.currentTimeMillis() - start);
+
+        ContentFormat format = negotiateFormat(request, response);
+        return render(format, results);
+    }
+
+}
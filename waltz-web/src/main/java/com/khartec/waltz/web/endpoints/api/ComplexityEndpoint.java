@@ -20,6 +20,7 @@ package com.khartec.waltz.web.endpoints.api;
 
 import com.khartec.waltz.model.complexity.ComplexityRating;
 import com.khartec.waltz.service.complexity.ComplexityRatingService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.DatumRoute;
 import com.khartec.waltz.web.ListRoute;
 import com.khartec.waltz.web.endpoints.Endpoint;
@@ -57,6 +58,6 @@ public class ComplexityEndpoint implements Endpoint {
 
         getForDatum(getForAppPath, getForAppRoute);
         postForList(findForAppIdSelectorPath, findForAppIdSelectorRoute);
-        getForDatum(rebuildPath, rebuildRoute);
+        getForDatum(rebuildPath, AdmissionClass.MAINTENANCE, rebuildRoute);
     }
 }
@@ -28,6 +28,7 @@ import com.khartec.waltz.model.usage_info.UsageKind;
 import com.khartec.waltz.model.user.SystemRole;
 import com.khartec.waltz.service.usage_info.DataTypeUsageService;
 import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.ListRoute;
 import com.khartec.waltz.web.endpoints.Endpoint;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -89,7 +90,7 @@ public class DataTypeUsageEndpoint implements Endpoint {
 
         getForList(findForEntityPath, findForEntityRoute);
         postForList(findForDataTypeSelectorPath, findForDataTypeSelectorRoute);
-        postForList(findUsageStatsForDataTypeSelectorPath, findUsageStatsForDataTypeSelectorRoute);
+        postForList(findUsageStatsForDataTypeSelectorPath, AdmissionClass.SELECTOR_STATS, findUsageStatsForDataTypeSelectorRoute);
         postForList(findForSelectorPath, findForSelectorRoute);
         postForList(savePath, this::saveRoute);
         getForDatum(calculateForAllApplicationsPath, this::calculateForAllApplicationsRoute);
@@ -0,0 +1,120 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.khartec.waltz.model.application.Application;
+import com.khartec.waltz.model.delta_sync.DeltaSyncPage;
+import com.khartec.waltz.model.logical_flow.LogicalFlow;
+import com.khartec.waltz.model.measurable_rating.MeasurableRating;
+import com.khartec.waltz.service.delta_sync.DeltaSyncService;
+import com.khartec.waltz.web.DatumRoute;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import spark.Request;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.StringUtilities.isEmpty;
+import static com.khartec.waltz.web.WebUtilities.getLimit;
+import static com.khartec.waltz.web.WebUtilities.mkPath;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.getForDatum;
+
+
+/**
+ * Change feeds for large entity collections.  Each route takes:
+ * <ul>
+ *     <li><code>since</code> (required): ISO local date time, e.g. <code>2020-10-01T00:00:00</code></li>
+ *     <li><code>pageToken</code>: the <code>nextPageToken</code> from the previous page</li>
+ *     <li><code>limit</code>: page size (capped by the server)</li>
+ * </ul>
+ * See {@link DeltaSyncPage} for how to use the response.
+ */
+@Service
+public class DeltaSyncEndpoint implements Endpoint {
+
+    private static final String BASE_URL = mkPath("api", "delta-sync");
+
+    private final DeltaSyncService deltaSyncService;
+
+
+    @Autowired
+    public DeltaSyncEndpoint(DeltaSyncService deltaSyncService) {
+        checkNotNull(deltaSyncService, "deltaSyncService cannot be null");
+        this.deltaSyncService = deltaSyncService;
+    }
+
+
+    @Override
+    public void register() {
+        String applicationsPath = mkPath(BASE_URL, "application");
+        String logicalFlowsPath = mkPath(BASE_URL, "logical-flow");
+        String measurableRatingsPath = mkPath(BASE_URL, "measurable-rating");
+
+        DatumRoute<DeltaSyncPage<Application>> applicationsRoute = (request, response)
+                -> deltaSyncService.findApplicationChanges(
+                        readSince(request),
+                        readPageToken(request),
+                        getLimit(request));
+
+        DatumRoute<DeltaSyncPage<LogicalFlow>> logicalFlowsRoute = (request, response)
+                -> deltaSyncService.findLogicalFlowChanges(
+                        readSince(request),
+                        readPageToken(request),
+                        getLimit(request));
+
+        DatumRoute<DeltaSyncPage<MeasurableRating>> measurableRatingsRoute = (request, response)
+                -> deltaSyncService.findMeasurableRatingChanges(
+                        readSince(request),
+                        readPageToken(request),
+                        getLimit(request));
+
+        getForDatum(applicationsPath, applicationsRoute);
+        getForDatum(logicalFlowsPath, logicalFlowsRoute);
+        getForDatum(measurableRatingsPath, measurableRatingsRoute);
+    }
+
+
+    // -- HELPERS ---
+
+    private static LocalDateTime readSince(Request request) {
+        String since = request.queryParams("since");
+        if (isEmpty(since)) {
+            throw new IllegalArgumentException("'since' parameter is required, e.g. since=2020-10-01T00:00:00");
+        }
+
+        try {
+            return LocalDateTime.parse(since);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Could not parse 'since' parameter: " + since, e);
+        }
+    }
+
+
+    private static Optional<String> readPageToken(Request request) {
+        return Optional
+                .ofNullable(request.queryParams("pageToken"))
+                .filter(t -> ! isEmpty(t));
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.khartec.waltz.model.flow_graph.FlowImpact;
+import com.khartec.waltz.model.flow_graph.FlowImpactQuery;
+import com.khartec.waltz.model.flow_graph.FlowPath;
+import com.khartec.waltz.model.flow_graph.FlowPathQuery;
+import com.khartec.waltz.model.user.SystemRole;
+import com.khartec.waltz.service.flow_graph.FlowGraphService;
+import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.admission.AdmissionClass;
+import com.khartec.waltz.web.DatumRoute;
+import com.khartec.waltz.web.ListRoute;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import spark.Request;
+import spark.Response;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.web.WebUtilities.*;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.*;
+
+
+@Service
+public class FlowGraphEndpoint implements Endpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowGraphEndpoint.class);
+    private static final String BASE_URL = mkPath("api", "flow-graph");
+
+    private final FlowGraphService flowGraphService;
+    private final UserRoleService userRoleService;
+
+
+    @Autowired
+    public FlowGraphEndpoint(FlowGraphService flowGraphService,
+                             UserRoleService userRoleService) {
+        checkNotNull(flowGraphService, "flowGraphService cannot be null");
+        checkNotNull(userRoleService, "userRoleService cannot be null");
+
+        this.flowGraphService = flowGraphService;
+        this.userRoleService = userRoleService;
+    }
+
+
+    @Override
+    public void register() {
+        String findShortestPathsPath = mkPath(BASE_URL, "paths");
+        String findDownstreamImpactPath = mkPath(BASE_URL, "impact");
+        String rebuildPath = mkPath(BASE_URL, "rebuild");
+
+        ListRoute<FlowPath> findShortestPathsRoute = (request, response)
+                -> flowGraphService.findShortestPaths(readBody(request, FlowPathQuery.class));
+
+        DatumRoute<FlowImpact> findDownstreamImpactRoute = (request, response)
+                -> flowGraphService.findDownstreamImpact(readBody(request, FlowImpactQuery.class));
+
+        postForList(findShortestPathsPath, findShortestPathsRoute);
+        postForDatum(findDownstreamImpactPath, findDownstreamImpactRoute);
+        getForDatum(rebuildPath, AdmissionClass.MAINTENANCE, this::rebuildRoute);
+    }
+
+
+    private int rebuildRoute(Request request, Response response) {
+        requireRole(userRoleService, request, SystemRole.ADMIN);
+        LOG.info("User: {}, requested flow graph rebuild", getUsername(request));
+        return flowGraphService.rebuild();
+    }
+
+}
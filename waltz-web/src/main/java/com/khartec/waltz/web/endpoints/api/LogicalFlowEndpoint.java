@@ -25,6 +25,7 @@ import com.khartec.waltz.model.logical_flow.LogicalFlowStatistics;
 import com.khartec.waltz.model.user.SystemRole;
 import com.khartec.waltz.service.logical_flow.LogicalFlowService;
 import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.DatumRoute;
 import com.khartec.waltz.web.ListRoute;
 import com.khartec.waltz.web.endpoints.Endpoint;
@@ -113,7 +114,7 @@ public class LogicalFlowEndpoint implements Endpoint {
         postForList(findUpstreamFlowsForEntityReferencesPath, findUpstreamFlowsForEntityReferencesRoute);
         postForList(findBySelectorPath, findBySelectorRoute);
         postForDatum(findBySourceAndTargetsPath, this::findBySourceAndTargetsRoute);
-        postForDatum(findStatsPath, findStatsRoute);
+        postForDatum(findStatsPath, AdmissionClass.SELECTOR_STATS, findStatsRoute);
         deleteForDatum(removeFlowPath, this::removeFlowRoute);
         postForDatum(addFlowPath, this::addFlowRoute);
         postForList(addFlowsPath, this::addFlowsRoute);
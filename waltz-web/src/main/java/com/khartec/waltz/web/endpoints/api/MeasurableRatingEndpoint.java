@@ -26,6 +26,7 @@ import com.khartec.waltz.model.tally.MeasurableRatingTally;
 import com.khartec.waltz.model.tally.Tally;
 import com.khartec.waltz.service.measurable_rating.MeasurableRatingService;
 import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.admission.AdmissionClass;
 import com.khartec.waltz.web.ListRoute;
 import com.khartec.waltz.web.endpoints.Endpoint;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -108,7 +109,7 @@ public class MeasurableRatingEndpoint implements Endpoint {
         deleteForList(modifyCategoryForEntityPath, this::removeCategoryRoute);
         getForList(countByMeasurableCategoryPath, countByMeasurableCategoryRoute);
         postForList(statsForRelatedMeasurablePath, statsForRelatedMeasurableRoute);
-        postForList(statsByAppSelectorPath, statsByAppSelectorRoute);
+        postForList(statsByAppSelectorPath, AdmissionClass.SELECTOR_STATS, statsByAppSelectorRoute);
     }
 
     private Collection<MeasurableRating> removeCategoryRoute(Request request, Response z) {
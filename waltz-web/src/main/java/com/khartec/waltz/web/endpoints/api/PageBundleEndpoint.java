@@ -0,0 +1,106 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.khartec.waltz.model.page_bundle.PageBundleRequest;
+import com.khartec.waltz.model.page_bundle.PageBundleSectionResult;
+import com.khartec.waltz.service.page_bundle.PageBundleService;
+import com.khartec.waltz.web.ContentFormat;
+import com.khartec.waltz.web.ListRoute;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.web.WebUtilities.*;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.getForList;
+import static spark.Spark.post;
+
+
+/**
+ * Serves several sections of a page (e.g. an org unit or app group page)
+ * from a single request.  The response is a list of section results which
+ * is streamed back, each section being written as soon as it (and those
+ * requested before it) has completed.
+ */
+@Service
+public class PageBundleEndpoint implements Endpoint {
+
+    private static final String BASE_URL = mkPath("api", "page-bundle");
+
+    private final PageBundleService pageBundleService;
+
+
+    @Autowired
+    public PageBundleEndpoint(PageBundleService pageBundleService) {
+        checkNotNull(pageBundleService, "pageBundleService cannot be null");
+        this.pageBundleService = pageBundleService;
+    }
+
+
+    @Override
+    public void register() {
+        String sectionsPath = mkPath(BASE_URL, "sections");
+
+        ListRoute<String> sectionsRoute = (request, response) -> pageBundleService.findSectionNames();
+
+        getForList(sectionsPath, sectionsRoute);
+        post(BASE_URL, this::bundleRoute);
+    }
+
+
+    private Object bundleRoute(Request request, Response response) throws IOException {
+        PageBundleRequest bundleRequest = readBody(request, PageBundleRequest.class);
+        ContentFormat format = negotiateFormat(request, response);
+
+        JsonGenerator generator = format
+                .mapper()
+                .getFactory()
+                .createGenerator(response.raw().getOutputStream());
+
+        // spark owns the response stream, leave it open for spark to finish off
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        generator.writeStartArray();
+        pageBundleService.execute(bundleRequest, result -> writeSection(generator, result));
+        generator.writeEndArray();
+        generator.close();
+
+        return "";
+    }
+
+
+    private static void writeSection(JsonGenerator generator,
+                                     PageBundleSectionResult result) {
+        try {
+            generator.writeObject(result);
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write page bundle section: " + result.name(), e);
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.khartec.waltz.model.reference_data.ReferenceDataSnapshot;
+import com.khartec.waltz.model.user.SystemRole;
+import com.khartec.waltz.service.reference_data.ReferenceDataSnapshotService;
+import com.khartec.waltz.service.reference_data.ReferenceDataSnapshotService.EncodedSnapshot;
+import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.ContentFormat;
+import com.khartec.waltz.web.DatumRoute;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.eclipse.jetty.http.HttpHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.common.CompressionUtilities.gunzip;
+import static com.khartec.waltz.common.StringUtilities.notEmpty;
+import static com.khartec.waltz.web.WebUtilities.*;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.getForDatum;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.postForDatum;
+import static spark.Spark.get;
+
+
+/**
+ * Serves the reference data snapshot.  Clients first ask for the current
+ * version (never cached) and then fetch the snapshot from a url containing
+ * that version.  As the content of a given version never changes it is
+ * served with a year long, immutable, cache lifetime.  The cache is marked
+ * `private` so shared proxies do not hand it to unauthenticated users.
+ *
+ * Requests for a version this node has not built yet are answered with a
+ * 503 (and Retry-After) if it is the current version, otherwise they are
+ * redirected to the version this node holds.
+ */
+@Service
+public class ReferenceDataEndpoint implements Endpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceDataEndpoint.class);
+    private static final String BASE_URL = mkPath("api", "reference-data");
+    private static final String SNAPSHOT_URL = mkPath(BASE_URL, "snapshot");
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "private, max-age=" + TimeUnit.DAYS.toSeconds(365) + ", immutable";
+    private static final String NO_CACHE_CONTROL = "no-cache";
+
+    private final ReferenceDataSnapshotService referenceDataSnapshotService;
+    private final UserRoleService userRoleService;
+
+
+    @Autowired
+    public ReferenceDataEndpoint(ReferenceDataSnapshotService referenceDataSnapshotService,
+                                 UserRoleService userRoleService) {
+        checkNotNull(referenceDataSnapshotService, "referenceDataSnapshotService cannot be null");
+        checkNotNull(userRoleService, "userRoleService cannot be null");
+
+        this.referenceDataSnapshotService = referenceDataSnapshotService;
+        this.userRoleService = userRoleService;
+
+        referenceDataSnapshotService.setEncoder(ReferenceDataEndpoint::encode);
+    }
+
+
+    @Override
+    public void register() {
+        String versionPath = mkPath(BASE_URL, "version");
+        String snapshotPath = mkPath(SNAPSHOT_URL, ":version");
+        String invalidatePath = mkPath(BASE_URL, "invalidate");
+
+        DatumRoute<String> versionRoute = (request, response) -> {
+            response.header(HttpHeader.CACHE_CONTROL.toString(), NO_CACHE_CONTROL);
+            return referenceDataSnapshotService.getSnapshot().version();
+        };
+
+        getForDatum(versionPath, versionRoute);
+        get(snapshotPath, this::snapshotRoute);
+        postForDatum(invalidatePath, this::invalidateRoute);
+    }
+
+
+    private Object snapshotRoute(Request request, Response response) throws IOException {
+        String requestedVersion = request.params("version");
+        EncodedSnapshot snapshot = referenceDataSnapshotService.getSnapshot();
+
+        switch (resolve(requestedVersion, snapshot.version(), referenceDataSnapshotService::getVersion)) {
+            case RETRY_LATER:
+                response.header(HttpHeader.CACHE_CONTROL.toString(), NO_CACHE_CONTROL);
+                response.header("Retry-After", "2");
+                response.status(503);
+                return "";
+            case REDIRECT:
+                // relative, so it resolves correctly behind proxies and context paths
+                response.header(HttpHeader.CACHE_CONTROL.toString(), NO_CACHE_CONTROL);
+                response.redirect(snapshot.version());
+                return "";
+            case SERVE:
+                break;
+        }
+
+        String etag = "\"" + snapshot.version() + "\"";
+        response.header(HttpHeader.CACHE_CONTROL.toString(), IMMUTABLE_CACHE_CONTROL);
+        response.header(HttpHeader.ETAG.toString(), etag);
+
+        if (etag.equals(request.headers(HttpHeader.IF_NONE_MATCH.toString()))) {
+            response.status(304);
+            return "";
+        }
+
+        response.type(TYPE_JSON);
+        response.header(HttpHeader.VARY.toString(), HttpHeader.ACCEPT_ENCODING.toString());
+
+        byte[] bytes;
+        if (acceptsGzip(request)) {
+            response.header(HttpHeader.CONTENT_ENCODING.toString(), "gzip");
+            bytes = snapshot.gzippedBytes();
+        } else {
+            bytes = gunzip(snapshot.gzippedBytes());
+        }
+
+        // written (and committed) directly so spark does not try to compress it again
+        response.raw().setContentLength(bytes.length);
+        OutputStream out = response.raw().getOutputStream();
+        out.write(bytes);
+        out.flush();
+
+        return "";
+    }
+
+
+    private String invalidateRoute(Request request, Response response) {
+        requireRole(userRoleService, request, SystemRole.ADMIN);
+        String version = referenceDataSnapshotService.invalidate();
+        LOG.info("User: {}, invalidated reference data snapshot, new version: {}", getUsername(request), version);
+        return version;
+    }
+
+
+    /**
+     * Decides how to answer a request for a snapshot version.  The current
+     * version is only looked up when this node does not hold the requested
+     * one.
+     */
+    static SnapshotRequestOutcome resolve(String requestedVersion,
+                                          String heldVersion,
+                                          Supplier<String> currentVersion) {
+        if (heldVersion.equals(requestedVersion)) {
+            return SnapshotRequestOutcome.SERVE;
+        } else if (currentVersion.get().equals(requestedVersion)) {
+            // current according to the db, but not built on this node yet
+            return SnapshotRequestOutcome.RETRY_LATER;
+        } else {
+            return SnapshotRequestOutcome.REDIRECT;
+        }
+    }
+
+
+    enum SnapshotRequestOutcome {
+        SERVE,
+        RETRY_LATER,
+        REDIRECT
+    }
+
+
+    private static boolean acceptsGzip(Request request) {
+        String acceptEncoding = request.headers(HttpHeader.ACCEPT_ENCODING.toString());
+        return notEmpty(acceptEncoding) && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+
+    private static byte[] encode(ReferenceDataSnapshot snapshot) {
+        try {
+            return ContentFormat.JSON.mapper().writeValueAsBytes(snapshot);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to encode reference data snapshot", e);
+        }
+    }
+
+}
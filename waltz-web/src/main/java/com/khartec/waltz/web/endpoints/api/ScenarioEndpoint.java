@@ -24,6 +24,7 @@ import com.khartec.waltz.model.EntityReference;
 import com.khartec.waltz.model.ReleaseLifecycleStatus;
 import com.khartec.waltz.model.scenario.ImmutableChangeScenarioCommand;
 import com.khartec.waltz.model.scenario.ImmutableCloneScenarioCommand;
+import com.khartec.waltz.model.scenario.ImmutableScenarioRatingGridChange;
 import com.khartec.waltz.model.scenario.Scenario;
 import com.khartec.waltz.model.scenario.ScenarioType;
 import com.khartec.waltz.model.user.SystemRole;
@@ -39,6 +40,7 @@ import org.springframework.stereotype.Service;
 import spark.Request;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 
 import static com.khartec.waltz.common.Checks.checkNotNull;
 import static com.khartec.waltz.web.WebUtilities.*;
@@ -84,6 +86,7 @@ public class ScenarioEndpoint implements Endpoint {
         registerRemoveRating(mkPath(BASE_URL, "remove-rating"));
         registerUpdateRating(mkPath(BASE_URL, "change-rating"));
         registerAddRating(mkPath(BASE_URL, "add-rating"));
+        registerApplyRatingGridChanges(mkPath(BASE_URL, "id", ":id", "ratings"));
         registerUpdateName(mkPath(BASE_URL, "id", ":id", "name"));
         registerUpdateDescription(mkPath(BASE_URL, "id", ":id", "description"));
         registerUpdateEffectiveDate(mkPath(BASE_URL, "id", ":id", "effective-date"));
@@ -241,6 +244,18 @@ public class ScenarioEndpoint implements Endpoint {
     }
 
 
+    private void registerApplyRatingGridChanges(String path) {
+        postForDatum(path, (request, response) -> {
+            ensureUserHasEditRights(request);
+            ImmutableScenarioRatingGridChange[] changes = readBody(request, ImmutableScenarioRatingGridChange[].class);
+            return scenarioRatingItemService.applyGridChanges(
+                    getId(request),
+                    Arrays.asList(changes),
+                    getUsername(request));
+        });
+    }
+
+
     private void registerRemoveRating(String path) {
         postForDatum(path, (request, response) -> {
             ensureUserHasEditRights(request);
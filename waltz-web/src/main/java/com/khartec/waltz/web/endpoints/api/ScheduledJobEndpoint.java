@@ -0,0 +1,78 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import com.khartec.waltz.model.scheduled_job.JobKey;
+import com.khartec.waltz.model.scheduled_job.ScheduledJobExecution;
+import com.khartec.waltz.model.user.SystemRole;
+import com.khartec.waltz.service.scheduled_job.ScheduledJobHistory;
+import com.khartec.waltz.service.user.UserRoleService;
+import com.khartec.waltz.web.ListRoute;
+import com.khartec.waltz.web.endpoints.Endpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+import static com.khartec.waltz.web.WebUtilities.*;
+import static com.khartec.waltz.web.endpoints.EndpointUtilities.getForList;
+
+
+@Service
+public class ScheduledJobEndpoint implements Endpoint {
+
+    private static final String BASE_URL = mkPath("api", "scheduled-job");
+
+    private final ScheduledJobHistory scheduledJobHistory;
+    private final UserRoleService userRoleService;
+
+
+    @Autowired
+    public ScheduledJobEndpoint(ScheduledJobHistory scheduledJobHistory,
+                                UserRoleService userRoleService) {
+        checkNotNull(scheduledJobHistory, "scheduledJobHistory cannot be null");
+        checkNotNull(userRoleService, "userRoleService cannot be null");
+
+        this.scheduledJobHistory = scheduledJobHistory;
+        this.userRoleService = userRoleService;
+    }
+
+
+    @Override
+    public void register() {
+        String findAllExecutionsPath = mkPath(BASE_URL, "execution");
+        String findExecutionsForJobPath = mkPath(BASE_URL, "execution", ":jobKey");
+
+        ListRoute<ScheduledJobExecution> findAllExecutionsRoute = (request, response) -> {
+            requireRole(userRoleService, request, SystemRole.ADMIN);
+            return scheduledJobHistory.findAll();
+        };
+
+        ListRoute<ScheduledJobExecution> findExecutionsForJobRoute = (request, response) -> {
+            requireRole(userRoleService, request, SystemRole.ADMIN);
+            JobKey jobKey = readEnum(request, "jobKey", JobKey.class, s -> null);
+            checkNotNull(jobKey, "unknown job key: " + request.params("jobKey"));
+            return scheduledJobHistory.findForJob(jobKey);
+        };
+
+        getForList(findAllExecutionsPath, findAllExecutionsRoute);
+        getForList(findExecutionsForJobPath, findExecutionsForJobRoute);
+    }
+
+}
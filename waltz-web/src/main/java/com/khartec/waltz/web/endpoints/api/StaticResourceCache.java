@@ -0,0 +1,481 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.khartec.waltz.common.StringUtilities.lower;
+import static com.khartec.waltz.common.StringUtilities.notEmpty;
+
+
+/**
+ * Holds the bundled client (waltz-ng) assets in memory so they can be served
+ * without touching the classpath on each request.
+ *
+ * Each resource is held in a read-only direct buffer along with a gzipped
+ * variant (computed at load time for compressible types) and, where the
+ * client build ships them, the precompressed <code>.br</code> / <code>.gz</code>
+ * siblings.  Serving a resource is then a matter of picking a variant and
+ * handing its buffer to the container.
+ *
+ * The cache is filled at startup by scanning the <code>static/</code>
+ * classpath directory.  If that is not possible (e.g. an unusual class loader)
+ * resources are loaded on first request instead.
+ */
+class StaticResourceCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StaticResourceCache.class);
+
+    static final String ROOT = "static/";
+    static final String INDEX_PATH = ROOT + "index.html";
+
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+
+    private final ClassLoader classLoader;
+    private final Function<String, String> mimeTypeResolver;
+    private final Map<String, CachedResource> resourcesByPath = new ConcurrentHashMap<>();
+    private final Map<String, CachedResource> indexByContextPath = new ConcurrentHashMap<>();
+    private volatile boolean complete = false;
+
+
+    StaticResourceCache(ClassLoader classLoader,
+                        Function<String, String> mimeTypeResolver) {
+        this.classLoader = classLoader;
+        this.mimeTypeResolver = mimeTypeResolver;
+    }
+
+
+    /**
+     * Eagerly loads everything beneath <code>static/</code>.
+     */
+    void load() {
+        long st = System.currentTimeMillis();
+        URL root = classLoader.getResource(ROOT);
+        if (root == null) {
+            LOG.warn("No static resources found on classpath");
+            return;
+        }
+
+        try {
+            switch (root.getProtocol()) {
+                case "file":
+                    loadFromDirectory(Paths.get(root.toURI()));
+                    break;
+                case "jar":
+                    loadFromJar((JarURLConnection) root.openConnection());
+                    break;
+                default:
+                    LOG.info("Cannot scan static resources at {}, will load them on demand", root);
+                    return;
+            }
+        } catch (IOException | URISyntaxException e) {
+            LOG.warn("Failed to scan static resources at {}, will load them on demand", root, e);
+            resourcesByPath.clear();
+            return;
+        }
+
+        attachPrecompressedVariants();
+        complete = true;
+
+        long totalBytes = resourcesByPath
+                .values()
+                .stream()
+                .mapToLong(CachedResource::totalBytes)
+                .sum();
+
+        LOG.info("Cached {} static resources ({} bytes, all variants) in {}ms",
+                resourcesByPath.size(),
+                totalBytes,
+                System.currentTimeMillis() - st);
+    }
+
+
+    /**
+     * Finds the resource for a request path (without leading slash).  Paths
+     * which do not match a resource resolve to the root index page so the
+     * client side router can deal with them.
+     */
+    Optional<CachedResource> resolve(String path, String contextPath) {
+        String resourcePath = path.isEmpty()
+                ? INDEX_PATH
+                : ROOT + path;
+
+        CachedResource resource = Optional
+                .ofNullable(find(resourcePath))
+                .orElseGet(() -> find(stripTrailingSlash(resourcePath) + "/index.html"));
+
+        if (resource == null) {
+            resource = find(INDEX_PATH);
+        }
+
+        if (resource != null
+                && resource.path().endsWith("index.html")
+                && notEmpty(contextPath)) {
+            CachedResource original = resource;
+            resource = indexByContextPath.computeIfAbsent(
+                    original.path() + "@" + contextPath,
+                    k -> withBaseHref(original, contextPath));
+        }
+
+        return Optional.ofNullable(resource);
+    }
+
+
+    /**
+     * True if the <code>Accept-Encoding</code> header lists the given coding
+     * (or <code>*</code>) without a zero quality value.
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim();
+            if (name.equalsIgnoreCase(coding)) {
+                return ! hasZeroQuality(params);
+            } else if (name.equals("*")) {
+                wildcard = ! hasZeroQuality(params);
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+
+    // -- HELPERS ---
+
+    private CachedResource find(String resourcePath) {
+        CachedResource resource = resourcesByPath.get(resourcePath);
+        if (resource != null || complete) {
+            return resource;
+        }
+
+        // not scanned, fall back to the classpath, only remembering hits
+        URL url = classLoader.getResource(resourcePath);
+        if (url == null || url.getPath().endsWith("/")) {
+            return null;
+        }
+
+        try {
+            CachedResource loaded = mkResource(resourcePath, readAll(url), lastModified(url));
+            resourcesByPath.putIfAbsent(resourcePath, loaded);
+            return resourcesByPath.get(resourcePath);
+        } catch (IOException e) {
+            LOG.warn("Failed to load static resource: {}", resourcePath, e);
+            return null;
+        }
+    }
+
+
+    private void loadFromDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(Files::isRegularFile)
+                    .forEach(file -> {
+                        String relative = dir.relativize(file).toString().replace(File.separatorChar, '/');
+                        try {
+                            put(ROOT + relative,
+                                Files.readAllBytes(file),
+                                Files.getLastModifiedTime(file).toMillis());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    private void loadFromJar(JarURLConnection connection) throws IOException {
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+            String prefix = Optional
+                    .ofNullable(connection.getEntryName())
+                    .map(StaticResourceCache::ensureTrailingSlash)
+                    .orElse(ROOT);
+
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || ! entry.getName().startsWith(prefix)) {
+                    continue;
+                }
+                try (InputStream in = jar.getInputStream(entry)) {
+                    put(ROOT + entry.getName().substring(prefix.length()),
+                        toBytes(in),
+                        entry.getTime());
+                }
+            }
+        }
+    }
+
+
+    private void put(String resourcePath, byte[] content, long lastModified) {
+        resourcesByPath.put(resourcePath, mkResource(resourcePath, content, lastModified));
+    }
+
+
+    /**
+     * If the client build emits <code>foo.js.br</code> / <code>foo.js.gz</code>
+     * alongside <code>foo.js</code> we prefer those (typically better
+     * compressed) to anything computed at load time.
+     */
+    private void attachPrecompressedVariants() {
+        resourcesByPath.replaceAll((path, resource) -> {
+            CachedResource br = resourcesByPath.get(path + ".br");
+            CachedResource gz = resourcesByPath.get(path + ".gz");
+            return resource.withVariants(
+                    br == null ? resource.brotli() : br.identity(),
+                    gz == null ? resource.gzip() : gz.identity());
+        });
+    }
+
+
+    private CachedResource mkResource(String resourcePath, byte[] content, long lastModified) {
+        String mimeType = mimeTypeResolver.apply(resourcePath);
+        byte[] gzipped = isCompressible(mimeType)
+                ? gzip(content)
+                : null;
+
+        return new CachedResource(
+                resourcePath,
+                mimeType,
+                mkEtag(content),
+                lastModified == 0 ? System.currentTimeMillis() : lastModified,
+                toBuffer(content),
+                null,
+                gzipped != null && gzipped.length < content.length * MIN_COMPRESSION_RATIO
+                        ? toBuffer(gzipped)
+                        : null);
+    }
+
+
+    /**
+     * index.html needs a <code>&lt;base href="/[site_context]/" /&gt;</code>
+     * tag for html5 mode routing in AngularJS to work when deployed under a
+     * context path.  The rewritten page is cached per context path.
+     */
+    private CachedResource withBaseHref(CachedResource index, String contextPath) {
+        String[] lines = new String(bytes(index.identity()), StandardCharsets.UTF_8).split("\r?\n", -1);
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lower(lines[i]);
+
+            if (line.contains("<base href=")) {
+                lines[i] = String.format("\t<base href=\"%s/\" />", contextPath);
+                LOG.info("Updated <base> tag in {} for context path: {}", index.path(), contextPath);
+                break;
+            }
+
+            if (line.contains("</head>")) {
+                // don't need to continue if have reached here and no base tag found
+                break;
+            }
+        }
+
+        byte[] content = String
+                .join(System.lineSeparator(), lines)
+                .getBytes(StandardCharsets.UTF_8);
+
+        return mkResource(index.path(), content, index.lastModified());
+    }
+
+
+    private static boolean hasZeroQuality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean isCompressible(String mimeType) {
+        String type = lower(mimeType);
+        return type.startsWith("text/")
+                || type.contains("javascript")
+                || type.contains("json")
+                || type.contains("xml")
+                || type.contains("svg")
+                || type.contains("font-ttf");
+    }
+
+
+    private static String mkEtag(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return sb.append("\"").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+
+    private static ByteBuffer toBuffer(byte[] content) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        ByteBuffer copy = buffer.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes) {{ def.setLevel(9); }}) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+
+    private static byte[] readAll(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            return toBytes(in);
+        }
+    }
+
+
+    private static byte[] toBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+
+    private static long lastModified(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        return connection.getLastModified();
+    }
+
+
+    private static String ensureTrailingSlash(String path) {
+        return path.endsWith("/") ? path : path + "/";
+    }
+
+
+    private static String stripTrailingSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+
+    /**
+     * A cached asset.  The buffers are shared; callers must
+     * {@link ByteBuffer#duplicate() duplicate} them before use.
+     */
+    static final class CachedResource {
+
+        private final String path;
+        private final String mimeType;
+        private final String etag;
+        private final long lastModified;
+        private final ByteBuffer identity;
+        private final ByteBuffer brotli;
+        private final ByteBuffer gzip;
+
+
+        CachedResource(String path,
+                       String mimeType,
+                       String etag,
+                       long lastModified,
+                       ByteBuffer identity,
+                       ByteBuffer brotli,
+                       ByteBuffer gzip) {
+            this.path = path;
+            this.mimeType = mimeType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.identity = identity;
+            this.brotli = brotli;
+            this.gzip = gzip;
+        }
+
+
+        CachedResource withVariants(ByteBuffer brotli, ByteBuffer gzip) {
+            return new CachedResource(path, mimeType, etag, lastModified, identity, brotli, gzip);
+        }
+
+
+        String path() { return path; }
+        String mimeType() { return mimeType; }
+        String etag() { return etag; }
+        long lastModified() { return lastModified; }
+        ByteBuffer identity() { return identity; }
+        ByteBuffer brotli() { return brotli; }
+        ByteBuffer gzip() { return gzip; }
+
+
+        long totalBytes() {
+            return identity.capacity()
+                    + (brotli == null ? 0 : brotli.capacity())
+                    + (gzip == null ? 0 : gzip.capacity());
+        }
+    }
+
+}
@@ -16,172 +16,143 @@
  *
  */
 
+
 package com.khartec.waltz.web.endpoints.api;
 
 import com.khartec.waltz.web.endpoints.Endpoint;
+import com.khartec.waltz.web.endpoints.api.StaticResourceCache.CachedResource;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 import spark.Spark;
 
-import java.io.*;
-import java.net.URL;
-import java.util.List;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
-import static com.khartec.waltz.common.IOUtilities.copyStream;
-import static com.khartec.waltz.common.IOUtilities.readLines;
-import static com.khartec.waltz.common.StringUtilities.lower;
-import static com.khartec.waltz.common.StringUtilities.notEmpty;
 import static com.khartec.waltz.web.WebUtilities.getMimeType;
-import static java.lang.String.format;
+import static com.khartec.waltz.web.endpoints.api.StaticResourceCache.acceptsEncoding;
 
 public class StaticResourcesEndpoint implements Endpoint {
 
     private static final Logger LOG = LoggerFactory.getLogger(StaticResourcesEndpoint.class);
     private static final String CACHE_MAX_AGE_VALUE = "max-age=" + TimeUnit.DAYS.toSeconds(30);
+    private static final String CACHE_NO_CACHE_VALUE = "no-cache";
 
 
-    private final ClassLoader classLoader = StaticResourcesEndpoint.class
-            .getClassLoader();
+    private final StaticResourceCache cache = new StaticResourceCache(
+            StaticResourcesEndpoint.class.getClassLoader(),
+            path -> getMimeType(path));
 
 
     @Override
     public void register() {
         LOG.debug("Registering static resources");
 
+        cache.load();
+
         Spark.get("/*", (request, response) -> {
 
-            String resolvedPath = resolvePath(request);
+            String path = request.pathInfo().replaceFirst("/", "");
+            Optional<CachedResource> resource = cache.resolve(path, request.contextPath());
 
-            if (resolvedPath == null) {
+            if (! resource.isPresent()) {
                 return null;
             }
 
-            try (
-                InputStream resourceAsStream = classLoader.getResourceAsStream(resolvedPath)
-            ) {
-                if (resourceAsStream == null) {
-                    return null;
-                } else {
-                    String message = format(
-                            "Serving %s in response to request for %s",
-                            resolvedPath,
-                            request.pathInfo());
-                    LOG.info(message);
-
-                    response.type(getMimeType(resolvedPath));
-
-                    addCacheHeadersIfNeeded(response, resolvedPath);
-                    InputStream modifiedStream = modifyIndexBaseTagIfNeeded(request, resolvedPath, resourceAsStream);
-
-                    OutputStream out = response
-                            .raw()
-                            .getOutputStream();
-                    copyStream(modifiedStream, out);
-                    out.flush();
-
-                    return new Object(); // indicate we have handled the request
-                }
+            try {
+                LOG.debug("Serving {} in response to request for {}", resource.get().path(), request.pathInfo());
+                serve(request, response, resource.get());
+                return ""; // response has been committed, nothing more for spark to write
             } catch (Exception e) {
-                LOG.warn("Encountered error when attempting to serve: "+resolvedPath, e);
+                LOG.warn("Encountered error when attempting to serve: " + resource.get().path(), e);
                 return null;
             }
         });
     }
 
 
-    /**
-     * We want to add a cache-control: max-age value to all resources except html.
-     * This is because the html resources have references to 'cache-busted' js files
-     * and other resources.  If the html was also cached then it would be difficult
-     * to detect client code updates.
-     *
-     * @param response - the http response we are servicing
-     * @param resolvedPath - the resolved path to the resource we are serving
-     */
-    private void addCacheHeadersIfNeeded(Response response, String resolvedPath) {
-        if (! resolvedPath.endsWith(".html")) {
-            response.header(HttpHeader.CACHE_CONTROL.toString(), CACHE_MAX_AGE_VALUE);
-        }
-    }
+    private void serve(Request request,
+                       Response response,
+                       CachedResource resource) throws IOException {
+        HttpServletResponse raw = response.raw();
 
+        String acceptEncoding = request.headers(HttpHeader.ACCEPT_ENCODING.toString());
+        ByteBuffer content = resource.identity();
+        String encoding = null;
 
-    /**
-     * index.html need to have a <base href="/[site_context]/" /> tag in the head section to ensure
-     * html5 mode works correctly in AngularJS.  This method will ensure the existing <base href="/" /> tag
-     * is replace with one that includes the correct site context as deployed.
-     * @param request
-     * @param resolvedPath
-     * @param resourceStream
-     * @return the modified input stream with the amended <base> tag or the original unmodified resourceStream
-     * @throws IOException
-     */
-    private InputStream modifyIndexBaseTagIfNeeded(Request request,
-                                                   String resolvedPath,
-                                                   InputStream resourceStream) throws IOException {
-        if(resolvedPath.endsWith("index.html") && notEmpty(request.contextPath())) {
-            List<String> lines = readLines(resourceStream);
-
-            for(int i = 0; i < lines.size(); i++) {
-                String line = lower(lines.get(i));
-
-                if (line.contains("<base href=")) {
-                    LOG.info("Found <base> tag: " + line + ", adding context path: " + request.contextPath());
-                    line = String.format("\t<base href=\"%s/\" />", request.contextPath());
-                    LOG.info("Updated <base> tag: " + line);
-                    lines.set(i, line);
-
-                    // done, exit loop
-                    break;
-                }
-
-                if (line.contains("</head>") ) {
-                    // don't need to continue if have reached here and no base tag found
-                    break;
-                }
-            }
+        if (resource.brotli() != null && acceptsEncoding(acceptEncoding, "br")) {
+            content = resource.brotli();
+            encoding = "br";
+        } else if (resource.gzip() != null && acceptsEncoding(acceptEncoding, "gzip")) {
+            content = resource.gzip();
+            encoding = "gzip";
+        }
 
-            // copy amended file into a stream
-            try(ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                 OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
+        String etag = encoding == null
+                ? resource.etag()
+                : resource.etag().replaceFirst("\"$", "-" + encoding + "\"");
 
-                for(String line : lines) {
-                    writer.write(line);
-                    writer.write(System.lineSeparator());
-                }
+        raw.setContentType(resource.mimeType());
+        raw.setHeader(HttpHeader.CACHE_CONTROL.toString(), cacheControlFor(resource.path()));
+        raw.setHeader(HttpHeader.ETAG.toString(), etag);
+        raw.setDateHeader(HttpHeader.LAST_MODIFIED.toString(), resource.lastModified());
+        raw.setHeader(HttpHeader.VARY.toString(), HttpHeader.ACCEPT_ENCODING.toString());
 
-                writer.flush();
-                ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-                return inputStream;
-            }
+        if (isNotModified(request, etag, resource.lastModified())) {
+            raw.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            raw.flushBuffer();
+            return;
+        }
+
+        if (encoding != null) {
+            raw.setHeader(HttpHeader.CONTENT_ENCODING.toString(), encoding);
+        }
+        raw.setContentLength(content.remaining());
+
+        ServletOutputStream out = raw.getOutputStream();
+        if (out instanceof HttpOutput) {
+            // jetty writes the (direct) buffer straight to the connection
+            ((HttpOutput) out).sendContent(content.duplicate());
+        } else {
+            Channels.newChannel(out).write(content.duplicate());
+            out.flush();
         }
-        return resourceStream;
     }
 
 
-    private String resolvePath(Request request) {
-        final String indexPath = "static/index.html";
-        String path = request.pathInfo().replaceFirst("/", "");
-        String resourcePath = path.length() > 0 ? ("static/" + path) : indexPath;
+    /**
+     * Html resources reference 'cache-busted' js files and other resources,
+     * if the html was also cached it would be difficult for clients to detect
+     * code updates.  They are therefore always revalidated (cheaply, via the
+     * ETag) whilst everything else may be cached for a while.
+     */
+    private static String cacheControlFor(String resolvedPath) {
+        return resolvedPath.endsWith(".html")
+                ? CACHE_NO_CACHE_VALUE
+                : CACHE_MAX_AGE_VALUE;
+    }
 
-        URL resource = classLoader.getResource(resourcePath);
 
-        if (resource == null) {
-            // 404: return index.html
-            resource = classLoader.getResource(indexPath);
-            resourcePath = indexPath;
+    private static boolean isNotModified(Request request, String etag, long lastModified) {
+        String ifNoneMatch = request.headers(HttpHeader.IF_NONE_MATCH.toString());
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*");
         }
 
-        boolean isDirectory = resource
-                .getPath()
-                .endsWith("/");
-
-        return isDirectory
-                ? resourcePath + "/index.html"
-                : resourcePath;
+        try {
+            long ifModifiedSince = request.raw().getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString());
+            return ifModifiedSince != -1 && ifModifiedSince >= (lastModified / 1000) * 1000;
+        } catch (IllegalArgumentException e) {
+            return false; // unparseable date, just send the content
+        }
     }
 
 }
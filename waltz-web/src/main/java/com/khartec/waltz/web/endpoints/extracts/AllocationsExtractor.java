@@ -29,7 +29,6 @@ import org.springframework.stereotype.Service;
 
 import static com.khartec.waltz.schema.Tables.*;
 import static com.khartec.waltz.web.WebUtilities.*;
-import static spark.Spark.post;
 
 
 
@@ -54,7 +53,7 @@ public class AllocationsExtractor extends DirectQueryBasedDataExtractor {
 
 
     private void registerExtractForAll(String path) {
-        post(path, (request, response) -> {
+        postExtract(path, (request, response) -> {
             IdSelectionOptions idSelectionOptions = readIdSelectionOptionsFromBody(request);
             SelectConditionStep<Record> qry = prepareQuery(
                     DSL.trueCondition(),
@@ -70,7 +69,7 @@ public class AllocationsExtractor extends DirectQueryBasedDataExtractor {
 
 
     private void registerExtractForCategory(String path) {
-        post(path, (request, response) -> {
+        postExtract(path, (request, response) -> {
 
             long measurableCategoryId = getLong(request, "measurableCategoryId");
 
@@ -96,7 +95,7 @@ public class AllocationsExtractor extends DirectQueryBasedDataExtractor {
 
 
     private void registerExtractForScheme(String path) {
-        post(path, (request, response) -> {
+        postExtract(path, (request, response) -> {
 
             long schemeId = getLong(request, "schemeId");
 
@@ -35,7 +35,6 @@ import static com.khartec.waltz.schema.Tables.APPLICATION;
 import static com.khartec.waltz.schema.tables.AssetCost.ASSET_COST;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
 import static com.khartec.waltz.web.WebUtilities.readIdSelectionOptionsFromBody;
-import static spark.Spark.post;
 
 
 @Service
@@ -53,7 +52,7 @@ public class ApplicationCostExtractor extends DirectQueryBasedDataExtractor {
 
     @Override
     public void register() {
-        post(mkPath("data-extract", "app-cost", "by-selector"), (request, response) -> {
+        postExtract(mkPath("data-extract", "app-cost", "by-selector"), (request, response) -> {
             IdSelectionOptions idSelectionOptions = readIdSelectionOptionsFromBody(request);
             Select<Record1<Long>> idSelector = applicationIdSelectorFactory.apply(idSelectionOptions);
             Condition condition =
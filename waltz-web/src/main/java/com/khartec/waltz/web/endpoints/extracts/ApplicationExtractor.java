@@ -32,7 +32,6 @@ import static com.khartec.waltz.schema.Tables.APPLICATION;
 import static com.khartec.waltz.schema.Tables.ORGANISATIONAL_UNIT;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
 import static com.khartec.waltz.web.WebUtilities.readIdSelectionOptionsFromBody;
-import static spark.Spark.post;
 
 
 @Service
@@ -50,7 +49,7 @@ public class ApplicationExtractor extends DirectQueryBasedDataExtractor {
 
     @Override
     public void register() {
-        post(mkPath("data-extract", "application", "by-selector"), (request, response) -> {
+        postExtract(mkPath("data-extract", "application", "by-selector"), (request, response) -> {
             IdSelectionOptions idSelectionOptions = readIdSelectionOptionsFromBody(request);
             Select<Record1<Long>> idSelector = applicationIdSelectorFactory.apply(idSelectionOptions);
             Condition condition =
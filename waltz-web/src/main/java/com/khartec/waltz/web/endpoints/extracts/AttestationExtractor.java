@@ -36,8 +36,6 @@ import static com.khartec.waltz.schema.tables.AttestationInstance.ATTESTATION_IN
 import static com.khartec.waltz.schema.tables.AttestationInstanceRecipient.ATTESTATION_INSTANCE_RECIPIENT;
 import static com.khartec.waltz.schema.tables.AttestationRun.ATTESTATION_RUN;
 import static com.khartec.waltz.web.WebUtilities.*;
-import static spark.Spark.get;
-import static spark.Spark.post;
 
 
 @Service
@@ -62,7 +60,7 @@ public class AttestationExtractor extends DirectQueryBasedDataExtractor {
 
     private void registerExtractForAttestedEntityKindAndSelector(String path) {
 
-        post(path, (request, response) -> {
+        postExtract(path, (request, response) -> {
 
             IdSelectionOptions idSelectionOptions = readIdSelectionOptionsFromBody(request);
             Select<Record1<Long>> appIds = applicationIdSelectorFactory.apply(idSelectionOptions);
@@ -128,7 +126,7 @@ public class AttestationExtractor extends DirectQueryBasedDataExtractor {
 
     private void registerExtractForRun(String path) {
 
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
             long runId = getId(request);
 
             String runName = dsl
@@ -28,7 +28,6 @@ import java.sql.Timestamp;
 import static com.khartec.waltz.schema.Tables.CHANGE_LOG;
 import static com.khartec.waltz.web.WebUtilities.getEntityReference;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.post;
 
 
 @Service
@@ -44,7 +43,7 @@ public class ChangeLogExtractor extends DirectQueryBasedDataExtractor {
         registerExtractForApp( mkPath("data-extract", "change-log", ":kind", ":id"));
     }
 
-    private void registerExtractForApp(String path) { post(path, (request, response) -> {
+    private void registerExtractForApp(String path) { postExtract(path, (request, response) -> {
 
             EntityReference entityRef = getEntityReference(request);
             Condition condition = CHANGE_LOG.PARENT_ID.eq(entityRef.id())
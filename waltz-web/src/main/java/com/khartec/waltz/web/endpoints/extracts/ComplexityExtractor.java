@@ -33,7 +33,6 @@ import static com.khartec.waltz.schema.Tables.APPLICATION;
 import static com.khartec.waltz.schema.Tables.COMPLEXITY_SCORE;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
 import static com.khartec.waltz.web.WebUtilities.readIdSelectionOptionsFromBody;
-import static spark.Spark.post;
 
 
 @Service
@@ -53,7 +52,7 @@ public class ComplexityExtractor extends DirectQueryBasedDataExtractor {
     public void register() {
 
         String path = mkPath("data-extract", "complexity", "all");
-        post(path, (request, response) -> {
+        postExtract(path, (request, response) -> {
             IdSelectionOptions applicationIdSelectionOptions = readIdSelectionOptionsFromBody(request);
             Select<Record1<Long>> selector = applicationIdSelectorFactory.apply(applicationIdSelectionOptions);
 
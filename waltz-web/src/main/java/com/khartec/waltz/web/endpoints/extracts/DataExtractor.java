@@ -1,15 +1,19 @@
 package com.khartec.waltz.web.endpoints.extracts;
 
+import com.khartec.waltz.web.admission.AdmissionClass;
+import com.khartec.waltz.web.batch.RouteRegistry;
 import org.eclipse.jetty.http.MimeTypes;
 import org.jooq.lambda.tuple.Tuple3;
 import spark.Request;
 import spark.Response;
+import spark.Route;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 import static com.khartec.waltz.common.EnumUtilities.readEnum;
 import static com.khartec.waltz.common.StringUtilities.mkSafe;
+import static com.khartec.waltz.web.admission.AdmissionControl.admit;
 
 /**
  * Represents classes which are used for Data Extraction.
@@ -19,6 +23,24 @@ public interface DataExtractor {
     void register();
 
 
+    /**
+     * Registers an extract route, subject to the
+     * {@link AdmissionClass#EXTRACT} concurrency limits.
+     */
+    default void getExtract(String path, Route route) {
+        RouteRegistry.get(path, admit(AdmissionClass.EXTRACT, route));
+    }
+
+
+    /**
+     * Registers an extract route, subject to the
+     * {@link AdmissionClass#EXTRACT} concurrency limits.
+     */
+    default void postExtract(String path, Route route) {
+        RouteRegistry.post(path, admit(AdmissionClass.EXTRACT, route));
+    }
+
+
     /**
      * Reads the extract format from the web request.  Expects as a param with the
      * name `format`.  E.g. `my-extract?format=XLSX`
@@ -19,7 +19,6 @@ import static com.khartec.waltz.schema.tables.ChangeInitiative.CHANGE_INITIATIVE
 import static com.khartec.waltz.schema.tables.EntityRelationship.ENTITY_RELATIONSHIP;
 import static com.khartec.waltz.schema.tables.Measurable.MEASURABLE;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 @Service
 public class EntityRelationshipsExtractor extends DirectQueryBasedDataExtractor{
@@ -38,7 +37,7 @@ public class EntityRelationshipsExtractor extends DirectQueryBasedDataExtractor{
 
 
     private void registerExtractForCItoMeasurable(String path) {
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
 
             Condition condition = getCondition(request);
             List<Long> involvementKindsIds = getInvolvementKinds(request);
@@ -35,7 +35,6 @@ import static com.khartec.waltz.schema.Tables.LICENCE;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.web.WebUtilities.getEntityReference;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -52,7 +51,7 @@ public class LicencesExtractor extends DirectQueryBasedDataExtractor {
     @Override
     public void register() {
         String path = mkPath("data-extract", "licences", ":kind", ":id");
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
 
             EntityReference entityRef = getEntityReference(request);
 
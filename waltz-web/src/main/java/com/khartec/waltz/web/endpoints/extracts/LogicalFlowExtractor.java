@@ -36,7 +36,6 @@ import static com.khartec.waltz.schema.tables.LogicalFlow.LOGICAL_FLOW;
 import static com.khartec.waltz.schema.tables.OrganisationalUnit.ORGANISATIONAL_UNIT;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
 import static com.khartec.waltz.web.WebUtilities.readIdSelectionOptionsFromBody;
-import static spark.Spark.post;
 
 
 @Service
@@ -63,7 +62,7 @@ public class LogicalFlowExtractor extends DirectQueryBasedDataExtractor {
 
     @Override
     public void register() {
-        post(mkPath("data-extract", "logical-flows"), (request, response) -> {
+        postExtract(mkPath("data-extract", "logical-flows"), (request, response) -> {
             IdSelectionOptions options = readIdSelectionOptionsFromBody(request);
             SelectConditionStep<Record> qry = prepareQuery(dsl, options);
             return writeExtract("logical-flows", qry, request, response);
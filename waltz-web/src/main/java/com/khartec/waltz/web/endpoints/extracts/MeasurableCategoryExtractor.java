@@ -37,7 +37,6 @@ import static com.khartec.waltz.schema.tables.MeasurableCategory.MEASURABLE_CATE
 import static com.khartec.waltz.schema.tables.Person.PERSON;
 import static com.khartec.waltz.web.WebUtilities.getId;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -56,7 +55,7 @@ public class MeasurableCategoryExtractor extends DirectQueryBasedDataExtractor {
     public void register() {
 
         String path = mkPath("data-extract", "measurable-category", ":id");
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
             long categoryId = getId(request);
             String categoryName = dsl
                     .select(MEASURABLE_CATEGORY.NAME)
@@ -21,7 +21,6 @@ import static com.khartec.waltz.model.EntityLinkUtilities.mkExternalIdLink;
 import static com.khartec.waltz.model.EntityLinkUtilities.mkIdLink;
 import static com.khartec.waltz.web.WebUtilities.getLong;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -46,7 +45,7 @@ public class NavAidExtractor extends BinaryDataBasedDataExtractor {
     public void register() {
         String path = mkPath("data-extract", "nav-aid", ":svgDiagramId");
 
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
             Long diagramId = getLong(request,"svgDiagramId");
 
             SvgDiagram diagram = svgDiagramService.getById(diagramId);
@@ -39,7 +39,6 @@ import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.schema.tables.LogicalFlow.LOGICAL_FLOW;
 import static com.khartec.waltz.schema.tables.PhysicalSpecification.PHYSICAL_SPECIFICATION;
 import static com.khartec.waltz.web.WebUtilities.*;
-import static spark.Spark.post;
 
 
 @Service
@@ -95,19 +94,19 @@ public class PhysicalFlowExtractor extends DirectQueryBasedDataExtractor {
 
     @Override
     public void register() {
-        post(mkPath("data-extract", "physical-flows", "produces", ":kind", ":id"), (request, response) -> {
+        postExtract(mkPath("data-extract", "physical-flows", "produces", ":kind", ":id"), (request, response) -> {
             EntityReference ref = getEntityReference(request);
             SelectConditionStep<?> qry = prepareProducesQuery(ref);
             return writeExtract("physical-flows-produces-" + ref.id(), qry, request, response);
         });
 
-        post(mkPath("data-extract", "physical-flows", "consumes", ":kind", ":id"), (request, response) -> {
+        postExtract(mkPath("data-extract", "physical-flows", "consumes", ":kind", ":id"), (request, response) -> {
             EntityReference ref = getEntityReference(request);
             SelectConditionStep<?> qry = prepareConsumesQuery(ref);
             return writeExtract("physical-flows-consumes-" + ref.id(), qry, request, response);
         });
 
-        post(mkPath("data-extract", "physical-flows", "by-selector"), (request, response) -> {
+        postExtract(mkPath("data-extract", "physical-flows", "by-selector"), (request, response) -> {
             IdSelectionOptions idSelectionOptions = readIdSelectionOptionsFromBody(request);
             Select<Record1<Long>> idSelector = physicalFlowIdSelectorFactory.apply(idSelectionOptions);
             Condition condition =
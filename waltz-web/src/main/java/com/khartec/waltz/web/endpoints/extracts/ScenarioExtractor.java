@@ -37,7 +37,6 @@ import static com.khartec.waltz.schema.Tables.*;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.web.WebUtilities.getId;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -53,7 +52,7 @@ public class ScenarioExtractor extends DirectQueryBasedDataExtractor {
 
     @Override
     public void register() {
-        get(mkPath("data-extract", "scenario", ":id"), this::extract);
+        getExtract(mkPath("data-extract", "scenario", ":id"), this::extract);
     }
 
 
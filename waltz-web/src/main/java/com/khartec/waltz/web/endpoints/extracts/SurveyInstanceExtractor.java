@@ -63,7 +63,6 @@ import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 import static org.jooq.lambda.fi.util.function.CheckedConsumer.unchecked;
 import static org.jooq.lambda.tuple.Tuple.tuple;
-import static spark.Spark.get;
 
 @Service
 public class SurveyInstanceExtractor implements DataExtractor {
@@ -115,7 +114,7 @@ public class SurveyInstanceExtractor implements DataExtractor {
 
 
     private void registerRunBasedExtract() {
-        get(mkPath(BASE_URL, "run-id", ":id"),
+        getExtract(mkPath(BASE_URL, "run-id", ":id"),
             (request, response) ->
                 writeReportResults(
                     response,
@@ -128,7 +127,7 @@ public class SurveyInstanceExtractor implements DataExtractor {
 
 
     private void registerTemplateBasedExtract() {
-        get(mkPath(BASE_URL, "template-id", ":id"),
+        getExtract(mkPath(BASE_URL, "template-id", ":id"),
             (request, response) ->
                 writeReportResults(
                     response,
@@ -41,7 +41,6 @@ import static com.khartec.waltz.schema.Tables.*;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.web.WebUtilities.*;
 import static java.lang.String.format;
-import static spark.Spark.get;
 
 
 @Service
@@ -92,7 +91,7 @@ public class SurveyRunExtractor extends DirectQueryBasedDataExtractor {
         String surveyInstanceResponsesPath = mkPath("data-extract", "survey-run-response", "instance", ":id");
         String surveyRunResponsesPath = mkPath("data-extract", "survey-run-response", ":id");
 
-        get(surveyRunPath, (request, response) -> {
+        getExtract(surveyRunPath, (request, response) -> {
             long runId = getId(request);
 
             LOG.info("Survey run has been exported successfully");
@@ -103,7 +102,7 @@ public class SurveyRunExtractor extends DirectQueryBasedDataExtractor {
                     response);
         });
 
-        get(surveyInstanceResponsesPath, (request, response) -> {
+        getExtract(surveyInstanceResponsesPath, (request, response) -> {
             long instanceId = getId(request);
 
             LOG.info("Survey instance with responses has been exported successfully");
@@ -114,7 +113,7 @@ public class SurveyRunExtractor extends DirectQueryBasedDataExtractor {
                     response);
         });
 
-        get(surveyRunResponsesPath, (request, response) -> {
+        getExtract(surveyRunResponsesPath, (request, response) -> {
             long runId = getId(request);
 
             LOG.info("Survey run with responses has been exported successfully");
@@ -125,7 +124,7 @@ public class SurveyRunExtractor extends DirectQueryBasedDataExtractor {
                     response);
         });
         
-        get(surveysForEntityPath, (request, response) -> {
+        getExtract(surveysForEntityPath, (request, response) -> {
             EntityReference ref = getEntityReference(request);
             
             LOG.info("Survey information for entity has been exported successfully");
@@ -35,7 +35,6 @@ import static com.khartec.waltz.schema.Tables.ORGANISATIONAL_UNIT;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.web.WebUtilities.getEntityReference;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -58,7 +57,7 @@ public class TechnologyEOLDatabaseExtractor extends DirectQueryBasedDataExtracto
     @Override
     public void register() {
         String path = mkPath("data-extract", "technology-database", ":kind", ":id");
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
             EntityReference ref = getReference(request);
             Select<Record1<Long>> appIdSelector = applicationIdSelectorFactory.apply(mkOpts(ref));
 
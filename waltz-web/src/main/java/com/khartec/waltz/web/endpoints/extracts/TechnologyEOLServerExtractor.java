@@ -32,7 +32,6 @@ import static com.khartec.waltz.schema.Tables.*;
 import static com.khartec.waltz.schema.tables.Application.APPLICATION;
 import static com.khartec.waltz.web.WebUtilities.getEntityReference;
 import static com.khartec.waltz.web.WebUtilities.mkPath;
-import static spark.Spark.get;
 
 
 @Service
@@ -54,7 +53,7 @@ public class TechnologyEOLServerExtractor extends DirectQueryBasedDataExtractor
     @Override
     public void register() {
         String path = mkPath("data-extract", "technology-server", ":kind", ":id");
-        get(path, (request, response) -> {
+        getExtract(path, (request, response) -> {
             EntityReference ref = getReference(request);
             Select<Record1<Long>> appIdSelector = applicationIdSelectorFactory.apply(mkOpts(ref));
 
@@ -0,0 +1,267 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+
+
+/**
+ * Runs long-running requests (those whose path starts with one of the
+ * configured {@link ServerSettings#asyncPaths()}) on a separate executor
+ * using the servlet async api.
+ *
+ * The Jetty thread which accepted the request is returned to the pool
+ * straight away rather than waiting whilst, for example, an extract is
+ * produced.  The whole Spark pipeline (filters, route, exception mapping
+ * and serialization) still runs, just on the async executor, so routes
+ * need no changes.  If the executor is full the request is rejected with
+ * a 503, if it waits in the queue past the timeout it is failed with a 503.
+ *
+ * Once a request has started running only the worker completes it: the
+ * request and response are recycled on completion so completing them from
+ * another thread whilst the route is still writing is not safe.  For the
+ * same reason the container's async timeout is disabled and queued
+ * requests are expired by our own timer instead.
+ */
+class AsyncDispatchHandler extends HandlerWrapper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDispatchHandler.class);
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    private final List<String> pathPrefixes;
+    private final int threads;
+    private final int maxQueued;
+    private final long timeoutMillis;
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile ScheduledThreadPoolExecutor timer;
+
+
+    AsyncDispatchHandler(Handler handler, ServerSettings settings) {
+        checkNotNull(handler, "handler cannot be null");
+        checkNotNull(settings, "settings cannot be null");
+
+        this.pathPrefixes = settings.asyncPaths();
+        this.threads = settings.asyncThreads();
+        this.maxQueued = settings.asyncMaxQueued();
+        this.timeoutMillis = settings.asyncTimeoutMillis();
+        setHandler(handler);
+    }
+
+
+    @Override
+    protected void doStart() throws Exception {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(maxQueued, 1)),
+                (runnable) -> {
+                    Thread t = new Thread(runnable, "waltz-async-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        timer = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+            Thread t = new Thread(runnable, "waltz-async-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+
+        LOG.info("Async dispatch enabled for {}, threads: {}, queue: {}", pathPrefixes, threads, maxQueued);
+        super.doStart();
+    }
+
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        timer.shutdownNow();
+        executor.shutdown();
+        if (! executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Override
+    public void handle(String target,
+                       Request baseRequest,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException, ServletException {
+        if (! isAsyncTarget(target, request)) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        baseRequest.setHandled(true);
+
+        AsyncRequest asyncRequest = new AsyncRequest(target, baseRequest, request, response, asyncContext);
+        if (timeoutMillis > 0) {
+            asyncRequest.expiry = timer.schedule(asyncRequest::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            executor.execute(asyncRequest);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Async executor is full, rejecting: {}", target);
+            asyncRequest.cancelExpiry();
+            asyncRequest.fail();
+        }
+    }
+
+
+    // -- helpers ---
+
+    private boolean isAsyncTarget(String target, HttpServletRequest request) {
+        if (target == null || request.getDispatcherType() != DispatcherType.REQUEST || ! isStarted()) {
+            return false;
+        }
+        for (String prefix : pathPrefixes) {
+            if (target.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void runRoute(String target,
+                          Request baseRequest,
+                          HttpServletRequest request,
+                          HttpServletResponse response) {
+        try {
+            super.handle(target, baseRequest, request, response);
+        } catch (Exception e) {
+            LOG.error("Failed to handle async request: {}", target, e);
+            if (! response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+
+    /**
+     * A request handed to the executor.  It moves from QUEUED to either
+     * RUNNING (picked up by a worker) or DONE (rejected or expired whilst
+     * queued), whichever claims it first is then responsible for
+     * completing it.
+     */
+    private class AsyncRequest implements Runnable {
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final String target;
+        private final Request baseRequest;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final AsyncContext asyncContext;
+
+        private volatile ScheduledFuture<?> expiry;
+
+
+        AsyncRequest(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response,
+                     AsyncContext asyncContext) {
+            this.target = target;
+            this.baseRequest = baseRequest;
+            this.request = request;
+            this.response = response;
+            this.asyncContext = asyncContext;
+        }
+
+
+        @Override
+        public void run() {
+            if (! state.compareAndSet(QUEUED, RUNNING)) {
+                return; // expired whilst queued, already answered
+            }
+            cancelExpiry();
+            try {
+                runRoute(target, baseRequest, request, response);
+            } finally {
+                state.set(DONE);
+                asyncContext.complete();
+            }
+        }
+
+
+        void expire() {
+            if (fail()) {
+                LOG.warn("Async request waited too long for a thread, rejecting: {}", target);
+                executor.remove(this);
+            }
+        }
+
+
+        boolean fail() {
+            if (! state.compareAndSet(QUEUED, DONE)) {
+                return false;
+            }
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+            return true;
+        }
+
+
+        void cancelExpiry() {
+            ScheduledFuture<?> pendingExpiry = expiry;
+            if (pendingExpiry != null) {
+                pendingExpiry.cancel(false);
+            }
+        }
+
+    }
+
+}
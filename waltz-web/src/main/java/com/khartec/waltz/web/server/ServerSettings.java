@@ -0,0 +1,229 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static com.khartec.waltz.common.StringUtilities.isEmpty;
+
+
+/**
+ * Settings for the embedded Jetty server.
+ *
+ * These are needed before the Spring context exists so are read directly
+ * from the same places as the rest of the configuration:
+ * <code>waltz.properties</code> on the classpath, then
+ * <code>~/.waltz/waltz.properties</code>, then system properties (each
+ * overriding the previous).  Unset values keep the behaviour Waltz had
+ * before they were configurable.
+ *
+ * They have no effect when Waltz is deployed as a war, the container's own
+ * configuration applies instead.
+ */
+public class ServerSettings {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServerSettings.class);
+
+    private static final String PREFIX = "waltz.server.";
+
+    private final int maxThreads;
+    private final int minThreads;
+    private final int threadIdleTimeoutMillis;
+    private final int maxQueuedRequests;
+    private final int acceptors;
+    private final int selectors;
+    private final int acceptQueueSize;
+    private final long idleTimeoutMillis;
+    private final int requestHeaderSize;
+    private final int responseHeaderSize;
+    private final int outputBufferSize;
+    private final boolean asyncEnabled;
+    private final List<String> asyncPaths;
+    private final int asyncThreads;
+    private final int asyncMaxQueued;
+    private final long asyncTimeoutMillis;
+
+
+    ServerSettings(Properties props) {
+        this.maxThreads = readInt(props, "threads.max", 200);
+        this.minThreads = readInt(props, "threads.min", 8);
+        this.threadIdleTimeoutMillis = readInt(props, "threads.idleTimeoutMillis", 60_000);
+        this.maxQueuedRequests = readInt(props, "threads.maxQueued", 0);
+        this.acceptors = readInt(props, "acceptors", -1);
+        this.selectors = readInt(props, "selectors", -1);
+        this.acceptQueueSize = readInt(props, "acceptQueueSize", 0);
+        this.idleTimeoutMillis = readLong(props, "idleTimeoutMillis", 3_600_000);
+        this.requestHeaderSize = readInt(props, "requestHeaderSize", 8192);
+        this.responseHeaderSize = readInt(props, "responseHeaderSize", 8192);
+        this.outputBufferSize = readInt(props, "outputBufferSize", 32768);
+        this.asyncEnabled = Boolean.parseBoolean(read(props, "async.enabled", "false"));
+        this.asyncPaths = readList(props, "async.paths", "/data-extract/,/api/entity-search");
+        this.asyncThreads = readInt(props, "async.threads", 32);
+        this.asyncMaxQueued = readInt(props, "async.maxQueued", 200);
+        this.asyncTimeoutMillis = readLong(props, "async.timeoutMillis", 300_000);
+    }
+
+
+    public static ServerSettings load() {
+        Properties props = new Properties();
+        loadFromClasspath(props, "waltz.properties");
+        loadFromFile(props, Paths.get(System.getProperty("user.home"), ".waltz", "waltz.properties"));
+        props.putAll(System.getProperties());
+        return new ServerSettings(props);
+    }
+
+
+    /** Most threads Jetty will use to handle requests */
+    public int maxThreads() { return maxThreads; }
+
+    public int minThreads() { return minThreads; }
+
+    public int threadIdleTimeoutMillis() { return threadIdleTimeoutMillis; }
+
+    /** Jobs which may wait for a Jetty thread, 0 for unbounded */
+    public int maxQueuedRequests() { return maxQueuedRequests; }
+
+    /** Acceptor threads per connector, -1 for Jetty's default */
+    public int acceptors() { return acceptors; }
+
+    /** Selector threads per connector, -1 for Jetty's default */
+    public int selectors() { return selectors; }
+
+    /** Socket backlog, 0 for the OS default */
+    public int acceptQueueSize() { return acceptQueueSize; }
+
+    /** How long a connection may be idle before it is closed */
+    public long idleTimeoutMillis() { return idleTimeoutMillis; }
+
+    public int requestHeaderSize() { return requestHeaderSize; }
+
+    public int responseHeaderSize() { return responseHeaderSize; }
+
+    public int outputBufferSize() { return outputBufferSize; }
+
+    /** Whether requests matching {@link #asyncPaths()} are handed off to a separate executor */
+    public boolean asyncEnabled() { return asyncEnabled; }
+
+    /** Path prefixes of long-running requests, e.g. <code>/data-extract/</code> */
+    public List<String> asyncPaths() { return asyncPaths; }
+
+    public int asyncThreads() { return asyncThreads; }
+
+    public int asyncMaxQueued() { return asyncMaxQueued; }
+
+    /** How long an async request may wait for a thread before it is failed, 0 to wait indefinitely */
+    public long asyncTimeoutMillis() { return asyncTimeoutMillis; }
+
+
+    public boolean customisesConnector() {
+        return acceptors >= 0 || selectors >= 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return "threads: " + minThreads + "-" + maxThreads
+                + " (queue: " + (maxQueuedRequests > 0 ? maxQueuedRequests : "unbounded") + ")"
+                + ", acceptors: " + acceptors
+                + ", selectors: " + selectors
+                + ", idle timeout: " + idleTimeoutMillis + "ms"
+                + ", request header: " + requestHeaderSize
+                + ", output buffer: " + outputBufferSize
+                + ", async: " + (asyncEnabled
+                    ? asyncPaths + " (threads: " + asyncThreads + ", queue: " + asyncMaxQueued + ")"
+                    : "disabled");
+    }
+
+
+    // -- helpers ---
+
+    private static void loadFromClasspath(Properties props, String name) {
+        try (InputStream is = ServerSettings.class.getClassLoader().getResourceAsStream(name)) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not read {} from classpath: {}", name, e.getMessage());
+        }
+    }
+
+
+    private static void loadFromFile(Properties props, Path path) {
+        if (! Files.isReadable(path)) {
+            return;
+        }
+        try (InputStream is = Files.newInputStream(path)) {
+            props.load(is);
+        } catch (IOException e) {
+            LOG.warn("Could not read {}: {}", path, e.getMessage());
+        }
+    }
+
+
+    private static String read(Properties props, String name, String dflt) {
+        String value = props.getProperty(PREFIX + name);
+        return isEmpty(value)
+                ? dflt
+                : value.trim();
+    }
+
+
+    private static int readInt(Properties props, String name, int dflt) {
+        return (int) readLong(props, name, dflt);
+    }
+
+
+    private static long readLong(Properties props, String name, long dflt) {
+        String value = read(props, name, null);
+        if (value == null) {
+            return dflt;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid value for {}{}: '{}', using {}", PREFIX, name, value, dflt);
+            return dflt;
+        }
+    }
+
+
+    private static List<String> readList(Properties props, String name, String dflt) {
+        String value = read(props, name, dflt);
+        return Collections.unmodifiableList(Arrays
+                .stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> ! s.isEmpty())
+                .map(s -> s.startsWith("/") ? s : "/" + s)
+                .collect(Collectors.toList()));
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.Arrays;
+
+
+/**
+ * Spark builds its own connector and handler and hands them to the server,
+ * this intercepts them so the configured connector settings and async
+ * dispatching can be applied without replacing Spark's server setup.
+ */
+class WaltzJettyServer extends Server {
+
+    private final ServerSettings settings;
+
+
+    WaltzJettyServer(ThreadPool threadPool, ServerSettings settings) {
+        super(threadPool);
+        this.settings = settings;
+    }
+
+
+    @Override
+    public void setConnectors(Connector[] connectors) {
+        super.setConnectors(connectors == null
+                ? null
+                : Arrays.stream(connectors)
+                    .map(this::tune)
+                    .toArray(Connector[]::new));
+    }
+
+
+    @Override
+    public void setHandler(Handler handler) {
+        super.setHandler(settings.asyncEnabled() && handler != null
+                ? new AsyncDispatchHandler(handler, settings)
+                : handler);
+    }
+
+
+    // -- helpers ---
+
+    private Connector tune(Connector connector) {
+        if (! (connector instanceof ServerConnector)) {
+            return connector;
+        }
+
+        ServerConnector original = (ServerConnector) connector;
+        ServerConnector tuned = settings.customisesConnector()
+                ? rebuild(original)
+                : original;
+
+        tuned.setIdleTimeout(settings.idleTimeoutMillis());
+        tuned.setAcceptQueueSize(settings.acceptQueueSize());
+
+        HttpConnectionFactory httpFactory = tuned.getConnectionFactory(HttpConnectionFactory.class);
+        if (httpFactory != null) {
+            HttpConfiguration httpConfig = httpFactory.getHttpConfiguration();
+            httpConfig.setRequestHeaderSize(settings.requestHeaderSize());
+            httpConfig.setResponseHeaderSize(settings.responseHeaderSize());
+            httpConfig.setOutputBufferSize(settings.outputBufferSize());
+        }
+
+        return tuned;
+    }
+
+
+    /**
+     * Acceptor and selector counts can only be given when a connector is
+     * constructed, so an equivalent connector is made sharing the original's
+     * connection factories (which include any SSL configuration).
+     */
+    private ServerConnector rebuild(ServerConnector original) {
+        ServerConnector connector = new ServerConnector(
+                this,
+                settings.acceptors(),
+                settings.selectors(),
+                original.getConnectionFactories().toArray(new ConnectionFactory[0]));
+        connector.setHost(original.getHost());
+        connector.setPort(original.getPort());
+        connector.setReuseAddress(original.getReuseAddress());
+        return connector;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+import static com.khartec.waltz.common.Checks.checkNotNull;
+
+
+/**
+ * Creates the embedded Jetty server used by Spark, applying the
+ * thread pool, connector and async settings from {@link ServerSettings}.
+ *
+ * Register before any routes are mapped, e.g.
+ * <pre>
+ *   EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+ *                       new EmbeddedJettyFactory(new WaltzJettyServerFactory(settings)));
+ * </pre>
+ */
+public class WaltzJettyServerFactory implements JettyServerFactory {
+
+    private final ServerSettings settings;
+
+
+    public WaltzJettyServerFactory(ServerSettings settings) {
+        checkNotNull(settings, "settings cannot be null");
+        this.settings = settings;
+    }
+
+
+    /**
+     * Spark passes its own thread pool defaults here, they are
+     * replaced by the configured settings.
+     */
+    @Override
+    public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+        QueuedThreadPool threadPool = settings.maxQueuedRequests() > 0
+                ? new QueuedThreadPool(
+                        settings.maxThreads(),
+                        settings.minThreads(),
+                        settings.threadIdleTimeoutMillis(),
+                        new BlockingArrayQueue<>(settings.maxQueuedRequests()))
+                : new QueuedThreadPool(
+                        settings.maxThreads(),
+                        settings.minThreads(),
+                        settings.threadIdleTimeoutMillis());
+        threadPool.setName("waltz-http");
+        return create(threadPool);
+    }
+
+
+    @Override
+    public Server create(ThreadPool threadPool) {
+        return new WaltzJettyServer(threadPool, settings);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web;
+
+import org.junit.Test;
+
+import static com.khartec.waltz.web.ContentFormat.*;
+import static org.junit.Assert.assertEquals;
+
+public class ContentFormat_negotiate {
+
+    @Test
+    public void missingHeaderGivesJson() {
+        assertEquals(JSON, negotiate(null));
+        assertEquals(JSON, negotiate(""));
+    }
+
+    @Test
+    public void wildcardsGiveJson() {
+        assertEquals(JSON, negotiate("*/*"));
+        assertEquals(JSON, negotiate("application/json, text/plain, */*"));
+    }
+
+    @Test
+    public void binaryFormatsCanBeRequested() {
+        assertEquals(SMILE, negotiate("application/x-jackson-smile"));
+        assertEquals(CBOR, negotiate("application/cbor, */*;q=0.8"));
+    }
+
+    @Test
+    public void jsonWinsTies() {
+        assertEquals(JSON, negotiate("application/cbor, application/json"));
+    }
+
+    @Test
+    public void qualityIsRespected() {
+        assertEquals(SMILE, negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(JSON, negotiate("application/x-jackson-smile;q=0"));
+    }
+
+    @Test
+    public void contentTypeParametersAreIgnored() {
+        assertEquals(JSON, fromContentType("application/json; charset=utf-8"));
+        assertEquals(CBOR, fromContentType("application/cbor"));
+        assertEquals(JSON, fromContentType("text/plain"));
+    }
+
+}
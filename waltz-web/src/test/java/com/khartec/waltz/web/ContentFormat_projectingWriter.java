@@ -0,0 +1,56 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web;
+
+import com.khartec.waltz.model.EntityKind;
+import com.khartec.waltz.model.EntityReference;
+import org.junit.Test;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.SetUtilities.asSet;
+import static com.khartec.waltz.model.EntityReference.mkRef;
+import static org.junit.Assert.assertEquals;
+
+public class ContentFormat_projectingWriter {
+
+    private static final EntityReference REF = mkRef(EntityKind.APPLICATION, 1L, "a");
+
+
+    @Test
+    public void listItemsAreRestrictedToRequestedFields() throws Exception {
+        String json = ContentFormat.JSON
+                .projectingWriter(asSet("id"))
+                .writeValueAsString(newArrayList(REF, REF));
+
+        assertEquals("[{\"id\":1},{\"id\":1}]", json);
+    }
+
+
+    @Test
+    public void singleObjectsAreNotRestricted() throws Exception {
+        ContentFormat format = ContentFormat.JSON;
+        String json = format
+                .projectingWriter(asSet("id"))
+                .writeValueAsString(REF);
+
+        assertEquals(format.mapper().writeValueAsString(REF), json);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.admission;
+
+import com.khartec.waltz.model.user.UserUtilities;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionLimiterTest {
+
+    @Test
+    public void perUserLimitWaitsThenGivesTooManyRequests() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.EXTRACT, 4, 4, 1, 50, 5);
+        limiter.acquire("bob");
+
+        assertRejected(limiter, "bob", AdmissionRejectedException.TOO_MANY_REQUESTS);
+
+        limiter.acquire("alice");
+        assertEquals(2, limiter.activeNow());
+        assertEquals(1, limiter.queuedCount());
+        assertEquals(1, limiter.rejectedPerUserCount());
+        assertEquals(0, limiter.queuedNow());
+    }
+
+
+    @Test
+    public void overUserLimitIsAdmittedOnceEarlierRequestFinishes() throws InterruptedException {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.SELECTOR_STATS, 4, 4, 1, 5_000, 5);
+        limiter.acquire("bob");
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            limiter.acquire("bob");
+            admitted.countDown();
+        });
+        waiter.start();
+
+        assertTrue("should be queued", waitForQueued(limiter, 1));
+        assertEquals(1, admitted.getCount());
+
+        limiter.release("bob");
+        assertTrue("should be admitted", admitted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.activeNow());
+        assertEquals(0, limiter.rejectedPerUserCount());
+    }
+
+
+    @Test
+    public void overUserLimitWithFullQueueGivesServiceUnavailable() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.EXTRACT, 4, 0, 1, 0, 5);
+        limiter.acquire("bob");
+
+        assertRejected(limiter, "bob", AdmissionRejectedException.SERVICE_UNAVAILABLE);
+        assertEquals(1, limiter.rejectedQueueFullCount());
+        assertEquals(1, limiter.activeNow());
+    }
+
+
+    @Test
+    public void anonymousUserIsNotLimitedPerUser() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.EXTRACT, 4, 0, 1, 0, 5);
+        limiter.acquire(UserUtilities.ANONYMOUS_USERNAME);
+        limiter.acquire(UserUtilities.ANONYMOUS_USERNAME);
+        limiter.acquire(null);
+
+        assertEquals(3, limiter.activeNow());
+
+        limiter.release(UserUtilities.ANONYMOUS_USERNAME);
+        limiter.release(UserUtilities.ANONYMOUS_USERNAME);
+        limiter.release(null);
+        assertEquals(0, limiter.activeNow());
+    }
+
+
+    @Test
+    public void userSlotIsReturnedWhenClassIsFull() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.MAINTENANCE, 1, 0, 1, 0, 5);
+        limiter.acquire("alice");
+
+        assertRejected(limiter, "bob", AdmissionRejectedException.SERVICE_UNAVAILABLE);
+        limiter.release("alice");
+
+        limiter.acquire("bob");
+        assertEquals(1, limiter.activeNow());
+    }
+
+
+    @Test
+    public void fullQueueGivesServiceUnavailable() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.MAINTENANCE, 1, 0, 1, 0, 5);
+        limiter.acquire("bob");
+
+        assertRejected(limiter, "alice", AdmissionRejectedException.SERVICE_UNAVAILABLE);
+        assertEquals(1, limiter.rejectedQueueFullCount());
+    }
+
+
+    @Test
+    public void releaseFreesPermitAndUserSlot() {
+        AdmissionLimiter limiter = new AdmissionLimiter(AdmissionClass.MAINTENANCE, 1, 0, 1, 0, 5);
+        limiter.acquire("bob");
+        limiter.release("bob");
+
+        limiter.acquire("bob");
+        assertEquals(1, limiter.activeNow());
+        assertEquals(2, limiter.admittedCount());
+    }
+
+
+    private static boolean waitForQueued(AdmissionLimiter limiter, int expected) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (limiter.queuedNow() == expected) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+
+    private static void assertRejected(AdmissionLimiter limiter, String user, int expectedStatus) {
+        try {
+            limiter.acquire(user);
+            fail("expected request to be rejected");
+        } catch (AdmissionRejectedException e) {
+            assertEquals(expectedStatus, e.getStatus());
+            assertEquals(5, e.getRetryAfterSeconds());
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.khartec.waltz.common.exception.DeadlineExceededException;
+import com.khartec.waltz.common.exception.InsufficientPrivelegeException;
+import com.khartec.waltz.common.exception.NotFoundException;
+import com.khartec.waltz.model.batch.BatchRequestItem;
+import com.khartec.waltz.model.batch.BatchResultItem;
+import com.khartec.waltz.model.batch.ImmutableBatchRequestItem;
+import org.junit.Test;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+import spark.Spark;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static com.khartec.waltz.common.MapUtilities.newHashMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchDispatcherTest {
+
+    private final BatchDispatcher dispatcher = new BatchDispatcher(4, 4, 10_000);
+    private final Request batchRequest = RequestResponseFactory.create(stub(HttpServletRequest.class));
+    private final Response batchResponse = RequestResponseFactory.create(stub(HttpServletResponse.class));
+
+
+    // -- body resolution ---
+
+    @Test
+    public void returnedJsonIsEmbedded() {
+        RouteRegistry.register("GET", "/bd-json/apps/:id", (req, res) -> {
+            res.type("application/json");
+            return "{ \"id\": " + req.params("id") + " }";
+        });
+
+        BatchResultItem result = dispatchOne(mkItem("GET", "/bd-json/apps/12"));
+
+        assertEquals(200, result.status());
+        assertEquals(Optional.of("application/json"), result.contentType());
+        assertEquals(12, ((JsonNode) result.body()).get("id").asInt());
+    }
+
+
+    @Test
+    public void itemBodyIsSentAsJson() {
+        RouteRegistry.register("POST", "/bd-body/echo", (req, res) -> {
+            res.type("application/json");
+            return req.body();
+        });
+
+        BatchRequestItem item = ImmutableBatchRequestItem.builder()
+                .method("POST")
+                .path("/bd-body/echo")
+                .body(newHashMap("name", "waltz"))
+                .build();
+
+        BatchResultItem result = dispatchOne(item);
+
+        assertEquals("waltz", ((JsonNode) result.body()).get("name").asText());
+    }
+
+
+    @Test
+    public void writtenBodyWinsOverReturnedValue() {
+        RouteRegistry.register("GET", "/bd-written", (req, res) -> {
+            res.type("text/plain");
+            res.raw().getWriter().write("written");
+            return "returned";
+        });
+
+        assertEquals("written", dispatchOne(mkItem("GET", "/bd-written")).body());
+    }
+
+
+    @Test
+    public void responseBodyIsUsedWhenRouteReturnsNothing() {
+        RouteRegistry.register("GET", "/bd-response-body", (req, res) -> {
+            res.type("text/plain");
+            res.body("from response");
+            return null;
+        });
+
+        assertEquals("from response", dispatchOne(mkItem("GET", "/bd-response-body")).body());
+    }
+
+
+    @Test
+    public void bodiesAreEmbeddedAccordingToContentType() {
+        byte[] binary = { 1, 2, 3 };
+        assertArrayEquals(binary, (byte[]) BatchDispatcher.embed("application/octet-stream", binary));
+
+        assertEquals("plain", BatchDispatcher.embed("text/plain", bytes("plain")));
+        assertEquals("not json", BatchDispatcher.embed(null, bytes("not json")));
+        assertEquals("{ broken", BatchDispatcher.embed("application/json", bytes("{ broken")));
+        assertEquals(1, ((JsonNode) BatchDispatcher.embed(null, bytes("{ \"a\": 1 }"))).get("a").asInt());
+        assertNull(BatchDispatcher.embed("application/json", new byte[0]));
+    }
+
+
+    // -- status mapping ---
+
+    @Test
+    public void failuresAreReportedWithTheirUsualStatus() {
+        RouteRegistry.register("GET", "/bd-status/not-found", (req, res) -> { throw new NotFoundException("NF", "missing"); });
+        RouteRegistry.register("GET", "/bd-status/forbidden", (req, res) -> { throw new InsufficientPrivelegeException("no"); });
+        RouteRegistry.register("GET", "/bd-status/busy", (req, res) -> { throw new RejectedExecutionException("busy"); });
+        RouteRegistry.register("GET", "/bd-status/timeout", (req, res) -> { throw new DeadlineExceededException("slow"); });
+        RouteRegistry.register("GET", "/bd-status/halt", (req, res) -> { throw Spark.halt(418, "teapot"); });
+        RouteRegistry.register("GET", "/bd-status/broken", (req, res) -> { throw new IllegalStateException("broken"); });
+
+        List<BatchResultItem> results = dispatcher.dispatch(
+                batchRequest,
+                batchResponse,
+                newArrayList(
+                        mkItem("GET", "/bd-status/not-found"),
+                        mkItem("GET", "/bd-status/forbidden"),
+                        mkItem("GET", "/bd-status/busy"),
+                        mkItem("GET", "/bd-status/timeout"),
+                        mkItem("GET", "/bd-status/halt"),
+                        mkItem("GET", "/bd-status/broken"),
+                        mkItem("GET", "/bd-status/no-such-route")));
+
+        assertEquals(404, results.get(0).status());
+        assertEquals(403, results.get(1).status());
+        assertEquals(503, results.get(2).status());
+        assertEquals(503, results.get(3).status());
+        assertEquals(418, results.get(4).status());
+        assertEquals("teapot", results.get(4).body());
+        assertEquals(500, results.get(5).status());
+        assertEquals(404, results.get(6).status());
+    }
+
+
+    @Test
+    public void resultsAreInRequestOrder() {
+        RouteRegistry.register("GET", "/bd-order/:n", (req, res) -> {
+            res.type("text/plain");
+            return req.params("n");
+        });
+
+        List<BatchRequestItem> items = newArrayList();
+        for (int i = 0; i < 20; i++) {
+            items.add(mkItem("GET", "/bd-order/" + i));
+        }
+
+        List<BatchResultItem> results = dispatcher.dispatch(batchRequest, batchResponse, items);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.toString(i), results.get(i).body());
+        }
+    }
+
+
+    // -- timeouts ---
+
+    @Test
+    public void itemsNotStartedBeforeTimeoutAreReportedAndRunningOnesFinish() {
+        RouteRegistry.register("GET", "/bd-timeout/slow", (req, res) -> {
+            Thread.sleep(300);
+            res.type("text/plain");
+            return "slow";
+        });
+        RouteRegistry.register("GET", "/bd-timeout/fast", (req, res) -> "fast");
+
+        BatchDispatcher serial = new BatchDispatcher(1, 1, 50);
+        List<BatchResultItem> results = serial.dispatch(
+                batchRequest,
+                batchResponse,
+                newArrayList(
+                        mkItem("GET", "/bd-timeout/slow"),
+                        mkItem("GET", "/bd-timeout/fast")));
+
+        assertEquals(200, results.get(0).status());
+        assertEquals("slow", results.get(0).body());
+        assertEquals(503, results.get(1).status());
+        assertTrue(results.get(1).body().toString().contains("timed out"));
+    }
+
+
+    // -- helpers ---
+
+    private BatchResultItem dispatchOne(BatchRequestItem item) {
+        return dispatcher
+                .dispatch(batchRequest, batchResponse, newArrayList(item))
+                .get(0);
+    }
+
+
+    private static BatchRequestItem mkItem(String method, String path) {
+        return ImmutableBatchRequestItem.builder()
+                .method(method)
+                .path(path)
+                .build();
+    }
+
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * The batch's own request and response are only delegated to for
+     * things items do not override, so a stub returning defaults will do.
+     */
+    private static <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[] { type },
+                (proxy, method, args) -> defaultValue(method.getReturnType())));
+    }
+
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == Enumeration.class) {
+            return Collections.emptyEnumeration();
+        } else {
+            return null;
+        }
+    }
+
+}
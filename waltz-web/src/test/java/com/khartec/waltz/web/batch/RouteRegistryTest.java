@@ -0,0 +1,99 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.batch;
+
+import org.junit.Test;
+import spark.Route;
+import spark.routematch.RouteMatch;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class RouteRegistryTest {
+
+    private static final Route ROUTE_A = (req, res) -> "a";
+    private static final Route ROUTE_B = (req, res) -> "b";
+
+
+    @Test
+    public void literalPathsMatchExactly() {
+        RouteRegistry.register("GET", "/rr-literal/apps", ROUTE_A);
+
+        assertSame(ROUTE_A, find("GET", "/rr-literal/apps"));
+        assertSame(ROUTE_A, find("GET", "rr-literal/apps/"));
+        assertFalse(RouteRegistry.find("GET", "/rr-literal/other").isPresent());
+        assertFalse(RouteRegistry.find("GET", "/rr-literal/apps/1").isPresent());
+    }
+
+
+    @Test
+    public void paramsMatchAnySingleSegment() {
+        RouteRegistry.register("GET", "/rr-params/apps/:id/flows", ROUTE_A);
+
+        RouteMatch match = RouteRegistry.find("GET", "/rr-params/apps/12/flows").get();
+        assertSame(ROUTE_A, match.getTarget());
+        assertEquals("/rr-params/apps/:id/flows", match.getMatchUri());
+        assertEquals("/rr-params/apps/12/flows", match.getRequestURI());
+
+        assertFalse(RouteRegistry.find("GET", "/rr-params/apps/flows").isPresent());
+    }
+
+
+    @Test
+    public void trailingWildcardMatchesRemainderOfPath() {
+        RouteRegistry.register("GET", "/rr-wild/extract/*", ROUTE_A);
+
+        assertSame(ROUTE_A, find("GET", "/rr-wild/extract/one"));
+        assertSame(ROUTE_A, find("GET", "/rr-wild/extract/one/two/three"));
+        assertFalse(RouteRegistry.find("GET", "/rr-wild/extract").isPresent());
+    }
+
+
+    @Test
+    public void firstRegisteredRouteWins() {
+        RouteRegistry.register("GET", "/rr-order/apps/:id", ROUTE_A);
+        RouteRegistry.register("GET", "/rr-order/apps/search", ROUTE_B);
+
+        assertSame(ROUTE_A, find("GET", "/rr-order/apps/search"));
+    }
+
+
+    @Test
+    public void routesAreMatchedByMethod() {
+        RouteRegistry.register("GET", "/rr-method/apps", ROUTE_A);
+        RouteRegistry.register("POST", "/rr-method/apps", ROUTE_B);
+
+        assertSame(ROUTE_A, find("GET", "/rr-method/apps"));
+        assertSame(ROUTE_B, find("post", "/rr-method/apps"));
+        assertFalse(RouteRegistry.find("DELETE", "/rr-method/apps").isPresent());
+    }
+
+
+    // -- helpers ---
+
+    private static Object find(String method, String path) {
+        Optional<RouteMatch> match = RouteRegistry.find(method, path);
+        return match.map(RouteMatch::getTarget).orElse(null);
+    }
+
+}
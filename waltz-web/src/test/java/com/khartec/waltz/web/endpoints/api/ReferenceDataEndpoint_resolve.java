@@ -0,0 +1,62 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.khartec.waltz.web.endpoints.api.ReferenceDataEndpoint.SnapshotRequestOutcome.*;
+import static com.khartec.waltz.web.endpoints.api.ReferenceDataEndpoint.resolve;
+import static org.junit.Assert.assertEquals;
+
+public class ReferenceDataEndpoint_resolve {
+
+    @Test
+    public void heldVersionIsServedWithoutCheckingTheDatabase() {
+        AtomicInteger lookups = new AtomicInteger();
+
+        assertEquals(SERVE, resolve("v1", "v1", () -> {
+            lookups.incrementAndGet();
+            return "v2";
+        }));
+        assertEquals(0, lookups.get());
+    }
+
+
+    @Test
+    public void currentVersionNotYetBuiltOnThisNodeIsRetriedLater() {
+        assertEquals(RETRY_LATER, resolve("v2", "v1", () -> "v2"));
+    }
+
+
+    @Test
+    public void oldVersionIsRedirectedToHeldVersion() {
+        assertEquals(REDIRECT, resolve("v0", "v1", () -> "v1"));
+    }
+
+
+    @Test
+    public void unknownVersionIsRedirectedToHeldVersion() {
+        assertEquals(REDIRECT, resolve("not-a-version", "v1", () -> "v2"));
+    }
+
+}
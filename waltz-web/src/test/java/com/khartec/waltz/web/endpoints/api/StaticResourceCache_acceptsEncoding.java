@@ -0,0 +1,57 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.endpoints.api;
+
+import org.junit.Test;
+
+import static com.khartec.waltz.web.endpoints.api.StaticResourceCache.acceptsEncoding;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaticResourceCache_acceptsEncoding {
+
+    @Test
+    public void listedCodingsAreAccepted() {
+        assertTrue(acceptsEncoding("gzip, deflate, br", "br"));
+        assertTrue(acceptsEncoding("gzip, deflate, br", "gzip"));
+    }
+
+
+    @Test
+    public void missingHeaderOrCodingIsNotAccepted() {
+        assertFalse(acceptsEncoding(null, "gzip"));
+        assertFalse(acceptsEncoding("identity", "gzip"));
+    }
+
+
+    @Test
+    public void zeroQualityExcludesCoding() {
+        assertFalse(acceptsEncoding("gzip;q=0, br", "gzip"));
+        assertTrue(acceptsEncoding("gzip;q=0.5, br", "gzip"));
+    }
+
+
+    @Test
+    public void wildcardAppliesUnlessCodingIsNamed() {
+        assertTrue(acceptsEncoding("*", "br"));
+        assertFalse(acceptsEncoding("*, gzip;q=0", "gzip"));
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncDispatchHandlerTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger handled = new AtomicInteger();
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+
+    private Server server;
+    private int port;
+
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        clients.shutdownNow();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+
+    @Test
+    public void requestsBeyondQueueAreRejected() throws Exception {
+        start(60_000);
+
+        Future<Integer> running = clients.submit(() -> get("/slow/1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Integer> queued = clients.submit(() -> get("/slow/2"));
+        Thread.sleep(200);
+
+        HttpURLConnection rejected = open("/slow/3");
+        assertEquals(503, rejected.getResponseCode());
+        assertEquals("5", rejected.getHeaderField("Retry-After"));
+
+        release.countDown();
+        assertEquals(200, (int) running.get(5, TimeUnit.SECONDS));
+        assertEquals(200, (int) queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, handled.get());
+    }
+
+
+    @Test
+    public void queuedRequestsTimeOutButRunningOnesAreLeftToFinish() throws Exception {
+        start(200);
+
+        Future<Integer> running = clients.submit(() -> get("/slow/1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        HttpURLConnection queued = open("/slow/2");
+        assertEquals(503, queued.getResponseCode());
+        assertEquals("5", queued.getHeaderField("Retry-After"));
+
+        release.countDown();
+        assertEquals(200, (int) running.get(5, TimeUnit.SECONDS));
+        assertEquals(1, handled.get());
+    }
+
+
+    @Test
+    public void otherPathsAreHandledDirectly() throws Exception {
+        start(60_000);
+        release.countDown();
+
+        assertEquals(200, get("/fast"));
+        assertEquals(1, handled.get());
+    }
+
+
+    // -- helpers ---
+
+    private void start(long timeoutMillis) throws Exception {
+        Properties props = new Properties();
+        props.setProperty("waltz.server.async.paths", "/slow/");
+        props.setProperty("waltz.server.async.threads", "1");
+        props.setProperty("waltz.server.async.maxQueued", "1");
+        props.setProperty("waltz.server.async.timeoutMillis", Long.toString(timeoutMillis));
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AsyncDispatchHandler(new BlockingHandler(), new ServerSettings(props)));
+        server.start();
+        port = connector.getLocalPort();
+    }
+
+
+    private int get(String path) throws IOException {
+        return open(path).getResponseCode();
+    }
+
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setReadTimeout(10_000);
+        return connection;
+    }
+
+
+    private class BlockingHandler extends AbstractHandler {
+
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+            baseRequest.setHandled(true);
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.getWriter().write("ok");
+        }
+
+    }
+
+}
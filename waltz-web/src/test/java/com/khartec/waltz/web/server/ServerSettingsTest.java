@@ -0,0 +1,60 @@
+/*
+ * Waltz - Enterprise Architecture
+ * Copyright (C) 2016, 2017, 2018, 2019 Waltz open source project
+ * See README.md for more information
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific
+ *
+ */
+
+
+package com.khartec.waltz.web.server;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static com.khartec.waltz.common.ListUtilities.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerSettingsTest {
+
+    @Test
+    public void defaultsAreUsedWhenNothingIsSet() {
+        ServerSettings settings = new ServerSettings(new Properties());
+        assertEquals(200, settings.maxThreads());
+        assertEquals(3_600_000, settings.idleTimeoutMillis());
+        assertFalse(settings.asyncEnabled());
+        assertFalse(settings.customisesConnector());
+    }
+
+
+    @Test
+    public void valuesAreReadAndInvalidOnesIgnored() {
+        Properties props = new Properties();
+        props.setProperty("waltz.server.threads.max", " 400 ");
+        props.setProperty("waltz.server.selectors", "4");
+        props.setProperty("waltz.server.requestHeaderSize", "big");
+        props.setProperty("waltz.server.async.enabled", "true");
+        props.setProperty("waltz.server.async.paths", "data-extract/, /api/entity-search,,");
+
+        ServerSettings settings = new ServerSettings(props);
+        assertEquals(400, settings.maxThreads());
+        assertEquals(8192, settings.requestHeaderSize());
+        assertTrue(settings.customisesConnector());
+        assertTrue(settings.asyncEnabled());
+        assertEquals(newArrayList("/data-extract/", "/api/entity-search"), settings.asyncPaths());
+    }
+
+}